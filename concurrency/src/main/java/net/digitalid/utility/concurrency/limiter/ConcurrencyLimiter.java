@@ -0,0 +1,274 @@
+/*
+ * Copyright (C) 2017 Synacts GmbH, Switzerland (info@synacts.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.digitalid.utility.concurrency.limiter;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.digitalid.utility.annotations.method.Impure;
+import net.digitalid.utility.annotations.method.Pure;
+import net.digitalid.utility.annotations.ownership.Capturable;
+import net.digitalid.utility.annotations.type.ThreadSafe;
+import net.digitalid.utility.contracts.Require;
+import net.digitalid.utility.time.Time;
+import net.digitalid.utility.validation.annotations.math.NonNegative;
+import net.digitalid.utility.validation.annotations.math.Positive;
+import net.digitalid.utility.validation.annotations.type.Mutable;
+
+/**
+ * A concurrency limiter bounds the number of operations that are in flight at the same time and adapts this bound with additive increase and multiplicative decrease (AIMD).
+ * Every successful operation increases the limit by one per limit operations, whereas every dropped operation or operation that took longer than the timeout reduces the limit by the backoff ratio.
+ * It is highly recommended that you always follow a successful acquisition immediately with a try-finally block like
+ * <pre>{@code
+ * if (limiter.tryAcquire()) {
+ *     final long start = System.nanoTime();
+ *     boolean dropped = true;
+ *     try {
+ *         // Do the limited operation here.
+ *         dropped = false;
+ *     } finally {
+ *         limiter.release(start, dropped);
+ *     }
+ * }
+ * }</pre>
+ */
+@Mutable
+@ThreadSafe
+public class ConcurrencyLimiter {
+    
+    /* -------------------------------------------------- Fields -------------------------------------------------- */
+    
+    private final int minimumLimit;
+    
+    private final int maximumLimit;
+    
+    private final double backoffRatio;
+    
+    /**
+     * Stores the duration in nanoseconds after which a successful operation is treated like a dropped one.
+     */
+    private final long timeout;
+    
+    /**
+     * Stores the bits of the current limit, which is a floating-point number so that it can be increased in fractions.
+     */
+    private final @Nonnull AtomicLong limit;
+    
+    /**
+     * Stores the number of operations that are currently in flight.
+     */
+    private final @Nonnull AtomicInteger inFlight = new AtomicInteger();
+    
+    /**
+     * Stores the threads that are waiting for a permit.
+     */
+    private final @Nonnull Queue<@Nonnull Thread> waiters = new ConcurrentLinkedQueue<>();
+    
+    /* -------------------------------------------------- Constructors -------------------------------------------------- */
+    
+    protected ConcurrencyLimiter(@Positive int initialLimit, @Positive int minimumLimit, @Positive int maximumLimit, double backoffRatio, @Nonnull Time timeout) {
+        Require.that(minimumLimit > 0).orThrow("The minimum limit has to be positive but was $.", minimumLimit);
+        Require.that(minimumLimit <= initialLimit && initialLimit <= maximumLimit).orThrow("The initial limit $ has to be between the minimum limit $ and the maximum limit $.", initialLimit, minimumLimit, maximumLimit);
+        Require.that(backoffRatio > 0 && backoffRatio < 1).orThrow("The backoff ratio has to be between zero and one but was $.", backoffRatio);
+        Require.that(timeout.isPositive()).orThrow("The timeout has to be positive but was $.", timeout);
+        
+        this.minimumLimit = minimumLimit;
+        this.maximumLimit = maximumLimit;
+        this.backoffRatio = backoffRatio;
+        this.timeout = TimeUnit.MILLISECONDS.toNanos(timeout.getValue());
+        this.limit = new AtomicLong(Double.doubleToLongBits(initialLimit));
+    }
+    
+    /**
+     * Returns a new concurrency limiter with the given limits, backoff ratio and timeout.
+     * 
+     * @param backoffRatio the factor by which the limit is multiplied when an operation is dropped.
+     * @param timeout the duration after which a successful operation is treated like a dropped one.
+     */
+    @Pure
+    public static @Capturable @Nonnull ConcurrencyLimiter with(@Positive int initialLimit, @Positive int minimumLimit, @Positive int maximumLimit, double backoffRatio, @Nonnull Time timeout) {
+        return new ConcurrencyLimiter(initialLimit, minimumLimit, maximumLimit, backoffRatio, timeout);
+    }
+    
+    /**
+     * Returns a new concurrency limiter with the given initial limit, which can grow up to ten times its initial value and is reduced by ten percent on drops.
+     */
+    @Pure
+    public static @Capturable @Nonnull ConcurrencyLimiter with(@Positive int initialLimit, @Nonnull Time timeout) {
+        return new ConcurrencyLimiter(initialLimit, 1, Math.max(initialLimit, 10 * initialLimit), 0.9, timeout);
+    }
+    
+    /* -------------------------------------------------- Limit -------------------------------------------------- */
+    
+    /**
+     * Returns the current limit of concurrent operations.
+     */
+    @Pure
+    public @Positive int getLimit() {
+        return Math.max(minimumLimit, (int) Double.longBitsToDouble(limit.get()));
+    }
+    
+    /**
+     * Returns the number of operations that are currently in flight.
+     */
+    @Pure
+    public @NonNegative int getInFlight() {
+        return inFlight.get();
+    }
+    
+    /**
+     * Increases the limit by the reciprocal of the limit if it is at least half utilized.
+     */
+    @Impure
+    private void increaseLimit(int utilization) {
+        while (true) {
+            final long bits = limit.get();
+            final double current = Double.longBitsToDouble(bits);
+            if (utilization < current / 2 || current >= maximumLimit) { return; }
+            final double next = Math.min(maximumLimit, current + 1 / current);
+            if (limit.compareAndSet(bits, Double.doubleToLongBits(next))) { return; }
+        }
+    }
+    
+    /**
+     * Decreases the limit by the backoff ratio.
+     */
+    @Impure
+    private void decreaseLimit() {
+        while (true) {
+            final long bits = limit.get();
+            final double next = Math.max(minimumLimit, Double.longBitsToDouble(bits) * backoffRatio);
+            if (limit.compareAndSet(bits, Double.doubleToLongBits(next))) { return; }
+        }
+    }
+    
+    /* -------------------------------------------------- Acquisition -------------------------------------------------- */
+    
+    /**
+     * Acquires a permit if fewer operations than the current limit are in flight.
+     * 
+     * @return whether a permit was acquired, which then has to be released.
+     */
+    @Impure
+    public boolean tryAcquire() {
+        while (true) {
+            final int current = inFlight.get();
+            if (current >= getLimit()) { return false; }
+            if (inFlight.compareAndSet(current, current + 1)) { return true; }
+        }
+    }
+    
+    /**
+     * Acquires a permit if one becomes available within the given number of nanoseconds or waits indefinitely if the number is negative.
+     * A waiter that leaves the queue passes the signal on to the next waiter, as it might have been woken up instead of it shortly before timing out or being interrupted.
+     */
+    @Impure
+    private boolean acquire(long nanos) throws InterruptedException {
+        if (tryAcquire()) { return true; }
+        final long deadline = System.nanoTime() + nanos;
+        final @Nonnull Thread thread = Thread.currentThread();
+        waiters.add(thread);
+        try {
+            while (true) {
+                if (tryAcquire()) { return true; }
+                if (Thread.interrupted()) { throw new InterruptedException(); }
+                if (nanos < 0) {
+                    LockSupport.park(this);
+                } else {
+                    final long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) { return false; }
+                    LockSupport.parkNanos(this, remaining);
+                }
+            }
+        } finally {
+            waiters.remove(thread);
+            signal();
+        }
+    }
+    
+    /**
+     * Acquires a permit if one becomes available within the given timeout.
+     * 
+     * @return whether a permit was acquired, which then has to be released.
+     * 
+     * @throws InterruptedException if the current thread is interrupted while waiting.
+     */
+    @Impure
+    public boolean tryAcquire(@Nonnull Time timeout) throws InterruptedException {
+        return acquire(TimeUnit.MILLISECONDS.toNanos(Math.max(0, timeout.getValue())));
+    }
+    
+    /**
+     * Acquires a permit and waits until one is available.
+     * 
+     * @throws InterruptedException if the current thread is interrupted while waiting.
+     */
+    @Impure
+    public void acquire() throws InterruptedException {
+        acquire(-1);
+    }
+    
+    /* -------------------------------------------------- Release -------------------------------------------------- */
+    
+    /**
+     * Wakes up the first waiting thread if a permit is available.
+     */
+    @Impure
+    private void signal() {
+        if (inFlight.get() < getLimit()) {
+            final @Nullable Thread waiter = waiters.peek();
+            if (waiter != null) { LockSupport.unpark(waiter); }
+        }
+    }
+    
+    /**
+     * Releases a permit of an operation that was started at the given time as returned by {@link System#nanoTime()} and adapts the limit accordingly.
+     * 
+     * @param dropped whether the operation failed because the protected resource was overloaded.
+     */
+    @Impure
+    public void release(long start, boolean dropped) {
+        final int utilization = inFlight.getAndDecrement();
+        if (dropped || System.nanoTime() - start > timeout) { decreaseLimit(); }
+        else { increaseLimit(utilization); }
+        signal();
+    }
+    
+    /**
+     * Releases a permit without adapting the limit, which is appropriate for operations that were neither measured nor dropped.
+     */
+    @Impure
+    public void release() {
+        inFlight.decrementAndGet();
+        signal();
+    }
+    
+    /* -------------------------------------------------- Object -------------------------------------------------- */
+    
+    @Pure
+    @Override
+    public @Nonnull String toString() {
+        return "ConcurrencyLimiter(limit: " + getLimit() + ", in flight: " + getInFlight() + ")";
+    }
+    
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2017 Synacts GmbH, Switzerland (info@synacts.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.digitalid.utility.concurrency.limiter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+
+import net.digitalid.utility.annotations.method.Impure;
+import net.digitalid.utility.annotations.method.Pure;
+import net.digitalid.utility.annotations.ownership.Capturable;
+import net.digitalid.utility.annotations.type.ThreadSafe;
+import net.digitalid.utility.contracts.Require;
+import net.digitalid.utility.time.Time;
+import net.digitalid.utility.validation.annotations.math.NonNegative;
+import net.digitalid.utility.validation.annotations.math.Positive;
+import net.digitalid.utility.validation.annotations.type.Mutable;
+
+/**
+ * A token bucket limits the rate at which permits are handed out while allowing bursts up to its capacity.
+ * The bucket is implemented without locks by storing only the theoretical time at which the bucket is full again,
+ * which is advanced with a compare-and-set operation whenever permits are acquired.
+ */
+@Mutable
+@ThreadSafe
+public class TokenBucket {
+    
+    /* -------------------------------------------------- Fields -------------------------------------------------- */
+    
+    /**
+     * Stores the number of nanoseconds after which a single permit is refilled.
+     */
+    private final long interval;
+    
+    /**
+     * Stores the maximal number of permits that can be acquired in a burst.
+     */
+    private final int capacity;
+    
+    /**
+     * Stores the number of nanoseconds in which the whole capacity is refilled.
+     */
+    private final long burst;
+    
+    /**
+     * Stores the time in nanoseconds at which all permits that have been handed out so far are refilled.
+     */
+    private final @Nonnull AtomicLong refillTime;
+    
+    /* -------------------------------------------------- Constructors -------------------------------------------------- */
+    
+    protected TokenBucket(@Positive int capacity, @Positive int permits, @Nonnull Time period) {
+        Require.that(capacity > 0).orThrow("The capacity has to be positive but was $.", capacity);
+        Require.that(permits > 0).orThrow("The number of permits has to be positive but was $.", permits);
+        Require.that(period.isPositive()).orThrow("The period has to be positive but was $.", period);
+        
+        this.interval = Math.max(1, TimeUnit.MILLISECONDS.toNanos(period.getValue()) / permits);
+        Require.that(interval <= Long.MAX_VALUE / 2 / capacity).orThrow("The capacity $ has to be refilled in at most half the range of the nanosecond clock but a permit is refilled only every $ ns.", capacity, interval);
+        this.capacity = capacity;
+        this.burst = capacity * interval;
+        this.refillTime = new AtomicLong(System.nanoTime());
+    }
+    
+    /**
+     * Returns a new token bucket which refills the given number of permits per period and holds at most the given capacity.
+     * The bucket is initially full.
+     * 
+     * @require capacity * period / permits <= Long.MAX_VALUE / 2 ns : "The capacity is refilled in at most half the range of the nanosecond clock.";
+     */
+    @Pure
+    public static @Capturable @Nonnull TokenBucket with(@Positive int capacity, @Positive int permits, @Nonnull Time period) {
+        return new TokenBucket(capacity, permits, period);
+    }
+    
+    /**
+     * Returns a new token bucket which refills the given number of permits per period and holds at most that many permits.
+     * 
+     * @require period <= Long.MAX_VALUE / 2 ns : "The capacity is refilled in at most half the range of the nanosecond clock.";
+     */
+    @Pure
+    public static @Capturable @Nonnull TokenBucket with(@Positive int permits, @Nonnull Time period) {
+        return new TokenBucket(permits, permits, period);
+    }
+    
+    /* -------------------------------------------------- Reservation -------------------------------------------------- */
+    
+    /**
+     * Reserves the given number of permits if they become available within the given number of nanoseconds.
+     * 
+     * @return the number of nanoseconds that the caller has to wait until the reserved permits are available or -1 if the permits could not be reserved in time.
+     */
+    @Impure
+    private long reserve(@Positive int permits, @NonNegative long timeout) {
+        Require.that(permits > 0 && permits <= capacity).orThrow("The number of permits has to be positive and at most the capacity $ but was $.", capacity, permits);
+        
+        while (true) {
+            final long now = System.nanoTime();
+            final long current = refillTime.get();
+            final long start = current - now < 0 ? now : current;
+            final long next = start + permits * interval;
+            final long wait = next - now - burst;
+            if (wait > timeout) { return -1; }
+            if (refillTime.compareAndSet(current, next)) { return Math.max(0, wait); }
+        }
+    }
+    
+    /* -------------------------------------------------- Acquisition -------------------------------------------------- */
+    
+    /**
+     * Acquires the given number of permits if they are available right now.
+     * 
+     * @require permits <= getCapacity() : "The number of permits is at most the capacity.";
+     * 
+     * @return whether the permits were acquired.
+     */
+    @Impure
+    public boolean tryAcquire(@Positive int permits) {
+        return reserve(permits, 0) == 0;
+    }
+    
+    /**
+     * Acquires a single permit if it is available right now.
+     * 
+     * @return whether the permit was acquired.
+     */
+    @Impure
+    public boolean tryAcquire() {
+        return tryAcquire(1);
+    }
+    
+    /**
+     * Acquires the given number of permits if they become available within the given timeout and waits until they are available.
+     * 
+     * @require permits <= getCapacity() : "The number of permits is at most the capacity.";
+     * 
+     * @return whether the permits were acquired.
+     * 
+     * @throws InterruptedException if the current thread is interrupted while waiting, in which case the permits are nonetheless consumed.
+     */
+    @Impure
+    public boolean tryAcquire(@Positive int permits, @Nonnull Time timeout) throws InterruptedException {
+        final long wait = reserve(permits, TimeUnit.MILLISECONDS.toNanos(Math.max(0, timeout.getValue())));
+        if (wait < 0) { return false; }
+        if (wait > 0) { TimeUnit.NANOSECONDS.sleep(wait); }
+        return true;
+    }
+    
+    /**
+     * Acquires a single permit if it becomes available within the given timeout and waits until it is available.
+     * 
+     * @return whether the permit was acquired.
+     * 
+     * @throws InterruptedException if the current thread is interrupted while waiting, in which case the permit is nonetheless consumed.
+     */
+    @Impure
+    public boolean tryAcquire(@Nonnull Time timeout) throws InterruptedException {
+        return tryAcquire(1, timeout);
+    }
+    
+    /**
+     * Acquires the given number of permits and waits until they are available.
+     * 
+     * @require permits <= getCapacity() : "The number of permits is at most the capacity.";
+     * 
+     * @throws InterruptedException if the current thread is interrupted while waiting, in which case the permits are nonetheless consumed.
+     */
+    @Impure
+    public void acquire(@Positive int permits) throws InterruptedException {
+        final long wait = reserve(permits, Long.MAX_VALUE);
+        if (wait > 0) { TimeUnit.NANOSECONDS.sleep(wait); }
+    }
+    
+    /**
+     * Acquires a single permit and waits until it is available.
+     * 
+     * @throws InterruptedException if the current thread is interrupted while waiting, in which case the permit is nonetheless consumed.
+     */
+    @Impure
+    public void acquire() throws InterruptedException {
+        acquire(1);
+    }
+    
+    /* -------------------------------------------------- Getters -------------------------------------------------- */
+    
+    /**
+     * Returns the maximal number of permits that can be acquired in a burst.
+     */
+    @Pure
+    public @Positive int getCapacity() {
+        return capacity;
+    }
+    
+    /**
+     * Returns the number of permits that are currently available.
+     */
+    @Pure
+    public @NonNegative int getAvailablePermits() {
+        final long outstanding = Math.max(0, refillTime.get() - System.nanoTime());
+        return (int) Math.max(0, capacity - (outstanding + interval - 1) / interval);
+    }
+    
+    /* -------------------------------------------------- Object -------------------------------------------------- */
+    
+    @Pure
+    @Override
+    public @Nonnull String toString() {
+        return "TokenBucket(capacity: " + capacity + ", available: " + getAvailablePermits() + ")";
+    }
+    
+}
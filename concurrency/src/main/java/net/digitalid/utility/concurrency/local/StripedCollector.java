@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2017 Synacts GmbH, Switzerland (info@synacts.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.digitalid.utility.concurrency.local;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.digitalid.utility.annotations.generics.Specifiable;
+import net.digitalid.utility.annotations.generics.Unspecifiable;
+import net.digitalid.utility.annotations.method.Impure;
+import net.digitalid.utility.annotations.method.Pure;
+import net.digitalid.utility.annotations.ownership.Capturable;
+import net.digitalid.utility.annotations.ownership.Captured;
+import net.digitalid.utility.annotations.type.ThreadSafe;
+import net.digitalid.utility.contracts.Require;
+import net.digitalid.utility.functional.failable.FailableCollector;
+import net.digitalid.utility.functional.interfaces.BinaryOperator;
+import net.digitalid.utility.functional.interfaces.Producer;
+import net.digitalid.utility.generator.annotations.generators.GenerateSubclass;
+import net.digitalid.utility.validation.annotations.type.Immutable;
+import net.digitalid.utility.validation.annotations.type.Mutable;
+
+/**
+ * This class implements a striped collector, which gives each thread its own collector and merges their results on read.
+ * Each thread-local collector is only locked by the consuming thread and by {@link #getResult()}, so consumers do not contend with each other.
+ * 
+ * @see StripedCounter
+ */
+@Mutable
+@ThreadSafe
+@GenerateSubclass
+public abstract class StripedCollector<@Specifiable INPUT, @Specifiable RESULT, @Unspecifiable COLLECT_EXCEPTION extends Exception, @Unspecifiable RESULT_EXCEPTION extends Exception> implements FailableCollector<INPUT, RESULT, COLLECT_EXCEPTION, RESULT_EXCEPTION> {
+    
+    /* -------------------------------------------------- Fields -------------------------------------------------- */
+    
+    /**
+     * Stores the producer of the collectors for the individual threads.
+     */
+    private final @Nonnull Producer<@Nonnull ? extends FailableCollector<INPUT, RESULT, COLLECT_EXCEPTION, RESULT_EXCEPTION>> producer;
+    
+    /**
+     * Stores the operator which merges the results of two collectors.
+     */
+    private final @Nonnull BinaryOperator<RESULT> merger;
+    
+    /**
+     * A stripe associates the collector of a thread with that thread so that the collector can be retired once the thread has terminated.
+     */
+    @Immutable
+    private static class Stripe<@Specifiable INPUT, @Specifiable RESULT, @Unspecifiable COLLECT_EXCEPTION extends Exception, @Unspecifiable RESULT_EXCEPTION extends Exception> {
+        
+        private final @Nonnull WeakReference<@Nonnull Thread> thread;
+        
+        private final @Nonnull FailableCollector<INPUT, RESULT, COLLECT_EXCEPTION, RESULT_EXCEPTION> collector;
+        
+        private Stripe(@Nonnull Thread thread, @Nonnull FailableCollector<INPUT, RESULT, COLLECT_EXCEPTION, RESULT_EXCEPTION> collector) {
+            this.thread = new WeakReference<>(thread);
+            this.collector = collector;
+        }
+        
+        /**
+         * Returns whether the thread of this stripe has terminated, after which its collector no longer changes.
+         */
+        @Pure
+        private boolean isRetired() {
+            final @Nullable Thread thread = this.thread.get();
+            return thread == null || !thread.isAlive();
+        }
+        
+    }
+    
+    /**
+     * Stores the stripes of all live threads that have consumed an input.
+     */
+    private final @Nonnull Queue<@Nonnull Stripe<INPUT, RESULT, COLLECT_EXCEPTION, RESULT_EXCEPTION>> stripes = new ConcurrentLinkedQueue<>();
+    
+    /**
+     * Stores the collector of the current thread.
+     */
+    private final @Nonnull ThreadLocal<@Nullable FailableCollector<INPUT, RESULT, COLLECT_EXCEPTION, RESULT_EXCEPTION>> threadLocal = new ThreadLocal<>();
+    
+    /**
+     * Stores the merged result of the stripes whose threads have terminated, which is only accessed while holding the lock of the stripes.
+     */
+    private RESULT retiredResult;
+    
+    /**
+     * Stores whether the retired result contains the result of at least one stripe.
+     */
+    private boolean retired = false;
+    
+    /* -------------------------------------------------- Constructors -------------------------------------------------- */
+    
+    protected StripedCollector(@Captured @Nonnull Producer<@Nonnull ? extends FailableCollector<INPUT, RESULT, COLLECT_EXCEPTION, RESULT_EXCEPTION>> producer, @Captured @Nonnull BinaryOperator<RESULT> merger) {
+        Require.that(producer != null).orThrow("The producer may not be null.");
+        Require.that(merger != null).orThrow("The merger may not be null.");
+        
+        this.producer = producer;
+        this.merger = merger;
+    }
+    
+    /**
+     * Returns a new striped collector with the given producer of thread-local collectors and the given merger of their results.
+     */
+    @Pure
+    public static @Capturable <@Specifiable INPUT, @Specifiable RESULT, @Unspecifiable COLLECT_EXCEPTION extends Exception, @Unspecifiable RESULT_EXCEPTION extends Exception> @Nonnull StripedCollector<INPUT, RESULT, COLLECT_EXCEPTION, RESULT_EXCEPTION> with(@Captured @Nonnull Producer<@Nonnull ? extends FailableCollector<INPUT, RESULT, COLLECT_EXCEPTION, RESULT_EXCEPTION>> producer, @Captured @Nonnull BinaryOperator<RESULT> merger) {
+        return new StripedCollectorSubclass<>(producer, merger);
+    }
+    
+    /* -------------------------------------------------- Collector -------------------------------------------------- */
+    
+    /**
+     * Merges the results of the stripes whose threads have terminated into the retired result and removes these stripes.
+     * This method has to be called while holding the lock of the stripes.
+     * Retiring prevents the stripes from accumulating when many short-lived threads consume inputs, for example after a burst in a thread pool.
+     */
+    @Impure
+    private void retireStripes() throws RESULT_EXCEPTION {
+        final @Nonnull Iterator<@Nonnull Stripe<INPUT, RESULT, COLLECT_EXCEPTION, RESULT_EXCEPTION>> iterator = stripes.iterator();
+        while (iterator.hasNext()) {
+            final @Nonnull Stripe<INPUT, RESULT, COLLECT_EXCEPTION, RESULT_EXCEPTION> stripe = iterator.next();
+            if (stripe.isRetired()) {
+                final RESULT partialResult;
+                synchronized (stripe.collector) {
+                    partialResult = stripe.collector.getResult();
+                }
+                retiredResult = retired ? merger.evaluate(retiredResult, partialResult) : partialResult;
+                retired = true;
+                iterator.remove();
+            }
+        }
+    }
+    
+    /**
+     * Returns the collector of the current thread and creates it if necessary.
+     */
+    @Impure
+    private @Nonnull FailableCollector<INPUT, RESULT, COLLECT_EXCEPTION, RESULT_EXCEPTION> getCollector() {
+        @Nullable FailableCollector<INPUT, RESULT, COLLECT_EXCEPTION, RESULT_EXCEPTION> collector = threadLocal.get();
+        if (collector == null) {
+            collector = producer.produce();
+            threadLocal.set(collector);
+            stripes.add(new Stripe<>(Thread.currentThread(), collector));
+        }
+        return collector;
+    }
+    
+    /**
+     * Returns the number of stripes that have not yet been retired, which is mainly useful for monitoring.
+     */
+    @Pure
+    public int getNumberOfStripes() {
+        return stripes.size();
+    }
+    
+    @Impure
+    @Override
+    public void consume(@Captured INPUT input) throws COLLECT_EXCEPTION {
+        final @Nonnull FailableCollector<INPUT, RESULT, COLLECT_EXCEPTION, RESULT_EXCEPTION> collector = getCollector();
+        synchronized (collector) {
+            collector.consume(input);
+        }
+    }
+    
+    /**
+     * Returns the merged result of all thread-local collectors or the result of a fresh collector if no input has been consumed yet.
+     * The stripes of terminated threads are merged into a retired result and removed in the process.
+     * The returned result is not an atomic snapshot if inputs are consumed concurrently.
+     */
+    @Pure
+    @Override
+    public @Capturable RESULT getResult() throws RESULT_EXCEPTION {
+        synchronized (stripes) {
+            retireStripes();
+            boolean first = !retired;
+            RESULT result = retiredResult;
+            for (@Nonnull Stripe<INPUT, RESULT, COLLECT_EXCEPTION, RESULT_EXCEPTION> stripe : stripes) {
+                final RESULT partialResult;
+                synchronized (stripe.collector) {
+                    partialResult = stripe.collector.getResult();
+                }
+                result = first ? partialResult : merger.evaluate(result, partialResult);
+                first = false;
+            }
+            return first ? producer.produce().getResult() : result;
+        }
+    }
+    
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2017 Synacts GmbH, Switzerland (info@synacts.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.digitalid.utility.concurrency.local;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.annotation.Nonnull;
+
+import net.digitalid.utility.annotations.method.Impure;
+import net.digitalid.utility.annotations.method.Pure;
+import net.digitalid.utility.annotations.type.ThreadSafe;
+import net.digitalid.utility.generator.annotations.generators.GenerateBuilder;
+import net.digitalid.utility.generator.annotations.generators.GenerateSubclass;
+import net.digitalid.utility.validation.annotations.type.Mutable;
+
+/**
+ * This class implements a striped counter, which spreads concurrent updates over several padded cells and merges them on read.
+ * In contrast to a shared {@link java.util.concurrent.atomic.AtomicLong AtomicLong}, threads rarely contend when counting events as each thread updates the cell to which its identifier is mapped.
+ * 
+ * @see StripedHistogram
+ */
+@Mutable
+@ThreadSafe
+@GenerateBuilder
+@GenerateSubclass
+public abstract class StripedCounter {
+    
+    /* -------------------------------------------------- Cells -------------------------------------------------- */
+    
+    /**
+     * Stores the number of longs between two cells so that each cell occupies its own cache line.
+     */
+    private static final int PADDING = 8;
+    
+    /**
+     * Stores the number of cells, which is the smallest power of two that is at least the number of available processors (but at most 64).
+     */
+    private static final int CELLS = Integer.highestOneBit(Math.max(1, Math.min(64, Runtime.getRuntime().availableProcessors() * 2 - 1)));
+    
+    /**
+     * Stores the cells of this counter, which are spaced by the padding.
+     */
+    private final @Nonnull AtomicLongArray cells = new AtomicLongArray(CELLS * PADDING);
+    
+    /**
+     * Returns the index of the cell in which the current thread counts its events.
+     * The identifier of the thread is scrambled so that threads with consecutive identifiers are spread over different cells.
+     */
+    @Pure
+    private static int getCellIndex() {
+        final long identifier = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+        return ((int) (identifier >>> 32) & (CELLS - 1)) * PADDING;
+    }
+    
+    /* -------------------------------------------------- Modifications -------------------------------------------------- */
+    
+    /**
+     * Increments this counter by one.
+     */
+    @Impure
+    public void increment() {
+        cells.getAndIncrement(getCellIndex());
+    }
+    
+    /**
+     * Decrements this counter by one.
+     */
+    @Impure
+    public void decrement() {
+        cells.getAndDecrement(getCellIndex());
+    }
+    
+    /**
+     * Adds the given delta to this counter.
+     */
+    @Impure
+    public void add(long delta) {
+        cells.getAndAdd(getCellIndex(), delta);
+    }
+    
+    /**
+     * Resets this counter to zero.
+     * Updates that happen concurrently with the reset may or may not be retained.
+     */
+    @Impure
+    public void reset() {
+        for (int i = 0; i < CELLS; i++) { cells.set(i * PADDING, 0); }
+    }
+    
+    /* -------------------------------------------------- Retrieval -------------------------------------------------- */
+    
+    /**
+     * Returns the current value of this counter by merging all cells.
+     * The returned value is not an atomic snapshot if updates happen concurrently.
+     */
+    @Pure
+    public long get() {
+        long result = 0;
+        for (int i = 0; i < CELLS; i++) { result += cells.get(i * PADDING); }
+        return result;
+    }
+    
+    /**
+     * Returns the current value of this counter and resets it to zero.
+     * In contrast to {@link #get()} followed by {@link #reset()}, no update is lost as each cell is read and reset atomically.
+     */
+    @Impure
+    public long getAndReset() {
+        long result = 0;
+        for (int i = 0; i < CELLS; i++) { result += cells.getAndSet(i * PADDING, 0); }
+        return result;
+    }
+    
+    /* -------------------------------------------------- Object -------------------------------------------------- */
+    
+    @Pure
+    @Override
+    public @Nonnull String toString() {
+        return String.valueOf(get());
+    }
+    
+}
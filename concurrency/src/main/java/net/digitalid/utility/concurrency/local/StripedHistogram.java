@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2017 Synacts GmbH, Switzerland (info@synacts.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.digitalid.utility.concurrency.local;
+
+import java.util.Arrays;
+
+import javax.annotation.Nonnull;
+
+import net.digitalid.utility.annotations.method.Impure;
+import net.digitalid.utility.annotations.method.Pure;
+import net.digitalid.utility.annotations.ownership.Capturable;
+import net.digitalid.utility.annotations.ownership.NonCaptured;
+import net.digitalid.utility.annotations.parameter.Unmodified;
+import net.digitalid.utility.annotations.type.ThreadSafe;
+import net.digitalid.utility.contracts.Require;
+import net.digitalid.utility.generator.annotations.generators.GenerateSubclass;
+import net.digitalid.utility.validation.annotations.math.NonNegative;
+import net.digitalid.utility.validation.annotations.type.Mutable;
+
+/**
+ * This class implements a striped histogram, which counts recorded values in buckets without contention between threads.
+ * A value is counted in the first bucket whose inclusive upper bound is greater than or equal to the value.
+ * Values above the highest bound are counted in an additional overflow bucket.
+ * 
+ * @see StripedCounter
+ */
+@Mutable
+@ThreadSafe
+@GenerateSubclass
+public abstract class StripedHistogram {
+    
+    /* -------------------------------------------------- Bounds -------------------------------------------------- */
+    
+    private final @Nonnull long[] upperBounds;
+    
+    /**
+     * Returns a copy of the inclusive upper bounds of the buckets (without the overflow bucket).
+     */
+    @Pure
+    public @Capturable @Nonnull long[] getUpperBounds() {
+        return upperBounds.clone();
+    }
+    
+    /**
+     * Returns the number of buckets of this histogram including the overflow bucket.
+     */
+    @Pure
+    public int getNumberOfBuckets() {
+        return buckets.length;
+    }
+    
+    /* -------------------------------------------------- Cells -------------------------------------------------- */
+    
+    private final @Nonnull StripedCounter[] buckets;
+    
+    private final @Nonnull StripedCounter sum = StripedCounterBuilder.build();
+    
+    /* -------------------------------------------------- Constructors -------------------------------------------------- */
+    
+    protected StripedHistogram(@NonCaptured @Unmodified @Nonnull long[] upperBounds) {
+        Require.that(upperBounds != null).orThrow("The upper bounds may not be null.");
+        for (int i = 1; i < upperBounds.length; i++) {
+            Require.that(upperBounds[i - 1] < upperBounds[i]).orThrow("The upper bounds have to be strictly increasing but were $.", Arrays.toString(upperBounds));
+        }
+        
+        this.upperBounds = upperBounds.clone();
+        this.buckets = new StripedCounter[upperBounds.length + 1];
+        for (int i = 0; i < buckets.length; i++) { buckets[i] = StripedCounterBuilder.build(); }
+    }
+    
+    /**
+     * Returns a new striped histogram with the given strictly increasing upper bounds.
+     */
+    @Pure
+    public static @Capturable @Nonnull StripedHistogram withUpperBounds(@NonCaptured @Unmodified @Nonnull long... upperBounds) {
+        return new StripedHistogramSubclass(upperBounds);
+    }
+    
+    /* -------------------------------------------------- Modifications -------------------------------------------------- */
+    
+    /**
+     * Returns the index of the bucket in which the given value is counted.
+     */
+    @Pure
+    public int getBucketIndex(long value) {
+        final int index = Arrays.binarySearch(upperBounds, value);
+        return index >= 0 ? index : -index - 1;
+    }
+    
+    /**
+     * Records the given value in the corresponding bucket.
+     */
+    @Impure
+    public void record(long value) {
+        buckets[getBucketIndex(value)].increment();
+        sum.add(value);
+    }
+    
+    /**
+     * Resets all buckets of this histogram to zero.
+     * Values that are recorded concurrently with the reset may or may not be retained.
+     */
+    @Impure
+    public void reset() {
+        for (@Nonnull StripedCounter bucket : buckets) { bucket.reset(); }
+        sum.reset();
+    }
+    
+    /* -------------------------------------------------- Retrieval -------------------------------------------------- */
+    
+    /**
+     * Returns the number of values that were recorded in the bucket with the given index.
+     * 
+     * @require index < getNumberOfBuckets() : "The index is smaller than the number of buckets.";
+     */
+    @Pure
+    public long getCount(@NonNegative int index) {
+        Require.that(index >= 0 && index < buckets.length).orThrow("The index $ has to be non-negative and smaller than the number of buckets $.", index, buckets.length);
+        
+        return buckets[index].get();
+    }
+    
+    /**
+     * Returns the counts of all buckets by merging their cells.
+     * The returned counts are not an atomic snapshot if values are recorded concurrently.
+     */
+    @Pure
+    public @Capturable @Nonnull long[] getCounts() {
+        final @Nonnull long[] result = new long[buckets.length];
+        for (int i = 0; i < buckets.length; i++) { result[i] = buckets[i].get(); }
+        return result;
+    }
+    
+    /**
+     * Returns the total number of values that were recorded.
+     */
+    @Pure
+    public long getTotalCount() {
+        long result = 0;
+        for (@Nonnull StripedCounter bucket : buckets) { result += bucket.get(); }
+        return result;
+    }
+    
+    /**
+     * Returns the sum of all values that were recorded.
+     */
+    @Pure
+    public long getSum() {
+        return sum.get();
+    }
+    
+    /* -------------------------------------------------- Object -------------------------------------------------- */
+    
+    @Pure
+    @Override
+    public @Nonnull String toString() {
+        final @Nonnull StringBuilder result = new StringBuilder("{");
+        final @Nonnull long[] counts = getCounts();
+        for (int i = 0; i < counts.length; i++) {
+            if (i > 0) { result.append(", "); }
+            result.append(i < upperBounds.length ? "<= " + upperBounds[i] : "> " + (upperBounds.length > 0 ? upperBounds[upperBounds.length - 1] : Long.MIN_VALUE)).append(": ").append(counts[i]);
+        }
+        return result.append("}").toString();
+    }
+    
+}
@@ -14,6 +14,6 @@
  * limitations under the License.
  */
 /**
- * Provides thread-local collections.
+ * Provides thread-local collections and striped accumulators.
  */
 package net.digitalid.utility.concurrency.local;
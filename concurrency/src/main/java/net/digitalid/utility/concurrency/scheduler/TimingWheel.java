@@ -0,0 +1,408 @@
+/*
+ * Copyright (C) 2017 Synacts GmbH, Switzerland (info@synacts.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.digitalid.utility.concurrency.scheduler;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.digitalid.utility.annotations.method.Impure;
+import net.digitalid.utility.annotations.method.Pure;
+import net.digitalid.utility.annotations.ownership.Capturable;
+import net.digitalid.utility.annotations.ownership.Captured;
+import net.digitalid.utility.annotations.type.ThreadSafe;
+import net.digitalid.utility.configuration.Configuration;
+import net.digitalid.utility.contracts.Require;
+import net.digitalid.utility.logging.Log;
+import net.digitalid.utility.threading.NamedThreadFactory;
+import net.digitalid.utility.threading.ThreadPools;
+import net.digitalid.utility.time.Time;
+import net.digitalid.utility.validation.annotations.math.Positive;
+import net.digitalid.utility.validation.annotations.type.Mutable;
+
+/**
+ * A timing wheel schedules tasks with a hashed wheel of buckets, which allows to schedule and cancel timers in constant time.
+ * A single worker thread advances the wheel once per tick and dispatches the due tasks to the configured executor.
+ * The timers are therefore only as precise as the tick duration, which makes the wheel suitable for large numbers of timeouts but not for exact timing.
+ */
+@Mutable
+@ThreadSafe
+public class TimingWheel {
+    
+    /* -------------------------------------------------- Timeout -------------------------------------------------- */
+    
+    /**
+     * A timeout is the handle of a task that was scheduled on a timing wheel.
+     */
+    @Mutable
+    @ThreadSafe
+    public static class Timeout {
+        
+        private static final int PENDING = 0;
+        
+        private static final int CANCELLED = 1;
+        
+        private static final int EXPIRED = 2;
+        
+        private static final int REJECTED = 3;
+        
+        private final @Nonnull TimingWheel wheel;
+        
+        private final @Nonnull Runnable task;
+        
+        private final long deadline;
+        
+        private final @Nonnull AtomicInteger state = new AtomicInteger(PENDING);
+        
+        /**
+         * Stores the number of wheel rotations until this timeout expires, which is only accessed by the worker thread.
+         */
+        private long remainingRounds;
+        
+        /**
+         * Stores the bucket in which this timeout is linked, which is only accessed by the worker thread.
+         */
+        private @Nullable Bucket bucket;
+        
+        private @Nullable Timeout previous;
+        
+        private @Nullable Timeout next;
+        
+        private Timeout(@Nonnull TimingWheel wheel, @Nonnull Runnable task, long deadline) {
+            this.wheel = wheel;
+            this.task = task;
+            this.deadline = deadline;
+        }
+        
+        /**
+         * Returns the task of this timeout.
+         */
+        @Pure
+        public @Nonnull Runnable getTask() {
+            return task;
+        }
+        
+        /**
+         * Cancels this timeout so that its task is not executed.
+         * 
+         * @return whether this timeout was cancelled by this call, which is not the case if it already expired or was cancelled before.
+         */
+        @Impure
+        public boolean cancel() {
+            if (!state.compareAndSet(PENDING, CANCELLED)) { return false; }
+            wheel.cancelledTimeouts.add(this);
+            wheel.pendingTimeouts.decrementAndGet();
+            return true;
+        }
+        
+        /**
+         * Returns whether this timeout has been cancelled.
+         */
+        @Pure
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+        
+        /**
+         * Returns whether this timeout has expired, which means that its task has been dispatched to the executor.
+         */
+        @Pure
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+        
+        /**
+         * Returns whether the task of this timeout was rejected by the executor of the wheel and has therefore not been executed.
+         */
+        @Pure
+        public boolean isRejected() {
+            return state.get() == REJECTED;
+        }
+        
+        /**
+         * Expires this timeout and dispatches its task to the executor of the wheel.
+         * A rejected task is not executed on the worker thread, as this would block the wheel and bypass the rejection policy of the executor.
+         */
+        @Impure
+        private void expire() {
+            if (state.compareAndSet(PENDING, EXPIRED)) {
+                wheel.pendingTimeouts.decrementAndGet();
+                try {
+                    wheel.executor.execute(task);
+                } catch (@Nonnull RejectedExecutionException exception) {
+                    state.set(REJECTED);
+                    Log.warning("The task $ of a timing wheel was rejected by its executor.", exception, task);
+                }
+            }
+        }
+        
+    }
+    
+    /* -------------------------------------------------- Bucket -------------------------------------------------- */
+    
+    /**
+     * A bucket stores the timeouts of a slot in a doubly-linked list, which is only accessed by the worker thread.
+     */
+    @Mutable
+    private static class Bucket {
+        
+        private @Nullable Timeout head;
+        
+        private @Nullable Timeout tail;
+        
+        @Impure
+        private void add(@Nonnull Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.previous = tail;
+                tail = timeout;
+            }
+        }
+        
+        @Impure
+        private @Nullable Timeout remove(@Nonnull Timeout timeout) {
+            final @Nullable Timeout next = timeout.next;
+            if (timeout.previous != null) { timeout.previous.next = next; }
+            if (timeout.next != null) { timeout.next.previous = timeout.previous; }
+            if (timeout == head) { head = next; }
+            if (timeout == tail) { tail = timeout.previous; }
+            timeout.previous = null;
+            timeout.next = null;
+            timeout.bucket = null;
+            return next;
+        }
+        
+        @Impure
+        private void expireTimeouts() {
+            @Nullable Timeout timeout = head;
+            while (timeout != null) {
+                if (timeout.remainingRounds <= 0) {
+                    final @Nonnull Timeout expired = timeout;
+                    timeout = remove(timeout);
+                    expired.expire();
+                } else {
+                    timeout.remainingRounds--;
+                    timeout = timeout.next;
+                }
+            }
+        }
+        
+    }
+    
+    /* -------------------------------------------------- Fields -------------------------------------------------- */
+    
+    private final long tickDuration;
+    
+    private final @Nonnull Bucket[] buckets;
+    
+    private final int mask;
+    
+    private final @Nonnull Executor executor;
+    
+    private final @Nonnull Queue<@Nonnull Timeout> scheduledTimeouts = new ConcurrentLinkedQueue<>();
+    
+    private final @Nonnull Queue<@Nonnull Timeout> cancelledTimeouts = new ConcurrentLinkedQueue<>();
+    
+    private final @Nonnull AtomicLong pendingTimeouts = new AtomicLong();
+    
+    /* -------------------------------------------------- Constructors -------------------------------------------------- */
+    
+    protected TimingWheel(@Nonnull Time tickDuration, @Positive int numberOfBuckets, @Nonnull Executor executor) {
+        Require.that(tickDuration.isPositive()).orThrow("The tick duration has to be positive but was $.", tickDuration);
+        Require.that(numberOfBuckets > 0 && (numberOfBuckets & (numberOfBuckets - 1)) == 0).orThrow("The number of buckets has to be a power of two but was $.", numberOfBuckets);
+        Require.that(executor != null).orThrow("The executor may not be null.");
+        
+        this.tickDuration = TimeUnit.MILLISECONDS.toNanos(tickDuration.getValue());
+        this.buckets = new Bucket[numberOfBuckets];
+        for (int i = 0; i < numberOfBuckets; i++) { buckets[i] = new Bucket(); }
+        this.mask = numberOfBuckets - 1;
+        this.executor = executor;
+    }
+    
+    /**
+     * Returns a new timing wheel with the given tick duration and number of buckets, which dispatches the due tasks to the given executor.
+     * 
+     * @param numberOfBuckets the number of buckets, which has to be a power of two.
+     */
+    @Pure
+    public static @Capturable @Nonnull TimingWheel with(@Nonnull Time tickDuration, @Positive int numberOfBuckets, @Nonnull Executor executor) {
+        return new TimingWheel(tickDuration, numberOfBuckets, executor);
+    }
+    
+    /**
+     * Returns a new timing wheel with the given tick duration and 512 buckets, which dispatches the due tasks to the given executor.
+     */
+    @Pure
+    public static @Capturable @Nonnull TimingWheel with(@Nonnull Time tickDuration, @Nonnull Executor executor) {
+        return new TimingWheel(tickDuration, 512, executor);
+    }
+    
+    /* -------------------------------------------------- Configuration -------------------------------------------------- */
+    
+    /**
+     * Stores the shared timing wheel, which ticks every ten milliseconds and dispatches the due tasks to the {@link ThreadPools#computation computation} pool.
+     */
+    public static final @Nonnull Configuration<TimingWheel> shared = Configuration.with(with(Time.SECOND.divide(100), 512, task -> ThreadPools.computation.get().execute(task)));
+    
+    /* -------------------------------------------------- Scheduling -------------------------------------------------- */
+    
+    /**
+     * Schedules the given task to be executed after the given delay and returns the timeout with which the task can be cancelled.
+     * A delay that exceeds the range of the wheel, such as {@link Time#MAX}, is treated as never, which means that the task only runs if the wheel keeps ticking for centuries.
+     * 
+     * @throws RejectedExecutionException if the executor of this wheel has already been shut down.
+     * 
+     * @require !isStopped() : "This wheel has not been stopped.";
+     */
+    @Impure
+    public @Nonnull Timeout schedule(@Captured @Nonnull Runnable task, @Nonnull Time delay) {
+        Require.that(task != null).orThrow("The task may not be null.");
+        Require.that(delay != null).orThrow("The delay may not be null.");
+        Require.that(!stopped).orThrow("A task may not be scheduled on a stopped timing wheel.");
+        
+        if (executor instanceof ExecutorService && ((ExecutorService) executor).isShutdown()) { throw new RejectedExecutionException("The executor of the timing wheel has been shut down."); }
+        
+        start();
+        final long now = System.nanoTime() - startTime;
+        final long delayInNanoseconds = TimeUnit.MILLISECONDS.toNanos(Math.max(0, delay.getValue()));
+        final long deadline = delayInNanoseconds > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + delayInNanoseconds;
+        final @Nonnull Timeout timeout = new Timeout(this, task, deadline);
+        pendingTimeouts.incrementAndGet();
+        scheduledTimeouts.add(timeout);
+        return timeout;
+    }
+    
+    /**
+     * Returns the number of timeouts that are neither expired nor cancelled.
+     */
+    @Pure
+    public long getNumberOfPendingTimeouts() {
+        return pendingTimeouts.get();
+    }
+    
+    /* -------------------------------------------------- Worker -------------------------------------------------- */
+    
+    private volatile long startTime;
+    
+    private volatile @Nullable Thread worker;
+    
+    private volatile boolean stopped = false;
+    
+    /**
+     * Starts the worker thread of this wheel if it has not yet been started.
+     */
+    @Impure
+    private void start() {
+        if (worker == null) {
+            synchronized (this) {
+                if (worker == null) {
+                    this.startTime = System.nanoTime();
+                    final @Nonnull Thread thread = NamedThreadFactory.with("TimingWheel", true).newThread(this::run);
+                    this.worker = thread;
+                    thread.start();
+                }
+            }
+        }
+    }
+    
+    /**
+     * Moves the newly scheduled timeouts into their buckets and removes the cancelled timeouts from their buckets.
+     */
+    @Impure
+    private void transferTimeouts(long tick) {
+        @Nullable Timeout timeout;
+        while ((timeout = cancelledTimeouts.poll()) != null) {
+            if (timeout.bucket != null) { timeout.bucket.remove(timeout); }
+        }
+        for (int i = 0; i < 100_000 && (timeout = scheduledTimeouts.poll()) != null; i++) {
+            if (timeout.isCancelled()) { continue; }
+            final long calculatedTick = timeout.deadline / tickDuration;
+            timeout.remainingRounds = (calculatedTick - tick) / buckets.length;
+            buckets[(int) (Math.max(calculatedTick, tick) & mask)].add(timeout);
+        }
+    }
+    
+    /**
+     * Advances this wheel once per tick until it is stopped.
+     */
+    @Impure
+    private void run() {
+        long tick = 0;
+        while (!stopped) {
+            final long sleepTime = (tick + 1) * tickDuration - (System.nanoTime() - startTime);
+            if (sleepTime > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepTime);
+                } catch (@Nonnull InterruptedException exception) {
+                    if (stopped) { return; }
+                }
+                continue;
+            }
+            transferTimeouts(tick);
+            buckets[(int) (tick & mask)].expireTimeouts();
+            tick++;
+        }
+    }
+    
+    /* -------------------------------------------------- Stopping -------------------------------------------------- */
+    
+    /**
+     * Returns whether this wheel has been stopped.
+     */
+    @Pure
+    public boolean isStopped() {
+        return stopped;
+    }
+    
+    /**
+     * Stops this wheel and cancels all pending timeouts.
+     */
+    @Impure
+    public void stop() {
+        this.stopped = true;
+        final @Nullable Thread thread = worker;
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join();
+            } catch (@Nonnull InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        @Nullable Timeout timeout;
+        while ((timeout = scheduledTimeouts.poll()) != null) { timeout.cancel(); }
+        for (@Nonnull Bucket bucket : buckets) {
+            while (bucket.head != null) {
+                final @Nonnull Timeout head = bucket.head;
+                bucket.remove(head);
+                head.cancel();
+            }
+        }
+        cancelledTimeouts.clear();
+    }
+    
+}
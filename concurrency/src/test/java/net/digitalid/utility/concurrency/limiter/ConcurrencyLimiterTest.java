@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2017 Synacts GmbH, Switzerland (info@synacts.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.digitalid.utility.concurrency.limiter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+
+import net.digitalid.utility.time.Time;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ConcurrencyLimiterTest {
+    
+    @Test
+    public void testLimit() throws InterruptedException {
+        final @Nonnull ConcurrencyLimiter limiter = ConcurrencyLimiter.with(2, 1, 4, 0.5, Time.HOUR);
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire(Time.SECOND.divide(100)));
+        assertEquals(2, limiter.getInFlight());
+        limiter.release(System.nanoTime(), true);
+        assertEquals(1, limiter.getLimit());
+        assertFalse(limiter.tryAcquire());
+        limiter.release();
+        assertTrue(limiter.tryAcquire());
+        limiter.release();
+    }
+    
+    @Test
+    public void testConcurrentTimedAcquirers() throws InterruptedException {
+        final @Nonnull ConcurrencyLimiter limiter = ConcurrencyLimiter.with(1, 1, 1, 0.5, Time.HOUR);
+        final @Nonnull Time shortTimeout = Time.SECOND.divide(1_000);
+        final @Nonnull Time longTimeout = Time.SECOND.multiply(5);
+        final @Nonnull AtomicInteger failures = new AtomicInteger();
+        for (int round = 0; round < 200; round++) {
+            assertTrue(limiter.tryAcquire());
+            final @Nonnull List<@Nonnull Thread> threads = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                threads.add(new Thread(() -> {
+                    try {
+                        if (limiter.tryAcquire(shortTimeout)) { limiter.release(); }
+                    } catch (@Nonnull InterruptedException exception) {
+                        failures.incrementAndGet();
+                    }
+                }));
+            }
+            threads.add(new Thread(() -> {
+                try {
+                    if (limiter.tryAcquire(longTimeout)) { limiter.release(); }
+                    else { failures.incrementAndGet(); }
+                } catch (@Nonnull InterruptedException exception) {
+                    failures.incrementAndGet();
+                }
+            }));
+            for (@Nonnull Thread thread : threads) { thread.start(); }
+            Thread.sleep(round % 3);
+            limiter.release();
+            for (@Nonnull Thread thread : threads) { thread.join(); }
+        }
+        assertEquals(0, failures.get());
+        assertEquals(0, limiter.getInFlight());
+    }
+    
+    @Test
+    public void testInterruptedAcquirerPassesTheSignalOn() throws InterruptedException {
+        final @Nonnull ConcurrencyLimiter limiter = ConcurrencyLimiter.with(1, 1, 1, 0.5, Time.HOUR);
+        assertTrue(limiter.tryAcquire());
+        final @Nonnull AtomicInteger acquisitions = new AtomicInteger();
+        final @Nonnull Thread interrupted = new Thread(() -> {
+            try {
+                limiter.acquire();
+                limiter.release();
+            } catch (@Nonnull InterruptedException exception) {}
+        });
+        interrupted.start();
+        Thread.sleep(50);
+        final @Nonnull Thread waiting = new Thread(() -> {
+            try {
+                if (limiter.tryAcquire(Time.SECOND.multiply(5))) {
+                    acquisitions.incrementAndGet();
+                    limiter.release();
+                }
+            } catch (@Nonnull InterruptedException exception) {}
+        });
+        waiting.start();
+        Thread.sleep(50);
+        interrupted.interrupt();
+        limiter.release();
+        interrupted.join();
+        waiting.join();
+        assertEquals(1, acquisitions.get());
+        assertEquals(0, limiter.getInFlight());
+    }
+    
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2017 Synacts GmbH, Switzerland (info@synacts.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.digitalid.utility.concurrency.limiter;
+
+import javax.annotation.Nonnull;
+
+import net.digitalid.utility.contracts.exceptions.PreconditionException;
+import net.digitalid.utility.time.Time;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TokenBucketTest {
+    
+    @Test
+    public void testBurst() {
+        final @Nonnull TokenBucket bucket = TokenBucket.with(3, 1, Time.HOUR);
+        assertEquals(3, bucket.getAvailablePermits());
+        assertTrue(bucket.tryAcquire(2));
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+        assertEquals(0, bucket.getAvailablePermits());
+    }
+    
+    @Test
+    public void testLargestCapacity() {
+        final @Nonnull TokenBucket bucket = TokenBucket.with(Integer.MAX_VALUE, 1, Time.SECOND);
+        assertEquals(Integer.MAX_VALUE, bucket.getAvailablePermits());
+        assertTrue(bucket.tryAcquire(Integer.MAX_VALUE));
+        assertFalse(bucket.tryAcquire());
+        assertEquals(0, bucket.getAvailablePermits());
+    }
+    
+    @Test(expected = PreconditionException.class)
+    public void testOverflowingCapacity() {
+        TokenBucket.with(Integer.MAX_VALUE, 1, Time.HOUR);
+    }
+    
+    @Test(expected = PreconditionException.class)
+    public void testOverflowingPeriod() {
+        TokenBucket.with(1, Time.DECADE.multiply(1_000));
+    }
+    
+}
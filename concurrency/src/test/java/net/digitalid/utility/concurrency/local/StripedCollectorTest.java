@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2017 Synacts GmbH, Switzerland (info@synacts.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.digitalid.utility.concurrency.local;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import net.digitalid.utility.annotations.method.Impure;
+import net.digitalid.utility.annotations.method.Pure;
+import net.digitalid.utility.functional.interfaces.Collector;
+import net.digitalid.utility.validation.annotations.type.Mutable;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class StripedCollectorTest {
+    
+    @Mutable
+    private static class SumCollector implements Collector<@Nonnull Long, @Nonnull Long> {
+        
+        private long sum = 0;
+        
+        @Impure
+        @Override
+        public void consume(@Nonnull Long input) {
+            sum += input;
+        }
+        
+        @Pure
+        @Override
+        public @Nonnull Long getResult() {
+            return sum;
+        }
+        
+    }
+    
+    @Pure
+    private static @Nonnull StripedCollector<@Nonnull Long, @Nonnull Long, RuntimeException, RuntimeException> newCollector() {
+        return StripedCollector.with(SumCollector::new, (a, b) -> a + b);
+    }
+    
+    @Test
+    public void testEmptyResult() {
+        assertEquals(Long.valueOf(0), newCollector().getResult());
+    }
+    
+    @Test
+    public void testConcurrentConsumption() throws InterruptedException {
+        final @Nonnull StripedCollector<@Nonnull Long, @Nonnull Long, RuntimeException, RuntimeException> collector = newCollector();
+        final @Nonnull List<@Nonnull Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            threads.add(new Thread(() -> {
+                for (long j = 1; j <= 1_000; j++) { collector.consume(j); }
+            }));
+        }
+        for (@Nonnull Thread thread : threads) { thread.start(); }
+        for (@Nonnull Thread thread : threads) { thread.join(); }
+        assertEquals(Long.valueOf(8 * 500_500), collector.getResult());
+    }
+    
+    @Test
+    public void testStripesShrinkAfterBurst() throws InterruptedException {
+        final @Nonnull StripedCollector<@Nonnull Long, @Nonnull Long, RuntimeException, RuntimeException> collector = newCollector();
+        collector.consume(1L);
+        for (int i = 0; i < 16; i++) {
+            final @Nonnull Thread thread = new Thread(() -> collector.consume(10L));
+            thread.start();
+            thread.join();
+        }
+        assertEquals(17, collector.getNumberOfStripes());
+        assertEquals(Long.valueOf(161), collector.getResult());
+        assertEquals(1, collector.getNumberOfStripes());
+        collector.consume(1L);
+        assertEquals(Long.valueOf(162), collector.getResult());
+    }
+    
+}
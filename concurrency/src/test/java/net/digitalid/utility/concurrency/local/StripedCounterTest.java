@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2017 Synacts GmbH, Switzerland (info@synacts.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.digitalid.utility.concurrency.local;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import net.digitalid.utility.annotations.method.Impure;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class StripedCounterTest {
+    
+    @Impure
+    private static void runConcurrently(int numberOfThreads, @Nonnull Runnable runnable) throws InterruptedException {
+        final @Nonnull List<@Nonnull Thread> threads = new ArrayList<>();
+        for (int i = 0; i < numberOfThreads; i++) { threads.add(new Thread(runnable)); }
+        for (@Nonnull Thread thread : threads) { thread.start(); }
+        for (@Nonnull Thread thread : threads) { thread.join(); }
+    }
+    
+    @Test
+    public void testConcurrentIncrements() throws InterruptedException {
+        final @Nonnull StripedCounter counter = StripedCounterBuilder.build();
+        runConcurrently(8, () -> {
+            for (int i = 0; i < 10_000; i++) {
+                counter.increment();
+                counter.add(2);
+                counter.decrement();
+            }
+        });
+        assertEquals(160_000, counter.get());
+    }
+    
+    @Test
+    public void testGetAndReset() throws InterruptedException {
+        final @Nonnull StripedCounter counter = StripedCounterBuilder.build();
+        runConcurrently(4, () -> {
+            for (int i = 0; i < 1_000; i++) { counter.increment(); }
+        });
+        assertEquals(4_000, counter.getAndReset());
+        assertEquals(0, counter.get());
+        counter.add(-5);
+        assertEquals(-5, counter.get());
+        counter.reset();
+        assertEquals(0, counter.get());
+    }
+    
+    @Test
+    public void testHistogram() throws InterruptedException {
+        final @Nonnull StripedHistogram histogram = StripedHistogram.withUpperBounds(10, 100);
+        runConcurrently(4, () -> {
+            histogram.record(5);
+            histogram.record(10);
+            histogram.record(50);
+            histogram.record(1_000);
+        });
+        assertArrayEquals(new long[] {8, 4, 4}, histogram.getCounts());
+        assertEquals(16, histogram.getTotalCount());
+        assertEquals(4 * 1_065, histogram.getSum());
+        histogram.reset();
+        assertEquals(0, histogram.getTotalCount());
+    }
+    
+}
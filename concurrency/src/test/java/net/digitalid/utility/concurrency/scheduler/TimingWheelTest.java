@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2017 Synacts GmbH, Switzerland (info@synacts.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.digitalid.utility.concurrency.scheduler;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.Nonnull;
+
+import net.digitalid.utility.concurrency.scheduler.TimingWheel.Timeout;
+import net.digitalid.utility.time.Time;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TimingWheelTest {
+    
+    private static final @Nonnull Time TICK = Time.SECOND.divide(100);
+    
+    @Test
+    public void testExecution() throws InterruptedException {
+        final @Nonnull TimingWheel wheel = TimingWheel.with(TICK, 8, Runnable::run);
+        try {
+            final @Nonnull CountDownLatch latch = new CountDownLatch(2);
+            wheel.schedule(latch::countDown, Time.MIN);
+            wheel.schedule(latch::countDown, Time.SECOND.divide(10));
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            assertEquals(0, wheel.getNumberOfPendingTimeouts());
+        } finally {
+            wheel.stop();
+        }
+    }
+    
+    @Test
+    public void testCancellation() throws InterruptedException {
+        final @Nonnull TimingWheel wheel = TimingWheel.with(TICK, 8, Runnable::run);
+        try {
+            final @Nonnull CountDownLatch latch = new CountDownLatch(1);
+            final @Nonnull Timeout timeout = wheel.schedule(latch::countDown, Time.SECOND.divide(10));
+            assertTrue(timeout.cancel());
+            assertFalse(timeout.cancel());
+            assertFalse(latch.await(300, TimeUnit.MILLISECONDS));
+            assertTrue(timeout.isCancelled());
+            assertEquals(0, wheel.getNumberOfPendingTimeouts());
+        } finally {
+            wheel.stop();
+        }
+    }
+    
+    @Test
+    public void testSaturatedDelaysNeverExpire() throws InterruptedException {
+        final @Nonnull TimingWheel wheel = TimingWheel.with(TICK, 8, Runnable::run);
+        try {
+            final @Nonnull CountDownLatch latch = new CountDownLatch(1);
+            final @Nonnull Timeout maximum = wheel.schedule(latch::countDown, Time.MAX);
+            final @Nonnull Timeout large = wheel.schedule(latch::countDown, Time.DECADE.multiply(1_000_000));
+            assertFalse(latch.await(300, TimeUnit.MILLISECONDS));
+            assertFalse(maximum.isExpired());
+            assertFalse(large.isExpired());
+            assertEquals(2, wheel.getNumberOfPendingTimeouts());
+        } finally {
+            wheel.stop();
+        }
+    }
+    
+    @Test
+    public void testRejectionOnCaller() {
+        final @Nonnull ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.shutdown();
+        final @Nonnull TimingWheel wheel = TimingWheel.with(TICK, 8, executor);
+        try {
+            wheel.schedule(() -> {}, Time.MIN);
+            fail("The task should have been rejected.");
+        } catch (@Nonnull RejectedExecutionException exception) {
+            assertEquals(0, wheel.getNumberOfPendingTimeouts());
+        } finally {
+            wheel.stop();
+        }
+    }
+    
+    @Test
+    public void testRejectedTasksAreNotRunOnTheWorker() throws InterruptedException {
+        final @Nonnull AtomicReference<Thread> thread = new AtomicReference<>();
+        final @Nonnull CountDownLatch latch = new CountDownLatch(1);
+        final @Nonnull TimingWheel wheel = TimingWheel.with(TICK, 8, task -> { latch.countDown(); throw new RejectedExecutionException(); });
+        try {
+            final @Nonnull Timeout timeout = wheel.schedule(() -> thread.set(Thread.currentThread()), Time.MIN);
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            while (!timeout.isRejected()) { Thread.sleep(1); }
+            assertNull(thread.get());
+        } finally {
+            wheel.stop();
+        }
+    }
+    
+}
@@ -15,11 +15,33 @@
  */
 package net.digitalid.utility.configuration;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
 import java.util.ServiceLoader;
 import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -31,6 +53,7 @@ import net.digitalid.utility.annotations.ownership.Capturable;
 import net.digitalid.utility.annotations.ownership.Captured;
 import net.digitalid.utility.annotations.ownership.NonCapturable;
 import net.digitalid.utility.annotations.state.Modifiable;
+import net.digitalid.utility.annotations.type.ThreadSafe;
 import net.digitalid.utility.configuration.errors.ConfigurationErrorBuilder;
 import net.digitalid.utility.configuration.errors.DependencyError;
 import net.digitalid.utility.configuration.errors.DependencyErrorBuilder;
@@ -38,17 +61,21 @@ import net.digitalid.utility.configuration.errors.InitializerError;
 import net.digitalid.utility.configuration.errors.InitializerErrorBuilder;
 import net.digitalid.utility.contracts.Require;
 import net.digitalid.utility.functional.iterables.FiniteIterable;
+import net.digitalid.utility.validation.annotations.math.Positive;
 import net.digitalid.utility.validation.annotations.method.Chainable;
 import net.digitalid.utility.validation.annotations.type.Functional;
+import net.digitalid.utility.validation.annotations.type.Immutable;
 import net.digitalid.utility.validation.annotations.type.Mutable;
 
 /**
  * The configuration of a service is given by a provider.
  * A provider can only be replaced but no longer removed.
+ * The provider can be retrieved and replaced and observers can be registered concurrently.
  * 
  * @param <PROVIDER> the type of the provider for some service.
  */
 @Mutable
+@ThreadSafe
 @SuppressWarnings("null")
 public class Configuration<@Unspecifiable PROVIDER> {
     
@@ -72,9 +99,28 @@ public class Configuration<@Unspecifiable PROVIDER> {
     /* -------------------------------------------------- Observers -------------------------------------------------- */
     
     /**
-     * Stores the set of registered observers of this configuration.
+     * Stores an empty array of observers, which is shared by all configurations without observers.
      */
-    private final @Nonnull Set<@Nonnull Observer<PROVIDER>> observers = new LinkedHashSet<>();
+    @SuppressWarnings("rawtypes")
+    private static final @Nonnull Observer[] NO_OBSERVERS = new Observer[0];
+    
+    /**
+     * Stores the registered observers of this configuration.
+     * The array is never modified but replaced on every registration and deregistration so that it can be iterated without locking.
+     */
+    @SuppressWarnings("unchecked")
+    private volatile @Nonnull Observer<PROVIDER>[] observers = NO_OBSERVERS;
+    
+    /**
+     * Returns the index of the given observer in the given array of observers or -1 if it is not contained.
+     */
+    @Pure
+    private static int indexOf(@Nonnull Observer<?>[] observers, @Nonnull Observer<?> observer) {
+        for (int i = 0; i < observers.length; i++) {
+            if (observers[i].equals(observer)) { return i; }
+        }
+        return -1;
+    }
     
     /**
      * Registers the given observer for this configuration.
@@ -85,7 +131,14 @@ public class Configuration<@Unspecifiable PROVIDER> {
     public boolean register(@Nonnull Observer<PROVIDER> observer) {
         Require.that(observer != null).orThrow("The observer may not be null.");
         
-        return observers.add(observer);
+        synchronized (this) {
+            final @Nonnull Observer<PROVIDER>[] observers = this.observers;
+            if (indexOf(observers, observer) >= 0) { return false; }
+            final @Nonnull Observer<PROVIDER>[] newObservers = Arrays.copyOf(observers, observers.length + 1);
+            newObservers[observers.length] = observer;
+            this.observers = newObservers;
+            return true;
+        }
     }
     
     /**
@@ -94,10 +147,23 @@ public class Configuration<@Unspecifiable PROVIDER> {
      * @return whether the given observer was actually registered.
      */
     @Impure
+    @SuppressWarnings("unchecked")
     public boolean deregister(@Nonnull Observer<PROVIDER> observer) {
         Require.that(observer != null).orThrow("The observer may not be null.");
         
-        return observers.remove(observer);
+        synchronized (this) {
+            final @Nonnull Observer<PROVIDER>[] observers = this.observers;
+            final int index = indexOf(observers, observer);
+            if (index < 0) { return false; }
+            if (observers.length == 1) {
+                this.observers = NO_OBSERVERS;
+            } else {
+                final @Nonnull Observer<PROVIDER>[] newObservers = Arrays.copyOf(observers, observers.length - 1);
+                System.arraycopy(observers, index + 1, newObservers, index, observers.length - index - 1);
+                this.observers = newObservers;
+            }
+            return true;
+        }
     }
     
     /**
@@ -107,40 +173,119 @@ public class Configuration<@Unspecifiable PROVIDER> {
     public boolean isRegistered(@Nonnull Observer<PROVIDER> observer) {
         Require.that(observer != null).orThrow("The observer may not be null.");
         
-        return observers.contains(observer);
+        return indexOf(observers, observer) >= 0;
     }
     
     /* -------------------------------------------------- Provider -------------------------------------------------- */
     
     /**
-     * Stores the provider of this configuration.
+     * A pending provider wraps the provider of a configuration which still needs to be initialized lazily.
+     * Wrapping the provider allows {@link #get()} to detect this case with the same load with which it reads the provider.
+     */
+    @Immutable
+    private static class Pending {
+        
+        private final @Nullable Object provider;
+        
+        private Pending(@Nullable Object provider) {
+            this.provider = provider;
+        }
+        
+    }
+    
+    /**
+     * Returns the given object without the pending wrapper.
+     */
+    @Pure
+    @SuppressWarnings("unchecked")
+    private static <PROVIDER> @Nullable PROVIDER unwrap(@Nullable Object object) {
+        return (PROVIDER) (object instanceof Pending ? ((Pending) object).provider : object);
+    }
+    
+    /**
+     * Stores the provider of this configuration, which is wrapped in a {@link Pending} object while the configuration waits for its lazy initialization.
      * The provider is null until it is once set.
      */
-    private @Nullable PROVIDER provider;
+    private volatile @Nullable Object provider;
+    
+    /**
+     * Stores the updater to compare and set the provider of configurations.
+     */
+    @SuppressWarnings("rawtypes")
+    private static final @Nonnull AtomicReferenceFieldUpdater<Configuration, Object> PROVIDER_UPDATER = AtomicReferenceFieldUpdater.newUpdater(Configuration.class, Object.class, "provider");
     
     /**
      * Returns the provider of this configuration.
+     * If this library is {@link #initializeConfigurationsLazily() initialized lazily}, this configuration is initialized first if necessary.
+     * In the common case, this method reads only a single field so that it can be inlined and optimized by the JIT compiler.
      * 
      * @throws ConfigurationError if no provider has been set for this configuration.
+     * @throws InitializerError if an initializer fails during the lazy initialization.
      */
     @Pure
+    @SuppressWarnings("unchecked")
     public @Nonnull PROVIDER get() {
+        final @Nullable Object provider = this.provider;
+        if (provider == null || provider instanceof Pending) { return getSlowly(); }
+        return (PROVIDER) provider;
+    }
+    
+    /**
+     * Returns the provider of this configuration after initializing this configuration lazily if necessary.
+     * 
+     * @throws ConfigurationError if no provider has been set for this configuration.
+     */
+    @Impure
+    private @Nonnull PROVIDER getSlowly() {
+        if (provider instanceof Pending) { initialize(); }
+        final @Nullable PROVIDER provider = unwrap(this.provider);
         if (provider == null) { throw ConfigurationErrorBuilder.withConfiguration(this).build(); }
         return provider;
     }
     
+    /**
+     * Marks this configuration as waiting for its lazy initialization.
+     */
+    @Impure
+    private void markPending() {
+        while (true) {
+            final @Nullable Object provider = this.provider;
+            if (provider instanceof Pending || PROVIDER_UPDATER.compareAndSet(this, provider, new Pending(provider))) { return; }
+        }
+    }
+    
+    /**
+     * Marks this configuration as no longer waiting for its lazy initialization.
+     */
+    @Impure
+    private void unmarkPending() {
+        while (true) {
+            final @Nullable Object provider = this.provider;
+            if (!(provider instanceof Pending) || PROVIDER_UPDATER.compareAndSet(this, provider, ((Pending) provider).provider)) { return; }
+        }
+    }
+    
     /**
      * Sets the provider of this configuration and notifies all observers.
+     * Concurrent calls of this method are serialized so that the observers are notified in the order in which the providers are set.
+     * Since the observers are notified while holding the lock of this configuration, they should not set the provider of other configurations
+     * or retrieve the provider of configurations that are not yet initialized.
      */
     @Impure
     public void set(@Captured @Nonnull PROVIDER provider) {
         Require.that(provider != null).orThrow("The provider may not be null.");
         
-        if (!provider.equals(this.provider)) {
-            for (@Nonnull Observer<PROVIDER> observer : observers) {
-                observer.notify(this, this.provider, provider);
+        synchronized (this) {
+            final @Nullable PROVIDER oldProvider = unwrap(this.provider);
+            if (!provider.equals(oldProvider)) {
+                for (@Nonnull Observer<PROVIDER> observer : observers) {
+                    observer.notify(this, oldProvider, provider);
+                }
+                while (true) {
+                    final @Nullable Object currentProvider = this.provider;
+                    if (PROVIDER_UPDATER.compareAndSet(this, currentProvider, currentProvider instanceof Pending ? new Pending(provider) : provider)) { break; }
+                }
             }
-            this.provider = provider;
         }
     }
     
@@ -149,41 +294,117 @@ public class Configuration<@Unspecifiable PROVIDER> {
      */
     @Pure
     public boolean isSet() {
-        return provider != null;
+        return unwrap(provider) != null;
     }
     
     /* -------------------------------------------------- Declaration -------------------------------------------------- */
     
-    private final @Nonnull String qualifiedClassName;
+    /**
+     * Stores the path of the initialization plans, which are generated by the initialization processor.
+     * Each line of a plan either declares a configuration field with 'configuration', the qualified class name and the field name
+     * or lists an initializer with 'initializer' and its qualified class name, where the initializers are sorted topologically.
+     */
+    public static final @Nonnull String INITIALIZATION_PLAN = "META-INF/initialization/plan";
     
     /**
-     * Returns the qualified name of the class where this configuration is declared.
+     * Returns the context class loader of the current thread or the class loader of this class if the former is not set.
+     */
+    @Pure
+    private static @Nonnull ClassLoader getClassLoader() {
+        final @Nullable ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        return classLoader != null ? classLoader : Configuration.class.getClassLoader();
+    }
+    
+    /**
+     * Stores whether the declaration of a configuration is determined from the stack trace as soon as it is created,
+     * which also retains the line number of configurations that are declared by an initialization plan.
+     */
+    private static final boolean captureDeclarations = Boolean.getBoolean("net.digitalid.utility.configuration.captureDeclarations");
+    
+    /**
+     * Stores the throwable which captured the stack when this configuration was created or null if the declaration is already known.
+     * The stack trace elements are only computed if the declaration is needed and was not declared by an initialization plan,
+     * which keeps the declaration of configurations that are not covered by a plan without paying for the stack trace of all others.
+     * No throwable is created for the configurations that are created while an initialization plan is loaded, as the plan declares them.
+     */
+    private volatile @Nullable Throwable declaration;
+    
+    /**
+     * Stores the thread which loads the classes of the configurations that are declared by an initialization plan or null if no plan is being loaded.
+     */
+    private static volatile @Nullable Thread planLoader;
+    
+    /**
+     * Determines the declaration of this configuration from the captured stack if it is not yet known.
+     */
+    @Impure
+    private void resolveDeclaration() {
+        final @Nullable Throwable declaration = this.declaration;
+        if (declaration != null) {
+            final @Nonnull StackTraceElement[] elements = declaration.getStackTrace();
+            if (elements.length > 2) {
+                this.qualifiedClassName = elements[2].getClassName();
+                this.className = qualifiedClassName.substring(qualifiedClassName.lastIndexOf('.') + 1);
+                this.lineNumber = elements[2].getLineNumber();
+            }
+            this.declaration = null;
+        }
+    }
+    
+    private @Nonnull String qualifiedClassName = "unknown";
+    
+    /**
+     * Returns the qualified name of the class where this configuration is declared or 'unknown' if the declaration could not be determined.
      */
     @Pure
     public @Nonnull String getQualifiedClassName() {
+        resolveDeclaration();
         return qualifiedClassName;
     }
     
-    private final @Nonnull String className;
+    private @Nonnull String className = "unknown";
     
     /**
-     * Returns the simple name of the class where this configuration is declared.
+     * Returns the simple name of the class where this configuration is declared or 'unknown' if the declaration could not be determined.
      */
     @Pure
     public @Nonnull String getClassName() {
+        resolveDeclaration();
         return className;
     }
     
-    private final int lineNumber;
+    private int lineNumber = 0;
     
     /**
-     * Returns the line number on which this configuration is declared.
+     * Returns the line number on which this configuration is declared or zero if the declaration was taken from an initialization plan.
      */
     @Pure
     public int getLineNumber() {
+        resolveDeclaration();
         return lineNumber;
     }
     
+    private @Nonnull String fieldName = "";
+    
+    /**
+     * Returns the name of the field in which this configuration is stored or an empty string if the field was not declared by an initialization plan.
+     */
+    @Pure
+    public @Nonnull String getFieldName() {
+        return fieldName;
+    }
+    
+    /**
+     * Declares that this configuration is stored in the given field of the class with the given qualified name.
+     */
+    @Impure
+    private void declare(@Nonnull String qualifiedClassName, @Nonnull String fieldName) {
+        this.qualifiedClassName = qualifiedClassName;
+        this.className = qualifiedClassName.substring(qualifiedClassName.lastIndexOf('.') + 1);
+        this.fieldName = fieldName;
+        this.declaration = null; // The volatile write publishes the declaration to the threads that read the cleared throwable.
+    }
+    
     @Pure
     @Override
     public @Nonnull String toString() {
@@ -226,9 +447,271 @@ public class Configuration<@Unspecifiable PROVIDER> {
     public static void initializeAllConfigurations() {
         Require.that(!isLibraryInitialized()).orThrow("This library may not already have been initialized.");
         
-        for (@Nonnull Initializer initializer : ServiceLoader.load(Initializer.class)) { initializer.toString(); } // Just to remove the unused variable warning and prevent dead code elimination.
+        loadInitializers();
+        libraryInitialized = true;
+        try {
+            for (@Nonnull Configuration<?> configuration : configurations) { configuration.initialize(); }
+        } finally {
+            if (StartupProfiler.isEnabled()) { StartupProfiler.writeReport(); }
+        }
+    }
+    
+    /**
+     * Stores whether the configurations are only initialized when their provider is retrieved for the first time.
+     */
+    private static volatile boolean lazyInitialization = false;
+    
+    /**
+     * Returns whether the configurations of this library are initialized lazily.
+     */
+    @Pure
+    public static boolean isLazilyInitialized() {
+        return lazyInitialization;
+    }
+    
+    /**
+     * Initializes the configurations of this library lazily, which means that the initializers are loaded but a configuration
+     * and its dependencies are only initialized when its provider is {@link #get() retrieved} for the first time.
+     * This allows short-lived processes to skip the initializers of configurations that they never use.
+     * Please note that configurations whose provider is never retrieved have to be {@link #initialize() initialized} explicitly.
+     * 
+     * @require !isLibraryInitialized() : "This library has not already been initialized.";
+     */
+    @Impure
+    public static void initializeConfigurationsLazily() {
+        Require.that(!isLibraryInitialized()).orThrow("This library may not already have been initialized.");
+        
+        loadInitializers();
+        lazyInitialization = true;
+        libraryInitialized = true;
+        if (StartupProfiler.isEnabled()) { StartupProfiler.writeReportOnShutdown(); }
+        for (@Nonnull Configuration<?> configuration : configurations) {
+            if (!configuration.isInitialized()) { configuration.markPending(); }
+        }
+    }
+    
+    /**
+     * Initializes all configurations of this library with the given number of threads.
+     * The dependency graph of the configurations is sorted topologically so that a configuration is initialized as soon as all its dependencies are initialized.
+     * The initializers of configurations which do not depend on each other are thus executed concurrently.
+     * If an initializer fails, the configurations which depend on its target are no longer initialized but all other configurations still are.
+     * Retrieving the provider of such a dependent configuration throws the error of the failed dependency again.
+     * 
+     * @throws InitializerError if an initializer fails, where the failures of other initializers are added as suppressed throwables.
+     * @throws InterruptedException if the current thread is interrupted while waiting for the initializers.
+     * 
+     * @require !isLibraryInitialized() : "This library has not already been initialized.";
+     */
+    @Impure
+    public static void initializeAllConfigurations(@Positive int threads) throws InterruptedException {
+        Require.that(!isLibraryInitialized()).orThrow("This library may not already have been initialized.");
+        Require.that(threads > 0).orThrow("The number of threads has to be positive but was $.", threads);
+        
+        loadInitializers();
         libraryInitialized = true;
-        for (@Nonnull Configuration<?> configuration : configurations) { configuration.initialize(); }
+        
+        final @Nonnull Map<@Nonnull Configuration<?>, @Nonnull Integer> remainingDependencies = new LinkedHashMap<>();
+        final @Nonnull Map<@Nonnull Configuration<?>, @Nonnull List<@Nonnull Configuration<?>>> dependents = new HashMap<>();
+        final @Nonnull Deque<@Nonnull Configuration<?>> stack = new ArrayDeque<>(configurations);
+        while (!stack.isEmpty()) {
+            final @Nonnull Configuration<?> configuration = stack.removeLast();
+            if (configuration.isInitialized() || remainingDependencies.containsKey(configuration)) { continue; }
+            int count = 0;
+            for (@Nonnull Configuration<?> dependency : configuration.dependencies) {
+                if (!dependency.isInitialized()) {
+                    count += 1;
+                    @Nullable List<@Nonnull Configuration<?>> list = dependents.get(dependency);
+                    if (list == null) {
+                        list = new ArrayList<>();
+                        dependents.put(dependency, list);
+                    }
+                    list.add(configuration);
+                    stack.addLast(dependency);
+                }
+            }
+            remainingDependencies.put(configuration, count);
+        }
+        
+        final @Nonnull ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            final @Nonnull Thread thread = new Thread(runnable, "Initializer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        final @Nonnull CompletionService<@Nonnull Configuration<?>> completionService = new ExecutorCompletionService<>(pool);
+        final @Nonnull List<@Nonnull InitializerError> errors = new ArrayList<>();
+        int running = 0;
+        try {
+            for (Map.@Nonnull Entry<@Nonnull Configuration<?>, @Nonnull Integer> entry : remainingDependencies.entrySet()) {
+                if (entry.getValue() == 0) {
+                    submit(completionService, entry.getKey());
+                    running += 1;
+                }
+            }
+            while (running > 0) {
+                final @Nonnull Future<@Nonnull Configuration<?>> future = completionService.take();
+                running -= 1;
+                try {
+                    final @Nonnull Configuration<?> configuration = future.get();
+                    final @Nullable List<@Nonnull Configuration<?>> list = dependents.get(configuration);
+                    if (list == null) { continue; }
+                    for (@Nonnull Configuration<?> dependent : list) {
+                        final int remaining = remainingDependencies.get(dependent) - 1;
+                        remainingDependencies.put(dependent, remaining);
+                        if (remaining == 0) {
+                            submit(completionService, dependent);
+                            running += 1;
+                        }
+                    }
+                } catch (@Nonnull ExecutionException exception) {
+                    final @Nullable Throwable cause = exception.getCause();
+                    if (cause instanceof InitializerError) {
+                        errors.add(withDependent((InitializerError) cause, dependents));
+                        failDependents((InitializerError) cause, dependents);
+                    }
+                    else if (cause instanceof Error) { throw (Error) cause; }
+                    else { throw new RuntimeException(cause); }
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+            if (StartupProfiler.isEnabled()) { StartupProfiler.writeReport(); }
+        }
+        
+        if (!errors.isEmpty()) {
+            final @Nonnull InitializerError error = errors.get(0);
+            for (int i = 1; i < errors.size(); i++) { error.addSuppressed(errors.get(i)); }
+            throw error;
+        }
+    }
+    
+    /**
+     * Loads the given entry of an initialization plan.
+     * 
+     * @throws ServiceConfigurationError if the declared configuration or initializer could not be loaded.
+     */
+    @Impure
+    private static void loadPlanEntry(@Nonnull ClassLoader classLoader, @Nonnull String entry) {
+        final @Nonnull String[] parts = entry.split("\t");
+        try {
+            if (parts.length == 3 && parts[0].equals("configuration")) {
+                final @Nullable Object object = Class.forName(parts[1], true, classLoader).getField(parts[2]).get(null);
+                if (object instanceof Configuration) { ((Configuration<?>) object).declare(parts[1], parts[2]); }
+            } else if (parts.length == 2 && parts[0].equals("initializer")) {
+                Class.forName(parts[1], true, classLoader).getConstructor().newInstance();
+            }
+        } catch (@Nonnull ReflectiveOperationException exception) {
+            throw new ServiceConfigurationError("Could not load the entry '" + entry + "' of an initialization plan.", exception);
+        }
+    }
+    
+    /**
+     * Adds the non-empty lines of the given resource without comments and surrounding whitespace to the given list.
+     * 
+     * @throws IOException if the resource cannot be read.
+     */
+    @Impure
+    private static void readLines(@Nonnull URL resource, @Nonnull List<@Nonnull String> lines) throws IOException {
+        try (@Nonnull BufferedReader reader = new BufferedReader(new InputStreamReader(resource.openStream(), StandardCharsets.UTF_8))) {
+            @Nullable String line;
+            while ((line = reader.readLine()) != null) {
+                final int comment = line.indexOf('#');
+                if (comment >= 0) { line = line.substring(0, comment); }
+                line = line.trim();
+                if (!line.isEmpty()) { lines.add(line); }
+            }
+        }
+    }
+    
+    /**
+     * Loads all initializers, which registers them at their target configuration.
+     * If every initializer that is listed in a service file is also listed in an {@link #INITIALIZATION_PLAN initialization plan},
+     * the initializers are loaded in the precomputed order of the plans, which also declare the referenced configurations.
+     * Otherwise, for example if the service files of several modules were merged into a single archive whereas only one of their plans was kept,
+     * the initializers are loaded with the service loader.
+     */
+    @Impure
+    private static void loadInitializers() {
+        final @Nonnull ClassLoader classLoader = getClassLoader();
+        try {
+            final @Nonnull List<@Nonnull String> entries = new ArrayList<>();
+            for (@Nonnull URL plan : Collections.list(classLoader.getResources(INITIALIZATION_PLAN))) { readLines(plan, entries); }
+            if (!entries.isEmpty()) {
+                final @Nonnull Set<@Nonnull String> plannedInitializers = new HashSet<>();
+                for (@Nonnull String entry : entries) {
+                    if (entry.startsWith("initializer\t")) { plannedInitializers.add(entry.substring("initializer\t".length())); }
+                }
+                final @Nonnull List<@Nonnull String> listedInitializers = new ArrayList<>();
+                for (@Nonnull URL service : Collections.list(classLoader.getResources("META-INF/services/" + Initializer.class.getName()))) { readLines(service, listedInitializers); }
+                if (plannedInitializers.containsAll(listedInitializers)) {
+                    planLoader = Thread.currentThread();
+                    try {
+                        for (@Nonnull String entry : entries) { loadPlanEntry(classLoader, entry); }
+                    } finally {
+                        planLoader = null;
+                    }
+                    return;
+                }
+            }
+        } catch (@Nonnull IOException exception) {
+            // The initializers are loaded with the service loader if the initialization plans or service files cannot be read.
+        }
+        for (@Nonnull Initializer initializer : ServiceLoader.load(Initializer.class)) { initializer.toString(); } // Just to remove the unused variable warning and prevent dead code elimination.
+    }
+    
+    /**
+     * Marks the initialization of the given configuration as started and submits the execution of its initializers to the given completion service.
+     */
+    @Impure
+    private static void submit(@Nonnull CompletionService<@Nonnull Configuration<?>> completionService, @Nonnull Configuration<?> configuration) {
+        completionService.submit(() -> {
+            synchronized (configuration.initializationLock) {
+                if (!configuration.initialized && !configuration.initializing) {
+                    configuration.initializing = true;
+                    configuration.complete(null);
+                }
+            }
+            configuration.rethrowFailure();
+            return configuration;
+        });
+    }
+    
+    /**
+     * Marks all configurations which depend (directly or indirectly) on the target of the given failed initializer as failed.
+     * Since these configurations are never submitted, retrieving their provider would otherwise skip their initializers without reporting the failure.
+     * Each of them stays pending and rethrows the given error with itself as the dependent so that the error names the failed dependency.
+     */
+    @Impure
+    private static void failDependents(@Nonnull InitializerError error, @Nonnull Map<@Nonnull Configuration<?>, @Nonnull List<@Nonnull Configuration<?>>> dependents) {
+        final @Nonnull Deque<@Nonnull Configuration<?>> stack = new ArrayDeque<>();
+        final @Nullable List<@Nonnull Configuration<?>> directDependents = dependents.get(error.getConfiguration());
+        if (directDependents != null) { stack.addAll(directDependents); }
+        while (!stack.isEmpty()) {
+            final @Nonnull Configuration<?> configuration = stack.removeLast();
+            synchronized (configuration.initializationLock) {
+                if (configuration.initialized || configuration.initializing) { continue; }
+                final @Nonnull InitializerError failure = InitializerErrorBuilder.withConfiguration(error.getConfiguration()).withInitializer(error.getInitializer()).withCause(error.getCause()).withDependent(configuration).build();
+                failure.setStackTrace(error.getStackTrace());
+                configuration.failure = failure;
+                configuration.initialized = true;
+                configuration.markPending();
+            }
+            final @Nullable List<@Nonnull Configuration<?>> list = dependents.get(configuration);
+            if (list != null) { stack.addAll(list); }
+        }
+    }
+    
+    /**
+     * Returns the given error with the first configuration that waited for the target of the failed initializer as its dependent.
+     * The dependents are the ones collected while traversing the dependency graph so that the error reports a chain that was actually initialized.
+     */
+    @Pure
+    private static @Nonnull InitializerError withDependent(@Nonnull InitializerError error, @Nonnull Map<@Nonnull Configuration<?>, @Nonnull List<@Nonnull Configuration<?>>> dependents) {
+        if (error.getDependent() != null) { return error; }
+        final @Nullable List<@Nonnull Configuration<?>> list = dependents.get(error.getConfiguration());
+        if (list == null || list.isEmpty()) { return error; }
+        final @Nonnull InitializerError result = InitializerErrorBuilder.withConfiguration(error.getConfiguration()).withInitializer(error.getInitializer()).withCause(error.getCause()).withDependent(list.get(0)).build();
+        result.setStackTrace(error.getStackTrace());
+        return result;
     }
     
     /* -------------------------------------------------- Constructors -------------------------------------------------- */
@@ -240,10 +723,8 @@ public class Configuration<@Unspecifiable PROVIDER> {
     protected Configuration(@Nullable PROVIDER provider) {
         this.provider = provider;
         
-        final @Nonnull StackTraceElement element = Thread.currentThread().getStackTrace()[3];
-        this.qualifiedClassName = element.getClassName();
-        this.className = qualifiedClassName.substring(qualifiedClassName.lastIndexOf('.') + 1);
-        this.lineNumber = element.getLineNumber();
+        if (captureDeclarations || Thread.currentThread() != planLoader) { this.declaration = new Throwable(); }
+        if (captureDeclarations) { resolveDeclaration(); }
         
         if (!isLibraryInitialized()) { configurations.add(this); }
     }
@@ -293,6 +774,14 @@ public class Configuration<@Unspecifiable PROVIDER> {
      */
     private final @Nonnull Set<@Nonnull Configuration<?>> dependencies = new LinkedHashSet<>();
     
+    /**
+     * Returns the configurations which need to be initialized before this configuration.
+     */
+    @Pure
+    public @Nonnull FiniteIterable<@Nonnull Configuration<?>> getDependencies() {
+        return FiniteIterable.of(dependencies);
+    }
+    
     /**
      * Returns whether this configuration depends on the given configuration (directly or indirectly).
      */
@@ -366,7 +855,28 @@ public class Configuration<@Unspecifiable PROVIDER> {
     
     /* -------------------------------------------------- Initialization -------------------------------------------------- */
     
-    private boolean initialized = false;
+    /**
+     * Stores whether the initialization of this configuration has been completed (successfully or not).
+     */
+    private volatile boolean initialized = false;
+    
+    /**
+     * Stores whether the initialization of this configuration has been started, which is guarded by the initialization lock.
+     * This allows the initializers of this configuration to retrieve its provider without initializing it recursively.
+     */
+    private boolean initializing = false;
+    
+    /**
+     * Stores the lock which guards the initialization of this configuration.
+     * Each configuration has its own lock so that initializers of unrelated configurations neither block each other nor the notification of observers.
+     * Since a configuration initializes its dependencies while holding its lock, the locks are always acquired along the acyclic dependency graph.
+     */
+    private final @Nonnull Object initializationLock = new Object();
+    
+    /**
+     * Stores the error of the failed initialization of this configuration or null if its initialization has not failed.
+     */
+    private volatile @Nullable InitializerError failure = null;
     
     /**
      * Returns whether this configuration has been initialized.
@@ -378,20 +888,85 @@ public class Configuration<@Unspecifiable PROVIDER> {
     
     /**
      * Initializes all dependencies and executes all initializers of this configuration if this configuration has not already been initialized.
+     * The initialization is guarded by a lock of this configuration so that it is initialized only once even if it is initialized lazily from several threads.
+     * If the initialization failed, the error is thrown again so that the provider of this configuration cannot be retrieved as if it were initialized.
      * 
-     * @throws InitializerError if an initializer fails.
+     * @throws InitializerError if an initializer of this configuration or one of its dependencies fails or has failed before.
      */
     @Impure
     public void initialize() {
+        initialize(null);
+    }
+    
+    /**
+     * Initializes this configuration on behalf of the given dependent, which is the configuration whose initialization was requested originally
+     * or null if this configuration is initialized on its own.
+     * The dependent is passed down the dependencies so that a failed initializer reports the dependency chain that was actually traversed.
+     * 
+     * @throws InitializerError if an initializer fails.
+     */
+    @Impure
+    private void initialize(@Nullable Configuration<?> dependent) {
         if (!initialized) {
+            synchronized (initializationLock) {
+                if (!initialized && !initializing) {
+                    this.initializing = true;
+                    complete(dependent);
+                }
+            }
+        }
+        rethrowFailure();
+    }
+    
+    /**
+     * Initializes all dependencies and executes all initializers of this configuration on behalf of the given dependent.
+     * A failure is recorded and the configuration stays pending so that retrieving its provider throws the error again.
+     * 
+     * @require Thread.holdsLock(initializationLock) : "The initialization lock is held by the current thread.";
+     */
+    @Impure
+    private void complete(@Nullable Configuration<?> dependent) {
+        try {
+            for (@Nonnull Configuration<?> dependency : dependencies) { dependency.initialize(dependent != null ? dependent : this); }
+            executeInitializers(dependent);
+        } catch (@Nonnull InitializerError error) {
+            this.failure = error;
+        } finally {
             this.initialized = true;
-            for (@Nonnull Configuration<?> dependency : dependencies) { dependency.initialize(); }
-            for (@Nonnull Initializer initializer : initializers) {
-                try {
+            if (failure == null) { unmarkPending(); }
+            else { markPending(); }
+        }
+    }
+    
+    /**
+     * Throws the error of the failed initialization of this configuration if there is one.
+     * 
+     * @throws InitializerError if the initialization of this configuration has failed.
+     */
+    @Pure
+    private void rethrowFailure() {
+        final @Nullable InitializerError failure = this.failure;
+        if (failure != null) { throw failure; }
+    }
+    
+    /**
+     * Executes all initializers of this configuration without initializing its dependencies.
+     * 
+     * @throws InitializerError if an initializer fails, which reports the given dependent if it is not null.
+     */
+    @Impure
+    private void executeInitializers(@Nullable Configuration<?> dependent) {
+        for (@Nonnull Initializer initializer : initializers) {
+            try {
+                if (StartupProfiler.isEnabled()) {
+                    final @Nonnull long[] start = StartupProfiler.start();
+                    initializer.execute();
+                    StartupProfiler.record(this, initializer, start);
+                } else {
                     initializer.execute();
-                } catch (@Nonnull Throwable throwable) {
-                    throw InitializerErrorBuilder.withConfiguration(this).withInitializer(initializer).withCause(throwable).build();
                 }
+            } catch (@Nonnull Throwable throwable) {
+                throw InitializerErrorBuilder.withConfiguration(this).withInitializer(initializer).withCause(throwable).withDependent(dependent).build();
             }
         }
     }
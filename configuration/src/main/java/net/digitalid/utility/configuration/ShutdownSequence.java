@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2017 Synacts GmbH, Switzerland (info@synacts.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.digitalid.utility.configuration;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.digitalid.utility.annotations.method.Impure;
+import net.digitalid.utility.annotations.method.Pure;
+import net.digitalid.utility.annotations.ownership.Captured;
+import net.digitalid.utility.contracts.Require;
+import net.digitalid.utility.validation.annotations.type.Immutable;
+import net.digitalid.utility.validation.annotations.type.Utility;
+
+/**
+ * The shutdown sequence runs the registered tasks in the order of their {@link Phase phases} from a single shutdown hook.
+ * Shutdown hooks of the virtual machine run concurrently and in no defined order, which is why the modules of this library
+ * register their cleanup tasks here instead so that, for example, thread pools are shut down before asynchronous loggers are drained
+ * and asynchronous loggers are drained before the buffered loggers are flushed.
+ */
+@Utility
+public abstract class ShutdownSequence {
+    
+    /* -------------------------------------------------- Phase -------------------------------------------------- */
+    
+    /**
+     * This class enumerates the phases of the shutdown sequence in the order in which they are run.
+     */
+    @Immutable
+    public static enum Phase {
+        
+        /**
+         * In this phase, the application stops accepting work and releases its resources.
+         */
+        APPLICATION,
+        
+        /**
+         * In this phase, the thread pools complete or abandon their tasks.
+         */
+        EXECUTORS,
+        
+        /**
+         * In this phase, the asynchronous loggers write the messages that are still queued.
+         */
+        LOGGERS,
+        
+        /**
+         * In this phase, the buffered streams are flushed.
+         */
+        STREAMS;
+        
+    }
+    
+    /* -------------------------------------------------- Tasks -------------------------------------------------- */
+    
+    /**
+     * Stores the tasks of each phase in the order in which they were registered.
+     * This field is guarded by the class object.
+     */
+    private static final @Nonnull Map<@Nonnull Phase, @Nonnull Set<@Nonnull Runnable>> tasks = new EnumMap<>(Phase.class);
+    
+    /**
+     * Stores the shutdown hook of the virtual machine or null if no task has been registered yet.
+     * This field is guarded by the class object.
+     */
+    private static @Nullable Thread hook;
+    
+    /**
+     * Stores whether the shutdown sequence has already been run.
+     * This field is guarded by the class object.
+     */
+    private static boolean finished = false;
+    
+    /**
+     * Registers the given task to be run in the given phase of the shutdown sequence.
+     * The shutdown hook of the virtual machine is added on the first registration.
+     * 
+     * @return whether the task was registered, which is not the case if it was already registered or the shutdown sequence has already been run.
+     */
+    @Impure
+    public static synchronized boolean register(@Nonnull Phase phase, @Captured @Nonnull Runnable task) {
+        Require.that(phase != null).orThrow("The phase may not be null.");
+        Require.that(task != null).orThrow("The task may not be null.");
+        
+        if (finished) { return false; }
+        if (hook == null) {
+            hook = new Thread(ShutdownSequence::run, "ShutdownSequence");
+            try {
+                Runtime.getRuntime().addShutdownHook(hook);
+            } catch (@Nonnull IllegalStateException exception) {
+                // The virtual machine is already shutting down, in which case the hook is no longer started.
+                finished = true;
+                return false;
+            }
+        }
+        @Nullable Set<@Nonnull Runnable> phaseTasks = tasks.get(phase);
+        if (phaseTasks == null) {
+            phaseTasks = new LinkedHashSet<>();
+            tasks.put(phase, phaseTasks);
+        }
+        return phaseTasks.add(task);
+    }
+    
+    /**
+     * Deregisters the given task from all phases of the shutdown sequence.
+     * 
+     * @return whether the task was registered.
+     */
+    @Impure
+    public static synchronized boolean deregister(@Nonnull Runnable task) {
+        boolean result = false;
+        for (@Nonnull Set<@Nonnull Runnable> phaseTasks : tasks.values()) {
+            if (phaseTasks.remove(task)) { result = true; }
+        }
+        return result;
+    }
+    
+    /**
+     * Returns whether the given task is registered in any phase of the shutdown sequence.
+     */
+    @Pure
+    public static synchronized boolean isRegistered(@Nonnull Runnable task) {
+        for (@Nonnull Set<@Nonnull Runnable> phaseTasks : tasks.values()) {
+            if (phaseTasks.contains(task)) { return true; }
+        }
+        return false;
+    }
+    
+    /* -------------------------------------------------- Execution -------------------------------------------------- */
+    
+    /**
+     * Runs the registered tasks phase after phase, unless the shutdown sequence has already been run.
+     * A task that throws does not prevent the remaining tasks from being run.
+     * This method is called by the shutdown hook but can also be called explicitly in order to shut down the library in an orderly way.
+     */
+    @Impure
+    public static void run() {
+        final @Nonnull List<@Nonnull Runnable> orderedTasks = new ArrayList<>();
+        synchronized (ShutdownSequence.class) {
+            if (finished) { return; }
+            finished = true;
+            for (@Nonnull Phase phase : Phase.values()) {
+                final @Nullable Set<@Nonnull Runnable> phaseTasks = tasks.get(phase);
+                if (phaseTasks != null) { orderedTasks.addAll(phaseTasks); }
+            }
+            tasks.clear();
+            if (hook != null && Thread.currentThread() != hook) {
+                try {
+                    Runtime.getRuntime().removeShutdownHook(hook);
+                } catch (@Nonnull IllegalStateException exception) {
+                    // The virtual machine is already shutting down, in which case the hook finds the sequence finished.
+                }
+            }
+        }
+        for (@Nonnull Runnable task : orderedTasks) {
+            try {
+                task.run();
+            } catch (@Nonnull Throwable throwable) {
+                // The logging module depends on this module and might already be shut down.
+                System.err.println("A task of the shutdown sequence failed:");
+                throwable.printStackTrace();
+            }
+        }
+    }
+    
+}
@@ -0,0 +1,509 @@
+/*
+ * Copyright (C) 2017 Synacts GmbH, Switzerland (info@synacts.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.digitalid.utility.configuration;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.digitalid.utility.annotations.method.Impure;
+import net.digitalid.utility.annotations.method.Pure;
+import net.digitalid.utility.annotations.ownership.Capturable;
+import net.digitalid.utility.annotations.state.Modifiable;
+import net.digitalid.utility.functional.iterables.FiniteIterable;
+import net.digitalid.utility.validation.annotations.type.Immutable;
+import net.digitalid.utility.validation.annotations.type.Utility;
+
+/**
+ * The startup profiler records the wall time, CPU time and allocated bytes of each {@link Initializer} and aggregates them per {@link Configuration}.
+ * From these measurements, it computes the critical path through the dependency graph, which is the chain of configurations that determines the startup time
+ * when independent configurations are {@link Configuration#initializeAllConfigurations(int) initialized in parallel}.
+ * The profiler is enabled by setting the system property {@value #PROPERTY} to the file to which the report is written after all configurations have been initialized
+ * or, if the configurations are {@link Configuration#initializeConfigurationsLazily() initialized lazily}, when the {@link ShutdownSequence shutdown sequence} is run.
+ * The report is written as CSV if the file name ends with '.csv' and as JSON otherwise, and a human-readable summary is written next to it.
+ * The records are discarded once they have been written to the report.
+ */
+@Utility
+public abstract class StartupProfiler {
+    
+    /* -------------------------------------------------- Enabled -------------------------------------------------- */
+    
+    /**
+     * Stores the name of the system property which specifies the file to which the report is written.
+     */
+    public static final @Nonnull String PROPERTY = "net.digitalid.utility.configuration.profile";
+    
+    private static volatile boolean enabled = System.getProperty(PROPERTY) != null;
+    
+    /**
+     * Returns whether the startup profiler records the execution of initializers.
+     */
+    @Pure
+    public static boolean isEnabled() {
+        return enabled;
+    }
+    
+    /**
+     * Sets whether the startup profiler records the execution of initializers.
+     * Disabling the profiler discards the records that have not yet been written to a report.
+     */
+    @Impure
+    public static void setEnabled(boolean enabled) {
+        StartupProfiler.enabled = enabled;
+        if (!enabled) { records.clear(); }
+    }
+    
+    /* -------------------------------------------------- Measurement -------------------------------------------------- */
+    
+    /**
+     * Stores the thread bean to measure the CPU time and the allocated bytes or null if it is not available on this platform.
+     */
+    private static @Nullable ThreadMXBean threadBean;
+    
+    private static boolean threadBeanLoaded = false;
+    
+    /**
+     * Returns the thread bean of the platform or null if it is not available.
+     */
+    @Impure
+    private static synchronized @Nullable ThreadMXBean getThreadBean() {
+        if (!threadBeanLoaded) {
+            threadBeanLoaded = true;
+            try {
+                threadBean = ManagementFactory.getThreadMXBean();
+            } catch (@Nonnull LinkageError | RuntimeException exception) {
+                threadBean = null;
+            }
+        }
+        return threadBean;
+    }
+    
+    /**
+     * Returns the CPU time of the current thread in nanoseconds or -1 if it cannot be measured.
+     */
+    @Impure
+    private static long getCurrentThreadCpuTime() {
+        final @Nullable ThreadMXBean bean = getThreadBean();
+        return bean != null && bean.isCurrentThreadCpuTimeSupported() ? bean.getCurrentThreadCpuTime() : -1;
+    }
+    
+    /**
+     * This class measures the allocated bytes with the extension of the thread bean, which is only loaded if the extension is available on this platform.
+     */
+    @Utility
+    private static abstract class AllocationCounter {
+        
+        /**
+         * Returns the number of bytes that the current thread has allocated so far or -1 if it cannot be measured with the given bean.
+         */
+        @Impure
+        private static long getCurrentThreadAllocatedBytes(@Nonnull ThreadMXBean bean) {
+            if (bean instanceof com.sun.management.ThreadMXBean) {
+                final @Nonnull com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+                if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) { return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId()); }
+            }
+            return -1;
+        }
+        
+    }
+    
+    /**
+     * Stores whether the allocated bytes can be measured, which requires the extension of the thread bean.
+     */
+    private static volatile boolean allocationCounterAvailable = true;
+    
+    /**
+     * Returns the number of bytes that the current thread has allocated so far or -1 if it cannot be measured.
+     */
+    @Impure
+    private static long getCurrentThreadAllocatedBytes() {
+        final @Nullable ThreadMXBean bean = getThreadBean();
+        if (bean == null || !allocationCounterAvailable) { return -1; }
+        try {
+            return AllocationCounter.getCurrentThreadAllocatedBytes(bean);
+        } catch (@Nonnull LinkageError | UnsupportedOperationException error) {
+            // The extension of the thread bean is not available on platforms like Android.
+            allocationCounterAvailable = false;
+            return -1;
+        }
+    }
+    
+    /**
+     * Returns the current wall time, CPU time and allocated bytes, which have to be passed to {@link #record(Configuration, Initializer, long[])} after the initializer has been executed.
+     */
+    @Impure
+    static @Capturable @Nonnull long[] start() {
+        return new long[] { System.nanoTime(), getCurrentThreadCpuTime(), getCurrentThreadAllocatedBytes() };
+    }
+    
+    /* -------------------------------------------------- Records -------------------------------------------------- */
+    
+    /**
+     * A record stores the measurements of a single execution of an initializer.
+     */
+    @Immutable
+    public static class Record {
+        
+        private final @Nonnull Configuration<?> configuration;
+        
+        private final @Nonnull String initializer;
+        
+        private final @Nonnull String thread;
+        
+        private final long wallTime;
+        
+        private final long cpuTime;
+        
+        private final long allocatedBytes;
+        
+        private Record(@Nonnull Configuration<?> configuration, @Nonnull String initializer, @Nonnull String thread, long wallTime, long cpuTime, long allocatedBytes) {
+            this.configuration = configuration;
+            this.initializer = initializer;
+            this.thread = thread;
+            this.wallTime = wallTime;
+            this.cpuTime = cpuTime;
+            this.allocatedBytes = allocatedBytes;
+        }
+        
+        /**
+         * Returns the configuration whose initializer was executed.
+         */
+        @Pure
+        public @Nonnull Configuration<?> getConfiguration() {
+            return configuration;
+        }
+        
+        /**
+         * Returns the name of the class of the initializer that was executed.
+         */
+        @Pure
+        public @Nonnull String getInitializer() {
+            return initializer;
+        }
+        
+        /**
+         * Returns the name of the thread on which the initializer was executed.
+         */
+        @Pure
+        public @Nonnull String getThread() {
+            return thread;
+        }
+        
+        /**
+         * Returns the wall time of the execution in nanoseconds.
+         */
+        @Pure
+        public long getWallTime() {
+            return wallTime;
+        }
+        
+        /**
+         * Returns the CPU time of the execution in nanoseconds or -1 if it could not be measured.
+         */
+        @Pure
+        public long getCpuTime() {
+            return cpuTime;
+        }
+        
+        /**
+         * Returns the number of bytes that were allocated during the execution or -1 if they could not be measured.
+         */
+        @Pure
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+        
+    }
+    
+    /**
+     * Stores the records in the order in which the initializers finished their execution.
+     */
+    private static final @Nonnull ConcurrentLinkedQueue<@Nonnull Record> records = new ConcurrentLinkedQueue<>();
+    
+    /**
+     * Records the execution of the given initializer of the given configuration which started with the given measurements.
+     */
+    @Impure
+    static void record(@Nonnull Configuration<?> configuration, @Nonnull Initializer initializer, @Nonnull long[] start) {
+        final long cpuTime = getCurrentThreadCpuTime();
+        final long allocatedBytes = getCurrentThreadAllocatedBytes();
+        records.add(new Record(configuration, initializer.getClass().getName(), Thread.currentThread().getName(), System.nanoTime() - start[0], start[1] < 0 || cpuTime < 0 ? -1 : cpuTime - start[1], start[2] < 0 || allocatedBytes < 0 ? -1 : allocatedBytes - start[2]));
+    }
+    
+    /**
+     * Returns the records of all initializers that have been executed while the profiler was enabled.
+     */
+    @Pure
+    public static @Capturable @Modifiable @Nonnull List<@Nonnull Record> getRecords() {
+        return new ArrayList<>(records);
+    }
+    
+    /**
+     * Discards the records of all initializers that have been executed so far.
+     */
+    @Impure
+    public static void clearRecords() {
+        records.clear();
+    }
+    
+    /* -------------------------------------------------- Configurations -------------------------------------------------- */
+    
+    /**
+     * Returns the sum of the given measurements, which is -1 if any of them is -1.
+     */
+    @Pure
+    private static long add(long sum, long value) {
+        return sum < 0 || value < 0 ? -1 : sum + value;
+    }
+    
+    /**
+     * Returns the wall time, CPU time and allocated bytes of the initializers of each configuration.
+     */
+    @Pure
+    public static @Capturable @Modifiable @Nonnull Map<@Nonnull Configuration<?>, @Nonnull long[]> getConfigurations() {
+        final @Nonnull Map<@Nonnull Configuration<?>, @Nonnull long[]> result = new LinkedHashMap<>();
+        for (@Nonnull Record record : records) {
+            final @Nullable long[] totals = result.get(record.getConfiguration());
+            if (totals == null) {
+                result.put(record.getConfiguration(), new long[] { record.getWallTime(), record.getCpuTime(), record.getAllocatedBytes() });
+            } else {
+                totals[0] += record.getWallTime();
+                totals[1] = add(totals[1], record.getCpuTime());
+                totals[2] = add(totals[2], record.getAllocatedBytes());
+            }
+        }
+        return result;
+    }
+    
+    /* -------------------------------------------------- Critical Path -------------------------------------------------- */
+    
+    /**
+     * Returns the wall time in nanoseconds at which the given configuration is initialized at the earliest if all its dependencies are initialized as early as possible.
+     */
+    @Pure
+    private static long getFinishTime(@Nonnull Configuration<?> configuration, @Nonnull Map<@Nonnull Configuration<?>, @Nonnull long[]> configurations, @Nonnull Map<@Nonnull Configuration<?>, @Nonnull Long> finishTimes, @Nonnull Map<@Nonnull Configuration<?>, @Nullable Configuration<?>> predecessors) {
+        final @Nullable Long cachedFinishTime = finishTimes.get(configuration);
+        if (cachedFinishTime != null) { return cachedFinishTime; }
+        long startTime = 0;
+        @Nullable Configuration<?> predecessor = null;
+        for (@Nonnull Configuration<?> dependency : configuration.getDependencies()) {
+            final long finishTime = getFinishTime(dependency, configurations, finishTimes, predecessors);
+            if (finishTime > startTime || predecessor == null) {
+                startTime = finishTime;
+                predecessor = dependency;
+            }
+        }
+        final @Nullable long[] totals = configurations.get(configuration);
+        final long finishTime = startTime + (totals != null ? totals[0] : 0);
+        finishTimes.put(configuration, finishTime);
+        predecessors.put(configuration, predecessor);
+        return finishTime;
+    }
+    
+    /**
+     * Returns the critical path through the dependency graph, which is the chain of dependencies with the longest total wall time.
+     * The first element of the returned list is initialized first and the last element is the configuration which finishes last.
+     */
+    @Pure
+    public static @Capturable @Modifiable @Nonnull List<@Nonnull Configuration<?>> getCriticalPath() {
+        final @Nonnull Map<@Nonnull Configuration<?>, @Nonnull long[]> configurations = getConfigurations();
+        final @Nonnull Map<@Nonnull Configuration<?>, @Nonnull Long> finishTimes = new HashMap<>();
+        final @Nonnull Map<@Nonnull Configuration<?>, @Nullable Configuration<?>> predecessors = new HashMap<>();
+        @Nullable Configuration<?> last = null;
+        long maximum = -1;
+        for (@Nonnull Configuration<?> configuration : configurations.keySet()) {
+            final long finishTime = getFinishTime(configuration, configurations, finishTimes, predecessors);
+            if (finishTime > maximum) {
+                maximum = finishTime;
+                last = configuration;
+            }
+        }
+        final @Nonnull LinkedList<@Nonnull Configuration<?>> result = new LinkedList<>();
+        while (last != null) {
+            result.addFirst(last);
+            last = predecessors.get(last);
+        }
+        return result;
+    }
+    
+    /* -------------------------------------------------- Report -------------------------------------------------- */
+    
+    /**
+     * Returns the given string as a JSON string literal.
+     */
+    @Pure
+    private static @Nonnull String quote(@Nonnull String string) {
+        final @Nonnull StringBuilder result = new StringBuilder("\"");
+        for (int i = 0; i < string.length(); i++) {
+            final char character = string.charAt(i);
+            if (character == '"' || character == '\\') { result.append('\\').append(character); }
+            else if (character < 0x20) { result.append(String.format("\\u%04x", (int) character)); }
+            else { result.append(character); }
+        }
+        return result.append('"').toString();
+    }
+    
+    /**
+     * Returns the name of the given configuration for the report.
+     */
+    @Pure
+    private static @Nonnull String getName(@Nonnull Configuration<?> configuration) {
+        return configuration.getFieldName().isEmpty() ? configuration.getQualifiedClassName() : configuration.getQualifiedClassName() + "." + configuration.getFieldName();
+    }
+    
+    /**
+     * Returns the report with the records, the configurations and the critical path as JSON.
+     */
+    @Pure
+    public static @Nonnull String getReportAsJSON() {
+        final @Nonnull StringBuilder result = new StringBuilder("{\n  \"initializers\": [");
+        boolean first = true;
+        for (@Nonnull Record record : records) {
+            result.append(first ? "\n" : ",\n").append("    {\"initializer\": ").append(quote(record.getInitializer())).append(", \"configuration\": ").append(quote(getName(record.getConfiguration()))).append(", \"thread\": ").append(quote(record.getThread()));
+            result.append(", \"wallTimeNanos\": ").append(record.getWallTime()).append(", \"cpuTimeNanos\": ").append(record.getCpuTime()).append(", \"allocatedBytes\": ").append(record.getAllocatedBytes()).append("}");
+            first = false;
+        }
+        result.append("\n  ],\n  \"configurations\": [");
+        first = true;
+        for (Map.@Nonnull Entry<@Nonnull Configuration<?>, @Nonnull long[]> entry : getConfigurations().entrySet()) {
+            result.append(first ? "\n" : ",\n").append("    {\"configuration\": ").append(quote(getName(entry.getKey()))).append(", \"wallTimeNanos\": ").append(entry.getValue()[0]).append(", \"cpuTimeNanos\": ").append(entry.getValue()[1]).append(", \"allocatedBytes\": ").append(entry.getValue()[2]).append("}");
+            first = false;
+        }
+        result.append("\n  ],\n  \"criticalPath\": [");
+        first = true;
+        for (@Nonnull Configuration<?> configuration : getCriticalPath()) {
+            result.append(first ? "" : ", ").append(quote(getName(configuration)));
+            first = false;
+        }
+        return result.append("]\n}\n").toString();
+    }
+    
+    /**
+     * Returns the records of the initializers as CSV with a header line.
+     */
+    @Pure
+    public static @Nonnull String getReportAsCSV() {
+        final @Nonnull StringBuilder result = new StringBuilder("initializer,configuration,thread,wallTimeNanos,cpuTimeNanos,allocatedBytes,onCriticalPath\n");
+        final @Nonnull List<@Nonnull Configuration<?>> criticalPath = getCriticalPath();
+        for (@Nonnull Record record : records) {
+            result.append(record.getInitializer()).append(',').append(getName(record.getConfiguration())).append(',').append(record.getThread().replace(',', ' ')).append(',');
+            result.append(record.getWallTime()).append(',').append(record.getCpuTime()).append(',').append(record.getAllocatedBytes()).append(',').append(criticalPath.contains(record.getConfiguration())).append('\n');
+        }
+        return result.toString();
+    }
+    
+    /**
+     * Returns a human-readable summary with the total time, the slowest initializers and the critical path.
+     */
+    @Pure
+    public static @Nonnull String getSummary() {
+        final @Nonnull List<@Nonnull Record> sortedRecords = getRecords();
+        Collections.sort(sortedRecords, (record1, record2) -> Long.compare(record2.getWallTime(), record1.getWallTime()));
+        long totalTime = 0;
+        for (@Nonnull Record record : sortedRecords) { totalTime += record.getWallTime(); }
+        final @Nonnull StringBuilder result = new StringBuilder();
+        result.append("Executed ").append(sortedRecords.size()).append(" initializers in ").append(TimeUnit.NANOSECONDS.toMillis(totalTime)).append(" ms in total.\n");
+        result.append("The slowest initializers were:\n");
+        for (int i = 0; i < Math.min(10, sortedRecords.size()); i++) {
+            final @Nonnull Record record = sortedRecords.get(i);
+            result.append("- ").append(record.getInitializer()).append(": ").append(TimeUnit.NANOSECONDS.toMillis(record.getWallTime())).append(" ms wall, ");
+            result.append(record.getCpuTime() < 0 ? "?" : TimeUnit.NANOSECONDS.toMillis(record.getCpuTime())).append(" ms CPU, ").append(record.getAllocatedBytes() < 0 ? "?" : record.getAllocatedBytes() / 1024).append(" KiB allocated\n");
+        }
+        final @Nonnull Map<@Nonnull Configuration<?>, @Nonnull long[]> configurations = getConfigurations();
+        long criticalTime = 0;
+        final @Nonnull List<@Nonnull String> criticalNames = new ArrayList<>();
+        for (@Nonnull Configuration<?> configuration : getCriticalPath()) {
+            final @Nullable long[] totals = configurations.get(configuration);
+            criticalTime += totals != null ? totals[0] : 0;
+            criticalNames.add(getName(configuration));
+        }
+        result.append("The critical path takes ").append(TimeUnit.NANOSECONDS.toMillis(criticalTime)).append(" ms: ").append(FiniteIterable.of(criticalNames).join(" -> ")).append("\n");
+        return result.toString();
+    }
+    
+    /**
+     * Writes the report to the given file as CSV if its name ends with '.csv' and as JSON otherwise.
+     */
+    @Impure
+    public static void writeReport(@Nonnull File file) throws IOException {
+        final @Nonnull String report = file.getName().endsWith(".csv") ? getReportAsCSV() : getReportAsJSON();
+        try (@Nonnull Writer writer = new OutputStreamWriter(Files.newOutputStream(file.toPath()), StandardCharsets.UTF_8)) {
+            writer.write(report);
+        }
+    }
+    
+    /**
+     * Writes the report to the file that is specified by the system property {@value #PROPERTY} if it is set
+     * and the {@link #getSummary() summary} to a text file with the same name and the suffix '-summary.txt' next to it.
+     * The records are discarded afterwards so that they are not kept for the whole lifetime of the application.
+     * 
+     * @return whether the report was written successfully.
+     */
+    @Impure
+    @SuppressWarnings("UseOfSystemOutOrSystemErr")
+    static boolean writeReport() {
+        final @Nullable String path = System.getProperty(PROPERTY);
+        if (path == null || path.isEmpty() || records.isEmpty()) { return false; }
+        try {
+            final @Nonnull File file = new File(path);
+            writeReport(file);
+            final @Nonnull String name = file.getName().contains(".") ? file.getName().substring(0, file.getName().lastIndexOf('.')) : file.getName();
+            try (@Nonnull Writer writer = new OutputStreamWriter(Files.newOutputStream(new File(file.getAbsoluteFile().getParentFile(), name + "-summary.txt").toPath()), StandardCharsets.UTF_8)) {
+                writer.write(getSummary());
+            }
+            return true;
+        } catch (@Nonnull IOException exception) {
+            // The logging module depends on this module and can therefore not be used here.
+            System.err.println("The startup profiler could not write its report to '" + path + "':");
+            exception.printStackTrace();
+            return false;
+        } finally {
+            records.clear();
+        }
+    }
+    
+    /**
+     * Stores the task which writes the report when the shutdown sequence is run.
+     */
+    private static final @Nonnull Runnable reportTask = StartupProfiler::writeReport;
+    
+    /**
+     * Writes the report when the {@link ShutdownSequence shutdown sequence} is run, which is used if the configurations are initialized lazily
+     * because there is then no point in time at which all initializers have been executed.
+     */
+    @Impure
+    static void writeReportOnShutdown() {
+        ShutdownSequence.register(ShutdownSequence.Phase.APPLICATION, reportTask);
+    }
+    
+}
@@ -16,6 +16,7 @@
 package net.digitalid.utility.configuration.errors;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import net.digitalid.utility.annotations.method.Pure;
 import net.digitalid.utility.configuration.Configuration;
@@ -46,6 +47,14 @@ public abstract class InitializerError extends InitializationError {
     @Pure
     public abstract @Nonnull Initializer getInitializer();
     
+    /* -------------------------------------------------- Dependent -------------------------------------------------- */
+    
+    /**
+     * Returns the configuration whose initialization required the target configuration of the failed initializer or null if the target configuration was initialized on its own.
+     */
+    @Pure
+    public abstract @Nullable Configuration<?> getDependent();
+    
     /* -------------------------------------------------- Cause -------------------------------------------------- */
     
     @Pure
@@ -57,7 +66,10 @@ public abstract class InitializerError extends InitializationError {
     @Pure
     @Override
     public @Nonnull String getMessage() {
-        return Strings.format("The initializer $ of the configuration $ threw " + Strings.prependWithIndefiniteArticle(getCause().getClass().getSimpleName()) + ".", getInitializer().getClass().getSimpleName(), getConfiguration());
+        final @Nonnull String message = Strings.format("The initializer $ of the configuration $ threw " + Strings.prependWithIndefiniteArticle(getCause().getClass().getSimpleName()) + ".", getInitializer().getClass().getSimpleName(), getConfiguration());
+        final @Nullable Configuration<?> dependent = getDependent();
+        if (dependent == null || !dependent.dependsOn(getConfiguration())) { return message; }
+        else { return message + " The configuration was initialized through the dependency chain " + dependent.getDependencyChainAsString(getConfiguration()) + "."; }
     }
     
 }
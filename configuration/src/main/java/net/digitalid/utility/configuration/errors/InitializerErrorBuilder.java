@@ -17,6 +17,7 @@ package net.digitalid.utility.configuration.errors;
 
 import javax.annotation.Generated;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import net.digitalid.utility.configuration.Configuration;
 import net.digitalid.utility.configuration.Initializer;
@@ -65,6 +66,16 @@ public class InitializerErrorBuilder {
             return this;
         }
         
+        /* -------------------------------------------------- Dependent -------------------------------------------------- */
+        
+        private @Nullable Configuration<?> dependent = null;
+        
+        @Chainable
+        public @Nonnull InnerInitializerErrorBuilder withDependent(@Nullable Configuration<?> dependent) {
+            this.dependent = dependent;
+            return this;
+        }
+        
         /* -------------------------------------------------- Cause -------------------------------------------------- */
         
         private @Nonnull Throwable cause = null;
@@ -78,7 +89,7 @@ public class InitializerErrorBuilder {
         /* -------------------------------------------------- Build -------------------------------------------------- */
         
         public InitializerError build() {
-            return new InitializerErrorSubclass(configuration, initializer, cause);
+            return new InitializerErrorSubclass(configuration, initializer, dependent, cause);
         }
         
     }
@@ -17,6 +17,7 @@ package net.digitalid.utility.configuration.errors;
 
 import javax.annotation.Generated;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import net.digitalid.utility.configuration.Configuration;
 import net.digitalid.utility.configuration.Initializer;
@@ -50,6 +51,16 @@ class InitializerErrorSubclass extends InitializerError {
         return result;
     }
     
+    /* -------------------------------------------------- Dependent -------------------------------------------------- */
+    
+    private final @Nullable Configuration<?> dependent;
+    
+    @Override
+    public @Nullable Configuration<?> getDependent() {
+        @Nullable Configuration<?> result = this.dependent;
+        return result;
+    }
+    
     /* -------------------------------------------------- Cause -------------------------------------------------- */
     
     private final @Nonnull Throwable cause;
@@ -64,11 +75,12 @@ class InitializerErrorSubclass extends InitializerError {
     
     /* -------------------------------------------------- Constructors -------------------------------------------------- */
     
-    InitializerErrorSubclass(@Nonnull Configuration<?> configuration, @Nonnull Initializer initializer, @Nonnull Throwable cause) {
+    InitializerErrorSubclass(@Nonnull Configuration<?> configuration, @Nonnull Initializer initializer, @Nullable Configuration<?> dependent, @Nonnull Throwable cause) {
         super();
         
         this.configuration = configuration;
         this.initializer = initializer;
+        this.dependent = dependent;
         this.cause = cause;
     }
     
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2017 Synacts GmbH, Switzerland (info@synacts.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.digitalid.utility.configuration;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.digitalid.utility.configuration.errors.InitializerError;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ConfigurationTest {
+    
+    @Test
+    public void testDeclarationFromStack() {
+        final @Nonnull Configuration<String> configuration = Configuration.with("declared");
+        assertEquals(ConfigurationTest.class.getName(), configuration.getQualifiedClassName());
+        assertEquals("ConfigurationTest", configuration.getClassName());
+        assertTrue(configuration.getLineNumber() > 0);
+        assertEquals("", configuration.getFieldName());
+    }
+    
+    @Test
+    public void testDependentOfFailedInitializer() {
+        final @Nonnull Configuration<String> failing = Configuration.with("failing");
+        final @Nonnull Configuration<String> unrelated = Configuration.with("unrelated");
+        final @Nonnull Configuration<String> intermediate = Configuration.with("intermediate");
+        final @Nonnull Configuration<String> dependent = Configuration.with("dependent");
+        new Initializer(failing) {
+            @Override
+            protected void execute() throws Exception {
+                throw new Exception("The initializer fails.");
+            }
+        };
+        unrelated.addDependency(failing);
+        intermediate.addDependency(failing);
+        dependent.addDependency(intermediate);
+        
+        try {
+            dependent.initialize();
+            fail("The initializer of the failing configuration should have thrown an error.");
+        } catch (@Nonnull InitializerError error) {
+            assertSame(failing, error.getConfiguration());
+            assertSame(dependent, error.getDependent());
+            assertTrue(error.getMessage(), error.getMessage().contains(dependent.getDependencyChainAsString(failing)));
+        }
+    }
+    
+    @Test(timeout = 10_000)
+    public void testDependentOfFailedInitializerInParallel() throws InterruptedException {
+        final @Nonnull Configuration<String> failing = Configuration.with("failing");
+        final @Nonnull Configuration<String> intermediate = Configuration.with("intermediate");
+        final @Nonnull Configuration<String> dependent = Configuration.with("dependent");
+        final @Nonnull Configuration<String> unrelated = Configuration.with("unrelated");
+        new Initializer(failing) {
+            @Override
+            protected void execute() throws Exception {
+                throw new Exception("The initializer fails.");
+            }
+        };
+        new Initializer(dependent, intermediate) {
+            @Override
+            protected void execute() {
+                dependent.set("initialized");
+            }
+        };
+        new Initializer(unrelated) {
+            @Override
+            protected void execute() {
+                unrelated.set("initialized");
+            }
+        };
+        intermediate.addDependency(failing);
+        
+        try {
+            Configuration.initializeAllConfigurations(2);
+            fail("The initializer of the failing configuration should have thrown an error.");
+        } catch (@Nonnull InitializerError error) {
+            // The failure is checked below when the dependent is read.
+        }
+        
+        assertEquals("initialized", unrelated.get());
+        assertTrue(dependent.isInitialized());
+        try {
+            dependent.get();
+            fail("The provider of a configuration whose dependency failed should not be returned.");
+        } catch (@Nonnull InitializerError error) {
+            assertSame(failing, error.getConfiguration());
+            assertSame(dependent, error.getDependent());
+            assertTrue(error.getMessage(), error.getMessage().contains(dependent.getDependencyChainAsString(failing)));
+        }
+    }
+    
+    @Test
+    public void testFailureIsThrownAgain() {
+        final @Nonnull Configuration<String> configuration = Configuration.with("default");
+        new Initializer(configuration) {
+            @Override
+            protected void execute() throws Exception {
+                throw new Exception("The initializer fails.");
+            }
+        };
+        
+        @Nullable InitializerError failure = null;
+        try {
+            configuration.initialize();
+        } catch (@Nonnull InitializerError error) {
+            failure = error;
+        }
+        assertNotNull(failure);
+        assertTrue(configuration.isInitialized());
+        
+        try {
+            configuration.get();
+            fail("The provider of a configuration whose initialization failed should not be returned.");
+        } catch (@Nonnull InitializerError error) {
+            assertSame(failure, error);
+        }
+    }
+    
+    @Test(timeout = 10_000)
+    public void testInitializerWaitingForAnotherThread() {
+        final @Nonnull Configuration<String> other = Configuration.with("other");
+        new Initializer(other) {
+            @Override
+            protected void execute() {
+                other.set("initialized");
+            }
+        };
+        final @Nonnull Configuration<String> configuration = Configuration.with("default");
+        new Initializer(configuration) {
+            @Override
+            protected void execute() throws Exception {
+                final @Nonnull AtomicReference<String> result = new AtomicReference<>();
+                final @Nonnull Thread thread = new Thread(() -> {
+                    other.initialize();
+                    result.set(other.get());
+                });
+                thread.start();
+                thread.join();
+                configuration.set(result.get());
+            }
+        };
+        
+        configuration.initialize();
+        assertEquals("initialized", configuration.get());
+    }
+    
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2017 Synacts GmbH, Switzerland (info@synacts.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.digitalid.utility.configuration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ShutdownSequenceTest {
+    
+    @Test
+    public void testOrderOfPhases() {
+        final @Nonnull List<@Nonnull String> log = new ArrayList<>();
+        final @Nonnull Runnable deregistered = () -> log.add("deregistered");
+        assertTrue(ShutdownSequence.register(ShutdownSequence.Phase.STREAMS, () -> log.add("streams")));
+        assertTrue(ShutdownSequence.register(ShutdownSequence.Phase.LOGGERS, () -> log.add("loggers")));
+        assertTrue(ShutdownSequence.register(ShutdownSequence.Phase.LOGGERS, () -> { throw new RuntimeException("The remaining tasks still have to run."); }));
+        assertTrue(ShutdownSequence.register(ShutdownSequence.Phase.EXECUTORS, () -> log.add("executors")));
+        assertTrue(ShutdownSequence.register(ShutdownSequence.Phase.APPLICATION, deregistered));
+        assertTrue(ShutdownSequence.register(ShutdownSequence.Phase.APPLICATION, () -> log.add("application")));
+        
+        assertTrue(ShutdownSequence.isRegistered(deregistered));
+        assertTrue(ShutdownSequence.deregister(deregistered));
+        assertFalse(ShutdownSequence.isRegistered(deregistered));
+        
+        ShutdownSequence.run();
+        assertEquals(Arrays.asList("application", "executors", "loggers", "streams"), log);
+        
+        ShutdownSequence.run();
+        assertEquals(4, log.size());
+        assertFalse(ShutdownSequence.register(ShutdownSequence.Phase.APPLICATION, () -> log.add("too late")));
+    }
+    
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2017 Synacts GmbH, Switzerland (info@synacts.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.digitalid.utility.configuration;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import javax.annotation.Nonnull;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class StartupProfilerTest {
+    
+    @After
+    public void tearDown() {
+        System.clearProperty(StartupProfiler.PROPERTY);
+        StartupProfiler.setEnabled(false);
+    }
+    
+    private static void initialize(@Nonnull String provider) {
+        final @Nonnull Configuration<String> configuration = Configuration.with(provider);
+        new Initializer(configuration) {
+            @Override
+            protected void execute() {}
+        };
+        configuration.initialize();
+    }
+    
+    @Test
+    public void testReportDiscardsRecords() throws IOException {
+        final @Nonnull File directory = Files.createTempDirectory("profiler").toFile();
+        final @Nonnull File report = new File(directory, "report.csv");
+        System.setProperty(StartupProfiler.PROPERTY, report.getPath());
+        StartupProfiler.setEnabled(true);
+        initialize("profiled");
+        assertEquals(1, StartupProfiler.getRecords().size());
+        
+        assertTrue(StartupProfiler.writeReport());
+        assertTrue(report.isFile());
+        assertTrue(new File(directory, "report-summary.txt").isFile());
+        assertTrue(StartupProfiler.getRecords().isEmpty());
+    }
+    
+    @Test
+    public void testFailedReportDiscardsRecords() throws IOException {
+        final @Nonnull File directory = Files.createTempDirectory("profiler").toFile();
+        System.setProperty(StartupProfiler.PROPERTY, new File(new File(directory, "missing"), "report.json").getPath());
+        StartupProfiler.setEnabled(true);
+        initialize("profiled");
+        
+        assertFalse(StartupProfiler.writeReport());
+        assertTrue(StartupProfiler.getRecords().isEmpty());
+    }
+    
+}
@@ -0,0 +1,266 @@
+/*
+ * Copyright (C) 2017 Synacts GmbH, Switzerland (info@synacts.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.digitalid.utility.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.digitalid.utility.annotations.method.Impure;
+import net.digitalid.utility.annotations.method.Pure;
+import net.digitalid.utility.annotations.ownership.Captured;
+import net.digitalid.utility.annotations.type.ThreadSafe;
+import net.digitalid.utility.contracts.Require;
+import net.digitalid.utility.validation.annotations.file.existence.ExistentParent;
+import net.digitalid.utility.validation.annotations.file.path.Absolute;
+import net.digitalid.utility.validation.annotations.math.NonNegative;
+import net.digitalid.utility.validation.annotations.type.Mutable;
+import net.digitalid.utility.validation.annotations.type.Utility;
+
+/**
+ * The file watcher runs callbacks when watched files are created, modified or deleted.
+ * All files are watched by a single daemon thread with a {@link WatchService}, which also runs the callbacks.
+ * The thread is started with the first watch and stopped together with the watch service once the last watch has been cancelled.
+ * The events of a file are debounced so that its callback runs only once after the file has not changed for the given delay,
+ * which allows the callback to re-parse the file off the hot path and to swap in the parsed state atomically.
+ * Exceptions and errors thrown by a callback are passed to the uncaught exception handler of the watcher thread, which keeps running.
+ */
+@Utility
+public abstract class FileWatcher {
+    
+    /* -------------------------------------------------- Watch -------------------------------------------------- */
+    
+    /**
+     * A watch runs its callback after changes to its file and can be cancelled.
+     */
+    @Mutable
+    @ThreadSafe
+    public static class Watch {
+        
+        private final @Nonnull Path file;
+        
+        private final long delay;
+        
+        private final @Nonnull Runnable callback;
+        
+        private Watch(@Nonnull Path file, long delay, @Nonnull Runnable callback) {
+            this.file = file;
+            this.delay = delay;
+            this.callback = callback;
+        }
+        
+        /**
+         * Returns the file that is watched.
+         */
+        @Pure
+        public @Nonnull File getFile() {
+            return file.toFile();
+        }
+        
+        /**
+         * Stops watching the file so that the callback is no longer run.
+         * 
+         * @return whether this watch was still active.
+         */
+        @Impure
+        public boolean cancel() {
+            return FileWatcher.cancel(this);
+        }
+        
+        @Pure
+        @Override
+        public @Nonnull String toString() {
+            return "Watch(file: " + file + ", delay: " + delay + " ms)";
+        }
+        
+    }
+    
+    /* -------------------------------------------------- State -------------------------------------------------- */
+    
+    /**
+     * Stores the watch service or null if no file is watched.
+     */
+    private static @Nullable WatchService watchService;
+    
+    /**
+     * Returns whether a file is watched, in which case the watcher thread is running.
+     */
+    @Pure
+    public static synchronized boolean isWatching() {
+        return watchService != null;
+    }
+    
+    /**
+     * Stores the watch keys of the watched directories.
+     * The key of a directory is removed once it is no longer valid, for example because the directory was deleted, so that the directory is registered again with the next watch.
+     */
+    private static final @Nonnull Map<@Nonnull Path, @Nonnull WatchKey> directories = new HashMap<>();
+    
+    /**
+     * Stores the active watches of each watched directory.
+     */
+    private static final @Nonnull Map<@Nonnull Path, @Nonnull CopyOnWriteArrayList<@Nonnull Watch>> watches = new HashMap<>();
+    
+    /* -------------------------------------------------- Registration -------------------------------------------------- */
+    
+    /**
+     * Watches the given file and runs the given callback on the watcher thread once the file has not changed for the given number of milliseconds.
+     * The parent directory of the file has to exist, whereas the file itself may be created later.
+     * 
+     * @throws IOException if the parent directory of the file cannot be watched.
+     */
+    @Impure
+    public static @Nonnull Watch watch(@Nonnull @Absolute @ExistentParent File file, @NonNegative long delay, @Captured @Nonnull Runnable callback) throws IOException {
+        Require.that(file.isAbsolute()).orThrow("The file $ has to be absolute.", file);
+        Require.that(delay >= 0).orThrow("The delay has to be non-negative but was $.", delay);
+        
+        final @Nonnull Path path = file.toPath().normalize();
+        final @Nonnull Path directory = path.getParent();
+        final @Nonnull Watch watch = new Watch(path, delay, callback);
+        synchronized (FileWatcher.class) {
+            if (watchService == null) {
+                watchService = FileSystems.getDefault().newWatchService();
+                final @Nonnull WatchService service = watchService;
+                final @Nonnull Thread thread = new Thread(() -> run(service), "FileWatcher");
+                thread.setDaemon(true);
+                thread.start();
+            }
+            if (!directories.containsKey(directory)) {
+                directories.put(directory, directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE));
+                if (!watches.containsKey(directory)) { watches.put(directory, new CopyOnWriteArrayList<>()); }
+            }
+            watches.get(directory).add(watch);
+        }
+        return watch;
+    }
+    
+    /**
+     * Cancels the given watch and stops watching its directory if no other file in it is watched.
+     */
+    @Impure
+    private static synchronized boolean cancel(@Nonnull Watch watch) {
+        final @Nonnull Path directory = watch.file.getParent();
+        final @Nullable List<@Nonnull Watch> directoryWatches = watches.get(directory);
+        if (directoryWatches == null || !directoryWatches.remove(watch)) { return false; }
+        if (directoryWatches.isEmpty()) {
+            watches.remove(directory);
+            final @Nullable WatchKey key = directories.remove(directory);
+            if (key != null) { key.cancel(); }
+        }
+        if (watches.isEmpty() && watchService != null) {
+            try {
+                watchService.close();
+            } catch (@Nonnull IOException exception) {
+                // The watcher thread stops as soon as the watch service is closed, which is the case even if closing it failed.
+            }
+            watchService = null;
+        }
+        return true;
+    }
+    
+    /**
+     * Returns the watches of the given directory.
+     */
+    @Pure
+    private static synchronized @Nonnull List<@Nonnull Watch> getWatches(@Nonnull Path directory) {
+        final @Nullable List<@Nonnull Watch> directoryWatches = watches.get(directory);
+        return directoryWatches != null ? directoryWatches : new ArrayList<>();
+    }
+    
+    /* -------------------------------------------------- Watching -------------------------------------------------- */
+    
+    /**
+     * Removes the given key of the given directory, which is no longer valid.
+     */
+    @Impure
+    private static synchronized void removeKey(@Nonnull Path directory, @Nonnull WatchKey key) {
+        if (directories.get(directory) == key) { directories.remove(directory); }
+    }
+    
+    /**
+     * Runs the given callback and passes any throwable to the uncaught exception handler of the current thread.
+     * Errors are caught as well because the watcher thread would otherwise die while the watch service still appears to be running.
+     */
+    @Impure
+    private static void runCallback(@Nonnull Runnable callback) {
+        try {
+            callback.run();
+        } catch (@Nonnull Throwable throwable) {
+            final @Nonnull Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, throwable);
+        }
+    }
+    
+    /**
+     * Waits for the events of the given watch service and runs the callbacks of the affected watches once their delay has passed.
+     * This method returns when the given watch service is closed because the last watch has been cancelled.
+     */
+    @Impure
+    private static void run(@Nonnull WatchService service) {
+        final @Nonnull Map<@Nonnull Watch, @Nonnull Long> deadlines = new HashMap<>();
+        while (true) {
+            long timeout = Long.MAX_VALUE;
+            final long now = System.nanoTime();
+            for (long deadline : deadlines.values()) { timeout = Math.min(timeout, Math.max(0, deadline - now)); }
+            
+            final @Nullable WatchKey key;
+            try {
+                key = timeout == Long.MAX_VALUE ? service.take() : service.poll(timeout, TimeUnit.NANOSECONDS);
+            } catch (@Nonnull InterruptedException | ClosedWatchServiceException exception) {
+                return;
+            }
+            
+            if (key != null) {
+                final @Nonnull Path directory = (Path) key.watchable();
+                final long eventTime = System.nanoTime();
+                for (@Nonnull WatchEvent<?> event : key.pollEvents()) {
+                    final @Nullable Path file = event.kind() == StandardWatchEventKinds.OVERFLOW ? null : directory.resolve((Path) event.context());
+                    for (@Nonnull Watch watch : getWatches(directory)) {
+                        if (file == null || watch.file.equals(file)) { deadlines.put(watch, eventTime + TimeUnit.MILLISECONDS.toNanos(watch.delay)); }
+                    }
+                }
+                if (!key.reset()) { removeKey(directory, key); }
+            }
+            
+            final long time = System.nanoTime();
+            final @Nonnull Iterator<Map.@Nonnull Entry<@Nonnull Watch, @Nonnull Long>> iterator = deadlines.entrySet().iterator();
+            while (iterator.hasNext()) {
+                final Map.@Nonnull Entry<@Nonnull Watch, @Nonnull Long> entry = iterator.next();
+                if (entry.getValue() - time <= 0) {
+                    iterator.remove();
+                    if (getWatches(entry.getKey().file.getParent()).contains(entry.getKey())) { runCallback(entry.getKey().callback); }
+                }
+            }
+        }
+    }
+    
+}
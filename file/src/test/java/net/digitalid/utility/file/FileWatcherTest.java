@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2017 Synacts GmbH, Switzerland (info@synacts.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.digitalid.utility.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FileWatcherTest {
+    
+    private static @Nullable Thread getWatcherThread() {
+        for (@Nonnull Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals("FileWatcher")) { return thread; }
+        }
+        return null;
+    }
+    
+    @Test
+    public void testCallbackAndStop() throws IOException, InterruptedException {
+        final @Nonnull File directory = Files.createTempDirectory("watcher").toFile();
+        final @Nonnull File file = new File(directory, "watched.txt");
+        final @Nonnull CountDownLatch latch = new CountDownLatch(1);
+        
+        final @Nonnull FileWatcher.Watch watch = FileWatcher.watch(file, 10, latch::countDown);
+        assertTrue(FileWatcher.isWatching());
+        final @Nullable Thread thread = getWatcherThread();
+        assertNotNull(thread);
+        
+        Files.write(file.toPath(), "changed".getBytes(StandardCharsets.UTF_8));
+        assertTrue(latch.await(30, TimeUnit.SECONDS));
+        
+        assertTrue(watch.cancel());
+        assertFalse(watch.cancel());
+        assertFalse(FileWatcher.isWatching());
+        thread.join(10_000);
+        assertFalse(thread.isAlive());
+    }
+    
+    @Test
+    public void testRestartAfterStop() throws IOException, InterruptedException {
+        final @Nonnull File directory = Files.createTempDirectory("watcher").toFile();
+        final @Nonnull FileWatcher.Watch first = FileWatcher.watch(new File(directory, "first.txt"), 0, () -> {});
+        final @Nonnull FileWatcher.Watch second = FileWatcher.watch(new File(directory, "second.txt"), 0, () -> {});
+        assertTrue(first.cancel());
+        assertTrue(FileWatcher.isWatching());
+        assertTrue(second.cancel());
+        assertFalse(FileWatcher.isWatching());
+        
+        final @Nonnull CountDownLatch latch = new CountDownLatch(1);
+        final @Nonnull File file = new File(directory, "third.txt");
+        final @Nonnull FileWatcher.Watch third = FileWatcher.watch(file, 0, latch::countDown);
+        assertTrue(FileWatcher.isWatching());
+        Files.write(file.toPath(), "created".getBytes(StandardCharsets.UTF_8));
+        assertTrue(latch.await(30, TimeUnit.SECONDS));
+        assertTrue(third.cancel());
+        assertFalse(FileWatcher.isWatching());
+    }
+    
+    @Test
+    public void testErrorInCallback() throws IOException, InterruptedException {
+        final @Nonnull File directory = Files.createTempDirectory("watcher").toFile();
+        final @Nonnull File file = new File(directory, "failing.txt");
+        final @Nonnull CountDownLatch latch = new CountDownLatch(2);
+        final @Nonnull FileWatcher.Watch watch = FileWatcher.watch(file, 10, () -> {
+            latch.countDown();
+            if (latch.getCount() == 1) { throw new Error("The callback fails."); }
+        });
+        final @Nullable Thread thread = getWatcherThread();
+        assertNotNull(thread);
+        final @Nonnull AtomicReference<Throwable> uncaught = new AtomicReference<>();
+        thread.setUncaughtExceptionHandler((failedThread, throwable) -> uncaught.set(throwable));
+        
+        Files.write(file.toPath(), "first".getBytes(StandardCharsets.UTF_8));
+        final long deadline = System.currentTimeMillis() + 30_000;
+        while (latch.getCount() == 2) {
+            assertTrue("The callback should have been run.", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+        Files.write(file.toPath(), "second".getBytes(StandardCharsets.UTF_8));
+        assertTrue(latch.await(30, TimeUnit.SECONDS));
+        assertTrue(thread.isAlive());
+        assertNotNull(uncaught.get());
+        assertEquals("The callback fails.", uncaught.get().getMessage());
+        assertTrue(watch.cancel());
+    }
+    
+}
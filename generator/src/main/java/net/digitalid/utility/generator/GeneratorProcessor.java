@@ -82,7 +82,7 @@ import net.digitalid.utility.validation.annotations.type.Mutable;
  * - @GenerateBuilder without a @GenerateSubclass should not be allowed on interfaces.
  */
 @Mutable
-@SupportedOptions("production")
+@SupportedOptions({"production", StaticProcessingEnvironment.INJECT_CALLERS})
 @SupportedAnnotations(prefix = "")
 public class GeneratorProcessor extends CustomProcessor {
     
@@ -32,7 +32,7 @@ import net.digitalid.utility.annotations.parameter.Modified;
 import net.digitalid.utility.generator.annotations.meta.Interceptor;
 import net.digitalid.utility.generator.information.method.MethodInformation;
 import net.digitalid.utility.generator.interceptor.MethodInterceptor;
-import net.digitalid.utility.logging.Log;
+import net.digitalid.utility.logging.Level;
 import net.digitalid.utility.processing.logging.ErrorLogger;
 import net.digitalid.utility.processor.generator.JavaFileGenerator;
 import net.digitalid.utility.validation.annotations.type.Stateless;
@@ -80,7 +80,7 @@ public @interface Caught {
             javaFileGenerator.beginTry();
             javaFileGenerator.addStatement((method.hasReturnType() ? "return " : "") + statement);
             javaFileGenerator.endTryOrCatchBeginCatch(Exception.class); // TODO: Read this from the annotation mirror!
-            javaFileGenerator.addStatement(javaFileGenerator.importIfPossible(Log.class) + ".error(\"A problem occurred.\", exception)");
+            javaFileGenerator.addStatement(generateLogStatement(javaFileGenerator, method, Level.ERROR, "\"A problem occurred.\"", "exception"));
             if (method.hasReturnType()) { javaFileGenerator.addStatement("return null"); }
             javaFileGenerator.endCatch();
         }
@@ -29,7 +29,6 @@ import net.digitalid.utility.generator.annotations.meta.Interceptor;
 import net.digitalid.utility.generator.information.method.MethodInformation;
 import net.digitalid.utility.generator.interceptor.MethodInterceptor;
 import net.digitalid.utility.logging.Level;
-import net.digitalid.utility.logging.Log;
 import net.digitalid.utility.processor.generator.JavaFileGenerator;
 import net.digitalid.utility.validation.annotations.type.Stateless;
 
@@ -70,7 +69,7 @@ public @interface Logged {
                 javaFileGenerator.addStatement(method.getReturnType(javaFileGenerator) + " " + resultVariable + " = " + defaultValue);
             }
             javaFileGenerator.beginTry();
-            javaFileGenerator.addStatement(javaFileGenerator.importIfPossible(Log.class) + ".verbose(\"" + method.getName() + "() {'\")");
+            javaFileGenerator.addStatement(generateLogStatement(javaFileGenerator, method, Level.VERBOSE, "\"" + method.getName() + "() {'\"", null));
             if (resultVariable != null && method.hasReturnType()) {
                 javaFileGenerator.addStatement(resultVariable + " = " + statement);
             } else {
@@ -78,16 +77,16 @@ public @interface Logged {
             }
             javaFileGenerator.endTryOrCatchBeginFinally();
             if (resultVariable != null && method.hasReturnType()) {
-                javaFileGenerator.addStatement(javaFileGenerator.importIfPossible(Log.class) + ".verbose(\"} = (\" + " + resultVariable + " + \")\")");
+                javaFileGenerator.addStatement(generateLogStatement(javaFileGenerator, method, Level.VERBOSE, "\"} = (\" + " + resultVariable + " + \")\"", null));
             } else {
-                javaFileGenerator.addStatement(javaFileGenerator.importIfPossible(Log.class) + ".verbose(\"}\")");
+                javaFileGenerator.addStatement(generateLogStatement(javaFileGenerator, method, Level.VERBOSE, "\"}\"", null));
             }
             javaFileGenerator.endFinally();
             if (resultVariable != null && method.hasReturnType()) {
                 javaFileGenerator.addStatement("return " + resultVariable);
             }
         }
-    
+        
     }
     
 }
@@ -17,12 +17,17 @@ package net.digitalid.utility.generator.interceptor;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.lang.model.element.TypeElement;
 
 import net.digitalid.utility.annotations.method.Pure;
 import net.digitalid.utility.collaboration.annotations.TODO;
 import net.digitalid.utility.collaboration.enumerations.Author;
 import net.digitalid.utility.generator.information.method.MethodInformation;
 import net.digitalid.utility.generator.information.type.TypeInformation;
+import net.digitalid.utility.logging.Level;
+import net.digitalid.utility.logging.Log;
+import net.digitalid.utility.logging.logger.Logger;
+import net.digitalid.utility.processing.utility.StaticProcessingEnvironment;
 import net.digitalid.utility.processor.generator.JavaFileGenerator;
 import net.digitalid.utility.validation.validator.MethodAnnotationValidator;
 
@@ -34,7 +39,7 @@ public abstract class MethodInterceptor implements MethodAnnotationValidator {
     
     @Pure
     public void generateFieldsRequiredByMethod(@Nonnull JavaFileGenerator javaFileGenerator, @Nonnull MethodInformation method, @Nonnull TypeInformation typeInformation) {}
-        
+    
     /**
      * Implements an interceptor method. The method is required to implement the call to the given statement. It can wrap its own functionality around the statement.
      */
@@ -42,7 +47,7 @@ public abstract class MethodInterceptor implements MethodAnnotationValidator {
     protected abstract void implementInterceptorMethod(@Nonnull JavaFileGenerator javaFileGenerator, @Nonnull MethodInformation method, @Nonnull String statement, @Nullable String resultVariable, @Nullable String defaultValue);
     
     /**
-     * Generates an interceptor method that wraps the original method, which information is kept in the method information object, around an interceptor method, which is implemented in a subclass of the {@link MethodInterceptor}. 
+     * Generates an interceptor method that wraps the original method, which information is kept in the method information object, around an interceptor method, which is implemented in a subclass of the {@link MethodInterceptor}.
      * Returns a statement with a call to the method that is generated.
      */
     @Pure
@@ -53,4 +58,18 @@ public abstract class MethodInterceptor implements MethodAnnotationValidator {
         return MethodUtility.createMethodCall(method, getPrefix());
     }
     
+    /**
+     * Returns a statement that logs the given message expression and throwable variable at the given level.
+     * If the option {@link StaticProcessingEnvironment#INJECT_CALLERS} is passed to the annotation processor, the given method is passed as a constant caller to the logger.
+     */
+    @Pure
+    protected static @Nonnull String generateLogStatement(@Nonnull JavaFileGenerator javaFileGenerator, @Nonnull MethodInformation method, @Nonnull Level level, @Nonnull String message, @Nullable String throwable) {
+        if (StaticProcessingEnvironment.hasOption(StaticProcessingEnvironment.INJECT_CALLERS)) {
+            final @Nonnull String caller = StaticProcessingEnvironment.getElementUtils().getBinaryName((TypeElement) method.getContainingType().asElement()) + "." + method.getName();
+            return javaFileGenerator.importIfPossible(Logger.class) + ".logWithCaller(" + javaFileGenerator.importIfPossible(Level.class) + "." + level.name() + ", \"" + caller + "\", " + message + ", " + throwable + ")";
+        } else {
+            return javaFileGenerator.importIfPossible(Log.class) + "." + level.name().toLowerCase() + "(" + message + (throwable != null ? ", " + throwable : "") + ")";
+        }
+    }
+    
 }
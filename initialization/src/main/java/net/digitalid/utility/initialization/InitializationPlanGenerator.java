@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2017 Synacts GmbH, Switzerland (info@synacts.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.digitalid.utility.initialization;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+import net.digitalid.utility.annotations.method.Impure;
+import net.digitalid.utility.annotations.method.Pure;
+import net.digitalid.utility.annotations.ownership.Capturable;
+import net.digitalid.utility.circumfixes.Quotes;
+import net.digitalid.utility.configuration.Configuration;
+import net.digitalid.utility.processing.logging.ProcessingLog;
+import net.digitalid.utility.processing.utility.StaticProcessingEnvironment;
+import net.digitalid.utility.processor.generator.FileGenerator;
+import net.digitalid.utility.processor.generator.annotations.NonWrittenRecipient;
+import net.digitalid.utility.validation.annotations.type.Mutable;
+
+/**
+ * This class generates the {@link Configuration#INITIALIZATION_PLAN initialization plan} of a module.
+ * The plan declares the configuration fields that are referenced by the initializers of the module
+ * followed by the initializers of the module in an order in which their dependencies come first.
+ * 
+ * @see InitializationProcessor
+ */
+@Mutable
+public class InitializationPlanGenerator extends FileGenerator {
+    
+    /* -------------------------------------------------- Name -------------------------------------------------- */
+    
+    @Pure
+    @Override
+    public @Nonnull String getName() {
+        return Configuration.INITIALIZATION_PLAN;
+    }
+    
+    /* -------------------------------------------------- Constructors -------------------------------------------------- */
+    
+    protected InitializationPlanGenerator() {
+        ProcessingLog.verbose("Generating the initialization plan.");
+    }
+    
+    /**
+     * Returns a new generator for the initialization plan of the module that is currently compiled.
+     */
+    @Pure
+    public static @Capturable @Nonnull InitializationPlanGenerator forCurrentModule() {
+        return new InitializationPlanGenerator();
+    }
+    
+    /* -------------------------------------------------- Entries -------------------------------------------------- */
+    
+    /**
+     * Stores the declarations of the referenced configuration fields.
+     */
+    private final @Nonnull Set<@Nonnull String> configurations = new LinkedHashSet<>();
+    
+    /**
+     * Stores the qualified binary names of the initializers in the order in which they are to be loaded.
+     */
+    private final @Nonnull Set<@Nonnull String> initializers = new LinkedHashSet<>();
+    
+    /**
+     * Adds the given configuration field to the declarations of this plan.
+     */
+    @Impure
+    @NonWrittenRecipient
+    public void addConfiguration(@Nonnull VariableElement configurationField) {
+        requireNotWritten();
+        
+        final @Nonnull String qualifiedClassName = StaticProcessingEnvironment.getElementUtils().getBinaryName((TypeElement) configurationField.getEnclosingElement()).toString();
+        configurations.add("configuration\t" + qualifiedClassName + "\t" + configurationField.getSimpleName());
+    }
+    
+    /**
+     * Adds the initializer with the given qualified binary name to this plan after all previously added initializers.
+     */
+    @Impure
+    @NonWrittenRecipient
+    public void addInitializer(@Nonnull String qualifiedInitializerName) {
+        requireNotWritten();
+        
+        initializers.add("initializer\t" + qualifiedInitializerName);
+        ProcessingLog.information("Added the initializer " + Quotes.inSingle(qualifiedInitializerName) + " to the initialization plan.");
+    }
+    
+    /* -------------------------------------------------- Writing -------------------------------------------------- */
+    
+    @Impure
+    @Override
+    @NonWrittenRecipient
+    protected void writeOnce() throws IOException {
+        final @Nonnull FileObject fileObject = StaticProcessingEnvironment.environment.get().getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", getName());
+        try (@Nonnull Writer writer = fileObject.openWriter()) {
+            for (@Nonnull String configuration : configurations) { writer.write(configuration + "\n"); }
+            for (@Nonnull String initializer : initializers) { writer.write(initializer + "\n"); }
+        }
+    }
+    
+}
@@ -16,9 +16,12 @@
 package net.digitalid.utility.initialization;
 
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -52,6 +55,8 @@ import net.digitalid.utility.processor.generator.ServiceFileGenerator;
 /**
  * This annotation processor generates a subclass of {@link Initializer} for each static method
  * annotated with {@link Initialize} and registers it in a {@link ServiceFileGenerator}.
+ * In addition, it generates a topologically sorted initialization plan with an {@link InitializationPlanGenerator},
+ * which allows the runtime to load the initializers without the service loader.
  */
 @SupportedAnnotations(Initialize.class)
 public class InitializationProcessor extends CustomProcessor {
@@ -121,10 +126,33 @@ public class InitializationProcessor extends CustomProcessor {
         return qualifiedGeneratedClassName;
     }
     
+    /**
+     * Adds the given initializer and the initializers that it depends on to the given list if they are not yet in it.
+     * 
+     * @return {@code false} if the dependencies of the given initializer are cyclic and {@code true} otherwise.
+     */
+    @Impure
+    protected boolean sortTopologically(@Nonnull String initializer, @Nonnull Map<@Nonnull String, @Nonnull VariableElement> targets, @Nonnull Map<@Nonnull String, @Nonnull List<@Nonnull VariableElement>> dependencies, @Nonnull Set<@Nonnull String> visiting, @Nonnull List<@Nonnull String> sortedInitializers) {
+        if (sortedInitializers.contains(initializer)) { return true; }
+        if (!visiting.add(initializer)) { return false; }
+        for (@Nonnull VariableElement dependency : dependencies.get(initializer)) {
+            for (Map.@Nonnull Entry<@Nonnull String, @Nonnull VariableElement> entry : targets.entrySet()) {
+                if (entry.getValue().equals(dependency) && !sortTopologically(entry.getKey(), targets, dependencies, visiting, sortedInitializers)) { return false; }
+            }
+        }
+        visiting.remove(initializer);
+        sortedInitializers.add(initializer);
+        return true;
+    }
+    
     @Impure
     @Override
     public void processFirstRound(@Nonnull FiniteIterable<@Nonnull ? extends TypeElement> annotations, @Nonnull RoundEnvironment roundEnvironment) {
         final @Nonnull ServiceFileGenerator serviceLoaderFile = ServiceFileGenerator.forService(Initializer.class);
+        final @Nonnull InitializationPlanGenerator initializationPlanFile = InitializationPlanGenerator.forCurrentModule();
+        final @Nonnull Map<@Nonnull String, @Nonnull ExecutableElement> methods = new LinkedHashMap<>();
+        final @Nonnull Map<@Nonnull String, @Nonnull VariableElement> targets = new LinkedHashMap<>();
+        final @Nonnull Map<@Nonnull String, @Nonnull List<@Nonnull VariableElement>> dependencies = new LinkedHashMap<>();
         for (@Nonnull Element annotatedElement : roundEnvironment.getElementsAnnotatedWith(Initialize.class)) {
             // Enforced by the compiler due to the '@Target' meta-annotation:
             final @Nonnull ExecutableElement annotatedMethod = (ExecutableElement) annotatedElement;
@@ -135,8 +163,6 @@ public class InitializationProcessor extends CustomProcessor {
             final @Nullable AnnotationMirror annotationMirror = ProcessingUtility.getAnnotationMirror(annotatedMethod, Initialize.class);
             if (annotationMirror == null) { ProcessingLog.error("Found no annotation '@Initialize' on", SourcePosition.of(annotatedMethod)); continue; }
             
-            // TODO: It should be possible to ensure during compile-time that there are no cyclic dependencies.
-            
             @Nullable VariableElement targetConfigurationField = null;
             @Nullable List<@Nonnull VariableElement> dependencyConfigurationFields = null;
             
@@ -165,8 +191,26 @@ public class InitializationProcessor extends CustomProcessor {
             
             final @Nonnull String qualifiedGeneratedClassName = generateInitializer(annotatedMethod, FiniteIterable.of(targetConfigurationField).combine(FiniteIterable.of(dependencyConfigurationFields)));
             serviceLoaderFile.addProvider(qualifiedGeneratedClassName);
+            methods.put(qualifiedGeneratedClassName, annotatedMethod);
+            targets.put(qualifiedGeneratedClassName, targetConfigurationField);
+            dependencies.put(qualifiedGeneratedClassName, dependencyConfigurationFields);
+            initializationPlanFile.addConfiguration(targetConfigurationField);
+            for (@Nonnull VariableElement dependencyConfigurationField : dependencyConfigurationFields) { initializationPlanFile.addConfiguration(dependencyConfigurationField); }
         }
         serviceLoaderFile.write();
+        
+        final @Nonnull List<@Nonnull String> sortedInitializers = new ArrayList<>(targets.size());
+        boolean acyclic = true;
+        for (@Nonnull String initializer : targets.keySet()) {
+            if (!sortTopologically(initializer, targets, dependencies, new HashSet<>(), sortedInitializers)) {
+                ProcessingLog.error("The dependencies of the annotated method are cyclic:", SourcePosition.of(methods.get(initializer)));
+                acyclic = false;
+            }
+        }
+        if (acyclic) {
+            for (@Nonnull String initializer : sortedInitializers) { initializationPlanFile.addInitializer(initializer); }
+            initializationPlanFile.write();
+        }
     }
     
     @Pure
@@ -93,7 +93,7 @@ public abstract class UtilityInitializer {
     }
     
     /**
-     * Initializes the logging filter with a configuration-based logging filter.
+     * Initializes the logging filter with a configuration-based logging filter, which reloads its rules when the configuration file changes.
      * 
      * @throws IllegalArgumentException if a rule has an invalid level.
      */
@@ -101,7 +101,13 @@ public abstract class UtilityInitializer {
     @Initialize(target = LoggingFilter.class, dependencies = Files.class)
     public static void initializeLoggingFilter() throws IllegalArgumentException {
         if (LoggingFilter.filter.get() instanceof LevelBasedLoggingFilter) {
-            LoggingFilter.filter.set(ConfigurationBasedLoggingFilter.with(Files.relativeToConfigurationDirectory("configs/logging.conf"), LoggingRule.with(Level.INFORMATION)));
+            final @Nonnull ConfigurationBasedLoggingFilter loggingFilter = ConfigurationBasedLoggingFilter.with(Files.relativeToConfigurationDirectory("configs/logging.conf"), LoggingRule.with(Level.INFORMATION));
+            try {
+                loggingFilter.watch(500);
+            } catch (@Nonnull IOException exception) {
+                Log.warning("Could not watch the logging configuration file for changes.", exception);
+            }
+            LoggingFilter.filter.set(loggingFilter);
             Log.verbose("Replaced the default level-based logging filter with a configuration-based logging filter.");
         } else {
             Log.verbose("Did not replace the non-default logging filter with a configuration-based logging filter.");
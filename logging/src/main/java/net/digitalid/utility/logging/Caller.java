@@ -15,7 +15,14 @@
  */
 package net.digitalid.utility.logging;
 
+import java.lang.invoke.CallSite;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import net.digitalid.utility.annotations.method.Pure;
 import net.digitalid.utility.configuration.Configuration;
@@ -23,6 +30,11 @@ import net.digitalid.utility.validation.annotations.type.Utility;
 
 /**
  * This class determines the caller of a method.
+ * On Java 9 and later, the caller is determined with a stack walker, which walks only to the requested frame.
+ * Since this library is also built for Java 7, the stack walker and the function and stream types that it requires are only accessed through method handles,
+ * which are resolved once so that the JIT compiler can inline them like direct calls.
+ * On Java 8, the requested frame is read from a throwable without materializing the whole stack trace.
+ * Otherwise, the caller is looked up in the stack trace of the current thread.
  */
 @Utility
 public class Caller {
@@ -34,14 +46,159 @@ public class Caller {
      */
     public static final @Nonnull Configuration<Integer> index = Configuration.with(5);
     
+    /* -------------------------------------------------- Stack Walker -------------------------------------------------- */
+    
+    /**
+     * Stores the handle which walks the stack of the current thread with the given function as {@code (Object)Object} or null if the stack walker is not available.
+     */
+    private static final @Nullable MethodHandle walk;
+    
+    /**
+     * Stores the handle which converts a stack frame to a stack trace element as {@code (Object)StackTraceElement} or null if the stack walker is not available.
+     */
+    private static final @Nullable MethodHandle toStackTraceElement;
+    
+    /**
+     * Stores the handle which skips the given number of elements of a stream as {@code (Object, long)Object} or null if the stack walker is not available.
+     */
+    private static final @Nullable MethodHandle skip;
+    
+    /**
+     * Stores the handle which returns the first element of a stream as an optional as {@code (Object)Object} or null if the stack walker is not available.
+     */
+    private static final @Nullable MethodHandle findFirst;
+    
+    /**
+     * Stores the handle which unwraps an optional with the given default value as {@code (Object, Object)Object} or null if the stack walker is not available.
+     */
+    private static final @Nullable MethodHandle orElse;
+    
+    /**
+     * Stores the handle which creates the function that selects the frame at the given depth as {@code (long)Object} or null if the stack walker is not available.
+     */
+    private static final @Nullable MethodHandle frameSelectorFactory;
+    
+    static {
+        @Nullable MethodHandle walkHandle = null;
+        @Nullable MethodHandle conversionHandle = null;
+        @Nullable MethodHandle skipHandle = null;
+        @Nullable MethodHandle findFirstHandle = null;
+        @Nullable MethodHandle orElseHandle = null;
+        @Nullable MethodHandle factoryHandle = null;
+        try {
+            final @Nonnull MethodHandles.Lookup lookup = MethodHandles.lookup();
+            final @Nonnull Class<?> stackWalkerClass = Class.forName("java.lang.StackWalker");
+            final @Nonnull Class<?> functionClass = Class.forName("java.util.function.Function");
+            final @Nonnull Class<?> streamClass = Class.forName("java.util.stream.Stream");
+            final @Nonnull Class<?> optionalClass = Class.forName("java.util.Optional");
+            final @Nonnull Object stackWalker = lookup.findStatic(stackWalkerClass, "getInstance", MethodType.methodType(stackWalkerClass)).invoke();
+            walkHandle = lookup.findVirtual(stackWalkerClass, "walk", MethodType.methodType(Object.class, functionClass)).bindTo(stackWalker).asType(MethodType.methodType(Object.class, Object.class));
+            conversionHandle = lookup.findVirtual(Class.forName("java.lang.StackWalker$StackFrame"), "toStackTraceElement", MethodType.methodType(StackTraceElement.class)).asType(MethodType.methodType(StackTraceElement.class, Object.class));
+            skipHandle = lookup.findVirtual(streamClass, "skip", MethodType.methodType(streamClass, long.class)).asType(MethodType.methodType(Object.class, Object.class, long.class));
+            findFirstHandle = lookup.findVirtual(streamClass, "findFirst", MethodType.methodType(optionalClass)).asType(MethodType.methodType(Object.class, Object.class));
+            orElseHandle = lookup.findVirtual(optionalClass, "orElse", MethodType.methodType(Object.class, Object.class)).asType(MethodType.methodType(Object.class, Object.class, Object.class));
+            // The lambda metafactory generates a class that implements the function interface and calls selectFrame with the captured depth.
+            final @Nonnull MethodType applyType = MethodType.methodType(Object.class, Object.class);
+            final @Nonnull MethodHandle metafactory = lookup.findStatic(Class.forName("java.lang.invoke.LambdaMetafactory"), "metafactory", MethodType.methodType(CallSite.class, MethodHandles.Lookup.class, String.class, MethodType.class, MethodType.class, MethodHandle.class, MethodType.class));
+            final @Nonnull MethodHandle implementation = lookup.findStatic(Caller.class, "selectFrame", MethodType.methodType(Object.class, long.class, Object.class));
+            final @Nonnull CallSite callSite = (CallSite) metafactory.invoke(lookup, "apply", MethodType.methodType(functionClass, long.class), applyType, implementation, applyType);
+            factoryHandle = callSite.getTarget().asType(MethodType.methodType(Object.class, long.class));
+        } catch (@Nonnull Throwable throwable) {
+            walkHandle = null;
+        }
+        walk = walkHandle;
+        toStackTraceElement = conversionHandle;
+        skip = skipHandle;
+        findFirst = findFirstHandle;
+        orElse = orElseHandle;
+        frameSelectorFactory = walkHandle != null ? factoryHandle : null;
+    }
+    
+    /**
+     * Returns the frame at the given depth of the given stream of stack frames or null if the stream is shorter.
+     * This method implements the functions which are passed to the walk method of the stack walker.
+     * 
+     * @require skip != null && findFirst != null && orElse != null : "The stack walker is available.";
+     */
+    @Pure
+    private static @Nullable Object selectFrame(long depth, @Nonnull Object frames) throws Throwable {
+        final @Nonnull Object remainingFrames = (Object) skip.invokeExact(frames, depth);
+        final @Nonnull Object firstFrame = (Object) findFirst.invokeExact(remainingFrames);
+        return (Object) orElse.invokeExact(firstFrame, (Object) null);
+    }
+    
+    /**
+     * Stores the functions that select the frame at the depth of their index, which are created when they are needed for the first time.
+     * Since the functions are stateless, it does not matter if two threads create a function for the same depth concurrently.
+     */
+    private static final @Nonnull AtomicReferenceArray<Object> frameSelectors = new AtomicReferenceArray<>(32);
+    
+    /**
+     * Returns the function which selects the frame at the given depth from the stream of stack frames.
+     * 
+     * @require frameSelectorFactory != null : "The stack walker is available.";
+     */
+    @Pure
+    private static @Nonnull Object getFrameSelector(int depth) throws Throwable {
+        @Nullable Object frameSelector = depth < frameSelectors.length() ? frameSelectors.get(depth) : null;
+        if (frameSelector == null) {
+            frameSelector = (Object) frameSelectorFactory.invokeExact((long) depth);
+            if (depth < frameSelectors.length()) { frameSelectors.set(depth, frameSelector); }
+        }
+        return frameSelector;
+    }
+    
+    /* -------------------------------------------------- Java Lang Access -------------------------------------------------- */
+    
+    /**
+     * Stores the handle which returns a single element of the stack trace of a throwable as {@code (Throwable, int)StackTraceElement} on Java 8 or null if it is not available.
+     */
+    private static final @Nullable MethodHandle getStackTraceElement;
+    
+    static {
+        @Nullable MethodHandle elementHandle = null;
+        if (walk == null) {
+            try {
+                final @Nonnull MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+                final @Nonnull Class<?> javaLangAccessClass = Class.forName("sun.misc.JavaLangAccess");
+                final @Nonnull Object javaLangAccess = lookup.findStatic(Class.forName("sun.misc.SharedSecrets"), "getJavaLangAccess", MethodType.methodType(javaLangAccessClass)).invoke();
+                elementHandle = lookup.findVirtual(javaLangAccessClass, "getStackTraceElement", MethodType.methodType(StackTraceElement.class, Throwable.class, int.class)).bindTo(javaLangAccess);
+            } catch (@Nonnull Throwable throwable) {
+                elementHandle = null;
+            }
+        }
+        getStackTraceElement = elementHandle;
+    }
+    
     /* -------------------------------------------------- Retrieval -------------------------------------------------- */
     
+    /**
+     * Returns the element at the given depth above this method or null if it could not be determined efficiently.
+     * On Java 8, the throwable still records the backtrace of the whole stack but only the requested element is created from it.
+     */
+    @Pure
+    private static @Nullable StackTraceElement getElement(int depth) {
+        try {
+            if (walk != null && depth >= 0) {
+                final @Nullable Object frame = (Object) walk.invokeExact(getFrameSelector(depth + 1));
+                return frame != null ? (StackTraceElement) toStackTraceElement.invokeExact(frame) : null;
+            } else if (getStackTraceElement != null) {
+                return (StackTraceElement) getStackTraceElement.invokeExact(new Throwable(), depth + 1);
+            }
+        } catch (@Nonnull Error error) {
+            throw error;
+        } catch (@Nonnull Throwable throwable) {}
+        return null;
+    }
+    
     /**
      * Returns the entry at the given index in the stack trace.
      */
     @Pure
     public static @Nonnull String get(int index) {
-        final @Nonnull StackTraceElement element = Thread.currentThread().getStackTrace()[index];
+        // The stack trace of the current thread starts with Thread.getStackTrace(), which is not on the stack when the element is retrieved efficiently.
+        @Nullable StackTraceElement element = getElement(index - 1);
+        if (element == null) { element = Thread.currentThread().getStackTrace()[index]; }
         return element.getClassName() + "." + element.getMethodName() + ":" + element.getLineNumber();
     }
     
@@ -27,6 +27,10 @@ import net.digitalid.utility.validation.annotations.type.Utility;
 
 /**
  * This class makes it easier to {@link Logger#log(net.digitalid.utility.logging.Level, java.lang.CharSequence, java.lang.Throwable, java.lang.Object...) log} messages.
+ * The methods with up to two arguments avoid the allocation of an array for the arguments.
+ * Since the methods with a throwable and with a single argument both accept null, a null throwable or argument has to be cast to its type.
+ * Apart from determining the caller at runtime, these methods allocate no objects if the configured filter does not depend on the message
+ * and the configured logger writes the message without converting it to a string.
  */
 @Utility
 public abstract class Log {
@@ -51,6 +55,58 @@ public abstract class Log {
         Logger.log(Level.FATAL, message, null, arguments);
     }
     
+    /**
+     * Logs the given message and throwable as a fatal error that prevents the thread or process from continuing.
+     */
+    @Impure
+    public static void fatal(@Nonnull CharSequence message, @Nullable Throwable throwable) {
+        Logger.log(Level.FATAL, message, throwable);
+    }
+    
+    /**
+     * Logs the given message as a fatal error that prevents the thread or process from continuing.
+     */
+    @Impure
+    public static void fatal(@Nonnull CharSequence message) {
+        Logger.log(Level.FATAL, message, null);
+    }
+    
+    /**
+     * Logs the given message and throwable as a fatal error that prevents the thread or process from continuing.
+     * The dollar sign in the message is replaced with the given argument.
+     */
+    @Impure
+    public static void fatal(@Nonnull CharSequence message, @Nullable Throwable throwable, @NonCaptured @Unmodified @Nullable Object argument) {
+        Logger.log(Level.FATAL, message, throwable, argument);
+    }
+    
+    /**
+     * Logs the given message as a fatal error that prevents the thread or process from continuing.
+     * The dollar sign in the message is replaced with the given argument.
+     */
+    @Impure
+    public static void fatal(@Nonnull CharSequence message, @NonCaptured @Unmodified @Nullable Object argument) {
+        Logger.log(Level.FATAL, message, null, argument);
+    }
+    
+    /**
+     * Logs the given message and throwable as a fatal error that prevents the thread or process from continuing.
+     * Each dollar sign in the message is replaced with the corresponding argument.
+     */
+    @Impure
+    public static void fatal(@Nonnull CharSequence message, @Nullable Throwable throwable, @NonCaptured @Unmodified @Nullable Object argument1, @NonCaptured @Unmodified @Nullable Object argument2) {
+        Logger.log(Level.FATAL, message, throwable, argument1, argument2);
+    }
+    
+    /**
+     * Logs the given message as a fatal error that prevents the thread or process from continuing.
+     * Each dollar sign in the message is replaced with the corresponding argument.
+     */
+    @Impure
+    public static void fatal(@Nonnull CharSequence message, @NonCaptured @Unmodified @Nullable Object argument1, @NonCaptured @Unmodified @Nullable Object argument2) {
+        Logger.log(Level.FATAL, message, null, argument1, argument2);
+    }
+    
     /* -------------------------------------------------- Error -------------------------------------------------- */
     
     /**
@@ -71,6 +127,58 @@ public abstract class Log {
         Logger.log(Level.ERROR, message, null, arguments);
     }
     
+    /**
+     * Logs the given message and throwable as an error from which the application can possibly recover.
+     */
+    @Impure
+    public static void error(@Nonnull CharSequence message, @Nullable Throwable throwable) {
+        Logger.log(Level.ERROR, message, throwable);
+    }
+    
+    /**
+     * Logs the given message as an error from which the application can possibly recover.
+     */
+    @Impure
+    public static void error(@Nonnull CharSequence message) {
+        Logger.log(Level.ERROR, message, null);
+    }
+    
+    /**
+     * Logs the given message and throwable as an error from which the application can possibly recover.
+     * The dollar sign in the message is replaced with the given argument.
+     */
+    @Impure
+    public static void error(@Nonnull CharSequence message, @Nullable Throwable throwable, @NonCaptured @Unmodified @Nullable Object argument) {
+        Logger.log(Level.ERROR, message, throwable, argument);
+    }
+    
+    /**
+     * Logs the given message as an error from which the application can possibly recover.
+     * The dollar sign in the message is replaced with the given argument.
+     */
+    @Impure
+    public static void error(@Nonnull CharSequence message, @NonCaptured @Unmodified @Nullable Object argument) {
+        Logger.log(Level.ERROR, message, null, argument);
+    }
+    
+    /**
+     * Logs the given message and throwable as an error from which the application can possibly recover.
+     * Each dollar sign in the message is replaced with the corresponding argument.
+     */
+    @Impure
+    public static void error(@Nonnull CharSequence message, @Nullable Throwable throwable, @NonCaptured @Unmodified @Nullable Object argument1, @NonCaptured @Unmodified @Nullable Object argument2) {
+        Logger.log(Level.ERROR, message, throwable, argument1, argument2);
+    }
+    
+    /**
+     * Logs the given message as an error from which the application can possibly recover.
+     * Each dollar sign in the message is replaced with the corresponding argument.
+     */
+    @Impure
+    public static void error(@Nonnull CharSequence message, @NonCaptured @Unmodified @Nullable Object argument1, @NonCaptured @Unmodified @Nullable Object argument2) {
+        Logger.log(Level.ERROR, message, null, argument1, argument2);
+    }
+    
     /* -------------------------------------------------- Warning -------------------------------------------------- */
     
     /**
@@ -91,6 +199,58 @@ public abstract class Log {
         Logger.log(Level.WARNING, message, null, arguments);
     }
     
+    /**
+     * Logs the given message and throwable as a warning that indicate potential problems in the program.
+     */
+    @Impure
+    public static void warning(@Nonnull CharSequence message, @Nullable Throwable throwable) {
+        Logger.log(Level.WARNING, message, throwable);
+    }
+    
+    /**
+     * Logs the given message as a warning that indicate potential problems in the program.
+     */
+    @Impure
+    public static void warning(@Nonnull CharSequence message) {
+        Logger.log(Level.WARNING, message, null);
+    }
+    
+    /**
+     * Logs the given message and throwable as a warning that indicate potential problems in the program.
+     * The dollar sign in the message is replaced with the given argument.
+     */
+    @Impure
+    public static void warning(@Nonnull CharSequence message, @Nullable Throwable throwable, @NonCaptured @Unmodified @Nullable Object argument) {
+        Logger.log(Level.WARNING, message, throwable, argument);
+    }
+    
+    /**
+     * Logs the given message as a warning that indicate potential problems in the program.
+     * The dollar sign in the message is replaced with the given argument.
+     */
+    @Impure
+    public static void warning(@Nonnull CharSequence message, @NonCaptured @Unmodified @Nullable Object argument) {
+        Logger.log(Level.WARNING, message, null, argument);
+    }
+    
+    /**
+     * Logs the given message and throwable as a warning that indicate potential problems in the program.
+     * Each dollar sign in the message is replaced with the corresponding argument.
+     */
+    @Impure
+    public static void warning(@Nonnull CharSequence message, @Nullable Throwable throwable, @NonCaptured @Unmodified @Nullable Object argument1, @NonCaptured @Unmodified @Nullable Object argument2) {
+        Logger.log(Level.WARNING, message, throwable, argument1, argument2);
+    }
+    
+    /**
+     * Logs the given message as a warning that indicate potential problems in the program.
+     * Each dollar sign in the message is replaced with the corresponding argument.
+     */
+    @Impure
+    public static void warning(@Nonnull CharSequence message, @NonCaptured @Unmodified @Nullable Object argument1, @NonCaptured @Unmodified @Nullable Object argument2) {
+        Logger.log(Level.WARNING, message, null, argument1, argument2);
+    }
+    
     /* -------------------------------------------------- Information -------------------------------------------------- */
     
     /**
@@ -111,6 +271,58 @@ public abstract class Log {
         Logger.log(Level.INFORMATION, message, null, arguments);
     }
     
+    /**
+     * Logs the given message and throwable to inform about important runtime events.
+     */
+    @Impure
+    public static void information(@Nonnull CharSequence message, @Nullable Throwable throwable) {
+        Logger.log(Level.INFORMATION, message, throwable);
+    }
+    
+    /**
+     * Logs the given message to inform about important runtime events.
+     */
+    @Impure
+    public static void information(@Nonnull CharSequence message) {
+        Logger.log(Level.INFORMATION, message, null);
+    }
+    
+    /**
+     * Logs the given message and throwable to inform about important runtime events.
+     * The dollar sign in the message is replaced with the given argument.
+     */
+    @Impure
+    public static void information(@Nonnull CharSequence message, @Nullable Throwable throwable, @NonCaptured @Unmodified @Nullable Object argument) {
+        Logger.log(Level.INFORMATION, message, throwable, argument);
+    }
+    
+    /**
+     * Logs the given message to inform about important runtime events.
+     * The dollar sign in the message is replaced with the given argument.
+     */
+    @Impure
+    public static void information(@Nonnull CharSequence message, @NonCaptured @Unmodified @Nullable Object argument) {
+        Logger.log(Level.INFORMATION, message, null, argument);
+    }
+    
+    /**
+     * Logs the given message and throwable to inform about important runtime events.
+     * Each dollar sign in the message is replaced with the corresponding argument.
+     */
+    @Impure
+    public static void information(@Nonnull CharSequence message, @Nullable Throwable throwable, @NonCaptured @Unmodified @Nullable Object argument1, @NonCaptured @Unmodified @Nullable Object argument2) {
+        Logger.log(Level.INFORMATION, message, throwable, argument1, argument2);
+    }
+    
+    /**
+     * Logs the given message to inform about important runtime events.
+     * Each dollar sign in the message is replaced with the corresponding argument.
+     */
+    @Impure
+    public static void information(@Nonnull CharSequence message, @NonCaptured @Unmodified @Nullable Object argument1, @NonCaptured @Unmodified @Nullable Object argument2) {
+        Logger.log(Level.INFORMATION, message, null, argument1, argument2);
+    }
+    
     /* -------------------------------------------------- Debugging -------------------------------------------------- */
     
     /**
@@ -131,6 +343,58 @@ public abstract class Log {
         Logger.log(Level.DEBUGGING, message, null, arguments);
     }
     
+    /**
+     * Logs the given message and throwable to help developers locate bugs in the code.
+     */
+    @Impure
+    public static void debugging(@Nonnull CharSequence message, @Nullable Throwable throwable) {
+        Logger.log(Level.DEBUGGING, message, throwable);
+    }
+    
+    /**
+     * Logs the given message to help developers locate bugs in the code.
+     */
+    @Impure
+    public static void debugging(@Nonnull CharSequence message) {
+        Logger.log(Level.DEBUGGING, message, null);
+    }
+    
+    /**
+     * Logs the given message and throwable to help developers locate bugs in the code.
+     * The dollar sign in the message is replaced with the given argument.
+     */
+    @Impure
+    public static void debugging(@Nonnull CharSequence message, @Nullable Throwable throwable, @NonCaptured @Unmodified @Nullable Object argument) {
+        Logger.log(Level.DEBUGGING, message, throwable, argument);
+    }
+    
+    /**
+     * Logs the given message to help developers locate bugs in the code.
+     * The dollar sign in the message is replaced with the given argument.
+     */
+    @Impure
+    public static void debugging(@Nonnull CharSequence message, @NonCaptured @Unmodified @Nullable Object argument) {
+        Logger.log(Level.DEBUGGING, message, null, argument);
+    }
+    
+    /**
+     * Logs the given message and throwable to help developers locate bugs in the code.
+     * Each dollar sign in the message is replaced with the corresponding argument.
+     */
+    @Impure
+    public static void debugging(@Nonnull CharSequence message, @Nullable Throwable throwable, @NonCaptured @Unmodified @Nullable Object argument1, @NonCaptured @Unmodified @Nullable Object argument2) {
+        Logger.log(Level.DEBUGGING, message, throwable, argument1, argument2);
+    }
+    
+    /**
+     * Logs the given message to help developers locate bugs in the code.
+     * Each dollar sign in the message is replaced with the corresponding argument.
+     */
+    @Impure
+    public static void debugging(@Nonnull CharSequence message, @NonCaptured @Unmodified @Nullable Object argument1, @NonCaptured @Unmodified @Nullable Object argument2) {
+        Logger.log(Level.DEBUGGING, message, null, argument1, argument2);
+    }
+    
     /* -------------------------------------------------- Verbose -------------------------------------------------- */
     
     /**
@@ -151,4 +415,56 @@ public abstract class Log {
         Logger.log(Level.VERBOSE, message, null, arguments);
     }
     
+    /**
+     * Logs the given message and throwable to make it easier to trace the execution of the program.
+     */
+    @Impure
+    public static void verbose(@Nonnull CharSequence message, @Nullable Throwable throwable) {
+        Logger.log(Level.VERBOSE, message, throwable);
+    }
+    
+    /**
+     * Logs the given message to make it easier to trace the execution of the program.
+     */
+    @Impure
+    public static void verbose(@Nonnull CharSequence message) {
+        Logger.log(Level.VERBOSE, message, null);
+    }
+    
+    /**
+     * Logs the given message and throwable to make it easier to trace the execution of the program.
+     * The dollar sign in the message is replaced with the given argument.
+     */
+    @Impure
+    public static void verbose(@Nonnull CharSequence message, @Nullable Throwable throwable, @NonCaptured @Unmodified @Nullable Object argument) {
+        Logger.log(Level.VERBOSE, message, throwable, argument);
+    }
+    
+    /**
+     * Logs the given message to make it easier to trace the execution of the program.
+     * The dollar sign in the message is replaced with the given argument.
+     */
+    @Impure
+    public static void verbose(@Nonnull CharSequence message, @NonCaptured @Unmodified @Nullable Object argument) {
+        Logger.log(Level.VERBOSE, message, null, argument);
+    }
+    
+    /**
+     * Logs the given message and throwable to make it easier to trace the execution of the program.
+     * Each dollar sign in the message is replaced with the corresponding argument.
+     */
+    @Impure
+    public static void verbose(@Nonnull CharSequence message, @Nullable Throwable throwable, @NonCaptured @Unmodified @Nullable Object argument1, @NonCaptured @Unmodified @Nullable Object argument2) {
+        Logger.log(Level.VERBOSE, message, throwable, argument1, argument2);
+    }
+    
+    /**
+     * Logs the given message to make it easier to trace the execution of the program.
+     * Each dollar sign in the message is replaced with the corresponding argument.
+     */
+    @Impure
+    public static void verbose(@Nonnull CharSequence message, @NonCaptured @Unmodified @Nullable Object argument1, @NonCaptured @Unmodified @Nullable Object argument2) {
+        Logger.log(Level.VERBOSE, message, null, argument1, argument2);
+    }
+    
 }
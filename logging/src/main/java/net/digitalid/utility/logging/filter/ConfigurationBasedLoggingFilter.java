@@ -16,13 +16,18 @@
 package net.digitalid.utility.logging.filter;
 
 import java.io.File;
+import java.io.IOException;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import net.digitalid.utility.annotations.method.Impure;
 import net.digitalid.utility.annotations.method.Pure;
+import net.digitalid.utility.file.FileWatcher;
 import net.digitalid.utility.file.Files;
 import net.digitalid.utility.functional.iterables.FiniteIterable;
+import net.digitalid.utility.logging.Log;
+import net.digitalid.utility.validation.annotations.math.NonNegative;
 import net.digitalid.utility.validation.annotations.elements.NonNullableElements;
 import net.digitalid.utility.validation.annotations.type.Mutable;
 
@@ -56,6 +61,45 @@ public class ConfigurationBasedLoggingFilter extends RuleBasedLoggingFilter {
         setRules(Files.readNonCommentNonEmptyTrimmedLines(file).map(LoggingRule::decode).evaluate());
     }
     
+    /* -------------------------------------------------- Watching -------------------------------------------------- */
+    
+    /**
+     * Stores the watch of the configuration file or null if the file is not watched.
+     */
+    private @Nullable FileWatcher.Watch watch;
+    
+    /**
+     * Watches the configuration file and reloads the logging rules once the file has not changed for the given number of milliseconds.
+     * The rules are parsed on the watcher thread and replace the current rules atomically, while invalid rules are ignored with a warning.
+     * 
+     * @throws IOException if the directory of the configuration file cannot be watched.
+     */
+    @Impure
+    public synchronized void watch(@NonNegative long delay) throws IOException {
+        if (watch == null) {
+            this.watch = FileWatcher.watch(file, delay, () -> {
+                if (!file.exists()) { return; }
+                try {
+                    reload();
+                    Log.information("Reloaded the logging rules from $.", file.getPath());
+                } catch (@Nonnull RuntimeException exception) {
+                    Log.warning("Could not reload the logging rules from $.", exception, file.getPath());
+                }
+            });
+        }
+    }
+    
+    /**
+     * Stops watching the configuration file.
+     */
+    @Impure
+    public synchronized void stopWatching() {
+        if (watch != null) {
+            watch.cancel();
+            this.watch = null;
+        }
+    }
+    
     /* -------------------------------------------------- Constructors -------------------------------------------------- */
     
     /**
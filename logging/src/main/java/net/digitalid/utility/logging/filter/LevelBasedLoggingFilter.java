@@ -68,4 +68,10 @@ public class LevelBasedLoggingFilter extends LoggingFilter {
         return level.getValue() >= threshold.getValue();
     }
     
+    @Pure
+    @Override
+    public boolean dependsOnMessage() {
+        return false;
+    }
+    
 }
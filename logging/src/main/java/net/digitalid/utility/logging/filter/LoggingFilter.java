@@ -53,4 +53,13 @@ public abstract class LoggingFilter {
     @Pure
     public abstract boolean isLogged(@Nonnull Level level, @Nonnull String caller, @Nonnull String thread, @Nonnull String message, @Nullable Throwable throwable);
     
+    /**
+     * Returns whether the result of {@link #isLogged(net.digitalid.utility.logging.Level, java.lang.String, java.lang.String, java.lang.String, java.lang.Throwable)} depends on the message.
+     * If not, the message is only formatted after this filter accepted it and the filter is given an empty message instead.
+     */
+    @Pure
+    public boolean dependsOnMessage() {
+        return true;
+    }
+    
 }
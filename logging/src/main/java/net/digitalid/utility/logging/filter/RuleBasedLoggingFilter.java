@@ -35,7 +35,10 @@ public class RuleBasedLoggingFilter extends LoggingFilter {
     
     /* -------------------------------------------------- Rules -------------------------------------------------- */
     
-    private @Nonnull FiniteIterable<@Nonnull LoggingRule> rules;
+    /**
+     * Stores the rules that are used to filter the messages, which are replaced atomically as a whole.
+     */
+    private volatile @Nonnull FiniteIterable<@Nonnull LoggingRule> rules;
     
     /**
      * Returns the rules that are used to filter the messages.
@@ -47,6 +50,7 @@ public class RuleBasedLoggingFilter extends LoggingFilter {
     
     /**
      * Sets the rules that are used to filter the messages.
+     * The given rules have to be evaluated already as they are read concurrently by the logging threads.
      */
     @Impure
     protected void setRules(@Nonnull FiniteIterable<@Nonnull LoggingRule> rules) {
@@ -81,4 +85,10 @@ public class RuleBasedLoggingFilter extends LoggingFilter {
         return rules.matchAny(rule -> rule.accepts(level, caller, thread, message));
     }
     
+    @Pure
+    @Override
+    public boolean dependsOnMessage() {
+        return rules.matchAny(rule -> rule.getMessageRegex() != null);
+    }
+    
 }
@@ -0,0 +1,482 @@
+/*
+ * Copyright (C) 2017 Synacts GmbH, Switzerland (info@synacts.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.digitalid.utility.logging.logger;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.digitalid.utility.annotations.method.Impure;
+import net.digitalid.utility.annotations.method.Pure;
+import net.digitalid.utility.annotations.ownership.Capturable;
+import net.digitalid.utility.annotations.ownership.Captured;
+import net.digitalid.utility.annotations.type.ThreadSafe;
+import net.digitalid.utility.configuration.ShutdownSequence;
+import net.digitalid.utility.contracts.Require;
+import net.digitalid.utility.logging.Level;
+import net.digitalid.utility.validation.annotations.math.NonNegative;
+import net.digitalid.utility.validation.annotations.math.Positive;
+import net.digitalid.utility.validation.annotations.type.Immutable;
+import net.digitalid.utility.validation.annotations.type.Mutable;
+
+/**
+ * This class implements a logger that hands the messages over to a single writer thread, which passes them on to another logger.
+ * The messages are already filtered on the logging thread and stored in a bounded ring buffer without locks,
+ * so that logging threads no longer serialize on the print stream of the other logger.
+ * The policy for a full ring buffer is determined by the {@link OverflowPolicy overflow policy}.
+ * The remaining messages are written when the logger is {@link #close() closed} or in the {@link ShutdownSequence.Phase#LOGGERS loggers phase} of the {@link ShutdownSequence},
+ * after which messages are passed on to the other logger directly.
+ * Please note that the time of a message is determined by the other logger when the message is written.
+ */
+@Mutable
+@ThreadSafe
+public class AsyncLogger extends Logger implements AutoCloseable {
+    
+    /* -------------------------------------------------- Overflow Policy -------------------------------------------------- */
+    
+    /**
+     * This class enumerates the policies for messages that are logged while the ring buffer is full.
+     */
+    @Immutable
+    public static enum OverflowPolicy {
+        
+        /**
+         * The logging thread waits until the writer thread has made space for the message.
+         */
+        BLOCK,
+        
+        /**
+         * Messages below the retained level are dropped, whereas the logging thread waits for the other messages.
+         */
+        DROP,
+        
+        /**
+         * Only every n-th message below the retained level waits for space and the others are dropped, whereas the logging thread waits for the other messages.
+         */
+        SAMPLE;
+        
+    }
+    
+    /* -------------------------------------------------- Event -------------------------------------------------- */
+    
+    /**
+     * An event stores a message in a slot of the ring buffer, which is reused once the message has been written.
+     */
+    @Mutable
+    private static class Event {
+        
+        private @Nullable Level level;
+        
+        private @Nullable String caller;
+        
+        private @Nullable String thread;
+        
+        private @Nullable String message;
+        
+        private @Nullable Throwable throwable;
+        
+    }
+    
+    /* -------------------------------------------------- Fields -------------------------------------------------- */
+    
+    /**
+     * Stores the logger to which the messages are passed on.
+     */
+    private final @Nonnull Logger logger;
+    
+    private final @Nonnull OverflowPolicy policy;
+    
+    /**
+     * Stores the level from which on messages are never dropped.
+     */
+    private final @Nonnull Level retainedLevel;
+    
+    /**
+     * Stores how many messages below the retained level are dropped for each message that is kept with the {@link OverflowPolicy#SAMPLE sample policy}.
+     */
+    private final int sampleRate;
+    
+    /**
+     * Stores the slots of the ring buffer.
+     */
+    private final @Nonnull Event[] events;
+    
+    /**
+     * Stores the sequence number of each slot, which indicates whether the slot is free for the given position or contains the message at the given position.
+     */
+    private final @Nonnull AtomicLongArray sequences;
+    
+    /**
+     * Stores the mask with which a position is mapped to its slot.
+     */
+    private final int mask;
+    
+    /**
+     * Stores the bit of the tail which is set once this logger has been shut down so that no further messages can be enqueued.
+     */
+    private static final long CLOSED = Long.MIN_VALUE;
+    
+    /**
+     * Stores the position at which the next message is enqueued, where the {@link #CLOSED closed} bit is set once this logger has been shut down.
+     */
+    private final @Nonnull AtomicLong tail = new AtomicLong();
+    
+    /**
+     * Stores the position of the next message that is written, which is only changed by the writer thread.
+     */
+    private volatile long head = 0;
+    
+    /**
+     * Stores the number of messages that overflowed the ring buffer with the sample policy.
+     */
+    private final @Nonnull AtomicLong overflows = new AtomicLong();
+    
+    /**
+     * Stores the number of messages that were dropped and not yet reported.
+     */
+    private final @Nonnull AtomicLong dropped = new AtomicLong();
+    
+    /**
+     * Stores whether the writer thread waits for new messages.
+     */
+    private volatile boolean waiting = false;
+    
+    /**
+     * Stores the thread that writes the messages.
+     */
+    private final @Nonnull Thread writer;
+    
+    /* -------------------------------------------------- Constructors -------------------------------------------------- */
+    
+    /**
+     * Creates an asynchronous logger that passes the messages on to the given logger.
+     * The capacity is rounded up to the next power of two.
+     */
+    protected AsyncLogger(@Captured @Nonnull Logger logger, @Positive int capacity, @Nonnull OverflowPolicy policy, @Nonnull Level retainedLevel, @Positive int sampleRate) {
+        Require.that(logger != null).orThrow("The logger may not be null.");
+        Require.that(capacity > 0 && capacity <= 1 << 30).orThrow("The capacity has to be positive and at most 2^30 but was $.", capacity);
+        Require.that(policy != null).orThrow("The policy may not be null.");
+        Require.that(retainedLevel != null).orThrow("The retained level may not be null.");
+        Require.that(sampleRate > 0).orThrow("The sample rate has to be positive but was $.", sampleRate);
+        
+        this.logger = logger;
+        this.policy = policy;
+        this.retainedLevel = retainedLevel;
+        this.sampleRate = sampleRate;
+        
+        final int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.events = new Event[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            events[i] = new Event();
+            sequences.set(i, i);
+        }
+        this.mask = size - 1;
+        
+        this.writer = new Thread(this::run, "AsyncLogger");
+        writer.setDaemon(true);
+        writer.start();
+        register(this);
+    }
+    
+    /**
+     * Returns an asynchronous logger that passes the messages on to the given logger with a ring buffer of the given capacity.
+     * If the ring buffer is full, messages below the retained level are dropped with the {@link OverflowPolicy#DROP drop policy}
+     * or all but every n-th of them is dropped with the {@link OverflowPolicy#SAMPLE sample policy}, where n is the sample rate.
+     */
+    @Pure
+    public static @Capturable @Nonnull AsyncLogger with(@Captured @Nonnull Logger logger, @Positive int capacity, @Nonnull OverflowPolicy policy, @Nonnull Level retainedLevel, @Positive int sampleRate) {
+        return new AsyncLogger(logger, capacity, policy, retainedLevel, sampleRate);
+    }
+    
+    /**
+     * Returns an asynchronous logger that passes the messages on to the given logger with a ring buffer of the given capacity.
+     * With the {@link OverflowPolicy#DROP drop} or {@link OverflowPolicy#SAMPLE sample policy}, warnings and above are never dropped and every hundredth message below is kept.
+     */
+    @Pure
+    public static @Capturable @Nonnull AsyncLogger with(@Captured @Nonnull Logger logger, @Positive int capacity, @Nonnull OverflowPolicy policy) {
+        return new AsyncLogger(logger, capacity, policy, Level.WARNING, 100);
+    }
+    
+    /**
+     * Returns an asynchronous logger that passes the messages on to the given logger with a ring buffer of 8192 messages, which blocks when it is full.
+     */
+    @Pure
+    public static @Capturable @Nonnull AsyncLogger with(@Captured @Nonnull Logger logger) {
+        return new AsyncLogger(logger, 8_192, OverflowPolicy.BLOCK, Level.WARNING, 100);
+    }
+    
+    /* -------------------------------------------------- Ring Buffer -------------------------------------------------- */
+    
+    /**
+     * Returns whether this logger has been shut down so that no further messages can be enqueued.
+     */
+    @Pure
+    public boolean isShutDown() {
+        return tail.get() < 0;
+    }
+    
+    /**
+     * Enqueues the given message if the ring buffer is not full and this logger has not been shut down.
+     * 
+     * @return whether the message was enqueued.
+     */
+    @Impure
+    private boolean offer(@Nonnull Level level, @Nonnull String caller, @Nonnull String thread, @Nonnull String message, @Nullable Throwable throwable) {
+        long position = tail.get();
+        while (true) {
+            if (position < 0) { return false; }
+            final int index = (int) position & mask;
+            final long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    final @Nonnull Event event = events[index];
+                    event.level = level;
+                    event.caller = caller;
+                    event.thread = thread;
+                    event.message = message;
+                    event.throwable = throwable;
+                    // A volatile write is required so that it cannot be reordered with the subsequent read of the waiting flag.
+                    sequences.set(index, position + 1);
+                    if (waiting) { LockSupport.unpark(writer); }
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+    
+    /**
+     * Writes the next message if one is available.
+     * This method may only be called by the writer thread or after the writer thread has terminated.
+     * 
+     * @return whether a message was written.
+     */
+    @Impure
+    private boolean poll() {
+        final long position = head;
+        final int index = (int) position & mask;
+        if (sequences.get(index) != position + 1) { return false; }
+        
+        final @Nonnull Event event = events[index];
+        final @Nullable Level level = event.level;
+        final @Nullable String caller = event.caller;
+        final @Nullable String thread = event.thread;
+        final @Nullable String message = event.message;
+        final @Nullable Throwable throwable = event.throwable;
+        event.caller = null;
+        event.thread = null;
+        event.message = null;
+        event.throwable = null;
+        sequences.lazySet(index, position + mask + 1);
+        head = position + 1;
+        
+        if (level != null && caller != null && thread != null && message != null) { write(level, caller, thread, message, throwable); }
+        return true;
+    }
+    
+    /* -------------------------------------------------- Writing -------------------------------------------------- */
+    
+    /**
+     * Passes the given message on to the other logger and passes any exception to the uncaught exception handler of the current thread.
+     */
+    @Impure
+    private void write(@Nonnull Level level, @Nonnull String caller, @Nonnull String thread, @Nonnull String message, @Nullable Throwable throwable) {
+        try {
+            logger.log(level, caller, thread, message, throwable);
+        } catch (@Nonnull RuntimeException exception) {
+            final @Nonnull Thread currentThread = Thread.currentThread();
+            currentThread.getUncaughtExceptionHandler().uncaughtException(currentThread, exception);
+        }
+    }
+    
+    /**
+     * Reports the number of dropped messages to the other logger if messages were dropped.
+     */
+    @Impure
+    private void reportDroppedMessages() {
+        final long number = dropped.getAndSet(0);
+        if (number > 0) { write(Level.WARNING, AsyncLogger.class.getName(), Thread.currentThread().getName(), number + " messages were dropped because the ring buffer was full.", null); }
+    }
+    
+    /**
+     * Writes the messages of the ring buffer until this logger is shut down and all enqueued messages have been written.
+     * Since a logging thread publishes its message only after it has claimed its position, the writer thread waits for the messages
+     * of all positions that were claimed before this logger was shut down instead of stopping at the first empty slot.
+     */
+    @Impure
+    private void run() {
+        while (true) {
+            if (!poll()) {
+                final long position = tail.get();
+                if (position < 0) {
+                    if (head == (position & ~CLOSED)) {
+                        reportDroppedMessages();
+                        return;
+                    }
+                    Thread.yield();
+                } else {
+                    reportDroppedMessages();
+                    waiting = true;
+                    if (!poll() && !isShutDown()) { LockSupport.park(this); }
+                    waiting = false;
+                }
+            }
+        }
+    }
+    
+    /* -------------------------------------------------- Logging -------------------------------------------------- */
+    
+    @Impure
+    @Override
+    protected void log(@Nonnull Level level, @Nonnull String caller, @Nonnull String thread, @Nonnull String message, @Nullable Throwable throwable) {
+        if (offer(level, caller, thread, message, throwable)) { return; }
+        if (isShutDown()) { write(level, caller, thread, message, throwable); return; }
+        
+        if (level.getValue() < retainedLevel.getValue()) {
+            if (policy == OverflowPolicy.DROP || policy == OverflowPolicy.SAMPLE && overflows.incrementAndGet() % sampleRate != 0) {
+                dropped.incrementAndGet();
+                return;
+            }
+        }
+        
+        while (!offer(level, caller, thread, message, throwable)) {
+            if (isShutDown() || !writer.isAlive()) { write(level, caller, thread, message, throwable); return; }
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(this, TimeUnit.MICROSECONDS.toNanos(100));
+        }
+    }
+    
+    /* -------------------------------------------------- Flushing -------------------------------------------------- */
+    
+    /**
+     * Waits until all messages that were logged before this method was called have been passed on to the other logger.
+     */
+    @Impure
+    public void flush() {
+        final long position = tail.get() & ~CLOSED;
+        while (head < position && writer.isAlive()) {
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(this, TimeUnit.MICROSECONDS.toNanos(100));
+        }
+    }
+    
+    /**
+     * Shuts down this logger and waits at most the given number of milliseconds until the remaining messages have been written.
+     * Messages that are logged afterwards are passed on to the other logger directly.
+     * 
+     * @return whether all remaining messages have been written.
+     */
+    @Impure
+    public boolean shutdown(@NonNegative long timeout) {
+        while (true) {
+            final long position = tail.get();
+            if (position < 0 || tail.compareAndSet(position, position | CLOSED)) { break; }
+        }
+        LockSupport.unpark(writer);
+        try {
+            writer.join(Math.max(1, timeout));
+        } catch (@Nonnull InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+        return !writer.isAlive();
+    }
+    
+    /**
+     * Shuts down this logger, waits at most five seconds until the remaining messages have been written and removes it from the shutdown sequence.
+     */
+    @Impure
+    @Override
+    public void close() {
+        shutdown(5_000);
+        deregister(this);
+    }
+    
+    /* -------------------------------------------------- Shutdown Sequence -------------------------------------------------- */
+    
+    /**
+     * Stores the asynchronous loggers that have not yet been closed.
+     * This field is guarded by the class object.
+     */
+    private static final @Nonnull Set<@Nonnull AsyncLogger> openLoggers = new LinkedHashSet<>();
+    
+    /**
+     * Stores the task which shuts down all asynchronous loggers that have not been closed, which is shared by all loggers.
+     */
+    private static final @Nonnull Runnable shutdownTask = AsyncLogger::shutdownAll;
+    
+    /**
+     * Adds the given logger to the loggers that are shut down in the shutdown sequence.
+     */
+    @Impure
+    private static synchronized void register(@Nonnull AsyncLogger logger) {
+        openLoggers.add(logger);
+        ShutdownSequence.register(ShutdownSequence.Phase.LOGGERS, shutdownTask);
+    }
+    
+    /**
+     * Removes the given logger from the loggers that are shut down in the shutdown sequence.
+     */
+    @Impure
+    private static synchronized void deregister(@Nonnull AsyncLogger logger) {
+        openLoggers.remove(logger);
+        if (openLoggers.isEmpty()) { ShutdownSequence.deregister(shutdownTask); }
+    }
+    
+    /**
+     * Shuts down all asynchronous loggers that have not been closed and waits for each of them at most five seconds.
+     */
+    @Impure
+    private static void shutdownAll() {
+        final @Nonnull List<@Nonnull AsyncLogger> loggers;
+        synchronized (AsyncLogger.class) {
+            loggers = new ArrayList<>(openLoggers);
+            openLoggers.clear();
+        }
+        for (@Nonnull AsyncLogger logger : loggers) { logger.shutdown(5_000); }
+    }
+    
+    /* -------------------------------------------------- Metrics -------------------------------------------------- */
+    
+    /**
+     * Returns the number of messages that wait to be written.
+     */
+    @Pure
+    public @NonNegative long getQueueDepth() {
+        return Math.max(0, (tail.get() & ~CLOSED) - head);
+    }
+    
+    /**
+     * Returns the capacity of the ring buffer.
+     */
+    @Pure
+    public @Positive int getCapacity() {
+        return events.length;
+    }
+    
+}
@@ -15,22 +15,32 @@
  */
 package net.digitalid.utility.logging.logger;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintStream;
 import java.util.Properties;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import net.digitalid.utility.annotations.method.Impure;
 import net.digitalid.utility.annotations.method.Pure;
 import net.digitalid.utility.annotations.ownership.Capturable;
 import net.digitalid.utility.annotations.ownership.Captured;
+import net.digitalid.utility.annotations.ownership.NonCaptured;
+import net.digitalid.utility.annotations.parameter.Unmodified;
+import net.digitalid.utility.contracts.Require;
 import net.digitalid.utility.validation.annotations.file.existence.ExistentParent;
 import net.digitalid.utility.validation.annotations.file.kind.Normal;
 import net.digitalid.utility.validation.annotations.file.permission.Writable;
+import net.digitalid.utility.validation.annotations.math.NonNegative;
+import net.digitalid.utility.validation.annotations.math.Positive;
 import net.digitalid.utility.validation.annotations.type.Mutable;
 
 /**
@@ -41,6 +51,72 @@ import net.digitalid.utility.validation.annotations.type.Mutable;
 @Mutable
 public class FileLogger extends PrintStreamLogger {
     
+    /* -------------------------------------------------- Buffer Size -------------------------------------------------- */
+    
+    /**
+     * Stores the size of the buffer in bytes into which the messages are written before they are flushed to the file or zero if the messages are not buffered.
+     */
+    private final int bufferSize;
+    
+    /**
+     * Returns the size of the buffer in bytes into which the messages are written before they are flushed to the file or zero if the messages are not buffered.
+     */
+    @Pure
+    public @NonNegative int getBufferSize() {
+        return bufferSize;
+    }
+    
+    /* -------------------------------------------------- File Size -------------------------------------------------- */
+    
+    /**
+     * A counting output stream counts the bytes that are written to the underlying output stream.
+     */
+    @Mutable
+    private static class CountingOutputStream extends FilterOutputStream {
+        
+        /**
+         * Stores the number of bytes that have been written, which is only modified while the print stream is locked.
+         */
+        private volatile long count;
+        
+        private CountingOutputStream(@Captured @Nonnull OutputStream outputStream, @NonNegative long count) {
+            super(outputStream);
+            
+            this.count = count;
+        }
+        
+        @Impure
+        @Override
+        @SuppressWarnings("NonAtomicOperationOnVolatileField")
+        public void write(int b) throws IOException {
+            out.write(b);
+            count += 1;
+        }
+        
+        @Impure
+        @Override
+        @SuppressWarnings("NonAtomicOperationOnVolatileField")
+        public void write(@NonCaptured @Unmodified @Nonnull byte[] bytes, int offset, int length) throws IOException {
+            out.write(bytes, offset, length);
+            count += length;
+        }
+        
+    }
+    
+    /**
+     * Stores the output stream which counts the bytes that are written to the current file or null if no file has been set yet.
+     */
+    private volatile @Nullable CountingOutputStream countingOutputStream;
+    
+    /**
+     * Returns the size of the current file in bytes including the bytes that have been written to the buffer but not yet flushed.
+     */
+    @Pure
+    public @NonNegative long getFileSize() {
+        final @Nullable CountingOutputStream countingOutputStream = this.countingOutputStream;
+        return countingOutputStream == null ? 0 : countingOutputStream.count;
+    }
+    
     /* -------------------------------------------------- Print Stream -------------------------------------------------- */
     
     /**
@@ -51,7 +127,9 @@ public class FileLogger extends PrintStreamLogger {
     @Impure
     protected void setFile(@Captured @Nonnull @Normal @Writable @ExistentParent File file) throws FileNotFoundException {
         final boolean fileDidNotExist = !file.exists();
-        final @Nonnull PrintStream printStream = new PrintStream(new FileOutputStream(file, true));
+        final @Nonnull FileOutputStream fileOutputStream = new FileOutputStream(file, true);
+        final @Nonnull CountingOutputStream countingOutputStream = new CountingOutputStream(bufferSize > 0 ? new BufferedOutputStream(fileOutputStream, bufferSize) : fileOutputStream, file.length());
+        final @Nonnull PrintStream printStream = new PrintStream(countingOutputStream);
         
         if (fileDidNotExist) {
             final @Nonnull Properties properties = System.getProperties();
@@ -63,6 +141,7 @@ public class FileLogger extends PrintStreamLogger {
         }
         
         setPrintStream(printStream);
+        this.countingOutputStream = countingOutputStream;
     }
     
     /* -------------------------------------------------- Constructors -------------------------------------------------- */
@@ -72,12 +151,32 @@ public class FileLogger extends PrintStreamLogger {
      * 
      * @throws FileNotFoundException if the given file cannot be opened or created.
      */
-    protected FileLogger(@Captured @Nonnull @Normal @Writable @ExistentParent File file) throws FileNotFoundException {
-        super(new PrintStream(new ByteArrayOutputStream(0))); // Dummy print stream because setPrintStream(file) cannot be called here.
+    protected FileLogger(@Captured @Nonnull @Normal @Writable @ExistentParent File file, @NonNegative int bufferSize) throws FileNotFoundException {
+        this(bufferSize);
         
         setFile(file);
     }
     
+    /**
+     * Creates a file logger with the given buffer size whose file has to be {@link #setFile(java.io.File) set} by the subclass.
+     */
+    protected FileLogger(@NonNegative int bufferSize) {
+        super(new PrintStream(new ByteArrayOutputStream(0))); // Dummy print stream because setPrintStream(file) cannot be called here.
+        
+        Require.that(bufferSize >= 0).orThrow("The buffer size has to be non-negative but was $.", bufferSize);
+        
+        this.bufferSize = bufferSize;
+    }
+    
+    /**
+     * Creates a file logger that logs the messages to the given file.
+     * 
+     * @throws FileNotFoundException if the given file cannot be opened or created.
+     */
+    protected FileLogger(@Captured @Nonnull @Normal @Writable @ExistentParent File file) throws FileNotFoundException {
+        this(file, 0);
+    }
+    
     /**
      * Returns a file logger that logs the messages to the given file.
      * 
@@ -88,4 +187,29 @@ public class FileLogger extends PrintStreamLogger {
         return new FileLogger(file);
     }
     
+    /**
+     * Returns a file logger that writes the messages into a buffer of the given size and flushes them to the given file according to the given policy.
+     * This mode is intended for high throughput, as messages that have not yet been flushed are lost if the process is killed.
+     * 
+     * @throws FileNotFoundException if the given file cannot be opened or created.
+     */
+    @Pure
+    public static @Capturable @Nonnull FileLogger with(@Captured @Nonnull @Normal @Writable @ExistentParent File file, @Positive int bufferSize, @Nonnull FlushPolicy flushPolicy) throws FileNotFoundException {
+        Require.that(bufferSize > 0).orThrow("The buffer size has to be positive but was $.", bufferSize);
+        
+        final @Nonnull FileLogger logger = new FileLogger(file, bufferSize);
+        logger.setFlushPolicy(flushPolicy);
+        return logger;
+    }
+    
+    /**
+     * Returns a file logger that writes the messages into a buffer of 64 KiB and flushes them to the given file according to the {@link FlushPolicy#withDefaultValues() default flush policy}.
+     * 
+     * @throws FileNotFoundException if the given file cannot be opened or created.
+     */
+    @Pure
+    public static @Capturable @Nonnull FileLogger withBuffer(@Captured @Nonnull @Normal @Writable @ExistentParent File file) throws FileNotFoundException {
+        return with(file, 65_536, FlushPolicy.withDefaultValues());
+    }
+    
 }
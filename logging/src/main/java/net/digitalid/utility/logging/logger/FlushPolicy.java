@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2017 Synacts GmbH, Switzerland (info@synacts.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.digitalid.utility.logging.logger;
+
+import javax.annotation.Nonnull;
+
+import net.digitalid.utility.annotations.method.Pure;
+import net.digitalid.utility.annotations.ownership.Capturable;
+import net.digitalid.utility.contracts.Require;
+import net.digitalid.utility.logging.Level;
+import net.digitalid.utility.validation.annotations.math.NonNegative;
+import net.digitalid.utility.validation.annotations.math.Positive;
+import net.digitalid.utility.validation.annotations.type.Immutable;
+
+/**
+ * A flush policy determines when a {@link PrintStreamLogger print stream logger} flushes the messages that it has written.
+ * The written bytes are flushed once the given number of milliseconds has passed, once the given number of bytes has been written
+ * or as soon as a message at or above the given level has been written, whichever happens first.
+ */
+@Immutable
+public class FlushPolicy {
+    
+    /* -------------------------------------------------- Constants -------------------------------------------------- */
+    
+    /**
+     * Stores the flush policy which flushes after every message.
+     */
+    public static final @Nonnull FlushPolicy IMMEDIATELY = new FlushPolicy(0, 1, Level.VERBOSE);
+    
+    /* -------------------------------------------------- Fields -------------------------------------------------- */
+    
+    private final long interval;
+    
+    /**
+     * Returns the number of milliseconds after which the written bytes are flushed or zero if they are not flushed periodically.
+     */
+    @Pure
+    public @NonNegative long getInterval() {
+        return interval;
+    }
+    
+    private final int size;
+    
+    /**
+     * Returns the number of written bytes after which they are flushed.
+     */
+    @Pure
+    public @Positive int getSize() {
+        return size;
+    }
+    
+    private final @Nonnull Level level;
+    
+    /**
+     * Returns the level at and above which the written bytes are flushed after the message.
+     */
+    @Pure
+    public @Nonnull Level getLevel() {
+        return level;
+    }
+    
+    /* -------------------------------------------------- Constructors -------------------------------------------------- */
+    
+    protected FlushPolicy(@NonNegative long interval, @Positive int size, @Nonnull Level level) {
+        Require.that(interval >= 0).orThrow("The interval has to be non-negative but was $.", interval);
+        Require.that(size > 0).orThrow("The size has to be positive but was $.", size);
+        Require.that(level != null).orThrow("The level may not be null.");
+        
+        this.interval = interval;
+        this.size = size;
+        this.level = level;
+    }
+    
+    /**
+     * Returns a flush policy which flushes the written bytes every given number of milliseconds, after the given number of bytes and after messages at or above the given level.
+     */
+    @Pure
+    public static @Capturable @Nonnull FlushPolicy with(@NonNegative long interval, @Positive int size, @Nonnull Level level) {
+        return new FlushPolicy(interval, size, level);
+    }
+    
+    /**
+     * Returns a flush policy which flushes the written bytes every second, after 32 KiB and after errors.
+     */
+    @Pure
+    public static @Capturable @Nonnull FlushPolicy withDefaultValues() {
+        return new FlushPolicy(1_000, 32_768, Level.ERROR);
+    }
+    
+    /* -------------------------------------------------- Queries -------------------------------------------------- */
+    
+    /**
+     * Returns whether the written bytes are flushed after the given number of unflushed bytes and a message with the given level.
+     */
+    @Pure
+    public boolean isFlushed(@NonNegative long unflushedBytes, @Nonnull Level level) {
+        return unflushedBytes >= size || level.getValue() >= this.level.getValue();
+    }
+    
+    /**
+     * Returns whether this policy flushes the written bytes after every message, which is the case if it flushes after a single byte or at the lowest level.
+     */
+    @Pure
+    public boolean isImmediate() {
+        return size <= 1 || level == Level.VERBOSE;
+    }
+    
+    /* -------------------------------------------------- Object -------------------------------------------------- */
+    
+    @Pure
+    @Override
+    public @Nonnull String toString() {
+        return "FlushPolicy(interval: " + interval + " ms, size: " + size + " bytes, level: " + level + ")";
+    }
+    
+}
@@ -19,8 +19,11 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 import net.digitalid.utility.annotations.method.Impure;
+import net.digitalid.utility.annotations.method.Pure;
+import net.digitalid.utility.annotations.ownership.Capturable;
 import net.digitalid.utility.annotations.ownership.NonCaptured;
 import net.digitalid.utility.annotations.parameter.Unmodified;
+import net.digitalid.utility.circumfixes.Quotes;
 import net.digitalid.utility.configuration.Configuration;
 import net.digitalid.utility.logging.Caller;
 import net.digitalid.utility.logging.Level;
@@ -61,6 +64,123 @@ public abstract class Logger {
      */
     protected abstract void log(@Nonnull Level level, @Nonnull String caller, @Nonnull String thread, @Nonnull String message, @Nullable Throwable throwable);
     
+    /**
+     * Logs the given message with the given level, caller, thread and throwable.
+     * The message is only valid during this call and has to be copied if it is retained.
+     * Loggers can override this method in order to write the message without converting it to a string first.
+     */
+    @Impure
+    protected void write(@Nonnull Level level, @Nonnull String caller, @Nonnull String thread, @NonCaptured @Unmodified @Nonnull CharSequence message, @Nullable Throwable throwable) {
+        log(level, caller, thread, message.toString(), throwable);
+    }
+    
+    /* -------------------------------------------------- Buffer -------------------------------------------------- */
+    
+    /**
+     * A buffer stores the formatted message and the arguments of the logging methods with a fixed arity so that they can be reused by the same thread.
+     */
+    @Mutable
+    private static class Buffer {
+        
+        private @Nonnull StringBuilder string = new StringBuilder(256);
+        
+        private final @Nonnull Object[] arguments = new Object[3];
+        
+        private boolean used = false;
+        
+    }
+    
+    /**
+     * Stores the buffer of each thread.
+     */
+    private static final @Nonnull ThreadLocal<@Nonnull Buffer> buffers = new ThreadLocal<Buffer>() {
+        @Pure @Override protected @Capturable @Nonnull Buffer initialValue() {
+            return new Buffer();
+        }
+    };
+    
+    /**
+     * Returns the buffer of the current thread or a new buffer if the buffer of the current thread is already used by an outer logging call.
+     */
+    @Impure
+    private static @Nonnull Buffer acquireBuffer() {
+        final @Nonnull Buffer buffer = buffers.get();
+        if (buffer.used) { return new Buffer(); }
+        buffer.used = true;
+        return buffer;
+    }
+    
+    /**
+     * Releases the given buffer so that it can be reused by the current thread.
+     */
+    @Impure
+    private static void releaseBuffer(@Nonnull Buffer buffer) {
+        buffer.arguments[0] = null;
+        buffer.arguments[1] = null;
+        buffer.arguments[2] = null;
+        if (buffer.string.capacity() > 65_536) { buffer.string = new StringBuilder(256); }
+        buffer.used = false;
+    }
+    
+    /* -------------------------------------------------- Formatting -------------------------------------------------- */
+    
+    /**
+     * Logs the given message and throwable with the given caller if the given filter accepts them.
+     * The message is formatted with the first count arguments into the given buffer only after the filter accepted it unless the filter depends on the message.
+     */
+    @Impure
+    private static void log(@Nonnull LoggingFilter filter, @Nonnull Level level, @Nonnull String caller, @Nonnull CharSequence message, @Nullable Throwable throwable, @Nonnull Buffer buffer, @NonCaptured @Unmodified @Nonnull @NullableElements Object[] arguments, int count) {
+        final @Nonnull String thread = Thread.currentThread().getName();
+        final boolean dependsOnMessage = filter.dependsOnMessage();
+        if (!dependsOnMessage && !filter.isLogged(level, caller, thread, "", throwable)) { return; }
+        
+        final @Nonnull StringBuilder string = buffer.string;
+        string.setLength(0);
+        Strings.appendFormatted(string, message, '$', Quotes.SINGLE, arguments, count);
+        final char lastCharacter = message.length() > 0 ? message.charAt(message.length() - 1) : ' ';
+        if (lastCharacter != '.' && lastCharacter != ':' && lastCharacter != '\n') { string.append('.'); }
+        
+        if (dependsOnMessage) {
+            final @Nonnull String formattedMessage = string.toString();
+            if (filter.isLogged(level, caller, thread, formattedMessage, throwable)) { logger.get().log(level, caller, thread, formattedMessage, throwable); }
+        } else {
+            logger.get().write(level, caller, thread, string, throwable);
+        }
+    }
+    
+    /**
+     * Logs the given message and throwable with the given caller and the given number of arguments if the given filter accepts them.
+     */
+    @Impure
+    private static void log(@Nonnull LoggingFilter filter, @Nonnull Level level, @Nonnull String caller, @Nonnull CharSequence message, @Nullable Throwable throwable, int count, @Nullable Object argument1, @Nullable Object argument2, @Nullable Object argument3) {
+        final @Nonnull Buffer buffer = acquireBuffer();
+        try {
+            buffer.arguments[0] = argument1;
+            buffer.arguments[1] = argument2;
+            buffer.arguments[2] = argument3;
+            log(filter, level, caller, message, throwable, buffer, buffer.arguments, count);
+        } finally {
+            releaseBuffer(buffer);
+        }
+    }
+    
+    /**
+     * Logs the given message and throwable with the given caller and arguments if the given filter accepts them.
+     */
+    @Impure
+    private static void log(@Nonnull LoggingFilter filter, @Nonnull Level level, @Nonnull String caller, @Nonnull CharSequence message, @Nullable Throwable throwable, @NonCaptured @Unmodified @Nonnull @NullableElements Object[] arguments) {
+        final @Nonnull Buffer buffer = acquireBuffer();
+        try {
+            log(filter, level, caller, message, throwable, buffer, arguments, arguments.length);
+        } finally {
+            releaseBuffer(buffer);
+        }
+    }
+    
+    /* -------------------------------------------------- Static Logging -------------------------------------------------- */
+    
+    // The following methods have to call Caller.get() directly so that the index of the caller in the stack trace is the same for all of them.
+    
     /**
      * Logs the given message and throwable if the configured filter accepts them.
      * Each dollar sign in the message is replaced with the corresponding argument.
@@ -68,14 +188,96 @@ public abstract class Logger {
     @Impure
     public static void log(@Nonnull Level level, @Nonnull CharSequence message, @Nullable Throwable throwable, @NonCaptured @Unmodified @Nonnull @NullableElements Object... arguments) {
         final @Nonnull LoggingFilter filter = LoggingFilter.filter.get();
-        if (filter.isPotentiallyLogged(level)) {
-            final @Nonnull String caller = Caller.get();
-            final @Nonnull String thread = Thread.currentThread().getName();
-            final @Nonnull String originalMessage = message.toString();
-            final boolean addNoPeriod = originalMessage.endsWith(".") || originalMessage.endsWith(":") || originalMessage.endsWith("\n");
-            final @Nonnull String formattedMessage = Strings.format(originalMessage, arguments) + (addNoPeriod ? "" : ".");
-            if (filter.isLogged(level, caller, thread, formattedMessage, throwable)) { logger.get().log(level, caller, thread, formattedMessage, throwable); }
-        }
+        if (filter.isPotentiallyLogged(level)) { log(filter, level, Caller.get(), message, throwable, arguments); }
+    }
+    
+    /**
+     * Logs the given message and throwable if the configured filter accepts them.
+     * Unlike the method with variable arity, this method does not allocate an array for the arguments.
+     */
+    @Impure
+    public static void log(@Nonnull Level level, @Nonnull CharSequence message, @Nullable Throwable throwable) {
+        final @Nonnull LoggingFilter filter = LoggingFilter.filter.get();
+        if (filter.isPotentiallyLogged(level)) { log(filter, level, Caller.get(), message, throwable, 0, null, null, null); }
+    }
+    
+    /**
+     * Logs the given message and throwable if the configured filter accepts them.
+     * The dollar sign in the message is replaced with the given argument.
+     * Unlike the method with variable arity, this method does not allocate an array for the arguments.
+     */
+    @Impure
+    public static void log(@Nonnull Level level, @Nonnull CharSequence message, @Nullable Throwable throwable, @NonCaptured @Unmodified @Nullable Object argument) {
+        final @Nonnull LoggingFilter filter = LoggingFilter.filter.get();
+        if (filter.isPotentiallyLogged(level)) { log(filter, level, Caller.get(), message, throwable, 1, argument, null, null); }
+    }
+    
+    /**
+     * Logs the given message and throwable if the configured filter accepts them.
+     * Each dollar sign in the message is replaced with the corresponding argument.
+     * Unlike the method with variable arity, this method does not allocate an array for the arguments.
+     */
+    @Impure
+    public static void log(@Nonnull Level level, @Nonnull CharSequence message, @Nullable Throwable throwable, @NonCaptured @Unmodified @Nullable Object argument1, @NonCaptured @Unmodified @Nullable Object argument2) {
+        final @Nonnull LoggingFilter filter = LoggingFilter.filter.get();
+        if (filter.isPotentiallyLogged(level)) { log(filter, level, Caller.get(), message, throwable, 2, argument1, argument2, null); }
+    }
+    
+    /**
+     * Logs the given message and throwable if the configured filter accepts them.
+     * Each dollar sign in the message is replaced with the corresponding argument.
+     * Unlike the method with variable arity, this method does not allocate an array for the arguments.
+     */
+    @Impure
+    public static void log(@Nonnull Level level, @Nonnull CharSequence message, @Nullable Throwable throwable, @NonCaptured @Unmodified @Nullable Object argument1, @NonCaptured @Unmodified @Nullable Object argument2, @NonCaptured @Unmodified @Nullable Object argument3) {
+        final @Nonnull LoggingFilter filter = LoggingFilter.filter.get();
+        if (filter.isPotentiallyLogged(level)) { log(filter, level, Caller.get(), message, throwable, 3, argument1, argument2, argument3); }
+    }
+    
+    /* -------------------------------------------------- Logging with Caller -------------------------------------------------- */
+    
+    /**
+     * Logs the given message and throwable with the given caller if the configured filter accepts them.
+     * Each dollar sign in the message is replaced with the corresponding argument.
+     * This method is used by generated code, which knows its caller at compile time, so that the caller does not have to be determined at runtime.
+     */
+    @Impure
+    public static void logWithCaller(@Nonnull Level level, @Nonnull String caller, @Nonnull CharSequence message, @Nullable Throwable throwable, @NonCaptured @Unmodified @Nonnull @NullableElements Object... arguments) {
+        final @Nonnull LoggingFilter filter = LoggingFilter.filter.get();
+        if (filter.isPotentiallyLogged(level)) { log(filter, level, caller, message, throwable, arguments); }
+    }
+    
+    /**
+     * Logs the given message and throwable with the given caller if the configured filter accepts them.
+     * As neither the caller has to be determined nor an array has to be allocated for the arguments,
+     * this method allocates no objects if the configured filter does not depend on the message and the configured logger writes the message without converting it to a string.
+     */
+    @Impure
+    public static void logWithCaller(@Nonnull Level level, @Nonnull String caller, @Nonnull CharSequence message, @Nullable Throwable throwable) {
+        final @Nonnull LoggingFilter filter = LoggingFilter.filter.get();
+        if (filter.isPotentiallyLogged(level)) { log(filter, level, caller, message, throwable, 0, null, null, null); }
+    }
+    
+    /**
+     * Logs the given message and throwable with the given caller if the configured filter accepts them.
+     * The dollar sign in the message is replaced with the given argument.
+     * Unlike the method with variable arity, this method does not allocate an array for the arguments.
+     */
+    @Impure
+    public static void logWithCaller(@Nonnull Level level, @Nonnull String caller, @Nonnull CharSequence message, @Nullable Throwable throwable, @NonCaptured @Unmodified @Nullable Object argument) {
+        final @Nonnull LoggingFilter filter = LoggingFilter.filter.get();
+        if (filter.isPotentiallyLogged(level)) { log(filter, level, caller, message, throwable, 1, argument, null, null); }
+    }
+    
+    /**
+     * Logs the given message and throwable with the given caller if the configured filter accepts them.
+     * Each dollar sign in the message is replaced with the corresponding argument.
+     * Unlike the method with variable arity, this method does not allocate an array for the arguments.
+     */
+    @Impure
+    public static void logWithCaller(@Nonnull Level level, @Nonnull String caller, @Nonnull CharSequence message, @Nullable Throwable throwable, @NonCaptured @Unmodified @Nullable Object argument1, @NonCaptured @Unmodified @Nullable Object argument2) {
+        final @Nonnull LoggingFilter filter = LoggingFilter.filter.get();
+        if (filter.isPotentiallyLogged(level)) { log(filter, level, caller, message, throwable, 2, argument1, argument2, null); }
     }
     
 }
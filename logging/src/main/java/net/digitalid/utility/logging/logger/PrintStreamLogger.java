@@ -15,10 +15,30 @@
  */
 package net.digitalid.utility.logging.logger;
 
+import java.io.OutputStreamWriter;
 import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -27,32 +47,190 @@ import net.digitalid.utility.annotations.method.Impure;
 import net.digitalid.utility.annotations.method.Pure;
 import net.digitalid.utility.annotations.ownership.Capturable;
 import net.digitalid.utility.annotations.ownership.Captured;
+import net.digitalid.utility.annotations.ownership.NonCaptured;
+import net.digitalid.utility.annotations.parameter.Modified;
+import net.digitalid.utility.annotations.parameter.Unmodified;
+import net.digitalid.utility.configuration.ShutdownSequence;
 import net.digitalid.utility.contracts.Require;
 import net.digitalid.utility.logging.Level;
 import net.digitalid.utility.logging.Version;
+import net.digitalid.utility.validation.annotations.type.Immutable;
 import net.digitalid.utility.validation.annotations.type.Mutable;
 
 /**
  * This class implements a logger that logs the messages to a print stream.
+ * Loggers whose messages are buffered are flushed in the {@link ShutdownSequence.Phase#STREAMS streams phase} of the {@link ShutdownSequence},
+ * which comes after the asynchronous loggers have written their remaining messages.
  * 
  * @see StandardOutputLogger
  * @see FileLogger
  */
 @Mutable
-public abstract class PrintStreamLogger extends Logger {
+public abstract class PrintStreamLogger extends Logger implements AutoCloseable {
     
-    /* -------------------------------------------------- Time Format -------------------------------------------------- */
+    /* -------------------------------------------------- Timestamp -------------------------------------------------- */
     
+    /**
+     * A timestamp stores the formatted prefix of a second so that only the milliseconds have to be appended for each message.
+     */
+    @Immutable
+    private static class Timestamp {
+        
+        private final long second;
+        
+        private final @Nonnull String prefix;
+        
+        private Timestamp(long second, @Nonnull String prefix) {
+            this.second = second;
+            this.prefix = prefix;
+        }
+        
+    }
+    
+    /**
+     * Stores the format of the seconds for each thread.
+     */
     private static final @Nonnull ThreadLocal<@Nonnull DateFormat> timeFormat = new ThreadLocal<DateFormat>() {
         @Pure @Override protected @Capturable @Nonnull DateFormat initialValue() {
-            return new SimpleDateFormat("yyyy-MM-dd 'at' HH:mm:ss.SSS");
+            return new SimpleDateFormat("yyyy-MM-dd 'at' HH:mm:ss.");
         }
     };
     
+    /**
+     * Stores the timestamp of the second in which the last message was logged.
+     */
+    private static volatile @Nullable Timestamp timestamp;
+    
+    /**
+     * Appends the given time in milliseconds to the given line, whereby the formatted second is shared by all threads and only recomputed once per second.
+     */
+    @Impure
+    private static void appendTime(@NonCaptured @Modified @Nonnull StringBuilder line, long time) {
+        final long second = time >= 0 ? time / 1_000 : (time + 1) / 1_000 - 1;
+        @Nullable Timestamp cachedTimestamp = timestamp;
+        if (cachedTimestamp == null || cachedTimestamp.second != second) {
+            cachedTimestamp = new Timestamp(second, timeFormat.get().format(new Date(second * 1_000)));
+            timestamp = cachedTimestamp;
+        }
+        final int milliseconds = (int) (time - second * 1_000);
+        line.append(cachedTimestamp.prefix);
+        if (milliseconds < 100) { line.append('0'); }
+        if (milliseconds < 10) { line.append('0'); }
+        line.append(milliseconds);
+    }
+    
+    /* -------------------------------------------------- Encoder -------------------------------------------------- */
+    
+    /**
+     * An encoder formats and encodes the lines of a thread into buffers that are reused for all its messages.
+     */
+    @Mutable
+    private static class Encoder {
+        
+        private final @Nonnull StringBuilder line = new StringBuilder(256);
+        
+        private @Nonnull CharBuffer characters = CharBuffer.allocate(256);
+        
+        private @Nonnull ByteBuffer bytes = ByteBuffer.allocate(512);
+        
+        private @Nonnull CharsetEncoder encoder = newEncoder(Charset.defaultCharset());
+        
+        /**
+         * Returns a new encoder for the given charset which replaces malformed and unmappable characters.
+         */
+        @Pure
+        private static @Capturable @Nonnull CharsetEncoder newEncoder(@Nonnull Charset charset) {
+            return charset.newEncoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+        
+        /**
+         * Encodes the line with the given charset into the byte buffer, which is flipped afterwards.
+         */
+        @Impure
+        private void encode(@Nonnull Charset charset) {
+            if (!encoder.charset().equals(charset)) { encoder = newEncoder(charset); }
+            final int length = line.length();
+            if (characters.capacity() < length) { characters = CharBuffer.allocate(Math.max(length, 2 * characters.capacity())); }
+            if (bytes.capacity() < length) { bytes = ByteBuffer.allocate(Math.max(length, 2 * bytes.capacity())); }
+            // The buffers are cast to their superclass so that the compiled code also runs on Java 8, where the subclasses do not override these methods.
+            ((Buffer) characters).clear();
+            line.getChars(0, length, characters.array(), 0);
+            ((Buffer) characters).limit(length);
+            ((Buffer) bytes).clear();
+            encoder.reset();
+            while (encoder.encode(characters, bytes, true).isOverflow() || encoder.flush(bytes).isOverflow()) {
+                final @Nonnull ByteBuffer larger = ByteBuffer.allocate(2 * bytes.capacity());
+                ((Buffer) bytes).flip();
+                larger.put(bytes);
+                bytes = larger;
+            }
+            ((Buffer) bytes).flip();
+        }
+        
+    }
+    
+    /**
+     * Stores the encoder of each thread.
+     */
+    private static final @Nonnull ThreadLocal<@Nonnull Encoder> encoders = new ThreadLocal<Encoder>() {
+        @Pure @Override protected @Capturable @Nonnull Encoder initialValue() {
+            return new Encoder();
+        }
+    };
+    
+    /**
+     * Stores the names of the levels so that they are not recomputed for each message.
+     */
+    private static final @Nonnull String[] levels = new String[Level.values().length];
+    
+    static {
+        for (@Nonnull Level level : Level.values()) { levels[level.ordinal()] = level.toString(); }
+    }
+    
+    /**
+     * Stores the line separator of the system.
+     */
+    private static final @Nonnull String lineSeparator = System.lineSeparator();
+    
+    /* -------------------------------------------------- Charset -------------------------------------------------- */
+    
+    /**
+     * Returns the charset with which the given print stream encodes characters or the default charset if it cannot be determined.
+     * The charset of a print stream is accessible from Java 18 on and is read from the writer of the print stream up to Java 8.
+     * In between, only the encoding of the standard output and error streams can be determined from the corresponding system properties.
+     */
+    @Pure
+    @SuppressWarnings("UseOfSystemOutOrSystemErr")
+    static @Nonnull Charset getCharset(@Nonnull PrintStream printStream) {
+        try {
+            return (Charset) PrintStream.class.getMethod("charset").invoke(printStream);
+        } catch (@Nonnull ReflectiveOperationException | RuntimeException exception) {}
+        try {
+            @Nullable String encoding = null;
+            if (System.getProperty("java.specification.version", "").startsWith("1.")) {
+                final @Nonnull Field field = PrintStream.class.getDeclaredField("charOut");
+                field.setAccessible(true);
+                final @Nullable Object writer = field.get(printStream);
+                if (writer instanceof OutputStreamWriter) { encoding = ((OutputStreamWriter) writer).getEncoding(); }
+            } else if (printStream == System.out) {
+                encoding = System.getProperty("sun.stdout.encoding");
+            } else if (printStream == System.err) {
+                encoding = System.getProperty("sun.stderr.encoding");
+            }
+            if (encoding != null) { return Charset.forName(encoding); }
+        } catch (@Nonnull ReflectiveOperationException | RuntimeException exception) {}
+        return Charset.defaultCharset();
+    }
+    
     /* -------------------------------------------------- Print Stream -------------------------------------------------- */
     
     private @Nonnull PrintStream printStream;
     
+    /**
+     * Stores the charset of the print stream, with which the messages are encoded.
+     */
+    private volatile @Nonnull Charset charset;
+    
     /**
      * Sets the print stream to which the messages are printed.
      * This class uses the given print stream for synchronization.
@@ -62,9 +240,190 @@ public abstract class PrintStreamLogger extends Logger {
     protected void setPrintStream(@Captured @Nonnull PrintStream printStream) {
         Require.that(printStream != null).orThrow("The print stream may not be null.");
         
+        final @Nonnull Charset charset = getCharset(printStream);
         synchronized (this.printStream) {
             this.printStream.close();
             this.printStream = printStream;
+            this.charset = charset;
+            this.unflushedBytes = 0;
+        }
+    }
+    
+    /* -------------------------------------------------- Flush Policy -------------------------------------------------- */
+    
+    /**
+     * Stores the executor which flushes the print stream loggers periodically and runs other background tasks of loggers or null if it has not yet been needed.
+     */
+    private static @Nullable ScheduledExecutorService scheduler;
+    
+    /**
+     * Returns the executor which flushes the print stream loggers periodically and runs other background tasks of loggers on a single daemon thread.
+     * The executor is created on the first call.
+     */
+    @Impure
+    protected static synchronized @Nonnull ScheduledExecutorService getScheduler() {
+        if (scheduler == null) {
+            final @Nonnull ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+                final @Nonnull Thread thread = new Thread(runnable, "LogScheduler");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.setRemoveOnCancelPolicy(true);
+            scheduler = executor;
+        }
+        return scheduler;
+    }
+    
+    /**
+     * Stores the print stream loggers whose flush policy does not flush immediately so that they can be flushed in the shutdown sequence.
+     * The loggers are referenced weakly so that a logger which is no longer used can be collected without being closed.
+     * This field is guarded by the class object.
+     */
+    private static final @Nonnull Set<@Nonnull PrintStreamLogger> bufferedLoggers = Collections.newSetFromMap(new WeakHashMap<PrintStreamLogger, Boolean>());
+    
+    /**
+     * Stores the task which flushes the buffered loggers in the shutdown sequence.
+     */
+    private static final @Nonnull Runnable flushTaskOnShutdown = PrintStreamLogger::flushBufferedLoggers;
+    
+    /**
+     * Flushes all buffered loggers.
+     */
+    @Impure
+    private static void flushBufferedLoggers() {
+        final @Nonnull List<@Nonnull PrintStreamLogger> loggers;
+        synchronized (PrintStreamLogger.class) { loggers = new ArrayList<>(bufferedLoggers); }
+        for (@Nonnull PrintStreamLogger logger : loggers) { logger.flush(); }
+    }
+    
+    /**
+     * Adds the given logger to the buffered loggers, which are flushed in the shutdown sequence.
+     */
+    @Impure
+    private static synchronized void addBufferedLogger(@Nonnull PrintStreamLogger logger) {
+        bufferedLoggers.add(logger);
+        ShutdownSequence.register(ShutdownSequence.Phase.STREAMS, flushTaskOnShutdown);
+    }
+    
+    /**
+     * Removes the given logger from the buffered loggers, which are flushed in the shutdown sequence.
+     */
+    @Impure
+    private static synchronized void removeBufferedLogger(@Nonnull PrintStreamLogger logger) {
+        bufferedLoggers.remove(logger);
+        if (bufferedLoggers.isEmpty()) { ShutdownSequence.deregister(flushTaskOnShutdown); }
+    }
+    
+    /**
+     * A periodic flush references its logger weakly and cancels itself once the logger has been collected.
+     */
+    @Mutable
+    private static class PeriodicFlush implements Runnable {
+        
+        /**
+         * Stores a weak reference to the logger which is flushed.
+         */
+        private final @Nonnull WeakReference<PrintStreamLogger> reference;
+        
+        /**
+         * Stores the future of this periodic flush, which is set after it has been scheduled.
+         */
+        private volatile @Nullable ScheduledFuture<?> future;
+        
+        private PeriodicFlush(@Nonnull PrintStreamLogger logger) {
+            this.reference = new WeakReference<>(logger);
+        }
+        
+        @Impure
+        @Override
+        public void run() {
+            final @Nullable PrintStreamLogger logger = reference.get();
+            if (logger != null) { logger.flush(); }
+            else if (future != null) { future.cancel(false); }
+        }
+        
+    }
+    
+    private volatile @Nonnull FlushPolicy flushPolicy = FlushPolicy.IMMEDIATELY;
+    
+    /**
+     * Returns the policy which determines when the written messages are flushed.
+     */
+    @Pure
+    public @Nonnull FlushPolicy getFlushPolicy() {
+        return flushPolicy;
+    }
+    
+    /**
+     * Stores the task which flushes this logger periodically or null if the flush policy is not periodic.
+     */
+    private @Nullable ScheduledFuture<?> flushTask;
+    
+    /**
+     * Sets the policy which determines when the written messages are flushed.
+     * Unless the policy flushes immediately, the print stream should be buffered.
+     */
+    @Impure
+    public synchronized void setFlushPolicy(@Nonnull FlushPolicy flushPolicy) {
+        Require.that(flushPolicy != null).orThrow("The flush policy may not be null.");
+        
+        this.flushPolicy = flushPolicy;
+        if (flushTask != null) {
+            flushTask.cancel(false);
+            flushTask = null;
+        }
+        if (flushPolicy.isImmediate()) {
+            removeBufferedLogger(this);
+        } else {
+            addBufferedLogger(this);
+            if (flushPolicy.getInterval() > 0) {
+                final @Nonnull PeriodicFlush periodicFlush = new PeriodicFlush(this);
+                periodicFlush.future = getScheduler().scheduleWithFixedDelay(periodicFlush, flushPolicy.getInterval(), flushPolicy.getInterval(), TimeUnit.MILLISECONDS);
+                flushTask = periodicFlush.future;
+            }
+        }
+        flush();
+    }
+    
+    /**
+     * Stores the number of bytes that have been written since the print stream was flushed.
+     * This field is guarded by the print stream.
+     */
+    private long unflushedBytes = 0;
+    
+    /**
+     * Flushes the messages that have been written but not yet flushed.
+     */
+    @Impure
+    @SuppressWarnings("SynchronizeOnNonFinalField")
+    public void flush() {
+        synchronized (printStream) {
+            if (unflushedBytes > 0) {
+                printStream.flush();
+                unflushedBytes = 0;
+            }
+        }
+    }
+    
+    /**
+     * Flushes the written messages, stops flushing this logger periodically and in the shutdown sequence and closes the print stream unless it is the standard output or error.
+     * A logger should be closed when it is no longer used, for example after it has been replaced.
+     */
+    @Impure
+    @Override
+    @SuppressWarnings({"SynchronizeOnNonFinalField", "UseOfSystemOutOrSystemErr"})
+    public void close() {
+        synchronized (this) {
+            if (flushTask != null) {
+                flushTask.cancel(false);
+                flushTask = null;
+            }
+        }
+        removeBufferedLogger(this);
+        synchronized (printStream) {
+            printStream.flush();
+            unflushedBytes = 0;
+            if (printStream != System.out && printStream != System.err) { printStream.close(); }
         }
     }
     
@@ -78,23 +437,46 @@ public abstract class PrintStreamLogger extends Logger {
         Require.that(printStream != null).orThrow("The print stream may not be null.");
         
         this.printStream = printStream;
+        this.charset = getCharset(printStream);
     }
     
     /* -------------------------------------------------- Logging -------------------------------------------------- */
     
     @Impure
     @Override
-    @SuppressWarnings("SynchronizeOnNonFinalField")
     protected void log(@Nonnull Level level, @Nonnull String caller, @Nonnull String thread, @Nonnull String message, @Nullable Throwable throwable) {
+        write(level, caller, thread, message, throwable);
+    }
+    
+    /**
+     * Formats and encodes the line in the buffers of the current thread so that the print stream is only locked while the bytes are written.
+     */
+    @Impure
+    @Override
+    @SuppressWarnings("SynchronizeOnNonFinalField")
+    protected void write(@Nonnull Level level, @Nonnull String caller, @Nonnull String thread, @NonCaptured @Unmodified @Nonnull CharSequence message, @Nullable Throwable throwable) {
         final @Nonnull String version = Version.string.get();
+        final @Nonnull Encoder encoder = encoders.get();
+        final @Nonnull StringBuilder line = encoder.line;
+        line.setLength(0);
+        appendTime(line, System.currentTimeMillis());
+        if (!version.isEmpty()) { line.append(" in ").append(version); }
+        line.append(" [").append(thread).append("] (").append(levels[level.ordinal()]).append(") <").append(caller).append(">: ").append(message).append(lineSeparator);
+        if (throwable != null) {
+            // The stack trace is encoded together with the message so that its bytes are counted and written without holding the lock while it is formatted.
+            final @Nonnull StringWriter stackTrace = new StringWriter();
+            throwable.printStackTrace(new PrintWriter(stackTrace));
+            line.append(lineSeparator).append(stackTrace.getBuffer()).append(lineSeparator);
+        }
+        encoder.encode(charset);
+        
         synchronized (printStream) {
-            printStream.println(timeFormat.get().format(new Date()) + (version.isEmpty() ? "" : " in " + version) + " [" + thread + "] (" + level + ") <" + caller + ">: " + message);
-            if (throwable != null) {
-                printStream.println();
-                throwable.printStackTrace(printStream);
-                printStream.println();
+            printStream.write(encoder.bytes.array(), 0, encoder.bytes.limit());
+            unflushedBytes += encoder.bytes.limit();
+            if (flushPolicy.isFlushed(unflushedBytes, level)) {
+                printStream.flush();
+                unflushedBytes = 0;
             }
-            printStream.flush();
         }
     }
     
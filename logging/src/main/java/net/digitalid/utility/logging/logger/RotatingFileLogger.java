@@ -16,10 +16,27 @@
 package net.digitalid.utility.logging.logger;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ref.WeakReference;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -27,79 +44,505 @@ import javax.annotation.Nullable;
 import net.digitalid.utility.annotations.method.Impure;
 import net.digitalid.utility.annotations.method.Pure;
 import net.digitalid.utility.annotations.ownership.Capturable;
-import net.digitalid.utility.exceptions.UncheckedExceptionBuilder;
+import net.digitalid.utility.annotations.ownership.NonCaptured;
+import net.digitalid.utility.annotations.parameter.Unmodified;
+import net.digitalid.utility.configuration.Configuration;
+import net.digitalid.utility.contracts.Require;
 import net.digitalid.utility.file.Files;
 import net.digitalid.utility.logging.Level;
 import net.digitalid.utility.validation.annotations.file.existence.ExistentParent;
 import net.digitalid.utility.validation.annotations.file.kind.Normal;
 import net.digitalid.utility.validation.annotations.file.path.Absolute;
+import net.digitalid.utility.validation.annotations.math.NonNegative;
+import net.digitalid.utility.validation.annotations.type.Immutable;
 import net.digitalid.utility.validation.annotations.type.Mutable;
 
 /**
  * This class implements a logger that logs the messages to a rotating file.
+ * The file is rotated at the start of every {@link Period period} and, if a maximum size is given, whenever it exceeds the maximum size.
+ * If so configured, rotated files are compressed with gzip and deleted according to the retention limits in the background.
  */
 @Mutable
 public class RotatingFileLogger extends FileLogger {
     
-    /* -------------------------------------------------- File Format -------------------------------------------------- */
+    /* -------------------------------------------------- Period -------------------------------------------------- */
     
     /**
-     * Stores the date format of the file name.
+     * This class enumerates the periods after which the log file is rotated.
      */
-    private static final @Nonnull ThreadLocal<@Nonnull DateFormat> fileFormat = new ThreadLocal<DateFormat>() {
-        @Override protected @Nonnull DateFormat initialValue() {
-            return new SimpleDateFormat("yyyy-MM-dd");
+    @Immutable
+    public static enum Period {
+        
+        /**
+         * The log file is rotated every hour.
+         */
+        HOURLY("yyyy-MM-dd-HH", Calendar.HOUR_OF_DAY),
+        
+        /**
+         * The log file is rotated every day.
+         */
+        DAILY("yyyy-MM-dd", Calendar.DAY_OF_MONTH);
+        
+        private final @Nonnull String pattern;
+        
+        private final int field;
+        
+        /**
+         * Stores the format of the names of this period for each thread, since date formats are not thread-safe.
+         */
+        private final @Nonnull ThreadLocal<@Nonnull DateFormat> format = new ThreadLocal<DateFormat>() {
+            @Pure @Override protected @Capturable @Nonnull DateFormat initialValue() {
+                return new SimpleDateFormat(pattern);
+            }
+        };
+        
+        private Period(@Nonnull String pattern, int field) {
+            this.pattern = pattern;
+            this.field = field;
         }
-    };
+        
+        /**
+         * Returns the name of the period which contains the given time.
+         */
+        @Pure
+        private @Nonnull String getName(long time) {
+            return format.get().format(new Date(time));
+        }
+        
+        /**
+         * Returns the start of the period which follows the period that contains the given time.
+         */
+        @Pure
+        private long getNextStart(long time) {
+            final @Nonnull Calendar calendar = Calendar.getInstance();
+            calendar.setTimeInMillis(time);
+            calendar.set(Calendar.MILLISECOND, 0);
+            calendar.set(Calendar.SECOND, 0);
+            calendar.set(Calendar.MINUTE, 0);
+            if (field == Calendar.DAY_OF_MONTH) { calendar.set(Calendar.HOUR_OF_DAY, 0); }
+            calendar.add(field, 1);
+            return calendar.getTimeInMillis();
+        }
+        
+    }
     
-    /* -------------------------------------------------- Current File -------------------------------------------------- */
+    /* -------------------------------------------------- Settings -------------------------------------------------- */
+    
+    private final @Nonnull String prefix;
+    
+    /**
+     * Returns the prefix of the names of the log files, which is separated from the date by a dot unless it is empty.
+     * Only the rotated files with this prefix are subject to the retention limits of this logger.
+     */
+    @Pure
+    public @Nonnull String getPrefix() {
+        return prefix;
+    }
+    
+    private final @Nonnull Period period;
+    
+    /**
+     * Returns the period after which the log file is rotated.
+     */
+    @Pure
+    public @Nonnull Period getPeriod() {
+        return period;
+    }
+    
+    private final long maximumSize;
+    
+    /**
+     * Returns the size in bytes after which the log file is rotated or zero if the log file is only rotated by time.
+     */
+    @Pure
+    public @NonNegative long getMaximumSize() {
+        return maximumSize;
+    }
+    
+    private final boolean compressed;
+    
+    /**
+     * Returns whether the rotated files are compressed with gzip.
+     */
+    @Pure
+    public boolean isCompressed() {
+        return compressed;
+    }
+    
+    private final int maximumFiles;
+    
+    /**
+     * Returns the number of rotated files that are kept or zero if the rotated files are not limited by their number.
+     */
+    @Pure
+    public @NonNegative int getMaximumFiles() {
+        return maximumFiles;
+    }
+    
+    private final long maximumAge;
     
     /**
-     * Returns the current file to log the messages to.
+     * Returns the number of milliseconds after which rotated files are deleted or zero if the rotated files are not limited by their age.
      */
     @Pure
-    private static @Nonnull @Absolute @Normal @ExistentParent File getCurrentFile() {
-        return Files.relativeToConfigurationDirectory("logs/" + fileFormat.get().format(new Date()) + ".log");
+    public @NonNegative long getMaximumAge() {
+        return maximumAge;
+    }
+    
+    /* -------------------------------------------------- Files -------------------------------------------------- */
+    
+    /**
+     * Stores the prefix of the file names including its separator.
+     */
+    private final @Nonnull String filePrefix;
+    
+    /**
+     * Stores the pattern which matches the names of the files that are written by rotating file loggers with the prefix of this logger.
+     */
+    private final @Nonnull Pattern fileNamePattern;
+    
+    /**
+     * Returns the file with the given index in the period with the given name in the given configuration directory.
+     */
+    @Pure
+    private @Nonnull @Absolute @Normal @ExistentParent File getFile(@Nonnull File directory, @Nonnull String name, @NonNegative int index) {
+        return Files.relativeToWorkingDirectory(directory.getPath() + "/logs/" + filePrefix + name + (index > 0 ? "." + index : "") + ".log");
+    }
+    
+    /**
+     * Returns the compressed version of the given file.
+     */
+    @Pure
+    private static @Nonnull File getCompressedFile(@Nonnull File file) {
+        return new File(file.getPath() + ".gz");
+    }
+    
+    /* -------------------------------------------------- Current File -------------------------------------------------- */
+    
+    /**
+     * Stores the configuration directory of the currently open log file.
+     */
+    private @Nonnull File directory;
+    
+    /**
+     * Stores the name of the period of the currently open log file.
+     */
+    private @Nonnull String name = "";
+    
+    /**
+     * Stores the index of the currently open log file within its period.
+     */
+    private int index = 0;
+    
+    /**
+     * Stores the currently open log file or null if no file has been opened yet.
+     */
+    private @Nullable File currentFile;
+    
+    /**
+     * Stores the files which this logger rotated away from and which have not yet been compressed if the rotated files are compressed.
+     * Only these files are compressed so that the active files of other loggers and processes in the same directory are left alone.
+     */
+    private final @Nonnull List<@Nonnull File> filesToCompress = new ArrayList<>();
+    
+    /**
+     * Stores the size in bytes after which the current file is rotated, which is raised if a rotation failed.
+     */
+    private volatile long sizeLimit;
+    
+    /**
+     * Stores the time at which the next period starts.
+     */
+    private long nextRotation = 0;
+    
+    /**
+     * Stores whether this logger has been closed.
+     */
+    private boolean closed = false;
+    
+    /* -------------------------------------------------- Trigger -------------------------------------------------- */
+    
+    /**
+     * A trigger rotates its logger at the start of the next period and moves it to a new configuration directory.
+     * The trigger references the logger weakly so that the scheduler and the configuration do not keep a logger which is no longer used.
+     */
+    @Mutable
+    private static class Trigger implements Runnable, Configuration.Observer<File> {
+        
+        /**
+         * Stores a weak reference to the logger which is rotated.
+         */
+        private final @Nonnull WeakReference<RotatingFileLogger> reference;
+        
+        private Trigger(@Nonnull RotatingFileLogger logger) {
+            this.reference = new WeakReference<>(logger);
+        }
+        
+        @Impure
+        @Override
+        public void run() {
+            final @Nullable RotatingFileLogger logger = reference.get();
+            if (logger != null) { logger.rotateByTime(); }
+            else { Files.directory.deregister(this); }
+        }
+        
+        @Impure
+        @Override
+        public void notify(@Nonnull Configuration<File> configuration, @Nullable File oldDirectory, @Nonnull File newDirectory) {
+            final @Nullable RotatingFileLogger logger = reference.get();
+            if (logger != null) { logger.rotateByDirectory(newDirectory); }
+            else { configuration.deregister(this); }
+        }
+        
     }
     
-    /* -------------------------------------------------- Current Date -------------------------------------------------- */
+    /**
+     * Stores the trigger which rotates this logger by time and by directory.
+     */
+    private final @Nonnull Trigger trigger = new Trigger(this);
     
     /**
-     * Stores the date of the currently open log file.
+     * Stores the scheduled rotation at the start of the next period or null if this logger has been closed.
      */
-    private @Nonnull Date currentDate;
+    private @Nullable ScheduledFuture<?> rotationTask;
     
     /* -------------------------------------------------- Rotation -------------------------------------------------- */
     
     /**
-     * Rotates the log file.
+     * Opens the first file of the period with the given name in the given configuration directory starting from the given index that is neither compressed nor full.
+     * The previously open file is compressed in the background.
+     * 
+     * @throws FileNotFoundException if the file cannot be opened or created, in which case the previous file remains open.
      */
     @Impure
-    private void rotate() {
-        this.currentDate = new Date();
+    private synchronized void open(@Nonnull File directory, @Nonnull String name, @NonNegative int index) throws FileNotFoundException {
+        if (closed) { return; }
+        @Nonnull File file = getFile(directory, name, index);
+        while (getCompressedFile(file).exists() || maximumSize > 0 && file.length() >= maximumSize) { file = getFile(directory, name, ++index); }
+        if (!file.equals(currentFile)) {
+            setFile(file);
+            if (compressed && currentFile != null) { filesToCompress.add(currentFile); }
+            this.currentFile = file;
+        }
+        this.directory = directory;
+        this.name = name;
+        this.index = index;
+        this.sizeLimit = maximumSize;
+        getScheduler().execute(this::archive);
+    }
+    
+    /**
+     * Schedules the rotation at the start of the next period.
+     */
+    @Impure
+    private synchronized void scheduleRotation(long time) {
+        if (!closed) { rotationTask = getScheduler().schedule(trigger, Math.max(1, nextRotation - time), TimeUnit.MILLISECONDS); }
+    }
+    
+    /**
+     * Rotates the log file if the current period has ended and schedules the next rotation.
+     * The check is repeated if the scheduler woke up too early.
+     */
+    @Impure
+    private synchronized void rotateByTime() {
+        final long time = System.currentTimeMillis();
+        if (time >= nextRotation) {
+            nextRotation = period.getNextStart(time);
+            try {
+                open(directory, period.getName(time), 0);
+            } catch (@Nonnull FileNotFoundException exception) {
+                write(Level.WARNING, RotatingFileLogger.class.getName(), Thread.currentThread().getName(), "Could not rotate the log file.", exception);
+            }
+        }
+        scheduleRotation(time);
+    }
+    
+    /**
+     * Rotates the log file if it reached the size limit.
+     * The size is checked again after acquiring the lock so that concurrent writers rotate the file only once.
+     * If the rotation fails, the current file is kept and the rotation is retried after another maximum size has been written.
+     */
+    @Impure
+    private synchronized void rotateBySize() {
+        if (getFileSize() >= sizeLimit) {
+            try {
+                open(directory, name, index + 1);
+            } catch (@Nonnull FileNotFoundException exception) {
+                sizeLimit = getFileSize() + maximumSize;
+                write(Level.WARNING, RotatingFileLogger.class.getName(), Thread.currentThread().getName(), "Could not rotate the log file after it reached the maximum size.", exception);
+            }
+        }
+    }
+    
+    /**
+     * Moves the log file to the given configuration directory.
+     * The directory is passed by the observer because the configuration is only updated after its observers have been notified.
+     */
+    @Impure
+    private synchronized void rotateByDirectory(@Nonnull File newDirectory) {
         try {
-            setFile(getCurrentFile());
+            open(newDirectory, period.getName(System.currentTimeMillis()), 0);
         } catch (@Nonnull FileNotFoundException exception) {
-            throw UncheckedExceptionBuilder.withCause(exception).build();
+            write(Level.WARNING, RotatingFileLogger.class.getName(), Thread.currentThread().getName(), "Could not move the log file to " + newDirectory + ".", exception);
+        }
+    }
+    
+    /* -------------------------------------------------- Archiving -------------------------------------------------- */
+    
+    /**
+     * Compresses the given file with gzip and deletes it afterwards.
+     * The compressed data is written to a temporary file first so that an interrupted compression leaves no truncated archive behind.
+     */
+    @Impure
+    private static void compress(@Nonnull File file) throws IOException {
+        final @Nonnull File compressedFile = getCompressedFile(file);
+        final @Nonnull File temporaryFile = new File(compressedFile.getPath() + ".tmp");
+        try (@Nonnull InputStream inputStream = new FileInputStream(file); @Nonnull OutputStream outputStream = new GZIPOutputStream(new FileOutputStream(temporaryFile), 65_536)) {
+            final @Nonnull byte[] buffer = new byte[65_536];
+            int length;
+            while ((length = inputStream.read(buffer)) >= 0) { outputStream.write(buffer, 0, length); }
         }
+        if (!temporaryFile.renameTo(compressedFile)) { throw new IOException("Could not rename " + temporaryFile + " to " + compressedFile + "."); }
+        compressedFile.setLastModified(file.lastModified()); // The retention by age relies on the time of the last message rather than the time of the compression.
+        if (!file.delete()) { throw new IOException("Could not delete " + file + "."); }
+    }
+    
+    /**
+     * Stores the pattern which extracts the period and the index from the name of a log file.
+     */
+    private static final @Nonnull Pattern rotationPattern = Pattern.compile("(\\d{4}-\\d{2}-\\d{2}(?:-\\d{2})?)(?:\\.(\\d+))?\\.log(?:\\.gz)?$");
+    
+    /**
+     * Stores the comparator which sorts files from the most to the least recently rotated one by their period and their index within the period.
+     * The names are used instead of the modification times because files rotated within the resolution of the file system have the same modification time.
+     */
+    private static final @Nonnull Comparator<@Nonnull File> newestFirst = new Comparator<File>() {
+        @Pure @Override public int compare(@Nonnull File file1, @Nonnull File file2) {
+            final @Nonnull Matcher matcher1 = rotationPattern.matcher(file1.getName());
+            final @Nonnull Matcher matcher2 = rotationPattern.matcher(file2.getName());
+            if (!matcher1.find() || !matcher2.find()) { return Long.compare(file2.lastModified(), file1.lastModified()); }
+            final int period = matcher2.group(1).compareTo(matcher1.group(1));
+            if (period != 0) { return period; }
+            return Long.compare(matcher2.group(2) != null ? Long.parseLong(matcher2.group(2)) : 0, matcher1.group(2) != null ? Long.parseLong(matcher1.group(2)) : 0);
+        }
+    };
+    
+    /**
+     * Compresses the files which this logger rotated away from and deletes the rotated files with the prefix of this logger which exceed the retention limits.
+     * The files of loggers with other prefixes in the same directory are never touched.
+     * This method is run on the scheduler so that logging threads never wait for the compression of rotated files.
+     */
+    @Impure
+    private void archive() {
+        final @Nonnull List<@Nonnull File> files;
+        final @Nonnull File currentFile;
+        synchronized (this) {
+            if (this.currentFile == null) { return; }
+            files = new ArrayList<>(filesToCompress);
+            filesToCompress.clear();
+            currentFile = this.currentFile;
+        }
+        for (@Nonnull File file : files) {
+            try {
+                compress(file);
+            } catch (@Nonnull IOException exception) {
+                write(Level.WARNING, RotatingFileLogger.class.getName(), Thread.currentThread().getName(), "Could not compress the rotated log file " + file + ".", exception);
+                if (file.exists()) { synchronized (this) { filesToCompress.add(file); } } // The compression is retried with the next archiving.
+            }
+        }
+        
+        if (maximumFiles == 0 && maximumAge == 0) { return; }
+        final @Nullable File[] matchingFiles = currentFile.getParentFile().listFiles((directory, fileName) -> fileNamePattern.matcher(fileName).matches());
+        if (matchingFiles == null) { return; }
+        final @Nonnull List<@Nonnull File> rotatedFiles = new ArrayList<>(Arrays.asList(matchingFiles));
+        rotatedFiles.remove(currentFile);
+        Collections.sort(rotatedFiles, newestFirst);
+        final long oldest = System.currentTimeMillis() - maximumAge;
+        for (int i = 0; i < rotatedFiles.size(); i++) {
+            final @Nonnull File file = rotatedFiles.get(i);
+            if (maximumFiles > 0 && i >= maximumFiles || maximumAge > 0 && file.lastModified() < oldest) {
+                if (!file.delete() && file.exists()) { write(Level.WARNING, RotatingFileLogger.class.getName(), Thread.currentThread().getName(), "Could not delete the rotated log file " + file + ".", null); }
+            }
+        }
+    }
+    
+    /* -------------------------------------------------- Closing -------------------------------------------------- */
+    
+    /**
+     * Stops the rotation of this logger and closes the current file.
+     * Files that were rotated but not yet compressed are compressed in the background.
+     */
+    @Impure
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            if (rotationTask != null) {
+                rotationTask.cancel(false);
+                rotationTask = null;
+            }
+        }
+        Files.directory.deregister(trigger);
+        super.close();
+        getScheduler().execute(this::archive);
     }
     
     /* -------------------------------------------------- Constructors -------------------------------------------------- */
     
     /**
-     * Creates a rotating file logger that logs the messages to files in the default directory.
+     * Creates a rotating file logger that logs the messages to files with the given prefix in the default directory with the given rotation and retention settings.
      * 
      * @throws FileNotFoundException if the current file cannot be opened or created.
      */
-    protected RotatingFileLogger() throws FileNotFoundException {
-        super(getCurrentFile());
+    protected RotatingFileLogger(@Nonnull String prefix, @Nonnull Period period, @NonNegative long maximumSize, boolean compressed, @NonNegative int maximumFiles, @NonNegative long maximumAge) throws FileNotFoundException {
+        super(0);
+        
+        Require.that(prefix.matches("[\\w-]*")).orThrow("The prefix may only contain letters, digits, underscores and hyphens but was $.", prefix);
+        Require.that(period != null).orThrow("The period may not be null.");
+        Require.that(maximumSize >= 0).orThrow("The maximum size has to be non-negative but was $.", maximumSize);
+        Require.that(maximumFiles >= 0).orThrow("The maximum number of files has to be non-negative but was $.", maximumFiles);
+        Require.that(maximumAge >= 0).orThrow("The maximum age has to be non-negative but was $.", maximumAge);
+        
+        this.prefix = prefix;
+        this.period = period;
+        this.maximumSize = maximumSize;
+        this.compressed = compressed;
+        this.maximumFiles = maximumFiles;
+        this.maximumAge = maximumAge;
+        this.filePrefix = prefix.isEmpty() ? "" : prefix + ".";
+        this.fileNamePattern = Pattern.compile(Pattern.quote(filePrefix) + "\\d{4}-\\d{2}-\\d{2}(-\\d{2})?(\\.\\d+)?\\.log(\\.gz)?");
         
-        this.currentDate = new Date();
-        Files.directory.register((configuration, oldFile, newFile) -> rotate());
+        final long time = System.currentTimeMillis();
+        this.directory = Files.directory.get();
+        open(directory, period.getName(time), 0);
+        this.nextRotation = period.getNextStart(time);
+        scheduleRotation(time);
+        Files.directory.register(trigger);
+    }
+    
+    /**
+     * Creates a rotating file logger that logs the messages to files in the default directory, which are rotated daily and neither compressed nor deleted.
+     * 
+     * @throws FileNotFoundException if the current file cannot be opened or created.
+     */
+    protected RotatingFileLogger() throws FileNotFoundException {
+        this("", Period.DAILY, 0, false, 0, 0);
     }
     
     /**
-     * Returns a rotating file logger that logs the messages to files in the default directory.
+     * Returns a rotating file logger that logs the messages to files with the given prefix in the default directory, which are rotated after the given period and whenever they exceed the given size in bytes.
+     * Rotated files are compressed if so indicated and deleted once there are more than the given number of them or once they are older than the given number of milliseconds.
+     * A value of zero disables the rotation by size or the respective retention limit.
+     * 
+     * @throws FileNotFoundException if the current file cannot be opened or created.
+     */
+    @Pure
+    public static @Capturable @Nonnull RotatingFileLogger with(@Nonnull String prefix, @Nonnull Period period, @NonNegative long maximumSize, boolean compressed, @NonNegative int maximumFiles, @NonNegative long maximumAge) throws FileNotFoundException {
+        return new RotatingFileLogger(prefix, period, maximumSize, compressed, maximumFiles, maximumAge);
+    }
+    
+    /**
+     * Returns a rotating file logger that logs the messages to files in the default directory, which are rotated daily and neither compressed nor deleted.
      * 
      * @throws FileNotFoundException if the current file cannot be opened or created.
      */
@@ -110,13 +553,15 @@ public class RotatingFileLogger extends FileLogger {
     
     /* -------------------------------------------------- Logging -------------------------------------------------- */
     
+    /**
+     * Writes the message and rotates the log file if the number of written bytes reached the maximum size.
+     * Rotations by time are performed by the scheduler so that no date computations are necessary for each message.
+     */
     @Impure
     @Override
-    @SuppressWarnings("deprecation")
-    protected void log(@Nonnull Level level, @Nonnull String caller, @Nonnull String thread, @Nonnull String message, @Nullable Throwable throwable) {
-        final Date date = new Date();
-        if (date.getDate() != this.currentDate.getDate()) { rotate(); }
-        super.log(level, caller, thread, message, throwable);
+    protected void write(@Nonnull Level level, @Nonnull String caller, @Nonnull String thread, @NonCaptured @Unmodified @Nonnull CharSequence message, @Nullable Throwable throwable) {
+        super.write(level, caller, thread, message, throwable);
+        if (maximumSize > 0 && getFileSize() >= sizeLimit) { rotateBySize(); }
     }
     
 }
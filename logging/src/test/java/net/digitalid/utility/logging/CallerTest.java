@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2017 Synacts GmbH, Switzerland (info@synacts.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.digitalid.utility.logging;
+
+import java.lang.management.ManagementFactory;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CallerTest {
+    
+    private static @Nonnull String getCallerOfHelper() {
+        return Caller.get(3);
+    }
+    
+    @Test
+    public void testGet() {
+        assertTrue(Caller.get(2).startsWith(CallerTest.class.getName() + ".testGet:"));
+        assertTrue(getCallerOfHelper().startsWith(CallerTest.class.getName() + ".testGet:"));
+    }
+    
+    /**
+     * Returns the number of bytes that determining the caller allocated on average at the given additional depth of the stack.
+     */
+    private static long measureAllocations(@Nonnull com.sun.management.ThreadMXBean threadBean, int depth, boolean whole) {
+        if (depth > 0) { return measureAllocations(threadBean, depth - 1, whole); }
+        
+        final long threadId = Thread.currentThread().getId();
+        final int number = 10_000;
+        int length = 0;
+        long start = 0;
+        for (int i = 0; i < 2 * number; i++) {
+            if (i == number) { start = threadBean.getThreadAllocatedBytes(threadId); }
+            if (whole) {
+                final @Nonnull StackTraceElement element = Thread.currentThread().getStackTrace()[1];
+                length += (element.getClassName() + "." + element.getMethodName() + ":" + element.getLineNumber()).length();
+            } else {
+                length += Caller.get(2).length();
+            }
+        }
+        final long allocated = threadBean.getThreadAllocatedBytes(threadId) - start;
+        assertTrue(length > 0);
+        return allocated / number;
+    }
+    
+    @Test
+    public void testAllocations() {
+        final @Nonnull java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported());
+        final @Nonnull com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        
+        // Logging usually happens deep in the stack of an application, where materializing the whole stack trace is the most expensive.
+        final long allocatedByCaller = measureAllocations(threadBean, 50, false);
+        final long allocatedByStackTrace = measureAllocations(threadBean, 50, true);
+        assertTrue("Determining the caller allocated " + allocatedByCaller + " bytes instead of the " + allocatedByStackTrace + " bytes of the whole stack trace.", allocatedByCaller * 2 < allocatedByStackTrace);
+    }
+    
+}
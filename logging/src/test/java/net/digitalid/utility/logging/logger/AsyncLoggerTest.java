@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2017 Synacts GmbH, Switzerland (info@synacts.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.digitalid.utility.logging.logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.digitalid.utility.logging.Level;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AsyncLoggerTest {
+    
+    /**
+     * The recording logger records the messages and blocks the writer thread at the first message until it is opened.
+     */
+    private static class RecordingLogger extends Logger {
+        
+        private final @Nonnull List<@Nonnull String> messages = Collections.synchronizedList(new ArrayList<String>());
+        
+        private final @Nonnull CountDownLatch started = new CountDownLatch(1);
+        
+        private final @Nonnull CountDownLatch gate;
+        
+        private RecordingLogger(boolean closed) {
+            this.gate = new CountDownLatch(closed ? 1 : 0);
+        }
+        
+        @Override
+        protected void log(@Nonnull Level level, @Nonnull String caller, @Nonnull String thread, @Nonnull String message, @Nullable Throwable throwable) {
+            started.countDown();
+            try {
+                gate.await();
+            } catch (@Nonnull InterruptedException exception) {
+                throw new RuntimeException(exception);
+            }
+            messages.add(message);
+        }
+        
+        private void awaitStarted() throws InterruptedException {
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+        }
+        
+        private void open() {
+            gate.countDown();
+        }
+        
+    }
+    
+    private static void log(@Nonnull AsyncLogger logger, @Nonnull Level level, @Nonnull String message) {
+        logger.log(level, "AsyncLoggerTest", Thread.currentThread().getName(), message, null);
+    }
+    
+    /**
+     * Logs a first message, which blocks the writer thread, and fills the ring buffer of the given logger.
+     */
+    private static void fill(@Nonnull AsyncLogger logger, @Nonnull RecordingLogger recordingLogger) throws InterruptedException {
+        log(logger, Level.INFORMATION, "first");
+        recordingLogger.awaitStarted();
+        for (int i = 0; i < logger.getCapacity(); i++) { log(logger, Level.INFORMATION, "buffered " + i); }
+    }
+    
+    @Test
+    public void testMultiProducerOrdering() throws InterruptedException {
+        final @Nonnull RecordingLogger recordingLogger = new RecordingLogger(false);
+        final @Nonnull AsyncLogger logger = AsyncLogger.with(recordingLogger, 64, AsyncLogger.OverflowPolicy.BLOCK);
+        final int producers = 4;
+        final int messages = 10_000;
+        final @Nonnull List<@Nonnull Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < messages; i++) { log(logger, Level.INFORMATION, producer + " " + i); }
+            }));
+        }
+        for (@Nonnull Thread thread : threads) { thread.start(); }
+        for (@Nonnull Thread thread : threads) { thread.join(); }
+        logger.close();
+        
+        assertEquals(producers * messages, recordingLogger.messages.size());
+        final @Nonnull int[] next = new int[producers];
+        for (@Nonnull String message : recordingLogger.messages) {
+            final @Nonnull String[] parts = message.split(" ");
+            final int producer = Integer.parseInt(parts[0]);
+            assertEquals(next[producer]++, Integer.parseInt(parts[1]));
+        }
+    }
+    
+    @Test
+    public void testBlockPolicy() throws InterruptedException {
+        final @Nonnull RecordingLogger recordingLogger = new RecordingLogger(true);
+        final @Nonnull AsyncLogger logger = AsyncLogger.with(recordingLogger, 4, AsyncLogger.OverflowPolicy.BLOCK);
+        fill(logger, recordingLogger);
+        
+        final @Nonnull Thread producer = new Thread(() -> log(logger, Level.INFORMATION, "blocked"));
+        producer.start();
+        producer.join(200);
+        assertTrue(producer.isAlive());
+        
+        recordingLogger.open();
+        producer.join();
+        logger.close();
+        assertEquals(6, recordingLogger.messages.size());
+        assertEquals("blocked", recordingLogger.messages.get(5));
+    }
+    
+    @Test
+    public void testDropPolicy() throws InterruptedException {
+        final @Nonnull RecordingLogger recordingLogger = new RecordingLogger(true);
+        final @Nonnull AsyncLogger logger = AsyncLogger.with(recordingLogger, 4, AsyncLogger.OverflowPolicy.DROP);
+        fill(logger, recordingLogger);
+        for (int i = 0; i < 10; i++) { log(logger, Level.INFORMATION, "dropped " + i); }
+        
+        recordingLogger.open();
+        logger.close();
+        assertEquals(6, recordingLogger.messages.size());
+        assertEquals("10 messages were dropped because the ring buffer was full.", recordingLogger.messages.get(5));
+    }
+    
+    @Test
+    public void testSamplePolicy() throws InterruptedException {
+        final @Nonnull RecordingLogger recordingLogger = new RecordingLogger(true);
+        final @Nonnull AsyncLogger logger = AsyncLogger.with(recordingLogger, 4, AsyncLogger.OverflowPolicy.SAMPLE, Level.WARNING, 5);
+        fill(logger, recordingLogger);
+        
+        final @Nonnull Thread producer = new Thread(() -> {
+            for (int i = 1; i <= 5; i++) { log(logger, Level.INFORMATION, "sampled " + i); }
+        });
+        producer.start();
+        producer.join(200);
+        assertTrue(producer.isAlive());
+        
+        recordingLogger.open();
+        producer.join();
+        logger.close();
+        assertTrue(recordingLogger.messages.contains("sampled 5"));
+        assertTrue(recordingLogger.messages.contains("4 messages were dropped because the ring buffer was full."));
+        assertEquals(7, recordingLogger.messages.size());
+    }
+    
+    @Test
+    public void testDrainOnShutdown() throws InterruptedException {
+        final @Nonnull RecordingLogger recordingLogger = new RecordingLogger(true);
+        final @Nonnull AsyncLogger logger = AsyncLogger.with(recordingLogger, 2_048, AsyncLogger.OverflowPolicy.BLOCK);
+        fill(logger, recordingLogger);
+        
+        recordingLogger.open();
+        logger.close();
+        assertTrue(logger.isShutDown());
+        assertEquals(0, logger.getQueueDepth());
+        assertEquals(2_049, recordingLogger.messages.size());
+        
+        log(logger, Level.INFORMATION, "after shutdown");
+        assertEquals(2_050, recordingLogger.messages.size());
+        assertEquals("after shutdown", recordingLogger.messages.get(2_049));
+    }
+    
+}
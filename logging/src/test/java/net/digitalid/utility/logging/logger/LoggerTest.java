@@ -0,0 +1,321 @@
+/*
+ * Copyright (C) 2017 Synacts GmbH, Switzerland (info@synacts.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.digitalid.utility.logging.logger;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.digitalid.utility.logging.Caller;
+import net.digitalid.utility.logging.Level;
+import net.digitalid.utility.logging.Log;
+import net.digitalid.utility.logging.filter.LevelBasedLoggingFilter;
+import net.digitalid.utility.logging.filter.LoggingFilter;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LoggerTest {
+    
+    private static class CountingLogger extends Logger {
+        
+        private long messages = 0;
+        
+        private long characters = 0;
+        
+        @Override
+        protected void log(@Nonnull Level level, @Nonnull String caller, @Nonnull String thread, @Nonnull String message, @Nullable Throwable throwable) {
+            write(level, caller, thread, message, throwable);
+        }
+        
+        @Override
+        protected void write(@Nonnull Level level, @Nonnull String caller, @Nonnull String thread, @Nonnull CharSequence message, @Nullable Throwable throwable) {
+            messages++;
+            for (int i = 0; i < message.length(); i++) { characters += message.charAt(i); }
+        }
+        
+    }
+    
+    private static void logMessages(int number) {
+        for (int i = 0; i < number; i++) {
+            Logger.logWithCaller(Level.INFORMATION, "LoggerTest", "The $ message with $.", null, "formatted", "two arguments");
+            Logger.logWithCaller(Level.DEBUGGING, "LoggerTest", "The $ message is filtered.", null, "debugging");
+        }
+    }
+    
+    @Test
+    public void testFormatting() {
+        final @Nonnull CountingLogger logger = new CountingLogger();
+        final @Nonnull LoggingFilter oldFilter = LoggingFilter.filter.get();
+        final @Nonnull Logger oldLogger = Logger.logger.get();
+        LoggingFilter.filter.set(LevelBasedLoggingFilter.with(Level.INFORMATION));
+        Logger.logger.set(logger);
+        try {
+            logMessages(1);
+            assertEquals(1, logger.messages);
+            long expected = 0;
+            for (char character : "The 'formatted' message with 'two arguments'.".toCharArray()) { expected += character; }
+            assertEquals(expected, logger.characters);
+        } finally {
+            Logger.logger.set(oldLogger);
+            LoggingFilter.filter.set(oldFilter);
+        }
+    }
+    
+    @Test
+    public void testAllocations() {
+        final @Nonnull java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported());
+        final @Nonnull com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        final long threadId = Thread.currentThread().getId();
+        
+        final @Nonnull CountingLogger logger = new CountingLogger();
+        final @Nonnull LoggingFilter oldFilter = LoggingFilter.filter.get();
+        final @Nonnull Logger oldLogger = Logger.logger.get();
+        LoggingFilter.filter.set(LevelBasedLoggingFilter.with(Level.INFORMATION));
+        Logger.logger.set(logger);
+        try {
+            logMessages(100_000);
+            final int number = 100_000;
+            final long start = threadBean.getThreadAllocatedBytes(threadId);
+            logMessages(number);
+            final long allocated = threadBean.getThreadAllocatedBytes(threadId) - start;
+            // Thread.getName() copies the name of the thread into a new string on Java 8.
+            assertTrue("Logging a message allocated " + (allocated / number) + " bytes.", allocated / number < 32);
+        } finally {
+            Logger.logger.set(oldLogger);
+            LoggingFilter.filter.set(oldFilter);
+        }
+    }
+    
+    private static void logStaticMessages(int number) {
+        for (int i = 0; i < number; i++) {
+            Log.information("The $ message with $.", "formatted", "two arguments");
+            Log.debugging("The $ message is filtered.", "debugging");
+        }
+    }
+    
+    // The caller is determined at the same depth of the stack as in Log.information() and Logger.log() so that the same frames are walked.
+    
+    private static void logWithDeterminedCaller(@Nonnull Level level, @Nonnull CharSequence message, @Nullable Object argument1, @Nullable Object argument2) {
+        Logger.logWithCaller(level, Caller.get(), message, null, argument1, argument2);
+    }
+    
+    private static void informationWithDeterminedCaller(@Nonnull CharSequence message, @Nullable Object argument1, @Nullable Object argument2) {
+        logWithDeterminedCaller(Level.INFORMATION, message, argument1, argument2);
+    }
+    
+    private static void logMessagesWithDeterminedCaller(int number) {
+        for (int i = 0; i < number; i++) {
+            informationWithDeterminedCaller("The $ message with $.", "formatted", "two arguments");
+            Logger.logWithCaller(Level.DEBUGGING, "LoggerTest", "The $ message is filtered.", null, "debugging");
+        }
+    }
+    
+    @Test
+    public void testStaticAllocations() {
+        final @Nonnull java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported());
+        final @Nonnull com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        final long threadId = Thread.currentThread().getId();
+        
+        final @Nonnull CountingLogger logger = new CountingLogger();
+        final @Nonnull LoggingFilter oldFilter = LoggingFilter.filter.get();
+        final @Nonnull Logger oldLogger = Logger.logger.get();
+        LoggingFilter.filter.set(LevelBasedLoggingFilter.with(Level.INFORMATION));
+        Logger.logger.set(logger);
+        try {
+            final int number = 100_000;
+            logStaticMessages(number);
+            logMessagesWithDeterminedCaller(number);
+            final long start = threadBean.getThreadAllocatedBytes(threadId);
+            logStaticMessages(number);
+            final long middle = threadBean.getThreadAllocatedBytes(threadId);
+            logMessagesWithDeterminedCaller(number);
+            final long end = threadBean.getThreadAllocatedBytes(threadId);
+            final long allocatedByLogging = (middle - start) / number;
+            final long allocatedByCaller = (end - middle) / number;
+            // Only determining the caller at runtime allocates its frame and its string, whereas the rest of the static logging path is garbage-free.
+            assertEquals(number * 4, logger.messages);
+            assertTrue("Logging a message through the Log class allocated " + allocatedByLogging + " bytes, whereas logging it with the caller determined beforehand allocated " + allocatedByCaller + " bytes.", allocatedByLogging - allocatedByCaller < 32);
+        } finally {
+            Logger.logger.set(oldLogger);
+            LoggingFilter.filter.set(oldFilter);
+        }
+    }
+    
+    private static class RecordingLogger extends Logger {
+        
+        private @Nullable String message;
+        
+        private @Nullable Throwable throwable;
+        
+        @Override
+        protected void log(@Nonnull Level level, @Nonnull String caller, @Nonnull String thread, @Nonnull String message, @Nullable Throwable throwable) {
+            this.message = message;
+            this.throwable = throwable;
+        }
+        
+    }
+    
+    @Test
+    public void testNullThrowableAndArgument() {
+        final @Nonnull RecordingLogger logger = new RecordingLogger();
+        final @Nonnull LoggingFilter oldFilter = LoggingFilter.filter.get();
+        final @Nonnull Logger oldLogger = Logger.logger.get();
+        LoggingFilter.filter.set(LevelBasedLoggingFilter.with(Level.INFORMATION));
+        Logger.logger.set(logger);
+        try {
+            // A single null is ambiguous between the overloads with a throwable, with an argument and with variable arity, and thus has to be cast.
+            Log.error("The message with $.", (Throwable) null);
+            assertEquals("The message with $.", logger.message);
+            assertNull(logger.throwable);
+            
+            Log.error("The message with $.", (Object) null);
+            assertEquals("The message with 'null'.", logger.message);
+            assertNull(logger.throwable);
+        } finally {
+            Logger.logger.set(oldLogger);
+            LoggingFilter.filter.set(oldFilter);
+        }
+    }
+    
+    /**
+     * The discarding output stream discards all bytes that are written to it.
+     */
+    private static class DiscardingOutputStream extends OutputStream {
+        
+        @Override
+        public void write(int b) {}
+        
+        @Override
+        public void write(@Nonnull byte[] bytes, int offset, int length) {}
+        
+    }
+    
+    @Test
+    public void testPrintStreamAllocations() {
+        final @Nonnull java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported());
+        final @Nonnull com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        final long threadId = Thread.currentThread().getId();
+        
+        final @Nonnull PrintStreamLogger logger = new PrintStreamLogger(new PrintStream(new DiscardingOutputStream())) {};
+        final @Nonnull LoggingFilter oldFilter = LoggingFilter.filter.get();
+        final @Nonnull Logger oldLogger = Logger.logger.get();
+        LoggingFilter.filter.set(LevelBasedLoggingFilter.with(Level.INFORMATION));
+        Logger.logger.set(logger);
+        try {
+            logMessages(100_000);
+            final int number = 100_000;
+            final long start = threadBean.getThreadAllocatedBytes(threadId);
+            logMessages(number);
+            final long allocated = threadBean.getThreadAllocatedBytes(threadId) - start;
+            // Thread.getName() copies the name of the thread into a new string on Java 8 and the timestamp is formatted once per second.
+            assertTrue("Logging a message to a print stream allocated " + (allocated / number) + " bytes.", allocated / number < 64);
+        } finally {
+            Logger.logger.set(oldLogger);
+            LoggingFilter.filter.set(oldFilter);
+        }
+    }
+    
+    @Test
+    public void testPrintStreamCharset() throws UnsupportedEncodingException {
+        final @Nonnull ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final @Nonnull PrintStream printStream = new PrintStream(bytes, true, "UTF-16BE");
+        Assume.assumeTrue(PrintStreamLogger.getCharset(printStream).name().equals("UTF-16BE"));
+        
+        final @Nonnull PrintStreamLogger logger = new PrintStreamLogger(printStream) {};
+        logger.log(Level.INFORMATION, "LoggerTest", "main", "Gr\u00FC\u00DFe", null);
+        assertTrue(new String(bytes.toByteArray(), "UTF-16BE").contains("<LoggerTest>: Gr\u00FC\u00DFe"));
+    }
+    
+    /**
+     * The closable output stream stores the written bytes and records whether it has been closed.
+     */
+    private static class ClosableOutputStream extends ByteArrayOutputStream {
+        
+        private boolean closed = false;
+        
+        @Override
+        public void close() {
+            closed = true;
+        }
+        
+    }
+    
+    @Test
+    public void testImmediateFlushPolicy() {
+        assertTrue(FlushPolicy.IMMEDIATELY.isImmediate());
+        assertTrue(FlushPolicy.with(1_000, 1, Level.ERROR).isImmediate());
+        assertTrue(FlushPolicy.with(1_000, 32_768, Level.VERBOSE).isImmediate());
+        assertFalse(FlushPolicy.withDefaultValues().isImmediate());
+    }
+    
+    @Test
+    public void testPrintStreamFlushPolicy() {
+        final @Nonnull ClosableOutputStream bytes = new ClosableOutputStream();
+        final @Nonnull PrintStreamLogger logger = new PrintStreamLogger(new PrintStream(new BufferedOutputStream(bytes, 65_536))) {};
+        logger.setFlushPolicy(FlushPolicy.with(0, 1_000, Level.ERROR));
+        
+        logger.log(Level.INFORMATION, "LoggerTest", "main", "Buffered", null);
+        assertEquals(0, bytes.size());
+        
+        final long deadline = System.currentTimeMillis() + 10_000;
+        while (bytes.size() == 0) {
+            assertTrue("The buffered messages should have been flushed once the size was reached.", System.currentTimeMillis() < deadline);
+            logger.log(Level.INFORMATION, "LoggerTest", "main", "Buffered until the size is reached", null);
+        }
+        assertTrue(bytes.size() >= 1_000);
+        
+        int size = bytes.size();
+        logger.log(Level.INFORMATION, "LoggerTest", "main", "Buffered", null);
+        assertEquals(size, bytes.size());
+        logger.log(Level.ERROR, "LoggerTest", "main", "Flushed because of the level", null);
+        assertTrue(bytes.toString().endsWith("Flushed because of the level" + System.lineSeparator()));
+        
+        size = bytes.size();
+        final @Nonnull Throwable throwable = new Exception("With a stack trace");
+        final @Nonnull StackTraceElement[] stackTrace = new StackTraceElement[100];
+        Arrays.fill(stackTrace, new StackTraceElement("LoggerTest", "testPrintStreamFlushPolicy", "LoggerTest.java", 1));
+        throwable.setStackTrace(stackTrace);
+        logger.log(Level.INFORMATION, "LoggerTest", "main", "Flushed because of the stack trace", throwable);
+        assertTrue(bytes.toString().contains("java.lang.Exception: With a stack trace"));
+        assertTrue(bytes.size() - size >= 1_000);
+        
+        size = bytes.size();
+        logger.log(Level.INFORMATION, "LoggerTest", "main", "Flushed explicitly", null);
+        assertEquals(size, bytes.size());
+        logger.flush();
+        assertTrue(bytes.toString().endsWith("Flushed explicitly" + System.lineSeparator()));
+        
+        logger.log(Level.INFORMATION, "LoggerTest", "main", "Flushed on close", null);
+        assertFalse(bytes.closed);
+        logger.close();
+        assertTrue(bytes.toString().endsWith("Flushed on close" + System.lineSeparator()));
+        assertTrue(bytes.closed);
+    }
+    
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2017 Synacts GmbH, Switzerland (info@synacts.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.digitalid.utility.logging.logger;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Scanner;
+import java.util.zip.GZIPInputStream;
+
+import javax.annotation.Nonnull;
+
+import net.digitalid.utility.file.Files;
+import net.digitalid.utility.logging.Level;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RotatingFileLoggerTest {
+    
+    private static @Nonnull File createLogsDirectory() throws IOException {
+        final @Nonnull File directory = java.nio.file.Files.createTempDirectory("rotating").toFile();
+        Files.directory.set(directory);
+        final @Nonnull File logsDirectory = new File(directory, "logs");
+        assertTrue(logsDirectory.isDirectory() || logsDirectory.mkdir());
+        return logsDirectory;
+    }
+    
+    private static @Nonnull String getName() {
+        return new SimpleDateFormat("yyyy-MM-dd").format(new Date());
+    }
+    
+    private static void awaitExistence(@Nonnull File file, boolean exists) throws InterruptedException {
+        for (int i = 0; i < 1_000 && file.exists() != exists; i++) { Thread.sleep(10); }
+        assertEquals(file + (exists ? " should exist." : " should not exist."), exists, file.exists());
+    }
+    
+    private static @Nonnull String read(@Nonnull InputStream inputStream) throws IOException {
+        try (@Nonnull Scanner scanner = new Scanner(inputStream, StandardCharsets.UTF_8.name())) {
+            return scanner.useDelimiter("\\A").hasNext() ? scanner.next() : "";
+        }
+    }
+    
+    private static void logUntilRotated(@Nonnull RotatingFileLogger logger, @Nonnull File nextFile) {
+        for (int i = 0; i < 1_000 && !nextFile.exists(); i++) { logger.log(Level.INFORMATION, "RotatingFileLoggerTest", "main", "Message " + i, null); }
+        assertTrue(nextFile.exists());
+    }
+    
+    @Test
+    public void testRotationAndCompression() throws IOException, InterruptedException {
+        final @Nonnull File logsDirectory = createLogsDirectory();
+        final @Nonnull File foreignFile = new File(logsDirectory, "2000-01-01.log");
+        assertTrue(foreignFile.createNewFile());
+        
+        final @Nonnull RotatingFileLogger logger = RotatingFileLogger.with("", RotatingFileLogger.Period.DAILY, 1_000, true, 0, 0);
+        try {
+            final @Nonnull File firstFile = new File(logsDirectory, getName() + ".log");
+            logUntilRotated(logger, new File(logsDirectory, getName() + ".1.log"));
+            
+            final @Nonnull File compressedFile = new File(logsDirectory, getName() + ".log.gz");
+            awaitExistence(compressedFile, true);
+            awaitExistence(firstFile, false);
+            try (@Nonnull InputStream inputStream = new GZIPInputStream(new FileInputStream(compressedFile))) {
+                assertTrue(read(inputStream).contains("<RotatingFileLoggerTest>: Message 0"));
+            }
+            assertTrue(foreignFile.exists());
+        } finally {
+            logger.close();
+        }
+    }
+    
+    @Test
+    public void testRetention() throws IOException, InterruptedException {
+        final @Nonnull File logsDirectory = createLogsDirectory();
+        final long time = System.currentTimeMillis();
+        for (int i = 1; i <= 3; i++) {
+            final @Nonnull File file = new File(logsDirectory, "2000-01-0" + i + ".log.gz");
+            assertTrue(file.createNewFile());
+            assertTrue(file.setLastModified(time - 3_600_000L * (4 - i)));
+        }
+        final @Nonnull File foreignArchive = new File(logsDirectory, "other.2000-01-01.log.gz");
+        assertTrue(foreignArchive.createNewFile());
+        assertTrue(foreignArchive.setLastModified(time - 3_600_000L * 10));
+        
+        final @Nonnull RotatingFileLogger logger = RotatingFileLogger.with("", RotatingFileLogger.Period.DAILY, 1_000, true, 2, 0);
+        try {
+            logUntilRotated(logger, new File(logsDirectory, getName() + ".1.log"));
+            awaitExistence(new File(logsDirectory, "2000-01-02.log.gz"), false);
+            assertTrue(new File(logsDirectory, getName() + ".log.gz").exists());
+            assertTrue(new File(logsDirectory, "2000-01-03.log.gz").exists());
+            assertFalse(new File(logsDirectory, "2000-01-01.log.gz").exists());
+            assertTrue(foreignArchive.exists());
+        } finally {
+            logger.close();
+        }
+    }
+    
+    @Test
+    public void testFailedRotation() throws IOException {
+        final @Nonnull File logsDirectory = createLogsDirectory();
+        final @Nonnull File blockingDirectory = new File(logsDirectory, getName() + ".1.log");
+        assertTrue(blockingDirectory.mkdir());
+        Assume.assumeTrue(blockingDirectory.length() < 100_000);
+        
+        final @Nonnull RotatingFileLogger logger = RotatingFileLogger.with("", RotatingFileLogger.Period.DAILY, 100_000, true, 0, 0);
+        try {
+            for (int i = 0; i < 5_000; i++) { logger.log(Level.INFORMATION, "RotatingFileLoggerTest", "main", "Message " + i, null); }
+            assertTrue(logger.getFileSize() > 100_000);
+            logger.flush();
+            try (@Nonnull InputStream inputStream = new FileInputStream(new File(logsDirectory, getName() + ".log"))) {
+                final @Nonnull String content = read(inputStream);
+                assertTrue(content.contains("Could not rotate the log file after it reached the maximum size."));
+                assertTrue(content.contains("Message 4999"));
+            }
+        } finally {
+            logger.close();
+        }
+    }
+    
+    @Test
+    public void testDirectoryChange() throws IOException, InterruptedException {
+        final @Nonnull File oldLogsDirectory = createLogsDirectory();
+        final @Nonnull RotatingFileLogger logger = RotatingFileLogger.with("", RotatingFileLogger.Period.DAILY, 0, true, 0, 0);
+        try {
+            logger.log(Level.INFORMATION, "RotatingFileLoggerTest", "main", "Old directory", null);
+            final @Nonnull File newLogsDirectory = createLogsDirectory();
+            logger.log(Level.INFORMATION, "RotatingFileLoggerTest", "main", "New directory", null);
+            try (@Nonnull InputStream inputStream = new FileInputStream(new File(newLogsDirectory, getName() + ".log"))) {
+                assertTrue(read(inputStream).contains("<RotatingFileLoggerTest>: New directory"));
+            }
+            awaitExistence(new File(oldLogsDirectory, getName() + ".log.gz"), true);
+        } finally {
+            logger.close();
+        }
+    }
+    
+    @Test
+    public void testDefaultsRotateDailyWithoutCompression() throws IOException {
+        final @Nonnull File logsDirectory = createLogsDirectory();
+        final @Nonnull RotatingFileLogger logger = RotatingFileLogger.withDefaultDirectory();
+        try {
+            assertEquals(RotatingFileLogger.Period.DAILY, logger.getPeriod());
+            assertEquals(0, logger.getMaximumSize());
+            assertFalse(logger.isCompressed());
+            logger.log(Level.INFORMATION, "RotatingFileLoggerTest", "main", "Default", null);
+            assertTrue(new File(logsDirectory, getName() + ".log").exists());
+        } finally {
+            logger.close();
+        }
+    }
+    
+    @Test
+    public void testPrefixedRotationWithoutCompression() throws IOException, InterruptedException {
+        final @Nonnull File logsDirectory = createLogsDirectory();
+        final @Nonnull RotatingFileLogger logger = RotatingFileLogger.with("application", RotatingFileLogger.Period.DAILY, 1_000, false, 1, 0);
+        try {
+            logUntilRotated(logger, new File(logsDirectory, "application." + getName() + ".2.log"));
+            awaitExistence(new File(logsDirectory, "application." + getName() + ".log"), false);
+            assertTrue(new File(logsDirectory, "application." + getName() + ".1.log").exists());
+            assertFalse(new File(logsDirectory, "application." + getName() + ".1.log.gz").exists());
+        } finally {
+            logger.close();
+        }
+    }
+    
+}
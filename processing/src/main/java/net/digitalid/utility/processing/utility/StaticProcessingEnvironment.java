@@ -56,4 +56,19 @@ public class StaticProcessingEnvironment {
         return environment.get().getTypeUtils();
     }
     
+    /* -------------------------------------------------- Options -------------------------------------------------- */
+    
+    /**
+     * Stores the name of the option with which generated code passes its caller as a constant to the logger instead of having it determined at runtime.
+     */
+    public static final @Nonnull String INJECT_CALLERS = "injectCallers";
+    
+    /**
+     * Returns whether the option with the given name was passed to the current annotation processor.
+     */
+    @Pure
+    public static boolean hasOption(@Nonnull String name) {
+        return environment.isSet() && environment.get().getOptions().containsKey(name);
+    }
+    
 }
@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2017 Synacts GmbH, Switzerland (info@synacts.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.digitalid.utility.property;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.digitalid.utility.annotations.method.Impure;
+import net.digitalid.utility.annotations.method.Pure;
+import net.digitalid.utility.annotations.ownership.Capturable;
+import net.digitalid.utility.annotations.ownership.Captured;
+import net.digitalid.utility.concurrency.local.StripedCounter;
+import net.digitalid.utility.concurrency.local.StripedCounterBuilder;
+import net.digitalid.utility.concurrency.local.StripedHistogram;
+import net.digitalid.utility.configuration.Configuration;
+import net.digitalid.utility.contracts.Require;
+import net.digitalid.utility.threading.NamedThreadFactory;
+import net.digitalid.utility.threading.SerialExecutor;
+import net.digitalid.utility.threading.ThreadPools;
+import net.digitalid.utility.validation.annotations.math.NonNegative;
+import net.digitalid.utility.validation.annotations.math.Positive;
+import net.digitalid.utility.validation.annotations.type.Immutable;
+import net.digitalid.utility.validation.annotations.type.Utility;
+
+/**
+ * The notification dispatcher runs the notifications of {@link PropertyImplementation.AsynchronousObserver asynchronous observers} on a shared pool.
+ * Each asynchronous observer has its own {@link SerialExecutor} so that its notifications are still delivered sequentially in the order in which they occurred.
+ */
+@Utility
+public abstract class NotificationDispatcher {
+    
+    /* -------------------------------------------------- Pool -------------------------------------------------- */
+    
+    /**
+     * Returns a new pool with the given number of threads for the dispatching of notifications.
+     * The queue of the pool contains at most one task per asynchronous observer and is bounded to 1024 tasks per thread.
+     * If the queue is full, the notification is rejected and {@link #getDroppedNotifications() counted as dropped}.
+     * Rejected notifications are not run on the notifying thread because it holds the lock of the notifying property.
+     */
+    @Pure
+    public static @Capturable @Nonnull ThreadPoolExecutor newPool(@Positive int threads) {
+        Require.that(threads > 0).orThrow("The number of threads has to be positive but was $.", threads);
+        
+        final @Nonnull ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(threads * 1_024), NamedThreadFactory.with("Observer", true), new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+    
+    /**
+     * Stores the pool on which the notifications of asynchronous observers are run.
+     */
+    public static final @Nonnull Configuration<ExecutorService> pool = Configuration.with(newPool(Math.max(2, ThreadPools.getAvailableProcessors() / 2)));
+    
+    static {
+        ThreadPools.register("Observer", pool);
+    }
+    
+    /**
+     * Returns a new serial executor which runs its tasks on the {@link #pool} that is configured at the time of execution.
+     */
+    @Pure
+    public static @Capturable @Nonnull SerialExecutor newSerialExecutor() {
+        return SerialExecutor.with(task -> pool.get().execute(task));
+    }
+    
+    /* -------------------------------------------------- Metrics -------------------------------------------------- */
+    
+    /**
+     * Stores the number of notifications that wait to be delivered.
+     */
+    private static final @Nonnull StripedCounter pendingNotifications = StripedCounterBuilder.build();
+    
+    /**
+     * Stores the number of notifications that were dropped because the pool was saturated.
+     */
+    private static final @Nonnull StripedCounter droppedNotifications = StripedCounterBuilder.build();
+    
+    /**
+     * Stores the latencies in microseconds between the occurrence and the delivery of notifications.
+     */
+    private static final @Nonnull StripedHistogram notificationLatencies = StripedHistogram.withUpperBounds(10, 100, 1_000, 10_000, 100_000, 1_000_000);
+    
+    /**
+     * Returns the number of notifications that wait to be delivered to asynchronous observers.
+     */
+    @Pure
+    public static @NonNegative long getPendingNotifications() {
+        return Math.max(0, pendingNotifications.get());
+    }
+    
+    /**
+     * Returns the number of notifications that were dropped because the queue of the pool was full.
+     */
+    @Pure
+    public static @NonNegative long getDroppedNotifications() {
+        return Math.max(0, droppedNotifications.get());
+    }
+    
+    /**
+     * Returns the histogram of the latencies in microseconds between the occurrence and the delivery of notifications.
+     */
+    @Pure
+    public static @Nonnull StripedHistogram getNotificationLatencies() {
+        return notificationLatencies;
+    }
+    
+    /* -------------------------------------------------- Dispatching -------------------------------------------------- */
+    
+    /**
+     * A pending notification records its latency and, if the {@link NotificationMetrics#enabled notification metrics are enabled}, its execution time when it is run.
+     */
+    @Immutable
+    private static class PendingNotification implements Runnable {
+        
+        private final long start = System.nanoTime();
+        
+        private final @Nonnull Observer observer;
+        
+        /**
+         * Stores the property whose change is notified or null if the execution time is recorded in the {@link NotificationMetrics#asynchronous asynchronous metrics}.
+         */
+        private final @Nullable PropertyImplementation<?, ?> property;
+        
+        private final @Nonnull Runnable notification;
+        
+        private PendingNotification(@Nonnull Observer observer, @Nullable PropertyImplementation<?, ?> property, @Nonnull Runnable notification) {
+            this.observer = observer;
+            this.property = property;
+            this.notification = notification;
+        }
+        
+        @Impure
+        @Override
+        public void run() {
+            pendingNotifications.decrement();
+            final long now = System.nanoTime();
+            notificationLatencies.record(TimeUnit.NANOSECONDS.toMicros(now - start));
+            try {
+                notification.run();
+            } finally {
+                if (NotificationMetrics.enabled.get()) { (property != null ? property.getNotificationMetrics() : NotificationMetrics.asynchronous).recordObserver(observer, System.nanoTime() - now); }
+            }
+        }
+        
+    }
+    
+    /**
+     * Dispatches the given notification of the given observer on the given serial executor and records its latency.
+     * If the {@link NotificationMetrics#enabled notification metrics are enabled}, the execution time of the notification is recorded as well,
+     * namely in the notification metrics of the given property or in the {@link NotificationMetrics#asynchronous asynchronous metrics} if the property is null.
+     * The notification is silently dropped if the serial executor has been shut down because its observer was deregistered
+     * and {@link #getDroppedNotifications() counted as dropped} if the pool rejected it because its queue was full.
+     */
+    @Impure
+    public static void dispatch(@Nonnull SerialExecutor executor, @Nonnull Observer observer, @Nullable PropertyImplementation<?, ?> property, @Captured @Nonnull Runnable notification) {
+        pendingNotifications.increment();
+        try {
+            executor.execute(new PendingNotification(observer, property, notification));
+        } catch (@Nonnull RejectedExecutionException exception) {
+            pendingNotifications.decrement();
+            if (!executor.isShutdown()) { droppedNotifications.increment(); }
+        }
+    }
+    
+    /**
+     * Shuts down the given serial executor and discards the notifications that have not yet been delivered.
+     */
+    @Impure
+    public static void shutdown(@Nonnull SerialExecutor executor) {
+        for (@Nonnull Runnable task : executor.shutdownNow()) {
+            if (task instanceof PendingNotification) { pendingNotifications.decrement(); }
+        }
+    }
+    
+}
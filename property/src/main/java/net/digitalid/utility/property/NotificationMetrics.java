@@ -0,0 +1,255 @@
+/*
+ * Copyright (C) 2017 Synacts GmbH, Switzerland (info@synacts.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.digitalid.utility.property;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import net.digitalid.utility.annotations.method.Impure;
+import net.digitalid.utility.annotations.method.Pure;
+import net.digitalid.utility.annotations.ownership.Capturable;
+import net.digitalid.utility.annotations.ownership.NonCaptured;
+import net.digitalid.utility.annotations.type.ThreadSafe;
+import net.digitalid.utility.concurrency.local.StripedCounter;
+import net.digitalid.utility.concurrency.local.StripedCounterBuilder;
+import net.digitalid.utility.concurrency.local.StripedHistogram;
+import net.digitalid.utility.concurrency.map.ConcurrentHashMap;
+import net.digitalid.utility.concurrency.map.ConcurrentHashMapBuilder;
+import net.digitalid.utility.configuration.Configuration;
+import net.digitalid.utility.logging.Log;
+import net.digitalid.utility.time.Time;
+import net.digitalid.utility.time.TimeBuilder;
+import net.digitalid.utility.validation.annotations.math.NonNegative;
+import net.digitalid.utility.validation.annotations.type.Mutable;
+
+/**
+ * The notification metrics record how many observers were notified how long about the changes of the properties of a class.
+ * The metrics are only recorded if they are {@link #enabled} and are registered as an MXBean so that observers which block writers can be found with JMX.
+ * The queue lag of asynchronous observers is recorded by the {@link NotificationDispatcher} and their execution time in the metrics of the notifying property.
+ */
+@Mutable
+@ThreadSafe
+public class NotificationMetrics implements NotificationMetricsMXBean {
+    
+    /* -------------------------------------------------- Configuration -------------------------------------------------- */
+    
+    /**
+     * Stores whether the notification metrics are recorded.
+     */
+    public static final @Nonnull Configuration<Boolean> enabled = Configuration.with(false);
+    
+    /**
+     * Stores the execution time above which an observer is considered to be slow.
+     */
+    public static final @Nonnull Configuration<Time> slowObserverThreshold = Configuration.with(TimeBuilder.withValue(10).build());
+    
+    /* -------------------------------------------------- Registry -------------------------------------------------- */
+    
+    /**
+     * Stores the notification metrics mapped to their name.
+     */
+    private static final @Nonnull ConcurrentHashMap<@Nonnull String, @Nonnull NotificationMetrics> registry = ConcurrentHashMapBuilder.buildWithInitialCapacity(16);
+    
+    /**
+     * Returns the notification metrics with the given name, which are created and registered with JMX if necessary.
+     */
+    @Impure
+    public static @Nonnull NotificationMetrics of(@Nonnull String name) {
+        final @Nullable NotificationMetrics metrics = registry.get(name);
+        if (metrics != null) { return metrics; }
+        final @Nonnull NotificationMetrics newMetrics = new NotificationMetrics(name);
+        final @Nullable NotificationMetrics previousMetrics = registry.putIfAbsent(name, newMetrics);
+        if (previousMetrics != null) { return previousMetrics; }
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(newMetrics, new ObjectName("net.digitalid.utility.property:type=NotificationMetrics,name=" + ObjectName.quote(name)));
+        } catch (@Nonnull JMException exception) {
+            Log.warning("Could not register the notification metrics of $ with JMX.", exception, name);
+        }
+        return newMetrics;
+    }
+    
+    /**
+     * Returns all notification metrics that have been recorded so far mapped to their name.
+     */
+    @Pure
+    public static @Nonnull Map<@Nonnull String, @Nonnull NotificationMetrics> getAll() {
+        return Collections.unmodifiableMap(registry);
+    }
+    
+    /**
+     * Stores the metrics of the notifications that are delivered to asynchronous observers without a notifying property.
+     */
+    public static final @Nonnull NotificationMetrics asynchronous = of("Asynchronous");
+    
+    /* -------------------------------------------------- Fields -------------------------------------------------- */
+    
+    private final @Nonnull String name;
+    
+    /**
+     * Stores the number of changes about which the observers were notified.
+     */
+    private final @Nonnull StripedCounter notifications = StripedCounterBuilder.build();
+    
+    /**
+     * Stores the number of observers that were notified.
+     */
+    private final @Nonnull StripedCounter notifiedObservers = StripedCounterBuilder.build();
+    
+    /**
+     * Stores the times in microseconds that the notification of all observers took per change.
+     */
+    private final @Nonnull StripedHistogram notificationTimes = StripedHistogram.withUpperBounds(10, 100, 1_000, 10_000, 100_000, 1_000_000);
+    
+    /**
+     * Stores the times in microseconds that the notification of a single observer took.
+     */
+    private final @Nonnull StripedHistogram observerTimes = StripedHistogram.withUpperBounds(10, 100, 1_000, 10_000, 100_000, 1_000_000);
+    
+    /**
+     * Stores the names of the observers that exceeded the slow-observer threshold mapped to how often they did so.
+     */
+    private final @Nonnull ConcurrentHashMap<@Nonnull String, @Nonnull StripedCounter> slowObservers = ConcurrentHashMapBuilder.buildWithInitialCapacity(4);
+    
+    /* -------------------------------------------------- Constructors -------------------------------------------------- */
+    
+    protected NotificationMetrics(@Nonnull String name) {
+        this.name = name;
+    }
+    
+    /**
+     * Returns the name of these notification metrics.
+     */
+    @Pure
+    public @Nonnull String getName() {
+        return name;
+    }
+    
+    /* -------------------------------------------------- Recording -------------------------------------------------- */
+    
+    /**
+     * Returns the name of the class of the given observer, which unwraps asynchronous and weak observers.
+     */
+    @Pure
+    public static @Nonnull String getName(@NonCaptured @Nonnull Observer observer) {
+        @Nullable Observer unwrappedObserver = observer;
+        if (observer instanceof PropertyImplementation.AsynchronousObserver) { unwrappedObserver = ((PropertyImplementation.AsynchronousObserver<?>) observer).observer; }
+        else if (observer instanceof PropertyImplementation.WeakObserver) { unwrappedObserver = ((PropertyImplementation.WeakObserver<?>) observer).getObserver(); }
+        return unwrappedObserver != null ? unwrappedObserver.getClass().getName() : "collected observer";
+    }
+    
+    /**
+     * Records that the given observer took the given number of nanoseconds to be notified and reports it if it exceeded the slow-observer threshold.
+     */
+    @Impure
+    public void recordObserver(@NonCaptured @Nonnull Observer observer, @NonNegative long nanos) {
+        observerTimes.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+        final long threshold = slowObserverThreshold.get().getValue();
+        if (TimeUnit.NANOSECONDS.toMillis(nanos) >= threshold) {
+            final @Nonnull String observerName = getName(observer);
+            @Nullable StripedCounter counter = slowObservers.get(observerName);
+            if (counter == null) {
+                final @Nonnull StripedCounter newCounter = StripedCounterBuilder.build();
+                final @Nullable StripedCounter previousCounter = slowObservers.putIfAbsent(observerName, newCounter);
+                if (previousCounter == null) {
+                    counter = newCounter;
+                    Log.warning("The observer $ took $ ms to be notified about a change of $, which is more than the threshold of $ ms.", observerName, TimeUnit.NANOSECONDS.toMillis(nanos), name, threshold);
+                } else {
+                    counter = previousCounter;
+                }
+            }
+            counter.increment();
+        }
+    }
+    
+    /**
+     * Records that the given number of observers took the given number of nanoseconds to be notified about a change.
+     */
+    @Impure
+    public void recordNotification(@NonNegative int fanOut, @NonNegative long nanos) {
+        notifications.increment();
+        notifiedObservers.add(fanOut);
+        notificationTimes.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+    
+    /* -------------------------------------------------- Retrieval -------------------------------------------------- */
+    
+    @Pure
+    @Override
+    public long getNotificationCount() {
+        return notifications.get();
+    }
+    
+    @Pure
+    @Override
+    public double getAverageFanOut() {
+        final long count = notifications.get();
+        return count == 0 ? 0 : (double) notifiedObservers.get() / count;
+    }
+    
+    @Pure
+    @Override
+    public double getAverageNotificationTime() {
+        final long count = notificationTimes.getTotalCount();
+        return count == 0 ? 0 : (double) notificationTimes.getSum() / count;
+    }
+    
+    @Pure
+    @Override
+    public @Capturable @Nonnull long[] getNotificationTimeCounts() {
+        return notificationTimes.getCounts();
+    }
+    
+    @Pure
+    @Override
+    public @Capturable @Nonnull long[] getObserverTimeCounts() {
+        return observerTimes.getCounts();
+    }
+    
+    @Pure
+    @Override
+    public @Capturable @Nonnull Map<String, Long> getSlowObservers() {
+        final @Nonnull Map<String, Long> result = new HashMap<>();
+        for (@Nonnull Map.Entry<@Nonnull String, @Nonnull StripedCounter> entry : slowObservers.entrySet()) { result.put(entry.getKey(), entry.getValue().get()); }
+        return result;
+    }
+    
+    @Impure
+    @Override
+    public void reset() {
+        notifications.reset();
+        notifiedObservers.reset();
+        notificationTimes.reset();
+        observerTimes.reset();
+        slowObservers.clear();
+    }
+    
+    /* -------------------------------------------------- Object -------------------------------------------------- */
+    
+    @Pure
+    @Override
+    public @Nonnull String toString() {
+        return "NotificationMetrics(name: " + name + ", notifications: " + getNotificationCount() + ", average fan-out: " + getAverageFanOut() + ", average time: " + getAverageNotificationTime() + " µs)";
+    }
+    
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2017 Synacts GmbH, Switzerland (info@synacts.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.digitalid.utility.property;
+
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+import net.digitalid.utility.annotations.method.Impure;
+import net.digitalid.utility.annotations.method.Pure;
+
+/**
+ * This interface exposes the {@link NotificationMetrics notification metrics} of a property class through JMX.
+ */
+public interface NotificationMetricsMXBean {
+    
+    /**
+     * Returns the number of changes about which the observers were notified.
+     */
+    @Pure
+    public long getNotificationCount();
+    
+    /**
+     * Returns the average number of observers that were notified per change.
+     */
+    @Pure
+    public double getAverageFanOut();
+    
+    /**
+     * Returns the average time in microseconds that the notification of all observers took per change.
+     */
+    @Pure
+    public double getAverageNotificationTime();
+    
+    /**
+     * Returns the counts of the notification times in microseconds per bucket with the upper bounds 10, 100, 1'000, 10'000, 100'000 and 1'000'000.
+     */
+    @Pure
+    public @Nonnull long[] getNotificationTimeCounts();
+    
+    /**
+     * Returns the counts of the observer execution times in microseconds per bucket with the upper bounds 10, 100, 1'000, 10'000, 100'000 and 1'000'000.
+     */
+    @Pure
+    public @Nonnull long[] getObserverTimeCounts();
+    
+    /**
+     * Returns the names of the observers that exceeded the slow-observer threshold mapped to how often they did so.
+     */
+    @Pure
+    public @Nonnull Map<String, Long> getSlowObservers();
+    
+    /**
+     * Resets all metrics to zero.
+     */
+    @Impure
+    public void reset();
+    
+}
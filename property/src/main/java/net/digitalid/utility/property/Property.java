@@ -70,6 +70,20 @@ public interface Property<@Unspecifiable OBSERVER extends Observer> extends Root
     @PureWithSideEffects
     public boolean registerOnNewThread(@Captured @Nonnull OBSERVER observer);
     
+    /**
+     * Registers the given observer with this property through a weak reference so that the registration does not prevent the observer from being garbage-collected.
+     * The registration is removed automatically once the observer has been garbage-collected.
+     * Make sure that the observer is strongly referenced elsewhere for as long as it should be notified, which excludes lambda expressions that are only passed to this method.
+     * 
+     * The default implementation registers the given observer strongly, which implementations should override.
+     * 
+     * @return whether the given observer was not already registered.
+     */
+    @PureWithSideEffects
+    public default boolean registerWeakly(@Captured @Nonnull OBSERVER observer) {
+        return register(observer);
+    }
+    
     /**
      * Deregisters the given observer with this property.
      * 
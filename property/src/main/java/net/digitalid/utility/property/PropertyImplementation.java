@@ -15,11 +15,14 @@
  */
 package net.digitalid.utility.property;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import net.digitalid.utility.annotations.generics.Unspecifiable;
 import net.digitalid.utility.annotations.method.Impure;
@@ -32,11 +35,17 @@ import net.digitalid.utility.concurrency.lock.NonReentrantLock;
 import net.digitalid.utility.concurrency.lock.NonReentrantLockBuilder;
 import net.digitalid.utility.concurrency.map.ConcurrentHashMap;
 import net.digitalid.utility.concurrency.map.ConcurrentHashMapBuilder;
+import net.digitalid.utility.concurrency.set.ConcurrentHashSet;
+import net.digitalid.utility.concurrency.set.ConcurrentHashSetBuilder;
+import net.digitalid.utility.functional.interfaces.UnaryFunction;
+import net.digitalid.utility.functional.iterables.FiniteIterable;
+import net.digitalid.utility.property.derived.DependencyTracker;
+import net.digitalid.utility.property.derived.DerivedValueProperty;
 import net.digitalid.utility.property.map.ReadOnlyMapPropertyImplementation;
 import net.digitalid.utility.property.set.ReadOnlySetPropertyImplementation;
 import net.digitalid.utility.property.value.ReadOnlyValuePropertyImplementation;
 import net.digitalid.utility.rootclass.RootClass;
-import net.digitalid.utility.threading.NamedThreadFactory;
+import net.digitalid.utility.threading.SerialExecutor;
 import net.digitalid.utility.validation.annotations.type.Immutable;
 import net.digitalid.utility.validation.annotations.type.Mutable;
 
@@ -55,13 +64,20 @@ public abstract class PropertyImplementation<@Unspecifiable OBSERVER extends Obs
     
     /**
      * An asynchronous observer executes the notifications on a separate thread sequentially.
+     * The notifications of all asynchronous observers are multiplexed over the shared {@link NotificationDispatcher#pool pool}.
      */
     @Immutable
     public static class AsynchronousObserver<OBSERVER extends Observer> implements Observer {
         
-        private final static @Nonnull ThreadFactory threadFactory = NamedThreadFactory.with("Observer");
+        private final @Nonnull SerialExecutor executor = NotificationDispatcher.newSerialExecutor();
         
-        protected final @Nonnull ExecutorService executorService = Executors.newSingleThreadExecutor(threadFactory);
+        /**
+         * Stores the executor service on which the notifications of this observer are executed.
+         * 
+         * @deprecated Use {@link #dispatch(Property, Runnable)} instead, which also records the latency of the notifications.
+         */
+        @Deprecated
+        protected final @Nonnull ExecutorService executorService = executor;
         
         protected final @Nonnull OBSERVER observer;
         
@@ -69,6 +85,67 @@ public abstract class PropertyImplementation<@Unspecifiable OBSERVER extends Obs
             this.observer = observer;
         }
         
+        /**
+         * Dispatches the given notification after all previous notifications of this observer.
+         * The execution time of the notification is recorded in the {@link NotificationMetrics#asynchronous asynchronous metrics}.
+         * 
+         * @deprecated Use {@link #dispatch(Property, Runnable)} instead, which records the execution time in the metrics of the notifying property.
+         */
+        @Impure
+        @Deprecated
+        protected void dispatch(@Captured @Nonnull Runnable notification) {
+            NotificationDispatcher.dispatch(executor, this, null, notification);
+        }
+        
+        /**
+         * Dispatches the given notification of the given property after all previous notifications of this observer.
+         * The execution time of the notification is recorded in the {@link #getNotificationMetrics() notification metrics} of the given property.
+         */
+        @Impure
+        protected void dispatch(@Nonnull Property<?> property, @Captured @Nonnull Runnable notification) {
+            NotificationDispatcher.dispatch(executor, this, property instanceof PropertyImplementation ? (PropertyImplementation<?, ?>) property : null, notification);
+        }
+        
+        /**
+         * Returns the number of notifications that wait to be delivered to this observer.
+         */
+        @Pure
+        public int getQueueDepth() {
+            return executor.getQueueDepth();
+        }
+        
+        /**
+         * Discards the notifications that have not yet been delivered and ignores all further notifications.
+         */
+        @Impure
+        public void shutdown() {
+            NotificationDispatcher.shutdown(executor);
+        }
+        
+    }
+    
+    /* -------------------------------------------------- Weak Observer -------------------------------------------------- */
+    
+    /**
+     * A weak observer forwards the notifications to an observer that is only weakly referenced and ignores them once the observer has been garbage-collected.
+     */
+    @Immutable
+    public static class WeakObserver<OBSERVER extends Observer> implements Observer {
+        
+        private final @Nonnull WeakReference<OBSERVER> reference;
+        
+        protected WeakObserver(@Nonnull WeakReference<OBSERVER> reference) {
+            this.reference = reference;
+        }
+        
+        /**
+         * Returns the observer to which the notifications are forwarded or null if it has been garbage-collected.
+         */
+        @Pure
+        protected @Nullable OBSERVER getObserver() {
+            return reference.get();
+        }
+        
     }
     
     /* -------------------------------------------------- Observers -------------------------------------------------- */
@@ -78,23 +155,478 @@ public abstract class PropertyImplementation<@Unspecifiable OBSERVER extends Obs
      */
     protected final @Nonnull ConcurrentHashMap<@Nonnull OBSERVER, @Nonnull GENERIC_OBSERVER> observers = ConcurrentHashMapBuilder.buildWithInitialCapacity(1);
     
+    /**
+     * Shuts down the given observer if it is an asynchronous observer that is no longer registered.
+     */
+    @Impure
+    private static void shutdown(@Nullable Observer observer) {
+        if (observer instanceof AsynchronousObserver) { ((AsynchronousObserver<?>) observer).shutdown(); }
+    }
+    
+    /**
+     * Registers the given observer with the given observer that is executed instead.
+     * A weak registration of the given observer is replaced by this registration.
+     * 
+     * @return whether the given observer was not already registered.
+     */
+    @Impure
+    protected boolean register(@Captured @Nonnull OBSERVER observer, @Captured @Nonnull GENERIC_OBSERVER genericObserver) {
+        final @Nullable GENERIC_OBSERVER previousObserver = observers.put(observer, genericObserver);
+        final @Nullable GENERIC_OBSERVER previousWeakObserver = removeWeakObserver(observer);
+        shutdown(previousObserver);
+        shutdown(previousWeakObserver);
+        return previousObserver == null && previousWeakObserver == null;
+    }
+    
     @Impure
     @Override
     @SuppressWarnings("unchecked")
     public boolean register(@Captured @Nonnull OBSERVER observer) {
-        return observers.put(observer, (GENERIC_OBSERVER) observer) == null;
+        return register(observer, (GENERIC_OBSERVER) observer);
     }
     
     @Impure
     @Override
     public boolean deregister(@NonCaptured @Nonnull OBSERVER observer) {
-        return observers.remove(observer) != null;
+        final @Nullable GENERIC_OBSERVER previousObserver = observers.remove(observer);
+        final @Nullable GENERIC_OBSERVER previousWeakObserver = removeWeakObserver(observer);
+        shutdown(previousObserver);
+        shutdown(previousWeakObserver);
+        return previousObserver != null || previousWeakObserver != null;
     }
     
     @Pure
     @Override
     public boolean isRegistered(@NonCaptured @Nonnull OBSERVER observer) {
-        return observers.containsKey(observer);
+        return observers.containsKey(observer) || isRegisteredWeakly(observer);
+    }
+    
+    /**
+     * Returns whether any observers are registered with this property.
+     */
+    @Pure
+    protected boolean hasObservers() {
+        return !observers.isEmpty() || !weakObservers.isEmpty();
+    }
+    
+    /**
+     * Returns the observers that are executed when this property changes, which includes the weakly registered observers that have not yet been garbage-collected.
+     * Implementations have to pass the returned observers to {@link #finishNotification(Iterable)} in a finally block after they notified them.
+     */
+    @Impure
+    protected @Nonnull Iterable<@Nonnull GENERIC_OBSERVER> getObservers() {
+        purgeWeakObservers();
+        final @Nonnull Iterable<@Nonnull GENERIC_OBSERVER> result;
+        if (weakObservers.isEmpty()) { result = observers.values(); }
+        else { result = FiniteIterable.of(observers.values()).combine(FiniteIterable.of(weakObservers.values())); }
+        if (NotificationMetrics.enabled.get()) {
+            final @Nonnull NotificationMetrics metrics = getNotificationMetrics();
+            return new TimedIterable<>(metrics, result);
+        } else {
+            return result;
+        }
+    }
+    
+    /**
+     * Records the notification of the given observers, which were returned by {@link #getObservers()}, if the iteration over them ended with an exception.
+     */
+    @Impure
+    protected void finishNotification(@Nonnull Iterable<@Nonnull GENERIC_OBSERVER> observers) {
+        if (observers instanceof TimedIterable) { ((TimedIterable<?>) observers).finish(); }
+    }
+    
+    /* -------------------------------------------------- Notification Metrics -------------------------------------------------- */
+    
+    /**
+     * A timed iterator records how long the notification of each returned observer took, which is the time until the next call to {@link #hasNext()}.
+     * As soon as the iteration is exhausted or {@link #finish() finished}, the number of notified observers and the total time of the notification are recorded.
+     */
+    @Mutable
+    private static class TimedIterator<@Unspecifiable GENERIC_OBSERVER extends Observer> implements Iterator<GENERIC_OBSERVER> {
+        
+        private final @Nonnull NotificationMetrics metrics;
+        
+        private final @Nonnull Iterator<@Nonnull GENERIC_OBSERVER> iterator;
+        
+        private final long start = System.nanoTime();
+        
+        /**
+         * Stores the observer that was returned last and whose notification has not yet been recorded.
+         */
+        private @Nullable GENERIC_OBSERVER observer;
+        
+        /**
+         * Stores the time in nanoseconds at which the observer that was returned last started to be notified.
+         */
+        private long observerStart;
+        
+        private int fanOut = 0;
+        
+        private boolean finished = false;
+        
+        private TimedIterator(@Nonnull NotificationMetrics metrics, @Nonnull Iterator<@Nonnull GENERIC_OBSERVER> iterator) {
+            this.metrics = metrics;
+            this.iterator = iterator;
+        }
+        
+        /**
+         * Records the notification of the observer that was returned last, if any.
+         */
+        @Impure
+        private void recordObserver(long now) {
+            if (observer != null) {
+                metrics.recordObserver(observer, now - observerStart);
+                this.observer = null;
+            }
+        }
+        
+        @Impure
+        @Override
+        public boolean hasNext() {
+            final long now = System.nanoTime();
+            recordObserver(now);
+            final boolean result = iterator.hasNext();
+            if (!result && !finished) {
+                metrics.recordNotification(fanOut, now - start);
+                this.finished = true;
+            }
+            return result;
+        }
+        
+        @Impure
+        @Override
+        public @Nonnull GENERIC_OBSERVER next() {
+            final @Nonnull GENERIC_OBSERVER result = iterator.next();
+            this.observer = result;
+            this.fanOut += 1;
+            this.observerStart = System.nanoTime();
+            return result;
+        }
+        
+        /**
+         * Records the observer that was returned last and the notification if the iteration was not exhausted because an observer threw an exception.
+         */
+        @Impure
+        private void finish() {
+            if (finished) { return; }
+            final long now = System.nanoTime();
+            recordObserver(now);
+            metrics.recordNotification(fanOut, now - start);
+            this.finished = true;
+        }
+        
+    }
+    
+    /**
+     * A timed iterable returns timed iterators and keeps the last of them so that its notification can still be recorded if an observer throws an exception.
+     * Each timed iterable is only iterated by the thread that notifies the observers.
+     */
+    @Mutable
+    private static class TimedIterable<@Unspecifiable GENERIC_OBSERVER extends Observer> implements Iterable<GENERIC_OBSERVER> {
+        
+        private final @Nonnull NotificationMetrics metrics;
+        
+        private final @Nonnull Iterable<@Nonnull GENERIC_OBSERVER> iterable;
+        
+        /**
+         * Stores the iterator that was returned last or null if no iterator was returned yet.
+         */
+        private @Nullable TimedIterator<GENERIC_OBSERVER> iterator;
+        
+        private TimedIterable(@Nonnull NotificationMetrics metrics, @Nonnull Iterable<@Nonnull GENERIC_OBSERVER> iterable) {
+            this.metrics = metrics;
+            this.iterable = iterable;
+        }
+        
+        @Impure
+        @Override
+        public @Nonnull Iterator<GENERIC_OBSERVER> iterator() {
+            final @Nonnull TimedIterator<GENERIC_OBSERVER> iterator = new TimedIterator<>(metrics, iterable.iterator());
+            this.iterator = iterator;
+            return iterator;
+        }
+        
+        /**
+         * Finishes the iterator that was returned last.
+         */
+        @Impure
+        private void finish() {
+            if (iterator != null) { iterator.finish(); }
+        }
+        
+    }
+    
+    /**
+     * Stores the notification metrics of this property, which are looked up when they are needed for the first time.
+     */
+    private volatile @Nullable NotificationMetrics notificationMetrics;
+    
+    /**
+     * Returns the notification metrics of the class of this property, which are only recorded if they are {@link NotificationMetrics#enabled enabled}.
+     */
+    @Impure
+    public @Nonnull NotificationMetrics getNotificationMetrics() {
+        @Nullable NotificationMetrics metrics = notificationMetrics;
+        if (metrics == null) {
+            metrics = NotificationMetrics.of(getClass().getName());
+            this.notificationMetrics = metrics;
+        }
+        return metrics;
+    }
+    
+    /* -------------------------------------------------- Weak Observers -------------------------------------------------- */
+    
+    /**
+     * A weak key refers to a weakly registered observer or a dependent and equals every other weak key that refers to the same object.
+     */
+    @Immutable
+    private static class WeakKey<@Unspecifiable REFERENT> extends WeakReference<REFERENT> {
+        
+        /**
+         * Stores the identity hash code of the referent so that the key can still be found after the referent has been garbage-collected.
+         */
+        private final int hashCode;
+        
+        private WeakKey(@Nonnull REFERENT referent, @Nullable ReferenceQueue<? super REFERENT> queue) {
+            super(referent, queue);
+            
+            this.hashCode = System.identityHashCode(referent);
+        }
+        
+        @Pure
+        @Override
+        public boolean equals(@Nullable Object object) {
+            if (object == this) { return true; }
+            final @Nullable Object referent = get();
+            if (object instanceof WeakKey) { return referent != null && referent == ((WeakKey<?>) object).get(); }
+            if (object instanceof Probe) { return referent != null && referent == ((Probe) object).referent; }
+            return false;
+        }
+        
+        @Pure
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+        
+    }
+    
+    /**
+     * A probe looks up the weak key of an object without allocating a new weak key for each lookup.
+     * Each thread reuses its own probe, which is why the referent has to be {@link #clear() cleared} after the lookup.
+     */
+    @Mutable
+    private static class Probe {
+        
+        /**
+         * Stores the probe of each thread.
+         */
+        private static final @Nonnull ThreadLocal<@Nonnull Probe> probes = new ThreadLocal<Probe>() {
+            @Pure
+            @Override
+            protected @Nonnull Probe initialValue() {
+                return new Probe();
+            }
+        };
+        
+        /**
+         * Returns the probe of the current thread for the given referent.
+         */
+        @Impure
+        private static @Nonnull Probe of(@Nonnull Object referent) {
+            final @Nonnull Probe probe = probes.get();
+            probe.referent = referent;
+            probe.hashCode = System.identityHashCode(referent);
+            return probe;
+        }
+        
+        /**
+         * Stores the object whose weak key is looked up or null if this probe is not in use.
+         */
+        private @Nullable Object referent;
+        
+        /**
+         * Stores the identity hash code of the referent.
+         */
+        private int hashCode;
+        
+        /**
+         * Clears the referent so that the probe does not keep it from being garbage-collected.
+         */
+        @Impure
+        private void clear() {
+            this.referent = null;
+        }
+        
+        @Pure
+        @Override
+        public boolean equals(@Nullable Object object) {
+            return object instanceof WeakKey && referent != null && referent == ((WeakKey<?>) object).get();
+        }
+        
+        @Pure
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+        
+    }
+    
+    /**
+     * Stores the weakly registered observers mapped to the respective observer that is executed instead.
+     */
+    private final @Nonnull ConcurrentHashMap<@Nonnull WeakKey<OBSERVER>, @Nonnull GENERIC_OBSERVER> weakObservers = ConcurrentHashMapBuilder.buildWithInitialCapacity(1);
+    
+    /**
+     * Stores the weak keys whose observers have been garbage-collected.
+     */
+    private final @Nonnull ReferenceQueue<OBSERVER> clearedKeys = new ReferenceQueue<>();
+    
+    /**
+     * Removes the weakly registered observers that have been garbage-collected, which costs only a single poll if there are none.
+     */
+    @Impure
+    protected void purgeWeakObservers() {
+        @Nullable Reference<? extends OBSERVER> clearedKey;
+        while ((clearedKey = clearedKeys.poll()) != null) { shutdown(weakObservers.remove(clearedKey)); }
+    }
+    
+    /**
+     * Removes the weak registration of the given observer and returns the observer that was executed instead or null if it was not registered weakly.
+     */
+    @Impure
+    private @Nullable GENERIC_OBSERVER removeWeakObserver(@NonCaptured @Nonnull OBSERVER observer) {
+        if (weakObservers.isEmpty()) { return null; }
+        final @Nonnull Probe probe = Probe.of(observer);
+        try {
+            return weakObservers.remove(probe);
+        } finally {
+            probe.clear();
+        }
+    }
+    
+    /**
+     * Returns whether the given observer is registered weakly.
+     */
+    @Pure
+    private boolean isRegisteredWeakly(@NonCaptured @Nonnull OBSERVER observer) {
+        if (weakObservers.isEmpty()) { return false; }
+        final @Nonnull Probe probe = Probe.of(observer);
+        try {
+            return weakObservers.containsKey(probe);
+        } finally {
+            probe.clear();
+        }
+    }
+    
+    /**
+     * Registers the given observer weakly with the observer that the given factory creates from a weak reference to the given observer.
+     * The created observer may not hold a strong reference to the given observer and should ignore notifications once the reference has been cleared.
+     * A strong registration of the given observer is replaced by this registration.
+     * 
+     * @return whether the given observer was not already registered.
+     */
+    @Impure
+    protected boolean registerWeakly(@Nonnull OBSERVER observer, @Nonnull UnaryFunction<@Nonnull WeakReference<OBSERVER>, @Nonnull GENERIC_OBSERVER> factory) {
+        purgeWeakObservers();
+        final @Nonnull WeakKey<OBSERVER> weakKey = new WeakKey<>(observer, clearedKeys);
+        final @Nullable GENERIC_OBSERVER previousWeakObserver = weakObservers.put(weakKey, factory.evaluate(weakKey));
+        final @Nullable GENERIC_OBSERVER previousObserver = observers.remove(observer);
+        shutdown(previousWeakObserver);
+        shutdown(previousObserver);
+        return previousObserver == null && previousWeakObserver == null;
+    }
+    
+    /* -------------------------------------------------- Dependents -------------------------------------------------- */
+    
+    /**
+     * Stores the derived properties whose current value was computed from the value of this property.
+     * The derived properties are only referenced weakly so that this property does not keep them from being garbage-collected.
+     */
+    private final @Nonnull ConcurrentHashSet<@Nonnull WeakKey<DerivedValueProperty<?>>> dependents = ConcurrentHashSetBuilder.buildWithInitialCapacity(1);
+    
+    /**
+     * Stores the weak keys whose dependents have been garbage-collected.
+     */
+    private final @Nonnull ReferenceQueue<DerivedValueProperty<?>> clearedDependents = new ReferenceQueue<>();
+    
+    /**
+     * Removes the dependents that have been garbage-collected, which costs only a single poll if there are none.
+     */
+    @Impure
+    private void purgeDependents() {
+        @Nullable Reference<? extends DerivedValueProperty<?>> clearedDependent;
+        while ((clearedDependent = clearedDependents.poll()) != null) { dependents.remove(clearedDependent); }
+    }
+    
+    /**
+     * Adds the given derived property to the properties that are invalidated when this property changes.
+     * This method is called by the {@link DependencyTracker} and should not be called directly.
+     */
+    @Impure
+    public void addDependent(@Nonnull DerivedValueProperty<?> dependent) {
+        purgeDependents();
+        final @Nonnull Probe probe = Probe.of(dependent);
+        try {
+            if (dependents.contains(probe)) { return; }
+        } finally {
+            probe.clear();
+        }
+        dependents.add(new WeakKey<DerivedValueProperty<?>>(dependent, clearedDependents));
+    }
+    
+    /**
+     * Removes the given derived property from the properties that are invalidated when this property changes.
+     * This method is called by the {@link DependencyTracker} and should not be called directly.
+     */
+    @Impure
+    public void removeDependent(@Nonnull DerivedValueProperty<?> dependent) {
+        if (dependents.isEmpty()) { return; }
+        final @Nonnull Probe probe = Probe.of(dependent);
+        try {
+            dependents.remove(probe);
+        } finally {
+            probe.clear();
+        }
+    }
+    
+    /**
+     * Records this property as a dependency of the derived property that is currently computed on this thread, if any.
+     * Implementations call this method whenever their value is read.
+     */
+    @Impure
+    protected void trackRead() {
+        DependencyTracker.track(this);
+    }
+    
+    /**
+     * Invalidates the derived properties that depend on this property.
+     * Implementations call this method whenever their value has changed and before they notify their observers,
+     * so that the observers of this property already see the new values of the derived properties.
+     */
+    @Impure
+    protected void invalidateDependents() {
+        purgeDependents();
+        if (!dependents.isEmpty()) { DependencyTracker.invalidate(FiniteIterable.of(dependents).map(WeakKey::get).filterNulls()); }
+    }
+    
+    /**
+     * Runs the given task while holding the lock of this property so that no change of this property can be applied and notified concurrently.
+     * If the lock is already held by the current thread, the task is run directly.
+     * This method is called by the {@link net.digitalid.utility.property.derived.Aggregations aggregations} and should not be called directly.
+     */
+    @Impure
+    public void runExclusively(@Nonnull Runnable task) {
+        if (lock.isLockHeldByCurrentThread()) {
+            task.run();
+        } else {
+            lock.lock();
+            try {
+                task.run();
+            } finally {
+                lock.unlock();
+            }
+        }
     }
     
     /* -------------------------------------------------- Lock -------------------------------------------------- */
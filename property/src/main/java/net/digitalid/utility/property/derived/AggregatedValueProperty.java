@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2017 Synacts GmbH, Switzerland (info@synacts.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.digitalid.utility.property.derived;
+
+import java.util.Objects;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.digitalid.utility.annotations.generics.Specifiable;
+import net.digitalid.utility.annotations.generics.Unspecifiable;
+import net.digitalid.utility.annotations.method.Impure;
+import net.digitalid.utility.annotations.method.Pure;
+import net.digitalid.utility.annotations.ownership.Capturable;
+import net.digitalid.utility.annotations.ownership.Captured;
+import net.digitalid.utility.annotations.ownership.NonCapturable;
+import net.digitalid.utility.annotations.type.ThreadSafe;
+import net.digitalid.utility.collections.map.ReadOnlyMap;
+import net.digitalid.utility.collections.set.ReadOnlySet;
+import net.digitalid.utility.functional.interfaces.BinaryFunction;
+import net.digitalid.utility.functional.interfaces.Predicate;
+import net.digitalid.utility.functional.interfaces.UnaryOperator;
+import net.digitalid.utility.generator.annotations.generators.GenerateSubclass;
+import net.digitalid.utility.property.Property;
+import net.digitalid.utility.property.PropertyImplementation;
+import net.digitalid.utility.property.map.ReadOnlyVolatileMapProperty;
+import net.digitalid.utility.property.map.VolatileMapObserver;
+import net.digitalid.utility.property.set.ReadOnlyVolatileSetProperty;
+import net.digitalid.utility.property.set.VolatileSetObserver;
+import net.digitalid.utility.property.value.ReadOnlyValuePropertyImplementation;
+import net.digitalid.utility.property.value.ReadOnlyVolatileValueProperty;
+import net.digitalid.utility.property.value.ValueObserver;
+import net.digitalid.utility.property.value.VolatileValueObserver;
+import net.digitalid.utility.validation.annotations.type.Mutable;
+import net.digitalid.utility.validation.annotations.value.Valid;
+
+/**
+ * An aggregated property maintains an aggregate of the values of a set or map property incrementally.
+ * Instead of recomputing the aggregate from all values on every change, the aggregate is updated with an adder and a remover for each added and removed value.
+ * The observer is registered with the source property before the initial aggregate is computed from its values,
+ * and both happens while holding the lock of the source property so that no change can get lost or be counted twice in between.
+ * 
+ * @see Aggregations
+ */
+@Mutable
+@ThreadSafe
+@GenerateSubclass
+public abstract class AggregatedValueProperty<@Specifiable RESULT> extends ReadOnlyValuePropertyImplementation<RESULT, RuntimeException, RuntimeException, VolatileValueObserver<RESULT>, ReadOnlyVolatileValueProperty<RESULT>> implements ReadOnlyVolatileValueProperty<RESULT> {
+    
+    /* -------------------------------------------------- Fields -------------------------------------------------- */
+    
+    /**
+     * Stores the current aggregate.
+     */
+    private volatile RESULT result;
+    
+    /**
+     * Stores the task which deregisters this property from its source or null if it has already been deregistered.
+     */
+    private volatile @Nullable Runnable deregistration;
+    
+    /* -------------------------------------------------- Constructors -------------------------------------------------- */
+    
+    protected AggregatedValueProperty(@Captured RESULT initialResult) {
+        this.result = initialResult;
+    }
+    
+    /**
+     * Returns a new aggregated property which maintains the aggregate of the values in the given set property.
+     * 
+     * @param initialResult the aggregate of an empty set.
+     * @param adder the function which returns the aggregate after a value has been added.
+     * @param remover the function which returns the aggregate after a value has been removed.
+     */
+    @Impure
+    public static @Capturable <@Unspecifiable VALUE, @Unspecifiable READONLY_SET extends ReadOnlySet<@Nonnull @Valid VALUE>, @Specifiable RESULT> @Nonnull AggregatedValueProperty<RESULT> with(@Nonnull ReadOnlyVolatileSetProperty<VALUE, READONLY_SET> property, @Captured RESULT initialResult, @Nonnull BinaryFunction<? super RESULT, ? super VALUE, ? extends RESULT> adder, @Nonnull BinaryFunction<? super RESULT, ? super VALUE, ? extends RESULT> remover) {
+        final @Nonnull AggregatedValueProperty<RESULT> aggregation = new AggregatedValuePropertySubclass<>(initialResult);
+        final @Nonnull VolatileSetObserver<VALUE, READONLY_SET> observer = (source, value, added) -> aggregation.update(current -> added ? adder.evaluate(current, value) : remover.evaluate(current, value));
+        runExclusively(property, () -> {
+            property.register(observer);
+            RESULT result = initialResult;
+            for (@Nonnull VALUE value : property.get()) {
+                result = adder.evaluate(result, value);
+            }
+            aggregation.result = result;
+        });
+        aggregation.deregistration = () -> property.deregister(observer);
+        return aggregation;
+    }
+    
+    /**
+     * Returns a new aggregated property which maintains the aggregate of the values in the given map property.
+     * 
+     * @param initialResult the aggregate of an empty map.
+     * @param adder the function which returns the aggregate after a value has been added.
+     * @param remover the function which returns the aggregate after a value has been removed.
+     */
+    @Impure
+    public static @Capturable <@Unspecifiable KEY, @Unspecifiable VALUE, @Unspecifiable READONLY_MAP extends ReadOnlyMap<@Nonnull @Valid("key") KEY, @Nonnull @Valid VALUE>, @Specifiable RESULT> @Nonnull AggregatedValueProperty<RESULT> with(@Nonnull ReadOnlyVolatileMapProperty<KEY, VALUE, READONLY_MAP> property, @Captured RESULT initialResult, @Nonnull BinaryFunction<? super RESULT, ? super VALUE, ? extends RESULT> adder, @Nonnull BinaryFunction<? super RESULT, ? super VALUE, ? extends RESULT> remover) {
+        final @Nonnull AggregatedValueProperty<RESULT> aggregation = new AggregatedValuePropertySubclass<>(initialResult);
+        final @Nonnull VolatileMapObserver<KEY, VALUE, READONLY_MAP> observer = (source, key, value, added) -> aggregation.update(current -> added ? adder.evaluate(current, value) : remover.evaluate(current, value));
+        runExclusively(property, () -> {
+            property.register(observer);
+            RESULT result = initialResult;
+            for (@Nonnull VALUE value : property.get().values()) {
+                result = adder.evaluate(result, value);
+            }
+            aggregation.result = result;
+        });
+        aggregation.deregistration = () -> property.deregister(observer);
+        return aggregation;
+    }
+    
+    /**
+     * Runs the given task while holding the lock of the given property if it is {@link PropertyImplementation implemented} in this library.
+     */
+    @Impure
+    static void runExclusively(@Nonnull Property<?> property, @Nonnull Runnable task) {
+        if (property instanceof PropertyImplementation) { ((PropertyImplementation<?, ?>) property).runExclusively(task); }
+        else { task.run(); }
+    }
+    
+    /* -------------------------------------------------- Validator -------------------------------------------------- */
+    
+    @Pure
+    @Override
+    public @Nonnull Predicate<? super RESULT> getValueValidator() {
+        return object -> true;
+    }
+    
+    /* -------------------------------------------------- Result -------------------------------------------------- */
+    
+    @Pure
+    @Override
+    public @NonCapturable @Valid RESULT get() {
+        trackRead();
+        return result;
+    }
+    
+    /**
+     * Replaces the aggregate with the result of the given operator and notifies the observers if the aggregate has changed.
+     * The updates of a single source are already serialized by the lock of the source property.
+     */
+    @Impure
+    protected synchronized void update(@Nonnull UnaryOperator<RESULT> operator) {
+        final RESULT oldResult = result;
+        final RESULT newResult = operator.evaluate(oldResult);
+        if (Objects.equals(oldResult, newResult)) { return; }
+        this.result = newResult;
+        invalidateDependents();
+        final @Nonnull Iterable<@Nonnull ValueObserver<RESULT, RuntimeException, RuntimeException, VolatileValueObserver<RESULT>, ReadOnlyVolatileValueProperty<RESULT>>> observers = getObservers();
+        try {
+            for (@Nonnull ValueObserver<RESULT, RuntimeException, RuntimeException, VolatileValueObserver<RESULT>, ReadOnlyVolatileValueProperty<RESULT>> observer : observers) {
+                observer.notify(this, oldResult, newResult);
+            }
+        } finally {
+            finishNotification(observers);
+        }
+    }
+    
+    /**
+     * Deregisters this property from its source so that the aggregate is no longer updated.
+     */
+    @Impure
+    public void dispose() {
+        final @Nullable Runnable deregistration = this.deregistration;
+        this.deregistration = null;
+        if (deregistration != null) { deregistration.run(); }
+    }
+    
+    /* -------------------------------------------------- Object -------------------------------------------------- */
+    
+    @Pure
+    @Override
+    public boolean equals(@Nullable Object object) {
+        return object == this;
+    }
+    
+    @Pure
+    @Override
+    public int hashCode() {
+        return getHashCode();
+    }
+    
+    @Pure
+    @Override
+    public @Nonnull String toString() {
+        return "AggregatedValueProperty(" + result + ")";
+    }
+    
+}
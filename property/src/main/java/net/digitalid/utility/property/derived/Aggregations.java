@@ -0,0 +1,270 @@
+/*
+ * Copyright (C) 2017 Synacts GmbH, Switzerland (info@synacts.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.digitalid.utility.property.derived;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.digitalid.utility.annotations.generics.Unspecifiable;
+import net.digitalid.utility.annotations.method.Impure;
+import net.digitalid.utility.annotations.method.Pure;
+import net.digitalid.utility.annotations.ownership.Capturable;
+import net.digitalid.utility.annotations.ownership.NonCaptured;
+import net.digitalid.utility.annotations.parameter.Unmodified;
+import net.digitalid.utility.collections.map.ReadOnlyMap;
+import net.digitalid.utility.collections.set.ReadOnlySet;
+import net.digitalid.utility.functional.interfaces.UnaryFunction;
+import net.digitalid.utility.property.map.ReadOnlyVolatileMapProperty;
+import net.digitalid.utility.property.map.ReadOnlyVolatileSimpleMapProperty;
+import net.digitalid.utility.property.map.VolatileMapObserver;
+import net.digitalid.utility.property.map.WritableVolatileSimpleMapProperty;
+import net.digitalid.utility.property.map.WritableVolatileSimpleMapPropertyBuilder;
+import net.digitalid.utility.property.set.ReadOnlyVolatileSetProperty;
+import net.digitalid.utility.property.set.VolatileSetObserver;
+import net.digitalid.utility.validation.annotations.type.Mutable;
+import net.digitalid.utility.validation.annotations.type.Utility;
+import net.digitalid.utility.validation.annotations.value.Valid;
+
+/**
+ * This utility class provides common aggregations over set and map properties, which are all maintained incrementally.
+ * 
+ * @see AggregatedValueProperty
+ */
+@Utility
+public abstract class Aggregations {
+    
+    /* -------------------------------------------------- Count -------------------------------------------------- */
+    
+    /**
+     * Returns a property with the number of values in the given set property.
+     */
+    @Impure
+    public static @Capturable <@Unspecifiable VALUE, @Unspecifiable READONLY_SET extends ReadOnlySet<@Nonnull @Valid VALUE>> @Nonnull AggregatedValueProperty<Integer> count(@Nonnull ReadOnlyVolatileSetProperty<VALUE, READONLY_SET> property) {
+        return AggregatedValueProperty.with(property, 0, (count, value) -> count + 1, (count, value) -> count - 1);
+    }
+    
+    /**
+     * Returns a property with the number of entries in the given map property.
+     */
+    @Impure
+    public static @Capturable <@Unspecifiable KEY, @Unspecifiable VALUE, @Unspecifiable READONLY_MAP extends ReadOnlyMap<@Nonnull @Valid("key") KEY, @Nonnull @Valid VALUE>> @Nonnull AggregatedValueProperty<Integer> count(@Nonnull ReadOnlyVolatileMapProperty<KEY, VALUE, READONLY_MAP> property) {
+        return AggregatedValueProperty.with(property, 0, (count, value) -> count + 1, (count, value) -> count - 1);
+    }
+    
+    /* -------------------------------------------------- Sum -------------------------------------------------- */
+    
+    /**
+     * Returns a property with the sum of the given function over the values in the given set property.
+     */
+    @Impure
+    public static @Capturable <@Unspecifiable VALUE, @Unspecifiable READONLY_SET extends ReadOnlySet<@Nonnull @Valid VALUE>> @Nonnull AggregatedValueProperty<Long> sum(@Nonnull ReadOnlyVolatileSetProperty<VALUE, READONLY_SET> property, @Nonnull UnaryFunction<? super VALUE, @Nonnull Long> function) {
+        return AggregatedValueProperty.with(property, 0L, (sum, value) -> sum + function.evaluate(value), (sum, value) -> sum - function.evaluate(value));
+    }
+    
+    /**
+     * Returns a property with the sum of the given function over the values in the given map property.
+     */
+    @Impure
+    public static @Capturable <@Unspecifiable KEY, @Unspecifiable VALUE, @Unspecifiable READONLY_MAP extends ReadOnlyMap<@Nonnull @Valid("key") KEY, @Nonnull @Valid VALUE>> @Nonnull AggregatedValueProperty<Long> sum(@Nonnull ReadOnlyVolatileMapProperty<KEY, VALUE, READONLY_MAP> property, @Nonnull UnaryFunction<? super VALUE, @Nonnull Long> function) {
+        return AggregatedValueProperty.with(property, 0L, (sum, value) -> sum + function.evaluate(value), (sum, value) -> sum - function.evaluate(value));
+    }
+    
+    /* -------------------------------------------------- Index -------------------------------------------------- */
+    
+    /**
+     * An index maintains a map property which indexes the values of a set or map property by the key that a function returns for them.
+     * The index only references the map property weakly so that the observer deregisters itself from the source once the map property has been garbage-collected.
+     */
+    @Mutable
+    private abstract static class Index<@Unspecifiable INDEX, @Unspecifiable VALUE> {
+        
+        /**
+         * Stores a weak reference to the map property which is maintained by this index.
+         */
+        private final @Nonnull WeakReference<@Nonnull WritableVolatileSimpleMapProperty<INDEX, VALUE>> reference;
+        
+        /**
+         * Stores the function which returns the key of a value.
+         */
+        private final @Nonnull UnaryFunction<? super VALUE, ? extends INDEX> function;
+        
+        /**
+         * Stores for each key how many values of the source have this key so that a shadowed value is only searched if there is one.
+         */
+        private final @Nonnull Map<INDEX, @Nonnull Integer> counts = new HashMap<>();
+        
+        protected Index(@Nonnull WritableVolatileSimpleMapProperty<INDEX, VALUE> index, @Nonnull UnaryFunction<? super VALUE, ? extends INDEX> function) {
+            this.reference = new WeakReference<>(index);
+            this.function = function;
+        }
+        
+        /**
+         * Returns the values that the source currently contains.
+         */
+        @Pure
+        protected abstract @Nonnull Iterable<? extends VALUE> getValues();
+        
+        /**
+         * Indexes the given value if no other value is already indexed with the same key.
+         * 
+         * @return whether the map property has not yet been garbage-collected.
+         */
+        @Impure
+        protected synchronized boolean add(@Nonnull VALUE value) {
+            final @Nullable WritableVolatileSimpleMapProperty<INDEX, VALUE> index = reference.get();
+            if (index == null) { return false; }
+            final INDEX key = function.evaluate(value);
+            final @Nullable Integer count = counts.get(key);
+            counts.put(key, count == null ? 1 : count + 1);
+            if (count == null) { index.add(key, value); }
+            return true;
+        }
+        
+        /**
+         * Removes the given value from the index and indexes the value that it shadowed, if any.
+         * 
+         * @return whether the map property has not yet been garbage-collected.
+         */
+        @Impure
+        protected synchronized boolean remove(@Nonnull VALUE value) {
+            final @Nullable WritableVolatileSimpleMapProperty<INDEX, VALUE> index = reference.get();
+            if (index == null) { return false; }
+            final INDEX key = function.evaluate(value);
+            final @Nullable Integer count = counts.get(key);
+            if (count == null) { return true; }
+            if (count == 1) {
+                counts.remove(key);
+                index.remove(key);
+            } else {
+                counts.put(key, count - 1);
+                if (value.equals(index.get(key))) {
+                    for (@Nonnull VALUE shadowedValue : getValues()) {
+                        if (Objects.equals(key, function.evaluate(shadowedValue))) {
+                            if (!shadowedValue.equals(value)) {
+                                index.remove(key);
+                                index.add(key, shadowedValue);
+                            }
+                            return true;
+                        }
+                    }
+                    index.remove(key);
+                }
+            }
+            return true;
+        }
+        
+    }
+    
+    /**
+     * A set index maintains the index of a set property.
+     */
+    @Mutable
+    private static class SetIndex<@Unspecifiable INDEX, @Unspecifiable VALUE, @Unspecifiable READONLY_SET extends ReadOnlySet<@Nonnull @Valid VALUE>> extends Index<INDEX, VALUE> implements VolatileSetObserver<VALUE, READONLY_SET> {
+        
+        /**
+         * Stores the set property whose values are indexed.
+         */
+        private final @Nonnull ReadOnlyVolatileSetProperty<VALUE, READONLY_SET> property;
+        
+        protected SetIndex(@Nonnull ReadOnlyVolatileSetProperty<VALUE, READONLY_SET> property, @Nonnull WritableVolatileSimpleMapProperty<INDEX, VALUE> index, @Nonnull UnaryFunction<? super VALUE, ? extends INDEX> function) {
+            super(index, function);
+            
+            this.property = property;
+        }
+        
+        @Pure
+        @Override
+        protected @Nonnull Iterable<? extends VALUE> getValues() {
+            return property.get();
+        }
+        
+        @Impure
+        @Override
+        public void notify(@Nonnull ReadOnlyVolatileSetProperty<VALUE, READONLY_SET> property, @NonCaptured @Unmodified @Nonnull @Valid VALUE value, boolean added) {
+            if (!(added ? add(value) : remove(value))) { property.deregister(this); }
+        }
+        
+    }
+    
+    /**
+     * A map index maintains the index of the values of a map property.
+     */
+    @Mutable
+    private static class MapIndex<@Unspecifiable INDEX, @Unspecifiable KEY, @Unspecifiable VALUE, @Unspecifiable READONLY_MAP extends ReadOnlyMap<@Nonnull @Valid("key") KEY, @Nonnull @Valid VALUE>> extends Index<INDEX, VALUE> implements VolatileMapObserver<KEY, VALUE, READONLY_MAP> {
+        
+        /**
+         * Stores the map property whose values are indexed.
+         */
+        private final @Nonnull ReadOnlyVolatileMapProperty<KEY, VALUE, READONLY_MAP> property;
+        
+        protected MapIndex(@Nonnull ReadOnlyVolatileMapProperty<KEY, VALUE, READONLY_MAP> property, @Nonnull WritableVolatileSimpleMapProperty<INDEX, VALUE> index, @Nonnull UnaryFunction<? super VALUE, ? extends INDEX> function) {
+            super(index, function);
+            
+            this.property = property;
+        }
+        
+        @Pure
+        @Override
+        protected @Nonnull Iterable<? extends VALUE> getValues() {
+            return property.get().values();
+        }
+        
+        @Impure
+        @Override
+        public void notify(@Nonnull ReadOnlyVolatileMapProperty<KEY, VALUE, READONLY_MAP> property, @NonCaptured @Unmodified @Nonnull @Valid("key") KEY key, @NonCaptured @Unmodified @Nonnull @Valid VALUE value, boolean added) {
+            if (!(added ? add(value) : remove(value))) { property.deregister(this); }
+        }
+        
+    }
+    
+    /**
+     * Returns a map property which indexes the values of the given set property by the key that the given function returns for them.
+     * If several values have the same key, only the first of them is indexed and the next one is indexed once the indexed value has been removed.
+     * The given property only references the returned property weakly, which stops being maintained once it has been garbage-collected.
+     */
+    @Impure
+    public static @Capturable <@Unspecifiable KEY, @Unspecifiable VALUE, @Unspecifiable READONLY_SET extends ReadOnlySet<@Nonnull @Valid VALUE>> @Nonnull ReadOnlyVolatileSimpleMapProperty<KEY, VALUE> indexBy(@Nonnull ReadOnlyVolatileSetProperty<VALUE, READONLY_SET> property, @Nonnull UnaryFunction<? super VALUE, ? extends KEY> function) {
+        final @Nonnull WritableVolatileSimpleMapProperty<KEY, VALUE> index = WritableVolatileSimpleMapPropertyBuilder.build();
+        final @Nonnull SetIndex<KEY, VALUE, READONLY_SET> observer = new SetIndex<>(property, index, function);
+        AggregatedValueProperty.runExclusively(property, () -> {
+            property.register(observer);
+            for (@Nonnull VALUE value : property.get()) { observer.add(value); }
+        });
+        return index;
+    }
+    
+    /**
+     * Returns a map property which indexes the values of the given map property by the key that the given function returns for them.
+     * If several values have the same key, only the first of them is indexed and the next one is indexed once the indexed value has been removed.
+     * The given property only references the returned property weakly, which stops being maintained once it has been garbage-collected.
+     */
+    @Impure
+    public static @Capturable <@Unspecifiable INDEX, @Unspecifiable KEY, @Unspecifiable VALUE, @Unspecifiable READONLY_MAP extends ReadOnlyMap<@Nonnull @Valid("key") KEY, @Nonnull @Valid VALUE>> @Nonnull ReadOnlyVolatileSimpleMapProperty<INDEX, VALUE> indexBy(@Nonnull ReadOnlyVolatileMapProperty<KEY, VALUE, READONLY_MAP> property, @Nonnull UnaryFunction<? super VALUE, ? extends INDEX> function) {
+        final @Nonnull WritableVolatileSimpleMapProperty<INDEX, VALUE> index = WritableVolatileSimpleMapPropertyBuilder.build();
+        final @Nonnull MapIndex<INDEX, KEY, VALUE, READONLY_MAP> observer = new MapIndex<>(property, index, function);
+        AggregatedValueProperty.runExclusively(property, () -> {
+            property.register(observer);
+            for (@Nonnull VALUE value : property.get().values()) { observer.add(value); }
+        });
+        return index;
+    }
+    
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2017 Synacts GmbH, Switzerland (info@synacts.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.digitalid.utility.property.derived;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.digitalid.utility.annotations.method.Impure;
+import net.digitalid.utility.annotations.ownership.NonCaptured;
+import net.digitalid.utility.annotations.parameter.Unmodified;
+import net.digitalid.utility.property.PropertyImplementation;
+import net.digitalid.utility.validation.annotations.type.Mutable;
+import net.digitalid.utility.validation.annotations.type.Utility;
+
+/**
+ * The dependency tracker records which properties are read during the computation of a {@link DerivedValueProperty derived property}
+ * and propagates changes of these properties to the derived properties that depend on them.
+ * Changes are propagated in two phases: All dependent derived properties are first marked as dirty,
+ * and only afterwards are the observed derived properties recomputed in the order of their level in the dependency graph.
+ * Since a derived property is only recomputed once all its dependencies are up to date, observers never see an inconsistent intermediate state (a glitch),
+ * even if the dependency graph contains diamonds.
+ */
+@Utility
+public abstract class DependencyTracker {
+    
+    /* -------------------------------------------------- Tracking -------------------------------------------------- */
+    
+    /**
+     * Stores the derived property whose value is currently computed on the current thread.
+     */
+    private static final @Nonnull ThreadLocal<@Nullable DerivedValueProperty<?>> computation = new ThreadLocal<>();
+    
+    /**
+     * Records the given property as a dependency of the derived property that is currently computed on this thread, if any.
+     */
+    @Impure
+    public static void track(@Nonnull PropertyImplementation<?, ?> property) {
+        final @Nullable DerivedValueProperty<?> derivedProperty = computation.get();
+        if (derivedProperty != null && derivedProperty != property) { derivedProperty.addDependency(property); }
+    }
+    
+    /**
+     * Marks the given derived property as being computed on this thread.
+     * 
+     * @return the derived property that was previously computed on this thread, which has to be passed to {@link #exit(DerivedValueProperty)}.
+     */
+    @Impure
+    static @Nullable DerivedValueProperty<?> enter(@Nonnull DerivedValueProperty<?> derivedProperty) {
+        final @Nullable DerivedValueProperty<?> previousProperty = computation.get();
+        computation.set(derivedProperty);
+        return previousProperty;
+    }
+    
+    /**
+     * Restores the given derived property as the one that is computed on this thread.
+     */
+    @Impure
+    static void exit(@Nullable DerivedValueProperty<?> previousProperty) {
+        if (previousProperty == null) { computation.remove(); }
+        else { computation.set(previousProperty); }
+    }
+    
+    /* -------------------------------------------------- Invalidation -------------------------------------------------- */
+    
+    /**
+     * A propagation collects the derived properties that were invalidated by a single change.
+     */
+    @Mutable
+    private static class Propagation {
+        
+        /**
+         * Stores the derived properties that have already been invalidated so that each of them is visited only once even if the dependency graph contains diamonds.
+         */
+        private final @Nonnull Set<@Nonnull DerivedValueProperty<?>> invalidatedProperties = new HashSet<>();
+        
+        /**
+         * Stores the invalidated derived properties that have observers and thus have to be recomputed at the end of the propagation.
+         */
+        private final @Nonnull List<@Nonnull DerivedValueProperty<?>> observedProperties = new ArrayList<>();
+        
+    }
+    
+    /**
+     * Stores a comparator which orders derived properties by their level in the dependency graph.
+     */
+    private static final @Nonnull Comparator<@Nonnull DerivedValueProperty<?>> levelComparator = (property1, property2) -> Integer.compare(property1.getLevel(), property2.getLevel());
+    
+    /**
+     * Stores the propagation that is currently in progress on the current thread.
+     */
+    private static final @Nonnull ThreadLocal<@Nullable Propagation> propagation = new ThreadLocal<>();
+    
+    /**
+     * Invalidates the given derived properties and their dependents transitively
+     * and then recomputes and notifies those of them that are observed in the order of their level.
+     * If this method is called during an ongoing propagation on the same thread, the given properties are added to that propagation instead.
+     */
+    @Impure
+    public static void invalidate(@NonCaptured @Unmodified @Nonnull Iterable<? extends @Nonnull DerivedValueProperty<?>> derivedProperties) {
+        @Nullable Propagation currentPropagation = propagation.get();
+        final boolean outermost = currentPropagation == null;
+        if (outermost) {
+            currentPropagation = new Propagation();
+            propagation.set(currentPropagation);
+        }
+        try {
+            for (@Nonnull DerivedValueProperty<?> derivedProperty : derivedProperties) {
+                if (currentPropagation.invalidatedProperties.add(derivedProperty)) {
+                    if (derivedProperty.isObserved()) { currentPropagation.observedProperties.add(derivedProperty); }
+                    derivedProperty.invalidate();
+                }
+            }
+        } finally {
+            if (outermost) { propagation.remove(); }
+        }
+        if (outermost && !currentPropagation.observedProperties.isEmpty()) {
+            Collections.sort(currentPropagation.observedProperties, levelComparator);
+            for (@Nonnull DerivedValueProperty<?> derivedProperty : currentPropagation.observedProperties) {
+                derivedProperty.revalidate();
+            }
+        }
+    }
+    
+}
@@ -0,0 +1,293 @@
+/*
+ * Copyright (C) 2017 Synacts GmbH, Switzerland (info@synacts.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.digitalid.utility.property.derived;
+
+import java.lang.ref.WeakReference;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.digitalid.utility.annotations.generics.Specifiable;
+import net.digitalid.utility.annotations.method.Impure;
+import net.digitalid.utility.annotations.method.Pure;
+import net.digitalid.utility.annotations.ownership.Capturable;
+import net.digitalid.utility.annotations.ownership.Captured;
+import net.digitalid.utility.annotations.ownership.NonCapturable;
+import net.digitalid.utility.annotations.type.ThreadSafe;
+import net.digitalid.utility.contracts.Require;
+import net.digitalid.utility.functional.interfaces.Predicate;
+import net.digitalid.utility.functional.interfaces.Producer;
+import net.digitalid.utility.functional.interfaces.UnaryFunction;
+import net.digitalid.utility.generator.annotations.generators.GenerateSubclass;
+import net.digitalid.utility.property.PropertyImplementation;
+import net.digitalid.utility.property.value.ReadOnlyValuePropertyImplementation;
+import net.digitalid.utility.property.value.ReadOnlyVolatileValueProperty;
+import net.digitalid.utility.property.value.ValueObserver;
+import net.digitalid.utility.property.value.VolatileValueObserver;
+import net.digitalid.utility.validation.annotations.type.Mutable;
+import net.digitalid.utility.validation.annotations.value.Valid;
+
+/**
+ * A derived property computes its value from other properties with a producer and keeps it up to date when these properties change.
+ * The properties on which the value depends are tracked automatically: Every property that is read during a computation becomes a dependency,
+ * and dependencies that are no longer read during a later computation are dropped again.
+ * Derived properties without observers are recomputed lazily on the next read after a change,
+ * whereas observed derived properties are recomputed at the end of the propagation in which they were invalidated.
+ * The observers are only notified if the recomputed value differs from the value about which they were notified last.
+ * Since the properties on which the value depends only reference the derived property weakly,
+ * a derived property has to be referenced elsewhere in order to be kept up to date.
+ * 
+ * @see DependencyTracker
+ * @see AggregatedValueProperty
+ */
+@Mutable
+@ThreadSafe
+@GenerateSubclass
+public abstract class DerivedValueProperty<@Specifiable VALUE> extends ReadOnlyValuePropertyImplementation<VALUE, RuntimeException, RuntimeException, VolatileValueObserver<VALUE>, ReadOnlyVolatileValueProperty<VALUE>> implements ReadOnlyVolatileValueProperty<VALUE> {
+    
+    /* -------------------------------------------------- Fields -------------------------------------------------- */
+    
+    /**
+     * Stores the producer which computes the value of this property.
+     */
+    private final @Nonnull Producer<VALUE> producer;
+    
+    /**
+     * Stores the version of this property, which is incremented whenever one of its dependencies changes.
+     */
+    private final @Nonnull AtomicInteger version = new AtomicInteger();
+    
+    /**
+     * Stores the version of this property for which the current value was computed.
+     * The value has to be recomputed if this version differs from the current version.
+     */
+    private volatile int computedVersion = -1;
+    
+    /**
+     * Stores the value of the last computation.
+     */
+    private volatile @Nullable VALUE value;
+    
+    /**
+     * Stores the level of this property in the dependency graph, which is one more than the highest level of its derived dependencies.
+     */
+    private volatile int level = 1;
+    
+    /**
+     * Stores the properties that were read during the last computation.
+     * This field is only accessed while holding the monitor of this property.
+     */
+    private @Nonnull Set<@Nonnull PropertyImplementation<?, ?>> dependencies = new HashSet<>();
+    
+    /**
+     * Stores the properties that have been read so far during the ongoing computation or null if no computation is ongoing.
+     * This field is only accessed while holding the monitor of this property.
+     */
+    private @Nullable Set<@Nonnull PropertyImplementation<?, ?>> currentDependencies;
+    
+    /* -------------------------------------------------- Constructors -------------------------------------------------- */
+    
+    protected DerivedValueProperty(@Captured @Nonnull Producer<VALUE> producer) {
+        Require.that(producer != null).orThrow("The producer may not be null.");
+        
+        this.producer = producer;
+    }
+    
+    /**
+     * Returns a new derived property which computes its value with the given producer.
+     * The producer should only read properties and not change them.
+     */
+    @Pure
+    public static @Capturable <VALUE> @Nonnull DerivedValueProperty<VALUE> with(@Captured @Nonnull Producer<VALUE> producer) {
+        return new DerivedValuePropertySubclass<>(producer);
+    }
+    
+    /* -------------------------------------------------- Validator -------------------------------------------------- */
+    
+    @Pure
+    @Override
+    public @Nonnull Predicate<? super VALUE> getValueValidator() {
+        return object -> true;
+    }
+    
+    /* -------------------------------------------------- Dependencies -------------------------------------------------- */
+    
+    /**
+     * Adds the given property to the dependencies of the ongoing computation.
+     */
+    @Impure
+    void addDependency(@Nonnull PropertyImplementation<?, ?> property) {
+        final @Nullable Set<@Nonnull PropertyImplementation<?, ?>> currentDependencies = this.currentDependencies;
+        if (currentDependencies != null && currentDependencies.add(property)) {
+            property.addDependent(this);
+            if (property instanceof DerivedValueProperty) { level = Math.max(level, ((DerivedValueProperty<?>) property).getLevel() + 1); }
+        }
+    }
+    
+    /**
+     * Returns the level of this property in the dependency graph.
+     */
+    @Pure
+    int getLevel() {
+        return level;
+    }
+    
+    /**
+     * Deregisters this property from its dependencies so that it no longer prevents its garbage collection.
+     * The dependencies are tracked again if the value of this property is read afterwards.
+     */
+    @Impure
+    public synchronized void dispose() {
+        for (@Nonnull PropertyImplementation<?, ?> dependency : dependencies) {
+            dependency.removeDependent(this);
+        }
+        this.dependencies = new HashSet<>();
+        version.incrementAndGet();
+    }
+    
+    /* -------------------------------------------------- Computation -------------------------------------------------- */
+    
+    /**
+     * Recomputes the value of this property if one of its dependencies has changed since the last computation.
+     */
+    @Impure
+    private synchronized void recompute() {
+        final int currentVersion = version.get();
+        if (currentVersion == computedVersion) { return; }
+        Require.that(currentDependencies == null).orThrow("The value of the derived property $ may not depend on itself.", this);
+        
+        final @Nonnull Set<@Nonnull PropertyImplementation<?, ?>> newDependencies = new HashSet<>();
+        this.currentDependencies = newDependencies;
+        this.level = 1;
+        final @Nullable DerivedValueProperty<?> previousProperty = DependencyTracker.enter(this);
+        try {
+            this.value = producer.produce();
+            this.computedVersion = currentVersion;
+        } finally {
+            DependencyTracker.exit(previousProperty);
+            this.currentDependencies = null;
+            for (@Nonnull PropertyImplementation<?, ?> dependency : dependencies) {
+                if (!newDependencies.contains(dependency)) { dependency.removeDependent(this); }
+            }
+            this.dependencies = newDependencies;
+        }
+    }
+    
+    /**
+     * Returns the value of this property, which is recomputed first if one of its dependencies has changed.
+     * If this method is called during the computation of another derived property, this property becomes a dependency of that property.
+     */
+    @Pure
+    @Override
+    public @NonCapturable @Valid VALUE get() {
+        trackRead();
+        if (computedVersion != version.get()) { recompute(); }
+        return value;
+    }
+    
+    /* -------------------------------------------------- Invalidation -------------------------------------------------- */
+    
+    /**
+     * Returns whether observers are registered for this property.
+     */
+    @Pure
+    boolean isObserved() {
+        return hasObservers();
+    }
+    
+    /**
+     * Marks the value of this property as outdated and invalidates the derived properties that depend on this property.
+     */
+    @Impure
+    void invalidate() {
+        version.incrementAndGet();
+        invalidateDependents();
+    }
+    
+    /* -------------------------------------------------- Notification -------------------------------------------------- */
+    
+    /**
+     * Stores the value about which the observers were notified last.
+     */
+    private volatile @Nullable VALUE notifiedValue;
+    
+    @Impure
+    @Override
+    protected boolean register(@Captured @Nonnull VolatileValueObserver<VALUE> observer, @Captured @Nonnull ValueObserver<VALUE, RuntimeException, RuntimeException, VolatileValueObserver<VALUE>, ReadOnlyVolatileValueProperty<VALUE>> genericObserver) {
+        if (!hasObservers()) { this.notifiedValue = get(); }
+        return super.register(observer, genericObserver);
+    }
+    
+    @Impure
+    @Override
+    protected boolean registerWeakly(@Nonnull VolatileValueObserver<VALUE> observer, @Nonnull UnaryFunction<@Nonnull WeakReference<VolatileValueObserver<VALUE>>, @Nonnull ValueObserver<VALUE, RuntimeException, RuntimeException, VolatileValueObserver<VALUE>, ReadOnlyVolatileValueProperty<VALUE>>> factory) {
+        if (!hasObservers()) { this.notifiedValue = get(); }
+        return super.registerWeakly(observer, factory);
+    }
+    
+    /**
+     * Recomputes the value of this property and notifies the observers if the value has changed.
+     * If the observers are already being notified on the current thread, the ongoing notification picks up the change instead.
+     */
+    @Impure
+    void revalidate() {
+        if (lock.isLockHeldByCurrentThread()) { return; }
+        lock.lock();
+        try {
+            while (true) {
+                final @Nullable VALUE oldValue = notifiedValue;
+                final @Valid VALUE newValue = get();
+                if (Objects.equals(oldValue, newValue)) { return; }
+                this.notifiedValue = newValue;
+                final @Nonnull Iterable<@Nonnull ValueObserver<VALUE, RuntimeException, RuntimeException, VolatileValueObserver<VALUE>, ReadOnlyVolatileValueProperty<VALUE>>> observers = getObservers();
+                try {
+                    for (@Nonnull ValueObserver<VALUE, RuntimeException, RuntimeException, VolatileValueObserver<VALUE>, ReadOnlyVolatileValueProperty<VALUE>> observer : observers) {
+                        observer.notify(this, oldValue, newValue);
+                    }
+                } finally {
+                    finishNotification(observers);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /* -------------------------------------------------- Object -------------------------------------------------- */
+    
+    @Pure
+    @Override
+    public boolean equals(@Nullable Object object) {
+        return object == this;
+    }
+    
+    @Pure
+    @Override
+    public int hashCode() {
+        return getHashCode();
+    }
+    
+    @Pure
+    @Override
+    public @Nonnull String toString() {
+        return "DerivedValueProperty(level: " + level + ", dependencies: " + dependencies.size() + ")";
+    }
+    
+}
@@ -15,6 +15,8 @@
  */
 package net.digitalid.utility.property.map;
 
+import java.util.Map;
+
 import javax.annotation.Nonnull;
 
 import net.digitalid.utility.annotations.generics.Unspecifiable;
@@ -43,4 +45,17 @@ public interface MapObserver<@Unspecifiable KEY, @Unspecifiable VALUE, @Unspecif
     @Impure
     public void notify(@Nonnull PROPERTY property, @NonCaptured @Unmodified @Nonnull @Valid("key") KEY key, @NonCaptured @Unmodified @Nonnull @Valid VALUE value, boolean added);
     
+    /**
+     * This method is called on {@link Property#isRegistered(net.digitalid.utility.property.Observer) registered} observers when several key-value pairs have been added to or removed from the given property in a single bulk operation.
+     * By default, the changes are replayed as individual {@link #notify(net.digitalid.utility.property.map.ReadOnlyMapProperty, java.lang.Object, java.lang.Object, boolean) notifications}, starting with the removed pairs.
+     * 
+     * @param added the key-value pairs that have been added to the given property.
+     * @param removed the key-value pairs that have been removed from the given property.
+     */
+    @Impure
+    public default void notifyBatch(@Nonnull PROPERTY property, @NonCaptured @Unmodified @Nonnull ReadOnlyMap<@Nonnull @Valid("key") KEY, @Nonnull @Valid VALUE> added, @NonCaptured @Unmodified @Nonnull ReadOnlyMap<@Nonnull @Valid("key") KEY, @Nonnull @Valid VALUE> removed) {
+        for (Map.@Nonnull Entry<@Nonnull @Valid("key") KEY, @Nonnull @Valid VALUE> entry : removed.entrySet()) { notify(property, entry.getKey(), entry.getValue(), false); }
+        for (Map.@Nonnull Entry<@Nonnull @Valid("key") KEY, @Nonnull @Valid VALUE> entry : added.entrySet()) { notify(property, entry.getKey(), entry.getValue(), true); }
+    }
+    
 }
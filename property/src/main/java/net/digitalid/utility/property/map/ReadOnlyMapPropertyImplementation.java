@@ -15,7 +15,10 @@
  */
 package net.digitalid.utility.property.map;
 
+import java.lang.ref.WeakReference;
+
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import net.digitalid.utility.annotations.generics.Unspecifiable;
 import net.digitalid.utility.annotations.method.Impure;
@@ -55,7 +58,41 @@ public abstract class ReadOnlyMapPropertyImplementation<@Unspecifiable KEY, @Uns
         @Impure
         @Override
         public void notify(@Nonnull PROPERTY property, @NonCaptured @Unmodified @Nonnull @Valid("key") KEY key, @NonCaptured @Unmodified @Nonnull @Valid VALUE value, boolean added) {
-            executorService.submit(() -> observer.notify(property, key, value, added));
+            dispatch(property, () -> observer.notify(property, key, value, added));
+        }
+        
+        @Impure
+        @Override
+        public void notifyBatch(@Nonnull PROPERTY property, @NonCaptured @Unmodified @Nonnull ReadOnlyMap<@Nonnull @Valid("key") KEY, @Nonnull @Valid VALUE> added, @NonCaptured @Unmodified @Nonnull ReadOnlyMap<@Nonnull @Valid("key") KEY, @Nonnull @Valid VALUE> removed) {
+            dispatch(property, () -> observer.notifyBatch(property, added, removed));
+        }
+        
+    }
+    
+    /* -------------------------------------------------- Weak Observer -------------------------------------------------- */
+    
+    /**
+     * A weak observer forwards the notifications to an observer that is only weakly referenced.
+     */
+    @Immutable
+    public static class WeakObserver<@Unspecifiable KEY, @Unspecifiable VALUE, @Unspecifiable READONLY_MAP extends ReadOnlyMap<@Nonnull @Valid("key") KEY, @Nonnull @Valid VALUE>, @Unspecifiable EXCEPTION1 extends Exception, @Unspecifiable EXCEPTION2 extends Exception, @Unspecifiable OBSERVER extends MapObserver<KEY, VALUE, READONLY_MAP, EXCEPTION1, EXCEPTION2, OBSERVER, PROPERTY>, @Unspecifiable PROPERTY extends ReadOnlyMapProperty<KEY, VALUE, READONLY_MAP, EXCEPTION1, EXCEPTION2, OBSERVER, PROPERTY>> extends PropertyImplementation.WeakObserver<OBSERVER> implements MapObserver<KEY, VALUE, READONLY_MAP, EXCEPTION1, EXCEPTION2, OBSERVER, PROPERTY> {
+        
+        protected WeakObserver(@Nonnull WeakReference<OBSERVER> reference) {
+            super(reference);
+        }
+        
+        @Impure
+        @Override
+        public void notify(@Nonnull PROPERTY property, @NonCaptured @Unmodified @Nonnull @Valid("key") KEY key, @NonCaptured @Unmodified @Nonnull @Valid VALUE value, boolean added) {
+            final @Nullable OBSERVER observer = getObserver();
+            if (observer != null) { observer.notify(property, key, value, added); }
+        }
+        
+        @Impure
+        @Override
+        public void notifyBatch(@Nonnull PROPERTY property, @NonCaptured @Unmodified @Nonnull ReadOnlyMap<@Nonnull @Valid("key") KEY, @Nonnull @Valid VALUE> added, @NonCaptured @Unmodified @Nonnull ReadOnlyMap<@Nonnull @Valid("key") KEY, @Nonnull @Valid VALUE> removed) {
+            final @Nullable OBSERVER observer = getObserver();
+            if (observer != null) { observer.notifyBatch(property, added, removed); }
         }
         
     }
@@ -65,13 +102,19 @@ public abstract class ReadOnlyMapPropertyImplementation<@Unspecifiable KEY, @Uns
     @Impure
     @Override
     public boolean registerOnGuiThread(@Captured @Nonnull OBSERVER observer) {
-        return observers.put(observer, (property, key, value, added) -> Threading.runOnGuiThread(() -> observer.notify(property, key, value, added))) == null;
+        return register(observer, (property, key, value, added) -> Threading.runOnGuiThread(() -> observer.notify(property, key, value, added)));
     }
     
     @Impure
     @Override
     public boolean registerOnNewThread(@Captured @Nonnull OBSERVER observer) {
-        return observers.put(observer, new AsynchronousObserver<>(observer)) == null;
+        return register(observer, new AsynchronousObserver<>(observer));
+    }
+    
+    @Impure
+    @Override
+    public boolean registerWeakly(@Captured @Nonnull OBSERVER observer) {
+        return registerWeakly(observer, WeakObserver::new);
     }
     
 }
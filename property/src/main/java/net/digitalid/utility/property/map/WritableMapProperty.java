@@ -26,7 +26,9 @@ import net.digitalid.utility.annotations.ownership.NonCaptured;
 import net.digitalid.utility.annotations.parameter.Unmodified;
 import net.digitalid.utility.annotations.type.ThreadSafe;
 import net.digitalid.utility.collections.map.ReadOnlyMap;
+import net.digitalid.utility.functional.iterables.FiniteIterable;
 import net.digitalid.utility.validation.annotations.lock.LockNotHeldByCurrentThread;
+import net.digitalid.utility.validation.annotations.math.NonNegative;
 import net.digitalid.utility.validation.annotations.type.Mutable;
 import net.digitalid.utility.validation.annotations.value.Valid;
 
@@ -60,4 +62,34 @@ public interface WritableMapProperty<@Unspecifiable KEY, @Unspecifiable VALUE, @
     @LockNotHeldByCurrentThread
     public abstract @Capturable @Nullable @Valid VALUE remove(@NonCaptured @Unmodified @Nonnull @Valid("key") KEY key) throws EXCEPTION1, EXCEPTION2;
     
+    /* -------------------------------------------------- Bulk Operations -------------------------------------------------- */
+    
+    /**
+     * Adds the key-value pairs of the given map whose keys are not yet in use to this property.
+     * The lock is acquired only once and the observers are notified only once about all added pairs.
+     * 
+     * @return the number of key-value pairs that were added.
+     */
+    @Impure
+    @LockNotHeldByCurrentThread
+    public abstract @NonNegative int addAll(@NonCaptured @Unmodified @Nonnull ReadOnlyMap<? extends @Nonnull @Valid("key") KEY, ? extends @Nonnull @Valid VALUE> map) throws EXCEPTION1, EXCEPTION2;
+    
+    /**
+     * Removes the values indexed by the given keys from this property.
+     * The lock is acquired only once and the observers are notified only once about all removed pairs.
+     * 
+     * @return the number of key-value pairs that were removed.
+     */
+    @Impure
+    @LockNotHeldByCurrentThread
+    public abstract @NonNegative int removeAll(@NonCaptured @Unmodified @Nonnull FiniteIterable<? extends @Nonnull @Valid("key") KEY> keys) throws EXCEPTION1, EXCEPTION2;
+    
+    /**
+     * Replaces the key-value pairs of this property with the ones of the given map.
+     * The lock is acquired only once and the observers are notified only once about all removed and added pairs, where a pair whose value changed counts as both.
+     */
+    @Impure
+    @LockNotHeldByCurrentThread
+    public abstract void replaceAll(@NonCaptured @Unmodified @Nonnull ReadOnlyMap<? extends @Nonnull @Valid("key") KEY, ? extends @Nonnull @Valid VALUE> map) throws EXCEPTION1, EXCEPTION2;
+    
 }
@@ -49,9 +49,36 @@ public abstract class WritableMapPropertyImplementation<@Unspecifiable KEY, @Uns
         Require.that(!added || value.equals(get(key))).orThrow("If the pair was added, The key $ now has to map to the value $ but mapped to $ instead.", key, value, get(key));
         Require.that(added || get(key) == null).orThrow("If the pair was removed, the key $ may no longer map to a value but still mapped to $.", key, get(key));
         
-        if (!observers.isEmpty()) {
-            for (@Nonnull MapObserver<KEY, VALUE, READONLY_MAP, EXCEPTION1, EXCEPTION2, OBSERVER, PROPERTY> observer : observers.values()) {
-                observer.notify((PROPERTY) this, key, value, added);
+        invalidateDependents();
+        if (hasObservers()) {
+            final @Nonnull Iterable<@Nonnull MapObserver<KEY, VALUE, READONLY_MAP, EXCEPTION1, EXCEPTION2, OBSERVER, PROPERTY>> observers = getObservers();
+            try {
+                for (@Nonnull MapObserver<KEY, VALUE, READONLY_MAP, EXCEPTION1, EXCEPTION2, OBSERVER, PROPERTY> observer : observers) {
+                    observer.notify((PROPERTY) this, key, value, added);
+                }
+            } finally {
+                finishNotification(observers);
+            }
+        }
+    }
+    
+    /**
+     * Notifies the registered observers that the given key-value pairs have been added to and removed from this property in a single bulk operation.
+     * The observers are not notified if both maps are empty.
+     */
+    @Impure
+    @SuppressWarnings("unchecked")
+    protected void notifyObservers(@NonCaptured @Unmodified @Nonnull ReadOnlyMap<@Nonnull @Valid("key") KEY, @Nonnull @Valid VALUE> added, @NonCaptured @Unmodified @Nonnull ReadOnlyMap<@Nonnull @Valid("key") KEY, @Nonnull @Valid VALUE> removed) throws EXCEPTION1, EXCEPTION2 {
+        if (added.isEmpty() && removed.isEmpty()) { return; }
+        invalidateDependents();
+        if (hasObservers()) {
+            final @Nonnull Iterable<@Nonnull MapObserver<KEY, VALUE, READONLY_MAP, EXCEPTION1, EXCEPTION2, OBSERVER, PROPERTY>> observers = getObservers();
+            try {
+                for (@Nonnull MapObserver<KEY, VALUE, READONLY_MAP, EXCEPTION1, EXCEPTION2, OBSERVER, PROPERTY> observer : observers) {
+                    observer.notifyBatch((PROPERTY) this, added, removed);
+                }
+            } finally {
+                finishNotification(observers);
             }
         }
     }
@@ -15,6 +15,8 @@
  */
 package net.digitalid.utility.property.map;
 
+import java.util.Map;
+
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
@@ -28,13 +30,18 @@ import net.digitalid.utility.annotations.ownership.NonCapturable;
 import net.digitalid.utility.annotations.ownership.NonCaptured;
 import net.digitalid.utility.annotations.parameter.Unmodified;
 import net.digitalid.utility.annotations.type.ThreadSafe;
+import net.digitalid.utility.collections.map.FreezableLinkedHashMapBuilder;
 import net.digitalid.utility.collections.map.FreezableMap;
 import net.digitalid.utility.collections.map.ReadOnlyMap;
+import net.digitalid.utility.contracts.Require;
 import net.digitalid.utility.contracts.Validate;
 import net.digitalid.utility.freezable.annotations.NonFrozen;
+import net.digitalid.utility.functional.iterables.FiniteIterable;
 import net.digitalid.utility.generator.annotations.generators.GenerateBuilder;
 import net.digitalid.utility.generator.annotations.generators.GenerateSubclass;
+import net.digitalid.utility.validation.annotations.generation.Default;
 import net.digitalid.utility.validation.annotations.lock.LockNotHeldByCurrentThread;
+import net.digitalid.utility.validation.annotations.math.NonNegative;
 import net.digitalid.utility.validation.annotations.type.Mutable;
 import net.digitalid.utility.validation.annotations.value.Valid;
 
@@ -43,6 +50,9 @@ import net.digitalid.utility.validation.annotations.value.Valid;
  * 
  * <em>Important:</em> Make sure that {@code FREEZABLE_MAP} is a sub-type of {@code READONLY_MAP}!
  * Unfortunately, this cannot be enforced with the limited Java generics.
+ * <p>
+ * In {@link #isCopyOnWrite() copy-on-write} mode, the first read after a write takes a frozen copy of the map,
+ * which {@link #get()} returns without acquiring a lock and which can thus be iterated safely while other threads write.
  * 
  * @invariant !get().keySet().containsNull() : "None of the keys may be null.";
  * @invariant !get().values().containsNull() : "None of the values may be null.";
@@ -60,11 +70,73 @@ public abstract class WritableVolatileMapProperty<@Unspecifiable KEY, @Unspecifi
     @Pure
     protected abstract @Nonnull @NonFrozen FREEZABLE_MAP getMap();
     
+    /**
+     * Returns the live map of this property or, in copy-on-write mode, a frozen snapshot of its current state.
+     */
     @Pure
     @Override
     @SuppressWarnings("unchecked")
-    public @Nonnull @NonFrozen READONLY_MAP get() {
-        return (READONLY_MAP) getMap();
+    public @Nonnull READONLY_MAP get() {
+        trackRead();
+        return isCopyOnWrite() ? getSnapshot() : (READONLY_MAP) getMap();
+    }
+    
+    /* -------------------------------------------------- Snapshot -------------------------------------------------- */
+    
+    /**
+     * Returns whether {@link #get()} returns a frozen copy of the map, which is then returned without acquiring a lock until the next write.
+     * This lets reads scale with the number of cores at the cost of copying the map on the first read after a write
+     * and is thus appropriate for maps that are read much more often than they are written.
+     */
+    @Pure
+    @Default("false")
+    public abstract boolean isCopyOnWrite();
+    
+    /**
+     * Stores the frozen copy of the map in copy-on-write mode or null if the map has been written since the copy was taken.
+     */
+    private volatile @Nullable READONLY_MAP snapshot;
+    
+    /**
+     * Returns the frozen copy of the map, which is taken while holding the lock if the map has been written since the last copy.
+     */
+    @Pure
+    private @Nonnull READONLY_MAP getSnapshot() {
+        final @Nullable READONLY_MAP snapshot = this.snapshot;
+        if (snapshot != null) { return snapshot; }
+        if (lock.isLockHeldByCurrentThread()) { return takeSnapshot(); }
+        lock.lock();
+        try {
+            return takeSnapshot();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Takes a frozen copy of the map unless another thread has already taken one since the last write.
+     * 
+     * @require lock.isLockHeldByCurrentThread() : "The lock is held by the current thread.";
+     */
+    @Pure
+    @SuppressWarnings("unchecked")
+    private @Nonnull READONLY_MAP takeSnapshot() {
+        @Nullable READONLY_MAP snapshot = this.snapshot;
+        if (snapshot == null) {
+            snapshot = (READONLY_MAP) getMap().clone().freeze();
+            this.snapshot = snapshot;
+        }
+        return snapshot;
+    }
+    
+    /**
+     * Invalidates the frozen copy of the map so that the next read in copy-on-write mode takes a new one.
+     * 
+     * @require lock.isLockHeldByCurrentThread() : "The lock is held by the current thread.";
+     */
+    @Impure
+    private void invalidateSnapshot() {
+        this.snapshot = null;
     }
     
     /* -------------------------------------------------- Getter -------------------------------------------------- */
@@ -72,7 +144,7 @@ public abstract class WritableVolatileMapProperty<@Unspecifiable KEY, @Unspecifi
     @Pure
     @Override
     public @NonCapturable @Nullable @Valid VALUE get(@NonCaptured @Unmodified @Nonnull @Valid("key") KEY key) {
-        return getMap().get(key);
+        return get().get(key);
     }
     
     /* -------------------------------------------------- Operations -------------------------------------------------- */
@@ -87,6 +159,7 @@ public abstract class WritableVolatileMapProperty<@Unspecifiable KEY, @Unspecifi
                 return false;
             } else {
                 getMap().put(key, value);
+                invalidateSnapshot();
                 notifyObservers(key, value, true);
                 return true;
             }
@@ -102,13 +175,107 @@ public abstract class WritableVolatileMapProperty<@Unspecifiable KEY, @Unspecifi
         lock.lock();
         try {
             final @Nullable VALUE value = getMap().remove(key);
-            if (value != null) { notifyObservers(key, value, false); }
+            if (value != null) {
+                invalidateSnapshot();
+                notifyObservers(key, value, false);
+            }
             return value;
         } finally {
             lock.unlock();
         }
     }
     
+    /* -------------------------------------------------- Bulk Operations -------------------------------------------------- */
+    
+    /**
+     * Requires that the given keys are non-null and valid, as the generated contracts do not check the elements of a bulk operation.
+     */
+    @Pure
+    private void requireValidKeys(@NonCaptured @Unmodified @Nonnull FiniteIterable<? extends KEY> keys) {
+        for (@Nullable KEY key : keys) {
+            Require.that(key != null && isValidKey(key)).orThrow("Each key has to be non-null and valid but was $.", key);
+        }
+    }
+    
+    /**
+     * Requires that the keys and values of the given map are non-null and valid, as the generated contracts do not check the elements of a bulk operation.
+     */
+    @Pure
+    private void requireValidEntries(@NonCaptured @Unmodified @Nonnull ReadOnlyMap<? extends KEY, ? extends VALUE> map) {
+        for (Map.@Nonnull Entry<? extends KEY, ? extends VALUE> entry : map.entrySet()) {
+            Require.that(entry.getKey() != null && isValidKey(entry.getKey())).orThrow("Each key has to be non-null and valid but was $.", entry.getKey());
+            Require.that(entry.getValue() != null && isValid(entry.getValue())).orThrow("Each value has to be non-null and valid but was $.", entry.getValue());
+        }
+    }
+    
+    @Impure
+    @Override
+    @LockNotHeldByCurrentThread
+    public @NonNegative int addAll(@NonCaptured @Unmodified @Nonnull ReadOnlyMap<? extends @Nonnull @Valid("key") KEY, ? extends @Nonnull @Valid VALUE> map) {
+        requireValidEntries(map);
+        lock.lock();
+        try {
+            final @Nonnull FreezableMap<@Nonnull @Valid("key") KEY, @Nonnull @Valid VALUE> added = FreezableLinkedHashMapBuilder.build();
+            for (Map.@Nonnull Entry<? extends @Nonnull @Valid("key") KEY, ? extends @Nonnull @Valid VALUE> entry : map.entrySet()) {
+                if (!getMap().containsKey(entry.getKey())) {
+                    getMap().put(entry.getKey(), entry.getValue());
+                    added.put(entry.getKey(), entry.getValue());
+                }
+            }
+            if (!added.isEmpty()) { invalidateSnapshot(); }
+            notifyObservers(added.freeze(), FreezableLinkedHashMapBuilder.<KEY, VALUE>build().freeze());
+            return added.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Impure
+    @Override
+    @LockNotHeldByCurrentThread
+    public @NonNegative int removeAll(@NonCaptured @Unmodified @Nonnull FiniteIterable<? extends @Nonnull @Valid("key") KEY> keys) {
+        requireValidKeys(keys);
+        lock.lock();
+        try {
+            final @Nonnull FreezableMap<@Nonnull @Valid("key") KEY, @Nonnull @Valid VALUE> removed = FreezableLinkedHashMapBuilder.build();
+            for (@Nonnull @Valid("key") KEY key : keys) {
+                final @Nullable VALUE value = getMap().remove(key);
+                if (value != null) { removed.put(key, value); }
+            }
+            if (!removed.isEmpty()) { invalidateSnapshot(); }
+            notifyObservers(FreezableLinkedHashMapBuilder.<KEY, VALUE>build().freeze(), removed.freeze());
+            return removed.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Impure
+    @Override
+    @LockNotHeldByCurrentThread
+    public void replaceAll(@NonCaptured @Unmodified @Nonnull ReadOnlyMap<? extends @Nonnull @Valid("key") KEY, ? extends @Nonnull @Valid VALUE> map) {
+        requireValidEntries(map);
+        lock.lock();
+        try {
+            final @Nonnull FreezableMap<@Nonnull @Valid("key") KEY, @Nonnull @Valid VALUE> removed = FreezableLinkedHashMapBuilder.build();
+            for (Map.@Nonnull Entry<@Nonnull @Valid("key") KEY, @Nonnull @Valid VALUE> entry : getMap().entrySet()) {
+                if (!entry.getValue().equals(map.get(entry.getKey()))) { removed.put(entry.getKey(), entry.getValue()); }
+            }
+            getMap().removeAll(removed.keySet());
+            final @Nonnull FreezableMap<@Nonnull @Valid("key") KEY, @Nonnull @Valid VALUE> added = FreezableLinkedHashMapBuilder.build();
+            for (Map.@Nonnull Entry<? extends @Nonnull @Valid("key") KEY, ? extends @Nonnull @Valid VALUE> entry : map.entrySet()) {
+                if (!getMap().containsKey(entry.getKey())) {
+                    getMap().put(entry.getKey(), entry.getValue());
+                    added.put(entry.getKey(), entry.getValue());
+                }
+            }
+            if (!added.isEmpty() || !removed.isEmpty()) { invalidateSnapshot(); }
+            notifyObservers(added.freeze(), removed.freeze());
+        } finally {
+            lock.unlock();
+        }
+    }
+    
     /* -------------------------------------------------- Validate -------------------------------------------------- */
     
     @Pure
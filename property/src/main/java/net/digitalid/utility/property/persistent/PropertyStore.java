@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2017 Synacts GmbH, Switzerland (info@synacts.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.digitalid.utility.property.persistent;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.digitalid.utility.annotations.generics.Unspecifiable;
+import net.digitalid.utility.annotations.method.Impure;
+import net.digitalid.utility.annotations.method.Pure;
+import net.digitalid.utility.annotations.ownership.Capturable;
+import net.digitalid.utility.annotations.ownership.NonCaptured;
+import net.digitalid.utility.annotations.parameter.Unmodified;
+import net.digitalid.utility.annotations.type.ThreadSafe;
+import net.digitalid.utility.collections.map.ReadOnlyMap;
+import net.digitalid.utility.collections.set.ReadOnlySet;
+import net.digitalid.utility.conversion.exceptions.ConnectionException;
+import net.digitalid.utility.conversion.exceptions.RecoveryException;
+import net.digitalid.utility.storage.Table;
+import net.digitalid.utility.storage.interfaces.Unit;
+import net.digitalid.utility.time.Time;
+import net.digitalid.utility.validation.annotations.math.Positive;
+import net.digitalid.utility.validation.annotations.type.Mutable;
+
+/**
+ * A property store reads and writes the key-value pairs of persistent properties from and to a {@link Table table}.
+ * The table also serves as the converter with which the entries are encoded and decoded by the database layer that implements this interface.
+ * All persistent properties of a store share its {@link WriteBehindBuffer#of(PropertyStore) write-behind buffer} so that their changes are written in common batches.
+ * 
+ * @see WriteBehindBuffer
+ */
+@Mutable
+@ThreadSafe
+public interface PropertyStore<@Unspecifiable KEY, @Unspecifiable VALUE> {
+    
+    /* -------------------------------------------------- Table -------------------------------------------------- */
+    
+    /**
+     * Returns the table in which the key-value pairs are stored.
+     */
+    @Pure
+    public @Nonnull Table<?, ?> getTable();
+    
+    /**
+     * Returns the unit on which the table is stored.
+     */
+    @Pure
+    public default @Nonnull Unit getUnit() {
+        return Unit.DEFAULT;
+    }
+    
+    /* -------------------------------------------------- Buffering -------------------------------------------------- */
+    
+    /**
+     * Returns the maximal time that a change is buffered before it is written to the table.
+     */
+    @Pure
+    public default @Nonnull Time getFlushInterval() {
+        return Time.SECOND;
+    }
+    
+    /**
+     * Returns the number of buffered changes at which they are written to the table immediately.
+     */
+    @Pure
+    public default @Positive int getFlushThreshold() {
+        return 1_000;
+    }
+    
+    /* -------------------------------------------------- Loading -------------------------------------------------- */
+    
+    /**
+     * Loads all key-value pairs from the table.
+     */
+    @Pure
+    public @Capturable @Nonnull ReadOnlyMap<@Nonnull KEY, @Nonnull VALUE> load() throws ConnectionException, RecoveryException;
+    
+    /**
+     * Loads the value with the given key from the table or returns null if there is no such value.
+     * Implementations should override this method in order to avoid loading the whole table.
+     */
+    @Pure
+    public default @Capturable @Nullable VALUE load(@NonCaptured @Unmodified @Nonnull KEY key) throws ConnectionException, RecoveryException {
+        return load().get(key);
+    }
+    
+    /* -------------------------------------------------- Storing -------------------------------------------------- */
+    
+    /**
+     * Writes the given key-value pairs to and deletes the given keys from the table in a single batch.
+     * The given keys are disjoint from the keys of the given key-value pairs.
+     * Implementations should write the batch in a single transaction so that it is either stored completely or not at all.
+     */
+    @Impure
+    public void store(@NonCaptured @Unmodified @Nonnull ReadOnlyMap<@Nonnull KEY, @Nonnull VALUE> updatedEntries, @NonCaptured @Unmodified @Nonnull ReadOnlySet<@Nonnull KEY> deletedKeys) throws ConnectionException;
+    
+}
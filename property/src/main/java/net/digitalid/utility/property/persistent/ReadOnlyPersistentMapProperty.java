@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2017 Synacts GmbH, Switzerland (info@synacts.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.digitalid.utility.property.persistent;
+
+import javax.annotation.Nonnull;
+
+import net.digitalid.utility.annotations.generics.Unspecifiable;
+import net.digitalid.utility.annotations.type.ThreadSafe;
+import net.digitalid.utility.collections.map.ReadOnlyMap;
+import net.digitalid.utility.conversion.exceptions.ConnectionException;
+import net.digitalid.utility.conversion.exceptions.RecoveryException;
+import net.digitalid.utility.property.map.ReadOnlyMapProperty;
+import net.digitalid.utility.validation.annotations.type.ReadOnly;
+import net.digitalid.utility.validation.annotations.value.Valid;
+
+/**
+ * This read-only property stores a map of key-value pairs in a database table.
+ * 
+ * @see WritablePersistentMapProperty
+ */
+@ThreadSafe
+@ReadOnly(WritablePersistentMapProperty.class)
+public interface ReadOnlyPersistentMapProperty<@Unspecifiable KEY, @Unspecifiable VALUE> extends ReadOnlyMapProperty<KEY, VALUE, ReadOnlyMap<@Nonnull @Valid("key") KEY, @Nonnull @Valid VALUE>, ConnectionException, RecoveryException, PersistentMapObserver<KEY, VALUE>, ReadOnlyPersistentMapProperty<KEY, VALUE>> {}
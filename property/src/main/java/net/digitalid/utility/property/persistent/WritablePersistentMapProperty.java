@@ -0,0 +1,307 @@
+/*
+ * Copyright (C) 2017 Synacts GmbH, Switzerland (info@synacts.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.digitalid.utility.property.persistent;
+
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.digitalid.utility.annotations.generics.Unspecifiable;
+import net.digitalid.utility.annotations.method.CallSuper;
+import net.digitalid.utility.annotations.method.Impure;
+import net.digitalid.utility.annotations.method.Pure;
+import net.digitalid.utility.annotations.ownership.Capturable;
+import net.digitalid.utility.annotations.ownership.Captured;
+import net.digitalid.utility.annotations.ownership.NonCapturable;
+import net.digitalid.utility.annotations.ownership.NonCaptured;
+import net.digitalid.utility.annotations.parameter.Unmodified;
+import net.digitalid.utility.annotations.type.ThreadSafe;
+import net.digitalid.utility.collections.map.FreezableLinkedHashMapBuilder;
+import net.digitalid.utility.collections.map.FreezableMap;
+import net.digitalid.utility.collections.map.ReadOnlyMap;
+import net.digitalid.utility.contracts.Require;
+import net.digitalid.utility.conversion.exceptions.ConnectionException;
+import net.digitalid.utility.conversion.exceptions.RecoveryException;
+import net.digitalid.utility.freezable.annotations.NonFrozen;
+import net.digitalid.utility.functional.iterables.FiniteIterable;
+import net.digitalid.utility.generator.annotations.generators.GenerateBuilder;
+import net.digitalid.utility.generator.annotations.generators.GenerateSubclass;
+import net.digitalid.utility.property.map.WritableMapPropertyImplementation;
+import net.digitalid.utility.validation.annotations.lock.LockNotHeldByCurrentThread;
+import net.digitalid.utility.validation.annotations.math.NonNegative;
+import net.digitalid.utility.validation.annotations.type.Mutable;
+import net.digitalid.utility.validation.annotations.value.Valid;
+
+/**
+ * This writable property stores a map of key-value pairs in a database table.
+ * The key-value pairs are loaded lazily from the {@link #getStore() store} on the first access
+ * and changes are written behind with the {@link WriteBehindBuffer#of(PropertyStore) buffer of the store} so that a write does not wait for the database.
+ * 
+ * @invariant !get().keySet().containsNull() : "None of the keys may be null.";
+ * @invariant !get().values().containsNull() : "None of the values may be null.";
+ */
+@ThreadSafe
+@GenerateBuilder
+@GenerateSubclass
+@Mutable(ReadOnlyPersistentMapProperty.class)
+public abstract class WritablePersistentMapProperty<@Unspecifiable KEY, @Unspecifiable VALUE> extends WritableMapPropertyImplementation<KEY, VALUE, ReadOnlyMap<@Nonnull @Valid("key") KEY, @Nonnull @Valid VALUE>, ConnectionException, RecoveryException, PersistentMapObserver<KEY, VALUE>, ReadOnlyPersistentMapProperty<KEY, VALUE>> implements ReadOnlyPersistentMapProperty<KEY, VALUE> {
+    
+    /* -------------------------------------------------- Store -------------------------------------------------- */
+    
+    /**
+     * Returns the store from which the key-value pairs are loaded and to which they are written.
+     */
+    @Pure
+    public abstract @Nonnull PropertyStore<KEY, VALUE> getStore();
+    
+    /**
+     * Stores the buffer of the store which writes the changes of this property.
+     */
+    private @Nonnull WriteBehindBuffer<@Nonnull KEY, @Nonnull VALUE> buffer;
+    
+    /**
+     * Writes the changes of this property that have not yet been written to the store and waits until they are written.
+     */
+    @Impure
+    public void flush() throws ConnectionException {
+        buffer.flush();
+    }
+    
+    /**
+     * Returns the number of changes of the store of this property that have not yet been written.
+     */
+    @Pure
+    public @NonNegative int getNumberOfPendingChanges() {
+        return buffer.getNumberOfPendingChanges();
+    }
+    
+    /**
+     * Stores whether this property has been closed.
+     */
+    private volatile boolean closed = false;
+    
+    /**
+     * Writes the pending changes of the store of this property and closes this property, after which it can no longer be changed.
+     * The buffer of the store remains open for its other properties.
+     */
+    @Impure
+    public void close() {
+        this.closed = true;
+        buffer.flushQuietly();
+    }
+    
+    /**
+     * Requires that this property has not yet been closed.
+     */
+    @Pure
+    private void requireOpen() {
+        Require.that(!closed).orThrow("The property $ has already been closed.", this);
+    }
+    
+    /* -------------------------------------------------- Map -------------------------------------------------- */
+    
+    /**
+     * Stores the key-value pairs of this property or null if they have not yet been loaded.
+     */
+    private volatile @Nullable FreezableMap<@Nonnull @Valid("key") KEY, @Nonnull @Valid VALUE> map;
+    
+    /**
+     * Returns the key-value pairs of this property, which are loaded from the store on the first call.
+     */
+    @Impure
+    protected @Nonnull @NonFrozen FreezableMap<@Nonnull @Valid("key") KEY, @Nonnull @Valid VALUE> getMap() throws ConnectionException, RecoveryException {
+        @Nullable FreezableMap<@Nonnull @Valid("key") KEY, @Nonnull @Valid VALUE> map = this.map;
+        if (map == null) {
+            synchronized (this) {
+                map = this.map;
+                if (map == null) {
+                    map = FreezableLinkedHashMapBuilder.build();
+                    for (Map.@Nonnull Entry<@Nonnull KEY, @Nonnull VALUE> entry : getStore().load().entrySet()) {
+                        map.put(entry.getKey(), entry.getValue());
+                    }
+                    this.map = map;
+                }
+            }
+        }
+        return map;
+    }
+    
+    @Pure
+    @Override
+    public @Nonnull @NonFrozen ReadOnlyMap<@Nonnull @Valid("key") KEY, @Nonnull @Valid VALUE> get() throws ConnectionException, RecoveryException {
+        trackRead();
+        return getMap();
+    }
+    
+    @Pure
+    @Override
+    public @NonCapturable @Nullable @Valid VALUE get(@NonCaptured @Unmodified @Nonnull @Valid("key") KEY key) throws ConnectionException, RecoveryException {
+        return get().get(key);
+    }
+    
+    /* -------------------------------------------------- Operations -------------------------------------------------- */
+    
+    @Impure
+    @Override
+    @LockNotHeldByCurrentThread
+    public boolean add(@Captured @Nonnull @Valid("key") KEY key, @Captured @Nonnull @Valid VALUE value) throws ConnectionException, RecoveryException {
+        requireOpen();
+        lock.lock();
+        try {
+            if (getMap().containsKey(key)) {
+                return false;
+            } else {
+                getMap().put(key, value);
+                buffer.put(key, value);
+                notifyObservers(key, value, true);
+                return true;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Impure
+    @Override
+    @LockNotHeldByCurrentThread
+    public @Capturable @Nullable @Valid VALUE remove(@NonCaptured @Unmodified @Nonnull @Valid("key") KEY key) throws ConnectionException, RecoveryException {
+        requireOpen();
+        lock.lock();
+        try {
+            final @Nullable VALUE value = getMap().remove(key);
+            if (value != null) {
+                buffer.delete(key);
+                notifyObservers(key, value, false);
+            }
+            return value;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /* -------------------------------------------------- Bulk Operations -------------------------------------------------- */
+    
+    /**
+     * Requires that the given keys are non-null and valid, as the generated contracts do not check the elements of a bulk operation.
+     */
+    @Pure
+    private void requireValidKeys(@NonCaptured @Unmodified @Nonnull FiniteIterable<? extends KEY> keys) {
+        for (@Nullable KEY key : keys) {
+            Require.that(key != null && isValidKey(key)).orThrow("Each key has to be non-null and valid but was $.", key);
+        }
+    }
+    
+    /**
+     * Requires that the keys and values of the given map are non-null and valid, as the generated contracts do not check the elements of a bulk operation.
+     */
+    @Pure
+    private void requireValidEntries(@NonCaptured @Unmodified @Nonnull ReadOnlyMap<? extends KEY, ? extends VALUE> map) {
+        for (Map.@Nonnull Entry<? extends KEY, ? extends VALUE> entry : map.entrySet()) {
+            Require.that(entry.getKey() != null && isValidKey(entry.getKey())).orThrow("Each key has to be non-null and valid but was $.", entry.getKey());
+            Require.that(entry.getValue() != null && isValid(entry.getValue())).orThrow("Each value has to be non-null and valid but was $.", entry.getValue());
+        }
+    }
+    
+    @Impure
+    @Override
+    @LockNotHeldByCurrentThread
+    public @NonNegative int addAll(@NonCaptured @Unmodified @Nonnull ReadOnlyMap<? extends @Nonnull @Valid("key") KEY, ? extends @Nonnull @Valid VALUE> map) throws ConnectionException, RecoveryException {
+        requireOpen();
+        requireValidEntries(map);
+        lock.lock();
+        try {
+            final @Nonnull FreezableMap<@Nonnull @Valid("key") KEY, @Nonnull @Valid VALUE> added = FreezableLinkedHashMapBuilder.build();
+            for (Map.@Nonnull Entry<? extends @Nonnull @Valid("key") KEY, ? extends @Nonnull @Valid VALUE> entry : map.entrySet()) {
+                if (!getMap().containsKey(entry.getKey())) {
+                    getMap().put(entry.getKey(), entry.getValue());
+                    buffer.put(entry.getKey(), entry.getValue());
+                    added.put(entry.getKey(), entry.getValue());
+                }
+            }
+            notifyObservers(added.freeze(), FreezableLinkedHashMapBuilder.<KEY, VALUE>build().freeze());
+            return added.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Impure
+    @Override
+    @LockNotHeldByCurrentThread
+    public @NonNegative int removeAll(@NonCaptured @Unmodified @Nonnull FiniteIterable<? extends @Nonnull @Valid("key") KEY> keys) throws ConnectionException, RecoveryException {
+        requireOpen();
+        requireValidKeys(keys);
+        lock.lock();
+        try {
+            final @Nonnull FreezableMap<@Nonnull @Valid("key") KEY, @Nonnull @Valid VALUE> removed = FreezableLinkedHashMapBuilder.build();
+            for (@Nonnull @Valid("key") KEY key : keys) {
+                final @Nullable VALUE value = getMap().remove(key);
+                if (value != null) {
+                    buffer.delete(key);
+                    removed.put(key, value);
+                }
+            }
+            notifyObservers(FreezableLinkedHashMapBuilder.<KEY, VALUE>build().freeze(), removed.freeze());
+            return removed.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Impure
+    @Override
+    @LockNotHeldByCurrentThread
+    public void replaceAll(@NonCaptured @Unmodified @Nonnull ReadOnlyMap<? extends @Nonnull @Valid("key") KEY, ? extends @Nonnull @Valid VALUE> map) throws ConnectionException, RecoveryException {
+        requireOpen();
+        requireValidEntries(map);
+        lock.lock();
+        try {
+            final @Nonnull FreezableMap<@Nonnull @Valid("key") KEY, @Nonnull @Valid VALUE> removed = FreezableLinkedHashMapBuilder.build();
+            for (Map.@Nonnull Entry<@Nonnull @Valid("key") KEY, @Nonnull @Valid VALUE> entry : getMap().entrySet()) {
+                if (!entry.getValue().equals(map.get(entry.getKey()))) { removed.put(entry.getKey(), entry.getValue()); }
+            }
+            getMap().removeAll(removed.keySet());
+            final @Nonnull FreezableMap<@Nonnull @Valid("key") KEY, @Nonnull @Valid VALUE> added = FreezableLinkedHashMapBuilder.build();
+            for (Map.@Nonnull Entry<? extends @Nonnull @Valid("key") KEY, ? extends @Nonnull @Valid VALUE> entry : map.entrySet()) {
+                if (!getMap().containsKey(entry.getKey())) {
+                    getMap().put(entry.getKey(), entry.getValue());
+                    added.put(entry.getKey(), entry.getValue());
+                }
+            }
+            for (@Nonnull KEY key : removed.keySet()) {
+                if (!added.containsKey(key)) { buffer.delete(key); }
+            }
+            for (Map.@Nonnull Entry<@Nonnull @Valid("key") KEY, @Nonnull @Valid VALUE> entry : added.entrySet()) {
+                buffer.put(entry.getKey(), entry.getValue());
+            }
+            notifyObservers(added.freeze(), removed.freeze());
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /* -------------------------------------------------- Initialize -------------------------------------------------- */
+    
+    @Pure
+    @Override
+    @CallSuper
+    protected void initialize() {
+        super.initialize();
+        this.buffer = WriteBehindBuffer.of(getStore());
+    }
+    
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2017 Synacts GmbH, Switzerland (info@synacts.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.digitalid.utility.property.persistent;
+
+import java.util.Objects;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.digitalid.utility.annotations.generics.Specifiable;
+import net.digitalid.utility.annotations.generics.Unspecifiable;
+import net.digitalid.utility.annotations.method.CallSuper;
+import net.digitalid.utility.annotations.method.Impure;
+import net.digitalid.utility.annotations.method.Pure;
+import net.digitalid.utility.annotations.ownership.Capturable;
+import net.digitalid.utility.annotations.ownership.Captured;
+import net.digitalid.utility.annotations.ownership.NonCapturable;
+import net.digitalid.utility.annotations.type.ThreadSafe;
+import net.digitalid.utility.contracts.Require;
+import net.digitalid.utility.conversion.exceptions.ConnectionException;
+import net.digitalid.utility.conversion.exceptions.RecoveryException;
+import net.digitalid.utility.generator.annotations.generators.GenerateBuilder;
+import net.digitalid.utility.generator.annotations.generators.GenerateSubclass;
+import net.digitalid.utility.property.value.WritableValuePropertyImplementation;
+import net.digitalid.utility.validation.annotations.generation.Default;
+import net.digitalid.utility.validation.annotations.lock.LockNotHeldByCurrentThread;
+import net.digitalid.utility.validation.annotations.type.Mutable;
+import net.digitalid.utility.validation.annotations.value.Valid;
+
+/**
+ * This writable property stores a value under a {@link #getKey() key} in a database table.
+ * The value is loaded lazily from the {@link #getStore() store} on the first access
+ * and changes are written behind with the {@link WriteBehindBuffer#of(PropertyStore) buffer of the store} so that a write does not wait for the database.
+ * Setting the value to null deletes the key from the table, after which the property has its {@link #getDefaultValue() default value} again.
+ */
+@ThreadSafe
+@GenerateBuilder
+@GenerateSubclass
+@Mutable(ReadOnlyPersistentValueProperty.class)
+public abstract class WritablePersistentValueProperty<@Unspecifiable KEY, @Specifiable VALUE> extends WritableValuePropertyImplementation<VALUE, ConnectionException, RecoveryException, PersistentValueObserver<VALUE>, ReadOnlyPersistentValueProperty<VALUE>> implements ReadOnlyPersistentValueProperty<VALUE> {
+    
+    /* -------------------------------------------------- Store -------------------------------------------------- */
+    
+    /**
+     * Returns the store from which the value is loaded and to which it is written.
+     */
+    @Pure
+    public abstract @Nonnull PropertyStore<KEY, VALUE> getStore();
+    
+    /**
+     * Returns the key under which the value is stored.
+     */
+    @Pure
+    public abstract @Nonnull KEY getKey();
+    
+    /**
+     * Returns the value of this property if the store contains no value for the key.
+     */
+    @Pure
+    @Default("null")
+    public abstract @Nullable VALUE getDefaultValue();
+    
+    /**
+     * Stores the buffer of the store which writes the changes of this property.
+     */
+    private @Nonnull WriteBehindBuffer<@Nonnull KEY, @Nonnull VALUE> buffer;
+    
+    /**
+     * Writes the changes of the store of this property that have not yet been written and waits until they are written.
+     */
+    @Impure
+    public void flush() throws ConnectionException {
+        buffer.flush();
+    }
+    
+    /**
+     * Returns whether the change of this property has not yet been written to the store.
+     */
+    @Pure
+    public boolean isPending() {
+        return buffer.isPending(getKey());
+    }
+    
+    /**
+     * Stores whether this property has been closed.
+     */
+    private volatile boolean closed = false;
+    
+    /**
+     * Writes the pending changes of the store of this property and closes this property, after which it can no longer be changed.
+     * The buffer of the store remains open for its other properties.
+     */
+    @Impure
+    public void close() {
+        this.closed = true;
+        buffer.flushQuietly();
+    }
+    
+    /* -------------------------------------------------- Value -------------------------------------------------- */
+    
+    /**
+     * Stores whether the value has been loaded from the store.
+     */
+    private volatile boolean loaded = false;
+    
+    /**
+     * Stores the value of this property once it has been loaded.
+     */
+    private volatile @Nullable VALUE value;
+    
+    /**
+     * Loads the value of this property from the store unless it has already been loaded.
+     */
+    @Impure
+    private synchronized void load() throws ConnectionException, RecoveryException {
+        if (!loaded) {
+            final @Nullable VALUE storedValue = getStore().load(getKey());
+            this.value = storedValue != null ? storedValue : getDefaultValue();
+            this.loaded = true;
+        }
+    }
+    
+    @Pure
+    @Override
+    public @NonCapturable @Valid VALUE get() throws ConnectionException, RecoveryException {
+        trackRead();
+        if (!loaded) { load(); }
+        return value;
+    }
+    
+    @Impure
+    @Override
+    @LockNotHeldByCurrentThread
+    public @Capturable @Valid VALUE set(@Captured @Valid VALUE newValue) throws ConnectionException, RecoveryException {
+        Require.that(isValid(newValue)).orThrow("The new value has to be valid but was $.", newValue);
+        Require.that(!closed).orThrow("The property $ has already been closed.", this);
+        
+        lock.lock();
+        try {
+            final @Valid VALUE oldValue = get();
+            final @Valid VALUE effectiveValue = newValue != null ? newValue : getDefaultValue();
+            if (!Objects.equals(effectiveValue, oldValue)) {
+                this.value = effectiveValue;
+                if (newValue == null) { buffer.delete(getKey()); }
+                else { buffer.put(getKey(), newValue); }
+                notifyObservers(oldValue, effectiveValue);
+            }
+            return oldValue;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /* -------------------------------------------------- Initialize -------------------------------------------------- */
+    
+    @Pure
+    @Override
+    @CallSuper
+    protected void initialize() {
+        super.initialize();
+        this.buffer = WriteBehindBuffer.of(getStore());
+    }
+    
+}
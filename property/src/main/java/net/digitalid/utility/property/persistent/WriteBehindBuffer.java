@@ -0,0 +1,352 @@
+/*
+ * Copyright (C) 2017 Synacts GmbH, Switzerland (info@synacts.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.digitalid.utility.property.persistent;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.digitalid.utility.annotations.generics.Unspecifiable;
+import net.digitalid.utility.annotations.method.Impure;
+import net.digitalid.utility.annotations.method.Pure;
+import net.digitalid.utility.annotations.ownership.Capturable;
+import net.digitalid.utility.annotations.ownership.Captured;
+import net.digitalid.utility.annotations.ownership.NonCaptured;
+import net.digitalid.utility.annotations.parameter.Unmodified;
+import net.digitalid.utility.annotations.type.ThreadSafe;
+import net.digitalid.utility.collections.map.FreezableLinkedHashMapBuilder;
+import net.digitalid.utility.collections.map.FreezableMap;
+import net.digitalid.utility.collections.map.ReadOnlyMap;
+import net.digitalid.utility.collections.set.FreezableLinkedHashSetBuilder;
+import net.digitalid.utility.collections.set.FreezableSet;
+import net.digitalid.utility.collections.set.ReadOnlySet;
+import net.digitalid.utility.concurrency.scheduler.TimingWheel;
+import net.digitalid.utility.configuration.ShutdownSequence;
+import net.digitalid.utility.contracts.Require;
+import net.digitalid.utility.conversion.exceptions.ConnectionException;
+import net.digitalid.utility.logging.Log;
+import net.digitalid.utility.threading.ThreadPools;
+import net.digitalid.utility.time.Time;
+import net.digitalid.utility.validation.annotations.math.NonNegative;
+import net.digitalid.utility.validation.annotations.math.Positive;
+import net.digitalid.utility.validation.annotations.type.Mutable;
+
+/**
+ * A write-behind buffer collects the changes of persistent properties and writes them in batches to a {@link PropertyStore property store}.
+ * Only the last change per key is kept, and the buffer is flushed asynchronously on the {@link ThreadPools#blocking blocking pool}
+ * once the flush interval has elapsed since the first buffered change or as soon as the number of buffered changes reaches the flush threshold.
+ * If a flush fails, its changes are buffered again unless they have been superseded by newer changes in the meantime.
+ * While changes are pending, the buffer is registered in the {@link ShutdownSequence.Phase#APPLICATION application phase} of the {@link ShutdownSequence shutdown sequence}
+ * so that the pending changes are written before the virtual machine exits. A buffer that is no longer used should be {@link #close() closed}.
+ */
+@Mutable
+@ThreadSafe
+public class WriteBehindBuffer<@Unspecifiable KEY, @Unspecifiable VALUE> implements AutoCloseable {
+    
+    /* -------------------------------------------------- Fields -------------------------------------------------- */
+    
+    /**
+     * Stores the store to which the changes are written.
+     */
+    private final @Nonnull PropertyStore<KEY, VALUE> store;
+    
+    /**
+     * Stores the maximal time that a change is buffered before it is written.
+     */
+    private final @Nonnull Time flushInterval;
+    
+    /**
+     * Stores the number of buffered changes at which the buffer is flushed immediately.
+     */
+    private final int flushThreshold;
+    
+    /**
+     * Stores the key-value pairs that were written since the last flush.
+     * The fields about the buffered changes are only accessed while holding the monitor of this buffer.
+     */
+    private @Nonnull FreezableMap<@Nonnull KEY, @Nonnull VALUE> updatedEntries = FreezableLinkedHashMapBuilder.build();
+    
+    /**
+     * Stores the keys that were deleted since the last flush, which are disjoint from the keys of the updated entries.
+     */
+    private @Nonnull FreezableSet<@Nonnull KEY> deletedKeys = FreezableLinkedHashSetBuilder.build();
+    
+    /**
+     * Stores the timeout after which the buffer is flushed or null if no flush is scheduled.
+     */
+    private @Nullable TimingWheel.Timeout timeout;
+    
+    /**
+     * Stores whether a flush has been submitted to the blocking pool but has not yet started.
+     */
+    private boolean submitted = false;
+    
+    /**
+     * Stores the monitor which serializes the flushes so that the batches are written in the order of their changes.
+     */
+    private final @Nonnull Object flushMonitor = new Object();
+    
+    /**
+     * Stores the task which closes this buffer when the virtual machine shuts down.
+     * The task is only registered in the shutdown sequence while changes are pending so that the sequence does not keep idle buffers reachable.
+     */
+    private final @Nonnull Runnable shutdownTask = this::close;
+    
+    /**
+     * Stores whether the shutdown task is registered in the shutdown sequence.
+     */
+    private boolean registered = false;
+    
+    /**
+     * Stores whether this buffer has been closed, after which no more changes are accepted.
+     */
+    private boolean closed = false;
+    
+    /* -------------------------------------------------- Constructors -------------------------------------------------- */
+    
+    protected WriteBehindBuffer(@Nonnull PropertyStore<KEY, VALUE> store, @Nonnull Time flushInterval, @Positive int flushThreshold) {
+        Require.that(store != null).orThrow("The store may not be null.");
+        Require.that(flushInterval.isPositive()).orThrow("The flush interval has to be positive but was $.", flushInterval);
+        Require.that(flushThreshold > 0).orThrow("The flush threshold has to be positive but was $.", flushThreshold);
+        
+        this.store = store;
+        this.flushInterval = flushInterval;
+        this.flushThreshold = flushThreshold;
+    }
+    
+    /**
+     * Returns a new write-behind buffer which writes to the given store after the given interval or once the given number of changes is buffered.
+     */
+    @Pure
+    public static @Capturable <@Unspecifiable KEY, @Unspecifiable VALUE> @Nonnull WriteBehindBuffer<KEY, VALUE> with(@Nonnull PropertyStore<KEY, VALUE> store, @Nonnull Time flushInterval, @Positive int flushThreshold) {
+        return new WriteBehindBuffer<>(store, flushInterval, flushThreshold);
+    }
+    
+    /**
+     * Stores the shared buffers of the property stores.
+     * The buffers are referenced weakly so that a buffer and its store can be collected once no property uses them.
+     */
+    private static final @Nonnull Map<@Nonnull PropertyStore<?, ?>, @Nonnull WeakReference<WriteBehindBuffer<?, ?>>> buffers = new WeakHashMap<>();
+    
+    /**
+     * Returns the buffer which is shared by all properties of the given store and writes with the {@link PropertyStore#getFlushInterval() flush interval}
+     * and the {@link PropertyStore#getFlushThreshold() flush threshold} of the store. A new buffer is created if the previous one has been closed.
+     */
+    @Impure
+    @SuppressWarnings("unchecked")
+    public static synchronized <@Unspecifiable KEY, @Unspecifiable VALUE> @Nonnull WriteBehindBuffer<KEY, VALUE> of(@Nonnull PropertyStore<KEY, VALUE> store) {
+        final @Nullable WeakReference<WriteBehindBuffer<?, ?>> reference = buffers.get(store);
+        @Nullable WriteBehindBuffer<?, ?> buffer = reference != null ? reference.get() : null;
+        if (buffer == null || buffer.isClosed()) {
+            buffer = with(store, store.getFlushInterval(), store.getFlushThreshold());
+            buffers.put(store, new WeakReference<WriteBehindBuffer<?, ?>>(buffer));
+        }
+        return (WriteBehindBuffer<KEY, VALUE>) buffer;
+    }
+    
+    /* -------------------------------------------------- Changes -------------------------------------------------- */
+    
+    /**
+     * Buffers that the given key now maps to the given value.
+     */
+    @Impure
+    public synchronized void put(@Captured @Nonnull KEY key, @Captured @Nonnull VALUE value) {
+        Require.that(!closed).orThrow("No changes can be buffered after the buffer has been closed.");
+        
+        deletedKeys.remove(key);
+        updatedEntries.put(key, value);
+        changed();
+    }
+    
+    /**
+     * Buffers that the given key no longer maps to a value.
+     */
+    @Impure
+    public synchronized void delete(@Captured @Nonnull KEY key) {
+        Require.that(!closed).orThrow("No changes can be buffered after the buffer has been closed.");
+        
+        updatedEntries.remove(key);
+        deletedKeys.add(key);
+        changed();
+    }
+    
+    /**
+     * Returns the number of changes that have not yet been written.
+     */
+    @Pure
+    public synchronized @NonNegative int getNumberOfPendingChanges() {
+        return updatedEntries.size() + deletedKeys.size();
+    }
+    
+    /**
+     * Returns whether a change of the given key has not yet been written.
+     */
+    @Pure
+    public synchronized boolean isPending(@NonCaptured @Unmodified @Nonnull KEY key) {
+        return updatedEntries.containsKey(key) || deletedKeys.contains(key);
+    }
+    
+    /**
+     * Returns whether this buffer has been closed.
+     */
+    @Pure
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+    
+    /* -------------------------------------------------- Scheduling -------------------------------------------------- */
+    
+    /**
+     * Schedules a flush according to the number of buffered changes.
+     * This method has to be called while holding the monitor of this buffer.
+     */
+    @Impure
+    private void changed() {
+        if (!registered) { this.registered = ShutdownSequence.register(ShutdownSequence.Phase.APPLICATION, shutdownTask); }
+        if (getNumberOfPendingChanges() >= flushThreshold) { submit(); }
+        else if (timeout == null && !submitted) { this.timeout = TimingWheel.shared.get().schedule(this::expire, flushInterval); }
+    }
+    
+    /**
+     * Submits a flush when the flush interval has elapsed.
+     */
+    @Impure
+    private synchronized void expire() {
+        this.timeout = null;
+        submit();
+    }
+    
+    /**
+     * Submits a flush to the blocking pool unless one is already submitted.
+     * This method has to be called while holding the monitor of this buffer.
+     */
+    @Impure
+    private void submit() {
+        if (submitted) { return; }
+        if (timeout != null) {
+            timeout.cancel();
+            this.timeout = null;
+        }
+        this.submitted = true;
+        try {
+            ThreadPools.blocking.get().execute(this::flushQuietly);
+        } catch (@Nonnull RejectedExecutionException exception) {
+            this.submitted = false;
+            Log.warning("The changes of a persistent property could not be submitted for writing.", exception);
+        }
+    }
+    
+    /* -------------------------------------------------- Flushing -------------------------------------------------- */
+    
+    /**
+     * Writes the buffered changes to the store and waits until they are written.
+     * 
+     * @throws ConnectionException if the changes could not be written, in which case they are buffered again as after any other failure of the store.
+     */
+    @Impure
+    public void flush() throws ConnectionException {
+        synchronized (flushMonitor) {
+            final @Nonnull ReadOnlyMap<@Nonnull KEY, @Nonnull VALUE> updatedEntries;
+            final @Nonnull ReadOnlySet<@Nonnull KEY> deletedKeys;
+            synchronized (this) {
+                this.submitted = false;
+                if (timeout != null) {
+                    timeout.cancel();
+                    this.timeout = null;
+                }
+                if (getNumberOfPendingChanges() == 0) { return; }
+                updatedEntries = this.updatedEntries.freeze();
+                deletedKeys = this.deletedKeys.freeze();
+                this.updatedEntries = FreezableLinkedHashMapBuilder.build();
+                this.deletedKeys = FreezableLinkedHashSetBuilder.build();
+            }
+            try {
+                store.store(updatedEntries, deletedKeys);
+            } catch (@Nonnull Throwable throwable) {
+                restore(updatedEntries, deletedKeys);
+                throw throwable;
+            }
+            synchronized (this) {
+                if (registered && getNumberOfPendingChanges() == 0) {
+                    ShutdownSequence.deregister(shutdownTask);
+                    this.registered = false;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Buffers the given changes of a failed flush again unless they have been superseded by newer changes.
+     */
+    @Impure
+    private synchronized void restore(@NonCaptured @Unmodified @Nonnull ReadOnlyMap<@Nonnull KEY, @Nonnull VALUE> updatedEntries, @NonCaptured @Unmodified @Nonnull ReadOnlySet<@Nonnull KEY> deletedKeys) {
+        for (Map.@Nonnull Entry<@Nonnull KEY, @Nonnull VALUE> entry : updatedEntries.entrySet()) {
+            if (!this.updatedEntries.containsKey(entry.getKey()) && !this.deletedKeys.contains(entry.getKey())) { this.updatedEntries.put(entry.getKey(), entry.getValue()); }
+        }
+        for (@Nonnull KEY key : deletedKeys) {
+            if (!this.updatedEntries.containsKey(key) && !this.deletedKeys.contains(key)) { this.deletedKeys.add(key); }
+        }
+    }
+    
+    /**
+     * Writes the buffered changes to the store and logs any failure, after which the flush is retried after the flush interval unless this buffer has been closed.
+     * 
+     * @return whether the changes could be written.
+     */
+    @Impure
+    boolean flushQuietly() {
+        try {
+            flush();
+            return true;
+        } catch (@Nonnull Throwable throwable) {
+            Log.error("The changes of a persistent property could not be written to the table $.", throwable, store.getTable().getName());
+            synchronized (this) {
+                if (!closed && timeout == null && !submitted && getNumberOfPendingChanges() > 0) { this.timeout = TimingWheel.shared.get().schedule(this::expire, flushInterval); }
+            }
+            return false;
+        }
+    }
+    
+    /* -------------------------------------------------- Closing -------------------------------------------------- */
+    
+    /**
+     * Closes this buffer and writes the pending changes to the store, which is retried once if it fails.
+     * Changes that could still not be written remain pending and are reported in the log.
+     * This method is called by the shutdown sequence but should also be called explicitly once the buffer is no longer used.
+     */
+    @Impure
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) { return; }
+            this.closed = true;
+        }
+        if (!flushQuietly() && !flushQuietly()) {
+            Log.error("$ changes of a persistent property could not be written when the buffer was closed.", getNumberOfPendingChanges());
+        }
+        synchronized (this) {
+            if (registered) {
+                ShutdownSequence.deregister(shutdownTask);
+                this.registered = false;
+            }
+        }
+    }
+    
+}
@@ -45,4 +45,17 @@ public interface SetObserver<@Unspecifiable VALUE, @Unspecifiable READONLY_SET e
     @Impure
     public void notify(@Nonnull PROPERTY property, @NonCaptured @Unmodified @Nonnull @Valid VALUE value, boolean added);
     
+    /**
+     * This method is called on {@link Property#isRegistered(net.digitalid.utility.property.Observer) registered} observers when several values have been added to or removed from the given property in a single bulk operation.
+     * By default, the changes are replayed as individual {@link #notify(net.digitalid.utility.property.set.ReadOnlySetProperty, java.lang.Object, boolean) notifications}, starting with the removed values.
+     * 
+     * @param added the values that have been added to the given property.
+     * @param removed the values that have been removed from the given property.
+     */
+    @Impure
+    public default void notifyBatch(@Nonnull PROPERTY property, @NonCaptured @Unmodified @Nonnull ReadOnlySet<@Nonnull @Valid VALUE> added, @NonCaptured @Unmodified @Nonnull ReadOnlySet<@Nonnull @Valid VALUE> removed) {
+        for (@Nonnull @Valid VALUE value : removed) { notify(property, value, false); }
+        for (@Nonnull @Valid VALUE value : added) { notify(property, value, true); }
+    }
+    
 }
@@ -24,7 +24,9 @@ import net.digitalid.utility.annotations.ownership.NonCaptured;
 import net.digitalid.utility.annotations.parameter.Unmodified;
 import net.digitalid.utility.annotations.type.ThreadSafe;
 import net.digitalid.utility.collections.set.ReadOnlySet;
+import net.digitalid.utility.functional.iterables.FiniteIterable;
 import net.digitalid.utility.validation.annotations.lock.LockNotHeldByCurrentThread;
+import net.digitalid.utility.validation.annotations.math.NonNegative;
 import net.digitalid.utility.validation.annotations.type.Mutable;
 import net.digitalid.utility.validation.annotations.value.Valid;
 
@@ -58,4 +60,34 @@ public interface WritableSetProperty<@Unspecifiable VALUE, @Unspecifiable READON
     @LockNotHeldByCurrentThread
     public abstract boolean remove(@NonCaptured @Unmodified @Nonnull @Valid VALUE value) throws EXCEPTION1, EXCEPTION2;
     
+    /* -------------------------------------------------- Bulk Operations -------------------------------------------------- */
+    
+    /**
+     * Adds the given values to the values of this property.
+     * The lock is acquired only once and the observers are notified only once about all added values.
+     * 
+     * @return the number of values that were not already stored.
+     */
+    @Impure
+    @LockNotHeldByCurrentThread
+    public abstract @NonNegative int addAll(@NonCaptured @Unmodified @Nonnull FiniteIterable<? extends @Nonnull @Valid VALUE> values) throws EXCEPTION1, EXCEPTION2;
+    
+    /**
+     * Removes the given values from the values of this property.
+     * The lock is acquired only once and the observers are notified only once about all removed values.
+     * 
+     * @return the number of values that were actually stored.
+     */
+    @Impure
+    @LockNotHeldByCurrentThread
+    public abstract @NonNegative int removeAll(@NonCaptured @Unmodified @Nonnull FiniteIterable<? extends @Nonnull @Valid VALUE> values) throws EXCEPTION1, EXCEPTION2;
+    
+    /**
+     * Replaces the values of this property with the given values.
+     * The lock is acquired only once and the observers are notified only once about all removed and added values.
+     */
+    @Impure
+    @LockNotHeldByCurrentThread
+    public abstract void replaceAll(@NonCaptured @Unmodified @Nonnull FiniteIterable<? extends @Nonnull @Valid VALUE> values) throws EXCEPTION1, EXCEPTION2;
+    
 }
@@ -52,9 +52,36 @@ public abstract class WritableSetPropertyImplementation<@Unspecifiable VALUE, @U
         Require.that(!added || get().contains(value)).orThrow("If the value $ was added, this property has to contain it now.", value);
         Require.that(added || !get().contains(value)).orThrow("If the value $ was removed, this property may no longer contain it.", value);
         
-        if (!observers.isEmpty()) {
-            for (@Nonnull SetObserver<VALUE, READONLY_SET, EXCEPTION1, EXCEPTION2, OBSERVER, PROPERTY> observer : observers.values()) {
-                observer.notify((PROPERTY) this, value, added);
+        invalidateDependents();
+        if (hasObservers()) {
+            final @Nonnull Iterable<@Nonnull SetObserver<VALUE, READONLY_SET, EXCEPTION1, EXCEPTION2, OBSERVER, PROPERTY>> observers = getObservers();
+            try {
+                for (@Nonnull SetObserver<VALUE, READONLY_SET, EXCEPTION1, EXCEPTION2, OBSERVER, PROPERTY> observer : observers) {
+                    observer.notify((PROPERTY) this, value, added);
+                }
+            } finally {
+                finishNotification(observers);
+            }
+        }
+    }
+    
+    /**
+     * Notifies the registered observers that the given values have been added to and removed from this property in a single bulk operation.
+     * The observers are not notified if both sets are empty.
+     */
+    @Impure
+    @SuppressWarnings("unchecked")
+    protected void notifyObservers(@NonCaptured @Unmodified @Nonnull ReadOnlySet<@Nonnull @Valid VALUE> added, @NonCaptured @Unmodified @Nonnull ReadOnlySet<@Nonnull @Valid VALUE> removed) throws EXCEPTION1, EXCEPTION2 {
+        if (added.isEmpty() && removed.isEmpty()) { return; }
+        invalidateDependents();
+        if (hasObservers()) {
+            final @Nonnull Iterable<@Nonnull SetObserver<VALUE, READONLY_SET, EXCEPTION1, EXCEPTION2, OBSERVER, PROPERTY>> observers = getObservers();
+            try {
+                for (@Nonnull SetObserver<VALUE, READONLY_SET, EXCEPTION1, EXCEPTION2, OBSERVER, PROPERTY> observer : observers) {
+                    observer.notifyBatch((PROPERTY) this, added, removed);
+                }
+            } finally {
+                finishNotification(observers);
             }
         }
     }
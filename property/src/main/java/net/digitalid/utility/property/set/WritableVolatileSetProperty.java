@@ -16,6 +16,7 @@
 package net.digitalid.utility.property.set;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import net.digitalid.utility.annotations.generics.Unspecifiable;
 import net.digitalid.utility.annotations.method.CallSuper;
@@ -25,14 +26,19 @@ import net.digitalid.utility.annotations.ownership.Captured;
 import net.digitalid.utility.annotations.ownership.NonCaptured;
 import net.digitalid.utility.annotations.parameter.Unmodified;
 import net.digitalid.utility.annotations.type.ThreadSafe;
+import net.digitalid.utility.collections.set.FreezableLinkedHashSetBuilder;
 import net.digitalid.utility.collections.set.FreezableSet;
 import net.digitalid.utility.collections.set.ReadOnlySet;
+import net.digitalid.utility.contracts.Require;
 import net.digitalid.utility.contracts.Validate;
 import net.digitalid.utility.freezable.annotations.NonFrozen;
+import net.digitalid.utility.functional.iterables.FiniteIterable;
 import net.digitalid.utility.generator.annotations.generators.GenerateBuilder;
 import net.digitalid.utility.generator.annotations.generators.GenerateSubclass;
 import net.digitalid.utility.validation.annotations.elements.NonNullableElements;
+import net.digitalid.utility.validation.annotations.generation.Default;
 import net.digitalid.utility.validation.annotations.lock.LockNotHeldByCurrentThread;
+import net.digitalid.utility.validation.annotations.math.NonNegative;
 import net.digitalid.utility.validation.annotations.type.Mutable;
 import net.digitalid.utility.validation.annotations.value.Valid;
 
@@ -41,6 +47,9 @@ import net.digitalid.utility.validation.annotations.value.Valid;
  * 
  * <em>Important:</em> Make sure that {@code FREEZABLE_SET} is a sub-type of {@code READONLY_SET}!
  * Unfortunately, this cannot be enforced with the limited Java generics.
+ * <p>
+ * In {@link #isCopyOnWrite() copy-on-write} mode, the first read after a write takes a frozen copy of the set,
+ * which {@link #get()} returns without acquiring a lock and which can thus be iterated safely while other threads write.
  * 
  * @invariant !get().containsNull() : "None of the values may be null.";
  * @invariant get().matchAll(getValidator()) : "Each value has to be valid.";
@@ -58,11 +67,73 @@ public abstract class WritableVolatileSetProperty<@Unspecifiable VALUE, @Unspeci
     @Pure
     protected abstract @Nonnull @NonFrozen @NonNullableElements FREEZABLE_SET getSet();
     
+    /**
+     * Returns the live set of this property or, in copy-on-write mode, a frozen snapshot of its current state.
+     */
     @Pure
     @Override
     @SuppressWarnings("unchecked")
-    public @Nonnull @NonFrozen @NonNullableElements READONLY_SET get() {
-        return (READONLY_SET) getSet();
+    public @Nonnull @NonNullableElements READONLY_SET get() {
+        trackRead();
+        return isCopyOnWrite() ? getSnapshot() : (READONLY_SET) getSet();
+    }
+    
+    /* -------------------------------------------------- Snapshot -------------------------------------------------- */
+    
+    /**
+     * Returns whether {@link #get()} returns a frozen copy of the set, which is then returned without acquiring a lock until the next write.
+     * This lets reads scale with the number of cores at the cost of copying the set on the first read after a write
+     * and is thus appropriate for sets that are read much more often than they are written.
+     */
+    @Pure
+    @Default("false")
+    public abstract boolean isCopyOnWrite();
+    
+    /**
+     * Stores the frozen copy of the set in copy-on-write mode or null if the set has been written since the copy was taken.
+     */
+    private volatile @Nullable READONLY_SET snapshot;
+    
+    /**
+     * Returns the frozen copy of the set, which is taken while holding the lock if the set has been written since the last copy.
+     */
+    @Pure
+    private @Nonnull READONLY_SET getSnapshot() {
+        final @Nullable READONLY_SET snapshot = this.snapshot;
+        if (snapshot != null) { return snapshot; }
+        if (lock.isLockHeldByCurrentThread()) { return takeSnapshot(); }
+        lock.lock();
+        try {
+            return takeSnapshot();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Takes a frozen copy of the set unless another thread has already taken one since the last write.
+     * 
+     * @require lock.isLockHeldByCurrentThread() : "The lock is held by the current thread.";
+     */
+    @Pure
+    @SuppressWarnings("unchecked")
+    private @Nonnull READONLY_SET takeSnapshot() {
+        @Nullable READONLY_SET snapshot = this.snapshot;
+        if (snapshot == null) {
+            snapshot = (READONLY_SET) getSet().clone().freeze();
+            this.snapshot = snapshot;
+        }
+        return snapshot;
+    }
+    
+    /**
+     * Invalidates the frozen copy of the set so that the next read in copy-on-write mode takes a new one.
+     * 
+     * @require lock.isLockHeldByCurrentThread() : "The lock is held by the current thread.";
+     */
+    @Impure
+    private void invalidateSnapshot() {
+        this.snapshot = null;
     }
     
     /* -------------------------------------------------- Operations -------------------------------------------------- */
@@ -74,7 +145,10 @@ public abstract class WritableVolatileSetProperty<@Unspecifiable VALUE, @Unspeci
         lock.lock();
         try {
             final boolean notAlreadyContained = getSet().add(value);
-            if (notAlreadyContained) { notifyObservers(value, true); }
+            if (notAlreadyContained) {
+                invalidateSnapshot();
+                notifyObservers(value, true);
+            }
             return notAlreadyContained;
         } finally {
             lock.unlock();
@@ -88,13 +162,92 @@ public abstract class WritableVolatileSetProperty<@Unspecifiable VALUE, @Unspeci
         lock.lock();
         try {
             final boolean contained = getSet().remove(value);
-            if (contained) { notifyObservers(value, false); }
+            if (contained) {
+                invalidateSnapshot();
+                notifyObservers(value, false);
+            }
             return contained;
         } finally {
             lock.unlock();
         }
     }
     
+    /* -------------------------------------------------- Bulk Operations -------------------------------------------------- */
+    
+    /**
+     * Requires that the given values are non-null and valid, as the generated contracts do not check the elements of a bulk operation.
+     */
+    @Pure
+    private void requireValidValues(@NonCaptured @Unmodified @Nonnull FiniteIterable<? extends VALUE> values) {
+        for (@Nullable VALUE value : values) {
+            Require.that(value != null && isValid(value)).orThrow("Each value has to be non-null and valid but was $.", value);
+        }
+    }
+    
+    @Impure
+    @Override
+    @LockNotHeldByCurrentThread
+    public @NonNegative int addAll(@NonCaptured @Unmodified @Nonnull FiniteIterable<? extends @Nonnull @Valid VALUE> values) {
+        requireValidValues(values);
+        lock.lock();
+        try {
+            final @Nonnull FreezableSet<@Nonnull @Valid VALUE> added = FreezableLinkedHashSetBuilder.build();
+            for (@Nonnull @Valid VALUE value : values) {
+                if (getSet().add(value)) { added.add(value); }
+            }
+            if (!added.isEmpty()) { invalidateSnapshot(); }
+            notifyObservers(added.freeze(), FreezableLinkedHashSetBuilder.<VALUE>build().freeze());
+            return added.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Impure
+    @Override
+    @LockNotHeldByCurrentThread
+    public @NonNegative int removeAll(@NonCaptured @Unmodified @Nonnull FiniteIterable<? extends @Nonnull @Valid VALUE> values) {
+        requireValidValues(values);
+        lock.lock();
+        try {
+            final @Nonnull FreezableSet<@Nonnull @Valid VALUE> removed = FreezableLinkedHashSetBuilder.build();
+            for (@Nonnull @Valid VALUE value : values) {
+                if (getSet().remove(value)) { removed.add(value); }
+            }
+            if (!removed.isEmpty()) { invalidateSnapshot(); }
+            notifyObservers(FreezableLinkedHashSetBuilder.<VALUE>build().freeze(), removed.freeze());
+            return removed.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Impure
+    @Override
+    @LockNotHeldByCurrentThread
+    public void replaceAll(@NonCaptured @Unmodified @Nonnull FiniteIterable<? extends @Nonnull @Valid VALUE> values) {
+        requireValidValues(values);
+        lock.lock();
+        try {
+            final @Nonnull FreezableSet<@Nonnull @Valid VALUE> retained = FreezableLinkedHashSetBuilder.build();
+            final @Nonnull FreezableSet<@Nonnull @Valid VALUE> added = FreezableLinkedHashSetBuilder.build();
+            for (@Nonnull @Valid VALUE value : values) {
+                if (getSet().contains(value)) { retained.add(value); }
+                else { added.add(value); }
+            }
+            final @Nonnull FreezableSet<@Nonnull @Valid VALUE> removed = FreezableLinkedHashSetBuilder.build();
+            for (@Nonnull @Valid VALUE value : getSet()) {
+                if (!retained.contains(value)) { removed.add(value); }
+            }
+            getSet().removeAll(removed);
+            getSet().addAll(added);
+            if (!added.isEmpty() || !removed.isEmpty()) { invalidateSnapshot(); }
+            notifyObservers(added.freeze(), removed.freeze());
+        } finally {
+            lock.unlock();
+        }
+    }
+    
     /* -------------------------------------------------- Validate -------------------------------------------------- */
     
     @Pure
@@ -15,12 +15,18 @@
  */
 package net.digitalid.utility.property.value;
 
+import javax.annotation.Nonnull;
+
 import net.digitalid.utility.annotations.generics.Specifiable;
 import net.digitalid.utility.annotations.generics.Unspecifiable;
 import net.digitalid.utility.annotations.method.Pure;
+import net.digitalid.utility.annotations.method.PureWithSideEffects;
+import net.digitalid.utility.annotations.ownership.Captured;
 import net.digitalid.utility.annotations.ownership.NonCapturable;
 import net.digitalid.utility.annotations.type.ThreadSafe;
 import net.digitalid.utility.property.Property;
+import net.digitalid.utility.time.Time;
+import net.digitalid.utility.validation.annotations.math.Positive;
 import net.digitalid.utility.validation.annotations.type.ReadOnly;
 import net.digitalid.utility.validation.annotations.value.Valid;
 
@@ -43,4 +49,46 @@ public interface ReadOnlyValueProperty<@Specifiable VALUE, @Unspecifiable EXCEPT
     @Pure
     public @NonCapturable @Valid VALUE get() throws EXCEPTION1, EXCEPTION2;
     
+    /* -------------------------------------------------- Observers -------------------------------------------------- */
+    
+    /**
+     * Registers the given observer with this property, which will then be notified on a separate thread
+     * only once the value of this property has not changed for the given quiet period.
+     * The notification contains the value before the first and the value after the last of the conflated changes.
+     * 
+     * The default implementation notifies the given observer about every change on a separate thread, which implementations should override.
+     * 
+     * @return whether the given observer was not already registered.
+     */
+    @PureWithSideEffects
+    public default boolean registerDebounced(@Captured @Nonnull OBSERVER observer, @Nonnull Time quietPeriod) {
+        return registerOnNewThread(observer);
+    }
+    
+    /**
+     * Registers the given observer with this property, which will then be notified on a separate thread at most the given number of times per second.
+     * The first change is delivered immediately, whereas further changes within the same interval are conflated and delivered at the end of the interval.
+     * 
+     * The default implementation notifies the given observer about every change on a separate thread, which implementations should override.
+     * 
+     * @return whether the given observer was not already registered.
+     */
+    @PureWithSideEffects
+    public default boolean registerThrottled(@Captured @Nonnull OBSERVER observer, @Positive int notificationsPerSecond) {
+        return registerOnNewThread(observer);
+    }
+    
+    /**
+     * Registers the given observer with this property, which will then be notified on a separate thread at the end of the given window
+     * about all changes that occurred within the window, which starts with the first change after the previous notification.
+     * 
+     * The default implementation notifies the given observer about every change on a separate thread, which implementations should override.
+     * 
+     * @return whether the given observer was not already registered.
+     */
+    @PureWithSideEffects
+    public default boolean registerConflated(@Captured @Nonnull OBSERVER observer, @Nonnull Time window) {
+        return registerOnNewThread(observer);
+    }
+    
 }
@@ -15,7 +15,12 @@
  */
 package net.digitalid.utility.property.value;
 
+import java.lang.ref.WeakReference;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import net.digitalid.utility.annotations.generics.Specifiable;
 import net.digitalid.utility.annotations.generics.Unspecifiable;
@@ -25,8 +30,13 @@ import net.digitalid.utility.annotations.ownership.NonCaptured;
 import net.digitalid.utility.annotations.parameter.Modified;
 import net.digitalid.utility.annotations.parameter.Unmodified;
 import net.digitalid.utility.annotations.type.ThreadSafe;
+import net.digitalid.utility.concurrency.scheduler.TimingWheel;
+import net.digitalid.utility.contracts.Require;
 import net.digitalid.utility.property.PropertyImplementation;
 import net.digitalid.utility.threading.Threading;
+import net.digitalid.utility.time.Time;
+import net.digitalid.utility.time.TimeBuilder;
+import net.digitalid.utility.validation.annotations.math.Positive;
 import net.digitalid.utility.validation.annotations.type.Immutable;
 import net.digitalid.utility.validation.annotations.type.Mutable;
 import net.digitalid.utility.validation.annotations.value.Valid;
@@ -55,7 +65,157 @@ public abstract class ReadOnlyValuePropertyImplementation<@Specifiable VALUE, @U
         @Impure
         @Override
         public void notify(@Nonnull PROPERTY property, @NonCaptured @Unmodified @Valid VALUE oldValue, @NonCaptured @Unmodified @Valid VALUE newValue) {
-            executorService.submit(() -> observer.notify(property, oldValue, newValue));
+            dispatch(property, () -> observer.notify(property, oldValue, newValue));
+        }
+        
+    }
+    
+    /* -------------------------------------------------- Conflating Observer -------------------------------------------------- */
+    
+    /**
+     * A conflating observer combines the changes that occur within a time window into a single notification, which is executed like the notifications of an asynchronous observer.
+     * The windows are timed with the {@link TimingWheel#shared shared timing wheel} so that no thread is needed per observer.
+     */
+    @Mutable
+    public static class ConflatingObserver<@Specifiable VALUE, @Unspecifiable EXCEPTION1 extends Exception, @Unspecifiable EXCEPTION2 extends Exception, @Unspecifiable OBSERVER extends ValueObserver<VALUE, EXCEPTION1, EXCEPTION2, OBSERVER, PROPERTY>, @Unspecifiable PROPERTY extends ReadOnlyValueProperty<VALUE, EXCEPTION1, EXCEPTION2, OBSERVER, PROPERTY>> extends AsynchronousObserver<VALUE, EXCEPTION1, EXCEPTION2, OBSERVER, PROPERTY> {
+        
+        /**
+         * Stores the number of nanoseconds that the observer is not notified after a change or a notification.
+         */
+        private final long window;
+        
+        /**
+         * Stores whether the window is restarted with every change so that the observer is only notified once the value has settled.
+         */
+        private final boolean debounced;
+        
+        /**
+         * Stores whether the first change after a window is delivered immediately.
+         */
+        private final boolean leading;
+        
+        /**
+         * Stores whether changes occurred that have not yet been delivered.
+         * The fields about the pending changes are only accessed while holding the monitor of this observer.
+         */
+        private boolean pending = false;
+        
+        private @Nullable PROPERTY pendingProperty;
+        
+        private @Nullable VALUE pendingOldValue;
+        
+        private @Nullable VALUE pendingNewValue;
+        
+        /**
+         * Stores the timeout after which the pending changes are delivered or null if no delivery is scheduled.
+         */
+        private @Nullable TimingWheel.Timeout timeout;
+        
+        /**
+         * Stores the generation of the scheduled delivery, which is incremented whenever a delivery is scheduled, performed or discarded.
+         * A timeout that was cancelled too late finds a different generation and does not deliver the changes or clear the current timeout.
+         */
+        private long generation = 0;
+        
+        /**
+         * Stores the time in nanoseconds of the last delivery.
+         */
+        private long lastDelivery = System.nanoTime() - Long.MAX_VALUE / 2;
+        
+        protected ConflatingObserver(@Captured @Modified @Nonnull OBSERVER observer, @Nonnull Time window, boolean debounced, boolean leading) {
+            super(observer);
+            
+            Require.that(window.isPositive()).orThrow("The window has to be positive but was $.", window);
+            
+            this.window = TimeUnit.MILLISECONDS.toNanos(window.getValue());
+            this.debounced = debounced;
+            this.leading = leading;
+        }
+        
+        /**
+         * Schedules the delivery of the pending changes after the given number of nanoseconds.
+         */
+        @Impure
+        private void schedule(long delay) {
+            final long scheduledGeneration = ++generation;
+            this.timeout = TimingWheel.shared.get().schedule(() -> expire(scheduledGeneration), TimeBuilder.withValue(TimeUnit.NANOSECONDS.toMillis(delay + 999_999)).build());
+        }
+        
+        /**
+         * Delivers the pending changes if the timeout of the given generation is still the current one.
+         */
+        @Impure
+        private synchronized void expire(long scheduledGeneration) {
+            if (scheduledGeneration == generation) { deliver(); }
+        }
+        
+        /**
+         * Delivers the pending changes as a single notification unless the value ended up where it started.
+         */
+        @Impure
+        private synchronized void deliver() {
+            if (!pending) { return; }
+            final @Nonnull PROPERTY property = pendingProperty;
+            final @Nullable VALUE oldValue = pendingOldValue;
+            final @Nullable VALUE newValue = pendingNewValue;
+            this.pending = false;
+            this.pendingProperty = null;
+            this.pendingOldValue = null;
+            this.pendingNewValue = null;
+            this.timeout = null;
+            this.generation++;
+            this.lastDelivery = System.nanoTime();
+            if (!Objects.equals(oldValue, newValue)) { dispatch(property, () -> observer.notify(property, oldValue, newValue)); }
+        }
+        
+        @Impure
+        @Override
+        public synchronized void notify(@Nonnull PROPERTY property, @NonCaptured @Unmodified @Valid VALUE oldValue, @NonCaptured @Unmodified @Valid VALUE newValue) {
+            if (!pending) {
+                this.pending = true;
+                this.pendingOldValue = oldValue;
+            }
+            this.pendingProperty = property;
+            this.pendingNewValue = newValue;
+            if (debounced) {
+                if (timeout != null) { timeout.cancel(); }
+                schedule(window);
+            } else if (timeout == null) {
+                final long remaining = lastDelivery + window - System.nanoTime();
+                if (leading && remaining <= 0) { deliver(); }
+                else { schedule(leading ? remaining : window); }
+            }
+        }
+        
+        @Impure
+        @Override
+        public synchronized void shutdown() {
+            if (timeout != null) { timeout.cancel(); }
+            this.timeout = null;
+            this.generation++;
+            this.pending = false;
+            super.shutdown();
+        }
+        
+    }
+    
+    /* -------------------------------------------------- Weak Observer -------------------------------------------------- */
+    
+    /**
+     * A weak observer forwards the notifications to an observer that is only weakly referenced.
+     */
+    @Immutable
+    public static class WeakObserver<@Specifiable VALUE, @Unspecifiable EXCEPTION1 extends Exception, @Unspecifiable EXCEPTION2 extends Exception, @Unspecifiable OBSERVER extends ValueObserver<VALUE, EXCEPTION1, EXCEPTION2, OBSERVER, PROPERTY>, @Unspecifiable PROPERTY extends ReadOnlyValueProperty<VALUE, EXCEPTION1, EXCEPTION2, OBSERVER, PROPERTY>> extends PropertyImplementation.WeakObserver<OBSERVER> implements ValueObserver<VALUE, EXCEPTION1, EXCEPTION2, OBSERVER, PROPERTY> {
+        
+        protected WeakObserver(@Nonnull WeakReference<OBSERVER> reference) {
+            super(reference);
+        }
+        
+        @Impure
+        @Override
+        public void notify(@Nonnull PROPERTY property, @NonCaptured @Unmodified @Valid VALUE oldValue, @NonCaptured @Unmodified @Valid VALUE newValue) {
+            final @Nullable OBSERVER observer = getObserver();
+            if (observer != null) { observer.notify(property, oldValue, newValue); }
         }
         
     }
@@ -65,13 +225,39 @@ public abstract class ReadOnlyValuePropertyImplementation<@Specifiable VALUE, @U
     @Impure
     @Override
     public boolean registerOnGuiThread(@Captured @Nonnull OBSERVER observer) {
-        return observers.put(observer, (property, oldValue, newValue) -> Threading.runOnGuiThread(() -> observer.notify(property, oldValue, newValue))) == null;
+        return register(observer, (property, oldValue, newValue) -> Threading.runOnGuiThread(() -> observer.notify(property, oldValue, newValue)));
     }
     
     @Impure
     @Override
     public boolean registerOnNewThread(@Captured @Nonnull OBSERVER observer) {
-        return observers.put(observer, new AsynchronousObserver<>(observer)) == null;
+        return register(observer, new AsynchronousObserver<>(observer));
+    }
+    
+    @Impure
+    @Override
+    public boolean registerWeakly(@Captured @Nonnull OBSERVER observer) {
+        return registerWeakly(observer, WeakObserver::new);
+    }
+    
+    @Impure
+    @Override
+    public boolean registerDebounced(@Captured @Nonnull OBSERVER observer, @Nonnull Time quietPeriod) {
+        return register(observer, new ConflatingObserver<>(observer, quietPeriod, true, false));
+    }
+    
+    @Impure
+    @Override
+    public boolean registerThrottled(@Captured @Nonnull OBSERVER observer, @Positive int notificationsPerSecond) {
+        Require.that(notificationsPerSecond > 0).orThrow("The number of notifications per second has to be positive but was $.", notificationsPerSecond);
+        
+        return register(observer, new ConflatingObserver<>(observer, TimeBuilder.withValue(Math.max(1, 1_000 / notificationsPerSecond)).build(), false, true));
+    }
+    
+    @Impure
+    @Override
+    public boolean registerConflated(@Captured @Nonnull OBSERVER observer, @Nonnull Time window) {
+        return register(observer, new ConflatingObserver<>(observer, window, false, false));
     }
     
 }
@@ -52,9 +52,15 @@ public abstract class WritableValuePropertyImplementation<@Specifiable VALUE, @U
         Require.that(!Objects.equals(newValue, oldValue)).orThrow("The new value $ may not be the same as the old value $.", newValue, oldValue);
         Require.that(Objects.equals(newValue, get())).orThrow("The new value $ has to be set for this property but the value was $.", newValue, get());
         
-        if (!observers.isEmpty()) {
-            for (@Nonnull ValueObserver<VALUE, EXCEPTION1, EXCEPTION2, OBSERVER, PROPERTY> observer : observers.values()) {
-                observer.notify((PROPERTY) this, oldValue, newValue);
+        invalidateDependents();
+        if (hasObservers()) {
+            final @Nonnull Iterable<@Nonnull ValueObserver<VALUE, EXCEPTION1, EXCEPTION2, OBSERVER, PROPERTY>> observers = getObservers();
+            try {
+                for (@Nonnull ValueObserver<VALUE, EXCEPTION1, EXCEPTION2, OBSERVER, PROPERTY> observer : observers) {
+                    observer.notify((PROPERTY) this, oldValue, newValue);
+                }
+            } finally {
+                finishNotification(observers);
             }
         }
     }
@@ -15,7 +15,14 @@
  */
 package net.digitalid.utility.property.value;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import net.digitalid.utility.annotations.generics.Specifiable;
 import net.digitalid.utility.annotations.method.CallSuper;
@@ -24,16 +31,21 @@ import net.digitalid.utility.annotations.method.Pure;
 import net.digitalid.utility.annotations.ownership.Capturable;
 import net.digitalid.utility.annotations.ownership.Captured;
 import net.digitalid.utility.annotations.ownership.NonCapturable;
+import net.digitalid.utility.annotations.ownership.NonCaptured;
+import net.digitalid.utility.annotations.parameter.Unmodified;
 import net.digitalid.utility.annotations.type.ThreadSafe;
 import net.digitalid.utility.contracts.Require;
+import net.digitalid.utility.functional.interfaces.UnaryOperator;
 import net.digitalid.utility.generator.annotations.generators.GenerateBuilder;
 import net.digitalid.utility.generator.annotations.generators.GenerateSubclass;
+import net.digitalid.utility.validation.annotations.generation.Default;
 import net.digitalid.utility.validation.annotations.lock.LockNotHeldByCurrentThread;
 import net.digitalid.utility.validation.annotations.type.Mutable;
 import net.digitalid.utility.validation.annotations.value.Valid;
 
 /**
  * This writable property stores a value in volatile memory.
+ * If the property is {@link #isLockFree() lock-free}, the value is replaced without locks, and the observers are notified after each successful replacement in the order in which the replacements occurred.
  */
 @ThreadSafe
 @GenerateBuilder
@@ -41,42 +53,248 @@ import net.digitalid.utility.validation.annotations.value.Valid;
 @Mutable(ReadOnlyVolatileValueProperty.class)
 public abstract class WritableVolatileValueProperty<@Specifiable VALUE> extends WritableValuePropertyImplementation<VALUE, RuntimeException, RuntimeException, VolatileValueObserver<VALUE>, ReadOnlyVolatileValueProperty<VALUE>> implements ReadOnlyVolatileValueProperty<VALUE> {
     
+    /* -------------------------------------------------- Change -------------------------------------------------- */
+    
+    /**
+     * A change stores a value of this property together with the change that it replaced.
+     */
+    @Mutable
+    private static class Change<@Specifiable VALUE> {
+        
+        private final VALUE value;
+        
+        /**
+         * Stores the change that was replaced by this change until the observers have been notified about this change.
+         */
+        private @Nullable Change<VALUE> previous;
+        
+        private Change(@Captured VALUE value, @Nullable Change<VALUE> previous) {
+            this.value = value;
+            this.previous = previous;
+        }
+        
+    }
+    
     /* -------------------------------------------------- Value -------------------------------------------------- */
     
-    private @Valid VALUE value;
+    /**
+     * Stores the current change, which is replaced with a compare-and-set operation if this property is lock-free so that writers do not have to acquire the lock.
+     */
+    private final @Nonnull AtomicReference<@Nonnull Change<VALUE>> change;
     
     @Pure
     @Override
     public @NonCapturable @Valid VALUE get() {
-        return value;
+        trackRead();
+        return change.get().value;
+    }
+    
+    /* -------------------------------------------------- Lock-Free -------------------------------------------------- */
+    
+    /**
+     * Returns whether the value of this property is replaced without acquiring the lock.
+     * In this mode, writers do not block each other, but a writer whose change is notified by another writer returns before the observers have been notified about its change.
+     * By default, writers acquire the lock and return only after the observers have been notified on the current thread.
+     */
+    @Pure
+    @Default("false")
+    public abstract boolean isLockFree();
+    
+    /**
+     * Replaces the given current change with the given new value and notifies the observers while the lock is held.
+     */
+    @Impure
+    private void replace(@Nonnull Change<VALUE> current, @Captured @Valid VALUE newValue) {
+        this.change.set(new Change<>(newValue, null));
+        this.notifiedChange = change.get();
+        notifyObservers(current.value, newValue);
+    }
+    
+    /* -------------------------------------------------- Setters -------------------------------------------------- */
+    
+    /**
+     * Sets the value of this property to the given value if its current value equals the given expected value.
+     * 
+     * @return whether the value was set.
+     */
+    @Impure
+    @LockNotHeldByCurrentThread
+    public boolean compareAndSet(@NonCaptured @Unmodified @Valid VALUE expectedValue, @Captured @Valid VALUE newValue) {
+        Require.that(isValid(newValue)).orThrow("The new value has to be valid but was $.", newValue);
+        
+        if (!isLockFree()) {
+            lock.lock();
+            try {
+                final @Nonnull Change<VALUE> current = change.get();
+                if (!Objects.equals(current.value, expectedValue)) { return false; }
+                if (!Objects.equals(current.value, newValue)) { replace(current, newValue); }
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        while (true) {
+            final @Nonnull Change<VALUE> current = change.get();
+            if (!Objects.equals(current.value, expectedValue)) { return false; }
+            if (Objects.equals(current.value, newValue)) { return true; }
+            if (change.compareAndSet(current, new Change<>(newValue, current))) {
+                invalidateDependents();
+                notifyObservers();
+                return true;
+            }
+        }
+    }
+    
+    /**
+     * Replaces the value of this property with the result of the given operator, which may be evaluated several times under contention if this property is lock-free.
+     * 
+     * @return a detached change with the new value of this property whose previous change holds the old value.
+     */
+    @Impure
+    private @Nonnull Change<VALUE> update(@Nonnull UnaryOperator<VALUE> operator) {
+        if (!isLockFree()) {
+            lock.lock();
+            try {
+                final @Nonnull Change<VALUE> current = change.get();
+                final @Valid VALUE newValue = operator.evaluate(current.value);
+                Require.that(isValid(newValue)).orThrow("The new value has to be valid but was $.", newValue);
+                if (!Objects.equals(current.value, newValue)) { replace(current, newValue); }
+                return new Change<>(newValue, current);
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        while (true) {
+            final @Nonnull Change<VALUE> current = change.get();
+            final @Valid VALUE newValue = operator.evaluate(current.value);
+            Require.that(isValid(newValue)).orThrow("The new value has to be valid but was $.", newValue);
+            if (Objects.equals(current.value, newValue)) { return new Change<>(newValue, current); }
+            if (change.compareAndSet(current, new Change<>(newValue, current))) {
+                invalidateDependents();
+                notifyObservers();
+                return new Change<>(newValue, current);
+            }
+        }
+    }
+    
+    /**
+     * Replaces the value of this property with the result of the given operator, which may be evaluated several times under contention and should thus be free of side effects.
+     * 
+     * @return the old value of this property that got replaced.
+     */
+    @Impure
+    @LockNotHeldByCurrentThread
+    public @Capturable @Valid VALUE getAndUpdate(@Nonnull UnaryOperator<VALUE> operator) {
+        return update(operator).previous.value;
+    }
+    
+    /**
+     * Replaces the value of this property with the result of the given operator, which may be evaluated several times under contention and should thus be free of side effects.
+     * 
+     * @return the new value of this property.
+     */
+    @Impure
+    @LockNotHeldByCurrentThread
+    public @NonCapturable @Valid VALUE updateAndGet(@Nonnull UnaryOperator<VALUE> operator) {
+        return update(operator).value;
     }
     
     @Impure
     @Override
     @LockNotHeldByCurrentThread
     public @Capturable @Valid VALUE set(@Captured @Valid VALUE newValue) {
-        lock.lock();
+        return getAndUpdate(oldValue -> newValue);
+    }
+    
+    /* -------------------------------------------------- Notification -------------------------------------------------- */
+    
+    /**
+     * Stores the last change about which the observers have been notified.
+     * This field is only accessed by the thread that holds the {@link #lock}.
+     */
+    private @Nonnull Change<VALUE> notifiedChange;
+    
+    /**
+     * Stores the number of notification requests that have not yet been served.
+     * The thread which increments this number from zero notifies the observers until all requests have been served,
+     * whereas the threads which increment it further return immediately because their changes are notified by that thread.
+     */
+    private final @Nonnull AtomicInteger notificationRequests = new AtomicInteger();
+    
+    /**
+     * Notifies the registered observers about all changes since the last notification in the order in which the changes occurred, which is only used if this property is lock-free.
+     * If another thread is already notifying the observers, this thread returns immediately and the other thread notifies the observers also about the changes of this thread.
+     * Since the other thread checks for new requests after releasing the lock, no change is missed even if the lock was held for another purpose.
+     */
+    @Impure
+    private void notifyObservers() {
+        if (notificationRequests.getAndIncrement() > 0) { return; }
+        int requests = 1;
+        boolean served = false;
         try {
-            final @Valid VALUE oldValue = this.value;
-            this.value = newValue;
-            if (!Objects.equals(newValue, oldValue)) { notifyObservers(oldValue, newValue); }
-            return oldValue;
+            do {
+                if (lock.isLockHeldByCurrentThread()) {
+                    notifyPendingChanges();
+                } else {
+                    lock.lock();
+                    try {
+                        notifyPendingChanges();
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+                requests = notificationRequests.addAndGet(-requests);
+            } while (requests > 0);
+            served = true;
         } finally {
-            lock.unlock();
+            // If an observer failed, the remaining changes are notified by the next writer.
+            if (!served) { notificationRequests.set(0); }
+        }
+    }
+    
+    /**
+     * Notifies the registered observers about all changes since the last notification in the order in which the changes occurred.
+     * Each notification checks the same preconditions as {@link #notifyObservers(Object, Object)} except that the new value of an earlier change no longer has to be the current value.
+     * 
+     * @require lock.isLockHeldByCurrentThread() : "The lock is held by the current thread.";
+     */
+    @Impure
+    private void notifyPendingChanges() {
+        final @Nonnull Change<VALUE> current = change.get();
+        final @Nonnull Deque<@Nonnull Change<VALUE>> changes = new ArrayDeque<>();
+        for (@Nullable Change<VALUE> pending = current; pending != null && pending != notifiedChange; pending = pending.previous) { changes.push(pending); }
+        for (@Nonnull Change<VALUE> pending : changes) {
+            final @Valid VALUE oldValue = pending.previous.value;
+            pending.previous.previous = null;
+            Require.that(!Objects.equals(pending.value, oldValue)).orThrow("The new value $ may not be the same as the old value $.", pending.value, oldValue);
+            if (hasObservers()) {
+                final @Nonnull Iterable<@Nonnull ValueObserver<VALUE, RuntimeException, RuntimeException, VolatileValueObserver<VALUE>, ReadOnlyVolatileValueProperty<VALUE>>> observers = getObservers();
+                try {
+                    for (@Nonnull ValueObserver<VALUE, RuntimeException, RuntimeException, VolatileValueObserver<VALUE>, ReadOnlyVolatileValueProperty<VALUE>> observer : observers) {
+                        observer.notify(this, oldValue, pending.value);
+                    }
+                } finally {
+                    finishNotification(observers);
+                }
+            }
         }
+        this.notifiedChange = current;
     }
     
     /* -------------------------------------------------- Constructor -------------------------------------------------- */
     
     protected WritableVolatileValueProperty(@Captured VALUE value) {
-        this.value = value;
+        this.change = new AtomicReference<>(new Change<>(value, null));
+        this.notifiedChange = change.get();
     }
     
     @Pure
     @Override
     @CallSuper
     protected void initialize() {
-        Require.that(isValid(value)).orThrow("The value has to be valid but was $.", value);
+        Require.that(isValid(get())).orThrow("The value has to be valid but was $.", get());
         super.initialize();
     }
     
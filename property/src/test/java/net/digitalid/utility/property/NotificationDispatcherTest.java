@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2017 Synacts GmbH, Switzerland (info@synacts.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.digitalid.utility.property;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+
+import net.digitalid.utility.property.value.WritableVolatileValueProperty;
+import net.digitalid.utility.property.value.WritableVolatileValuePropertyBuilder;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class NotificationDispatcherTest {
+    
+    @Test
+    public void testSaturatedPoolDropsNotificationsInsteadOfRunningThemUnderTheLock() throws InterruptedException {
+        final @Nonnull ThreadPoolExecutor pool = NotificationDispatcher.newPool(1);
+        NotificationDispatcher.pool.set(pool);
+        try {
+            final @Nonnull CountDownLatch blocked = new CountDownLatch(1);
+            pool.execute(() -> {
+                try { blocked.await(); } catch (@Nonnull InterruptedException exception) { Thread.currentThread().interrupt(); }
+            });
+            
+            final @Nonnull WritableVolatileValueProperty<@Nonnull Integer> property = WritableVolatileValuePropertyBuilder.withValue(0).build();
+            final @Nonnull Thread notifyingThread = Thread.currentThread();
+            final @Nonnull AtomicInteger notificationsOnNotifyingThread = new AtomicInteger();
+            final @Nonnull AtomicInteger notifications = new AtomicInteger();
+            final int observers = pool.getQueue().remainingCapacity() + 100;
+            for (int i = 0; i < observers; i++) {
+                property.registerOnNewThread((p, oldValue, newValue) -> {
+                    if (Thread.currentThread() == notifyingThread) { notificationsOnNotifyingThread.incrementAndGet(); }
+                    if (newValue == 1) { property.set(2); } // The observer writes back to the property.
+                    notifications.incrementAndGet();
+                });
+            }
+            
+            final long dropped = NotificationDispatcher.getDroppedNotifications();
+            property.set(1);
+            assertEquals(0, notificationsOnNotifyingThread.get());
+            assertTrue(NotificationDispatcher.getDroppedNotifications() - dropped >= 100);
+            
+            blocked.countDown();
+            for (int i = 0; i < 1_000 && property.get() != 2; i++) { Thread.sleep(10); }
+            assertEquals(2, (int) property.get());
+            for (int i = 0; i < 1_000 && NotificationDispatcher.getPendingNotifications() > 0; i++) { Thread.sleep(10); }
+        } finally {
+            NotificationDispatcher.pool.set(NotificationDispatcher.newPool(2));
+            assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+    
+}
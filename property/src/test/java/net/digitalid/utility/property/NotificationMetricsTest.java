@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2017 Synacts GmbH, Switzerland (info@synacts.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.digitalid.utility.property;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import net.digitalid.utility.annotations.method.Impure;
+import net.digitalid.utility.annotations.method.Pure;
+import net.digitalid.utility.property.value.VolatileValueObserver;
+import net.digitalid.utility.property.value.WritableVolatileValueProperty;
+import net.digitalid.utility.property.value.WritableVolatileValuePropertyBuilder;
+import net.digitalid.utility.time.TimeBuilder;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class NotificationMetricsTest {
+    
+    private final @Nonnull WritableVolatileValueProperty<@Nonnull Integer> property = WritableVolatileValuePropertyBuilder.withValue(0).build();
+    
+    private final @Nonnull NotificationMetrics metrics = property.getNotificationMetrics();
+    
+    {
+        NotificationMetrics.enabled.set(true);
+        metrics.reset();
+    }
+    
+    @After
+    @Impure
+    public void disableMetrics() {
+        NotificationMetrics.enabled.set(false);
+        NotificationMetrics.slowObserverThreshold.set(TimeBuilder.withValue(10).build());
+    }
+    
+    @Pure
+    private static long sum(@Nonnull long[] counts) {
+        long sum = 0;
+        for (long count : counts) { sum += count; }
+        return sum;
+    }
+    
+    @Test
+    public void testThrowingObserverIsRecorded() {
+        property.register((VolatileValueObserver<Integer>) (p, oldValue, newValue) -> { throw new IllegalStateException("The observer failed."); });
+        try {
+            property.set(1);
+            fail("The exception of the observer should have been propagated.");
+        } catch (@Nonnull IllegalStateException exception) {}
+        assertEquals(1, metrics.getNotificationCount());
+        assertEquals(1, sum(metrics.getObserverTimeCounts()));
+    }
+    
+    @Test
+    public void testAsynchronousObserversAreRecordedPerProperty() throws InterruptedException {
+        final @Nonnull CountDownLatch notified = new CountDownLatch(1);
+        final long asynchronousCount = sum(NotificationMetrics.asynchronous.getObserverTimeCounts());
+        property.registerOnNewThread((p, oldValue, newValue) -> notified.countDown());
+        property.set(1);
+        assertTrue(notified.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 100 && sum(metrics.getObserverTimeCounts()) < 2; i++) { Thread.sleep(10); }
+        // The dispatch to the asynchronous observer and its execution are both recorded in the metrics of the property.
+        assertEquals(2, sum(metrics.getObserverTimeCounts()));
+        assertEquals(asynchronousCount, sum(NotificationMetrics.asynchronous.getObserverTimeCounts()));
+    }
+    
+    @Test
+    public void testSlowObserverIsReportedOnce() throws InterruptedException {
+        NotificationMetrics.slowObserverThreshold.set(TimeBuilder.withValue(0).build());
+        final @Nonnull Observer observer = new Observer() {};
+        final @Nonnull Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 1_000; j++) { metrics.recordObserver(observer, 1_000_000); }
+            });
+            threads[i].start();
+        }
+        for (@Nonnull Thread thread : threads) { thread.join(); }
+        assertEquals(1, metrics.getSlowObservers().size());
+        assertEquals(4_000L, (long) metrics.getSlowObservers().values().iterator().next());
+    }
+    
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2017 Synacts GmbH, Switzerland (info@synacts.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.digitalid.utility.property;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import net.digitalid.utility.annotations.method.Impure;
+import net.digitalid.utility.property.value.VolatileValueObserver;
+import net.digitalid.utility.property.value.WritableVolatileValueProperty;
+import net.digitalid.utility.property.value.WritableVolatileValuePropertyBuilder;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PropertyImplementationTest {
+    
+    private final @Nonnull WritableVolatileValueProperty<@Nonnull Integer> property = WritableVolatileValuePropertyBuilder.withValue(0).build();
+    
+    private final @Nonnull List<@Nonnull String> notifications = new ArrayList<>();
+    
+    @Test
+    public void testStrongAndWeakObserversAreNotified() {
+        final @Nonnull VolatileValueObserver<Integer> strongObserver = (p, oldValue, newValue) -> notifications.add("strong " + newValue);
+        final @Nonnull VolatileValueObserver<Integer> weakObserver = (p, oldValue, newValue) -> notifications.add("weak " + newValue);
+        assertTrue(property.register(strongObserver));
+        assertTrue(property.registerWeakly(weakObserver));
+        assertTrue(property.isRegistered(strongObserver));
+        assertTrue(property.isRegistered(weakObserver));
+        property.set(1);
+        assertEquals(Arrays.asList("strong 1", "weak 1"), notifications);
+    }
+    
+    @Test
+    public void testRegistrationsReplaceEachOther() {
+        final @Nonnull VolatileValueObserver<Integer> observer = (p, oldValue, newValue) -> notifications.add("observer " + newValue);
+        assertTrue(property.registerWeakly(observer));
+        assertFalse(property.register(observer));
+        assertFalse(property.registerWeakly(observer));
+        property.set(1);
+        assertEquals(Arrays.asList("observer 1"), notifications);
+        assertTrue(property.deregister(observer));
+        assertFalse(property.isRegistered(observer));
+        assertFalse(property.hasObservers());
+        property.set(2);
+        assertEquals(Arrays.asList("observer 1"), notifications);
+    }
+    
+    @Impure
+    private @Nonnull WeakReference<@Nonnull VolatileValueObserver<Integer>> registerUnreferencedObserver() {
+        final @Nonnull VolatileValueObserver<Integer> observer = (p, oldValue, newValue) -> notifications.add("collected " + newValue);
+        assertTrue(property.registerWeakly(observer));
+        return new WeakReference<>(observer);
+    }
+    
+    @Test
+    public void testCollectedObserversArePurged() throws InterruptedException {
+        final @Nonnull WeakReference<@Nonnull VolatileValueObserver<Integer>> reference = registerUnreferencedObserver();
+        assertTrue(property.hasObservers());
+        for (int i = 0; i < 100 && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(reference.get());
+        property.set(1);
+        assertTrue(notifications.isEmpty());
+        assertFalse(property.hasObservers());
+    }
+    
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2017 Synacts GmbH, Switzerland (info@synacts.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.digitalid.utility.property.derived;
+
+import java.lang.ref.WeakReference;
+
+import javax.annotation.Nonnull;
+
+import net.digitalid.utility.annotations.method.Impure;
+import net.digitalid.utility.functional.iterables.FiniteIterable;
+import net.digitalid.utility.property.map.ReadOnlyVolatileSimpleMapProperty;
+import net.digitalid.utility.property.set.WritableVolatileSimpleSetProperty;
+import net.digitalid.utility.property.set.WritableVolatileSimpleSetPropertyBuilder;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AggregationsTest {
+    
+    private final @Nonnull WritableVolatileSimpleSetProperty<@Nonnull String> property = WritableVolatileSimpleSetPropertyBuilder.build();
+    
+    @Test
+    public void testCountAndSum() {
+        property.addAll(FiniteIterable.of("a", "bb"));
+        final @Nonnull AggregatedValueProperty<@Nonnull Integer> count = Aggregations.count(property);
+        final @Nonnull AggregatedValueProperty<@Nonnull Long> sum = Aggregations.sum(property, value -> (long) value.length());
+        assertEquals(2, (int) count.get());
+        assertEquals(3L, (long) sum.get());
+        property.add("ccc");
+        property.remove("a");
+        assertEquals(2, (int) count.get());
+        assertEquals(5L, (long) sum.get());
+        count.dispose();
+        property.add("d");
+        assertEquals(2, (int) count.get());
+        assertEquals(6L, (long) sum.get());
+    }
+    
+    @Test
+    public void testConcurrentChangesAreCountedOnce() throws InterruptedException {
+        final @Nonnull Thread writer = new Thread(() -> {
+            for (int i = 0; i < 10_000; i++) { property.add(Integer.toString(i)); }
+        });
+        writer.start();
+        final @Nonnull AggregatedValueProperty<@Nonnull Integer> count = Aggregations.count(property);
+        writer.join();
+        assertEquals(property.get().size(), (int) count.get());
+    }
+    
+    @Test
+    public void testShadowedValueIsIndexedAfterRemoval() {
+        property.addAll(FiniteIterable.of("a", "bb"));
+        final @Nonnull ReadOnlyVolatileSimpleMapProperty<@Nonnull Integer, @Nonnull String> index = Aggregations.indexBy(property, String::length);
+        property.add("c");
+        final @Nonnull String indexed = index.get(1);
+        final @Nonnull String shadowed = indexed.equals("a") ? "c" : "a";
+        property.remove(indexed);
+        assertEquals(shadowed, index.get(1));
+        property.remove(shadowed);
+        assertNull(index.get(1));
+        assertEquals("bb", index.get(2));
+    }
+    
+    @Impure
+    private @Nonnull WeakReference<@Nonnull ReadOnlyVolatileSimpleMapProperty<@Nonnull Integer, @Nonnull String>> createUnreferencedIndex() {
+        final @Nonnull ReadOnlyVolatileSimpleMapProperty<@Nonnull Integer, @Nonnull String> index = Aggregations.indexBy(property, String::length);
+        property.add("a");
+        assertEquals("a", index.get(1));
+        return new WeakReference<>(index);
+    }
+    
+    @Test
+    public void testIndexIsNotKeptAliveBySource() throws InterruptedException {
+        final @Nonnull WeakReference<@Nonnull ReadOnlyVolatileSimpleMapProperty<@Nonnull Integer, @Nonnull String>> reference = createUnreferencedIndex();
+        for (int i = 0; i < 100 && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(reference.get());
+        property.add("b");
+        assertEquals(2, property.get().size());
+    }
+    
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2017 Synacts GmbH, Switzerland (info@synacts.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.digitalid.utility.property.derived;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import net.digitalid.utility.annotations.method.Impure;
+import net.digitalid.utility.property.value.VolatileValueObserver;
+import net.digitalid.utility.property.value.WritableVolatileValueProperty;
+import net.digitalid.utility.property.value.WritableVolatileValuePropertyBuilder;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DerivedValuePropertyTest {
+    
+    private final @Nonnull WritableVolatileValueProperty<@Nonnull Integer> source = WritableVolatileValuePropertyBuilder.withValue(1).build();
+    
+    @Test
+    public void testValueIsRecomputedAfterChange() {
+        final @Nonnull DerivedValueProperty<@Nonnull Integer> doubled = DerivedValueProperty.with(() -> source.get() * 2);
+        assertEquals(2, (int) doubled.get());
+        source.set(3);
+        assertEquals(6, (int) doubled.get());
+    }
+    
+    @Test
+    public void testObserversDoNotSeeGlitches() {
+        final @Nonnull DerivedValueProperty<@Nonnull Integer> incremented = DerivedValueProperty.with(() -> source.get() + 1);
+        final @Nonnull DerivedValueProperty<@Nonnull Integer> doubled = DerivedValueProperty.with(() -> source.get() * 2);
+        final @Nonnull DerivedValueProperty<@Nonnull Integer> sum = DerivedValueProperty.with(() -> incremented.get() + doubled.get());
+        final @Nonnull List<@Nonnull Integer> values = new ArrayList<>();
+        sum.register((VolatileValueObserver<Integer>) (property, oldValue, newValue) -> values.add(newValue));
+        source.set(2);
+        source.set(3);
+        assertEquals(Arrays.asList(7, 10), values);
+    }
+    
+    @Impure
+    private @Nonnull WeakReference<@Nonnull DerivedValueProperty<@Nonnull Integer>> createUnreferencedProperty() {
+        final @Nonnull DerivedValueProperty<@Nonnull Integer> doubled = DerivedValueProperty.with(() -> source.get() * 2);
+        assertEquals(2, (int) doubled.get());
+        return new WeakReference<>(doubled);
+    }
+    
+    @Test
+    public void testDependentsAreReferencedWeakly() throws InterruptedException {
+        final @Nonnull WeakReference<@Nonnull DerivedValueProperty<@Nonnull Integer>> reference = createUnreferencedProperty();
+        for (int i = 0; i < 100 && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(reference.get());
+        source.set(2);
+        assertEquals(2, (int) source.get());
+    }
+    
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2017 Synacts GmbH, Switzerland (info@synacts.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.digitalid.utility.property.map;
+
+import javax.annotation.Nonnull;
+
+import net.digitalid.utility.collections.map.FreezableLinkedHashMap;
+import net.digitalid.utility.collections.map.FreezableLinkedHashMapBuilder;
+import net.digitalid.utility.collections.map.ReadOnlyMap;
+import net.digitalid.utility.contracts.exceptions.PreconditionException;
+import net.digitalid.utility.functional.iterables.FiniteIterable;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class WritableVolatileMapPropertyTest {
+    
+    private final @Nonnull WritableVolatileSimpleMapProperty<@Nonnull Integer, @Nonnull String> property = WritableVolatileSimpleMapPropertyBuilder.<Integer, String>withKeyValidator(key -> key > 0).withValueValidator(value -> !value.isEmpty()).build();
+    
+    @Test
+    public void testBulkOperations() {
+        final @Nonnull FreezableLinkedHashMap<@Nonnull Integer, @Nonnull String> map = FreezableLinkedHashMapBuilder.build();
+        map.put(1, "a");
+        map.put(2, "b");
+        assertEquals(2, property.addAll(map));
+        assertEquals(0, property.addAll(map));
+        assertEquals(1, property.removeAll(FiniteIterable.of(2, 3)));
+        assertEquals(1, property.get().size());
+        map.put(3, "c");
+        property.replaceAll(map);
+        assertEquals(3, property.get().size());
+    }
+    
+    @Test
+    public void testCopyOnWrite() {
+        final @Nonnull WritableVolatileSimpleMapProperty<@Nonnull Integer, @Nonnull String> property = WritableVolatileSimpleMapPropertyBuilder.<Integer, String>buildWithCopyOnWrite(true);
+        property.add(1, "a");
+        property.add(2, "b");
+        final @Nonnull ReadOnlyMap<@Nonnull Integer, @Nonnull String> snapshot = property.get();
+        assertTrue(snapshot.isFrozen());
+        assertSame(snapshot, property.get());
+        property.remove(1);
+        assertEquals(2, snapshot.size());
+        assertNotSame(snapshot, property.get());
+        assertEquals(1, property.get().size());
+        assertEquals("b", property.get(2));
+    }
+    
+    @Test
+    public void testInvalidKeyIsRejected() {
+        final @Nonnull FreezableLinkedHashMap<@Nonnull Integer, @Nonnull String> map = FreezableLinkedHashMapBuilder.build();
+        map.put(1, "a");
+        map.put(-1, "b");
+        try {
+            property.addAll(map);
+            fail("The invalid key should have been rejected.");
+        } catch (@Nonnull PreconditionException exception) {
+            assertTrue(property.get().isEmpty());
+        }
+        try {
+            property.replaceAll(map);
+            fail("The invalid key should have been rejected.");
+        } catch (@Nonnull PreconditionException exception) {
+            assertTrue(property.get().isEmpty());
+        }
+    }
+    
+    @Test
+    public void testInvalidValueIsRejected() {
+        property.add(1, "a");
+        final @Nonnull FreezableLinkedHashMap<@Nonnull Integer, @Nonnull String> map = FreezableLinkedHashMapBuilder.build();
+        map.put(2, "b");
+        map.put(3, "");
+        try {
+            property.addAll(map);
+            fail("The invalid value should have been rejected.");
+        } catch (@Nonnull PreconditionException exception) {
+            assertEquals(1, property.get().size());
+        }
+        try {
+            property.replaceAll(map);
+            fail("The invalid value should have been rejected.");
+        } catch (@Nonnull PreconditionException exception) {
+            assertEquals("a", property.get(1));
+        }
+    }
+    
+    @Test
+    public void testInvalidKeyIsRejectedOnRemoval() {
+        property.add(1, "a");
+        try {
+            property.removeAll(FiniteIterable.of(1, 0));
+            fail("The invalid key should have been rejected.");
+        } catch (@Nonnull PreconditionException exception) {
+            assertEquals("a", property.get(1));
+        }
+    }
+    
+}
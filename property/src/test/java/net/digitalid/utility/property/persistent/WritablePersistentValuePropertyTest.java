@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2017 Synacts GmbH, Switzerland (info@synacts.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.digitalid.utility.property.persistent;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+import net.digitalid.utility.annotations.method.Pure;
+import net.digitalid.utility.conversion.exceptions.ConnectionException;
+import net.digitalid.utility.conversion.exceptions.RecoveryException;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class WritablePersistentValuePropertyTest {
+    
+    private final @Nonnull WriteBehindBufferTest.RecordingStore store = new WriteBehindBufferTest.RecordingStore();
+    
+    @Pure
+    private @Nonnull WritablePersistentValueProperty<Integer, String> createProperty(int key) {
+        return WritablePersistentValuePropertyBuilder.<Integer, String>withStore(store).withKey(key).withDefaultValue("default").build();
+    }
+    
+    @Test
+    public void testSettingNullResetsToTheDefaultValue() throws ConnectionException, RecoveryException {
+        final @Nonnull WritablePersistentValueProperty<Integer, String> property = createProperty(1);
+        assertEquals("default", property.get());
+        property.set("value");
+        assertEquals("value", property.get());
+        property.flush();
+        assertEquals("value", store.entries.get(1));
+        
+        assertEquals("value", property.set(null));
+        assertEquals("default", property.get());
+        property.flush();
+        assertFalse(store.entries.containsKey(1));
+        assertEquals("default", createProperty(1).get());
+        property.close();
+    }
+    
+    @Test
+    public void testPropertiesOfTheSameStoreShareTheirBatches() throws ConnectionException, RecoveryException {
+        final @Nonnull WritablePersistentValueProperty<Integer, String> property1 = createProperty(1);
+        final @Nonnull WritablePersistentValueProperty<Integer, String> property2 = createProperty(2);
+        property1.set("a");
+        property2.set("b");
+        assertTrue(property1.isPending());
+        assertTrue(property2.isPending());
+        property1.flush();
+        assertFalse(property2.isPending());
+        final @Nonnull Map<Integer, String> batch = new LinkedHashMap<>();
+        batch.put(1, "a");
+        batch.put(2, "b");
+        assertEquals(Collections.singletonList(batch), store.updates);
+        
+        property1.close();
+        property2.set("c");
+        assertTrue(property2.isPending());
+        property2.close();
+        assertEquals("c", store.entries.get(2));
+    }
+    
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2017 Synacts GmbH, Switzerland (info@synacts.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.digitalid.utility.property.persistent;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+
+import net.digitalid.utility.annotations.method.Impure;
+import net.digitalid.utility.annotations.method.Pure;
+import net.digitalid.utility.collections.map.ReadOnlyMap;
+import net.digitalid.utility.collections.set.ReadOnlySet;
+import net.digitalid.utility.contracts.exceptions.PreconditionException;
+import net.digitalid.utility.conversion.exceptions.ConnectionException;
+import net.digitalid.utility.storage.Table;
+import net.digitalid.utility.time.TimeBuilder;
+import net.digitalid.utility.validation.annotations.type.Mutable;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class WriteBehindBufferTest {
+    
+    @Mutable
+    static class RecordingStore implements PropertyStore<Integer, String> {
+        
+        final @Nonnull Map<Integer, String> entries = Collections.synchronizedMap(new LinkedHashMap<>());
+        
+        final @Nonnull List<Map<Integer, String>> updates = Collections.synchronizedList(new ArrayList<>());
+        
+        private final @Nonnull List<Set<Integer>> deletions = Collections.synchronizedList(new ArrayList<>());
+        
+        private volatile int failures = 0;
+        
+        @Pure
+        @Override
+        public @Nonnull Table<?, ?> getTable() {
+            return (Table<?, ?>) Proxy.newProxyInstance(Table.class.getClassLoader(), new Class<?>[] {Table.class}, (proxy, method, arguments) -> "test");
+        }
+        
+        @Pure
+        @Override
+        public @Nonnull ReadOnlyMap<Integer, String> load() {
+            throw new UnsupportedOperationException();
+        }
+        
+        @Pure
+        @Override
+        public String load(@Nonnull Integer key) {
+            return entries.get(key);
+        }
+        
+        @Impure
+        @Override
+        public void store(@Nonnull ReadOnlyMap<Integer, String> updatedEntries, @Nonnull ReadOnlySet<Integer> deletedKeys) throws ConnectionException {
+            if (failures > 0) {
+                failures--;
+                throw new IllegalStateException("The store is unavailable.");
+            }
+            final @Nonnull Map<Integer, String> update = new LinkedHashMap<>();
+            for (Map.@Nonnull Entry<Integer, String> entry : updatedEntries.entrySet()) { update.put(entry.getKey(), entry.getValue()); }
+            final @Nonnull Set<Integer> deletion = new LinkedHashSet<>();
+            for (Integer key : deletedKeys) { deletion.add(key); }
+            updates.add(update);
+            deletions.add(deletion);
+            entries.putAll(update);
+            entries.keySet().removeAll(deletion);
+        }
+        
+    }
+    
+    private final @Nonnull RecordingStore store = new RecordingStore();
+    
+    @Impure
+    private @Nonnull WriteBehindBuffer<Integer, String> createBuffer(int flushIntervalInMillis, int flushThreshold) {
+        return WriteBehindBuffer.with(store, TimeBuilder.withValue(flushIntervalInMillis).build(), flushThreshold);
+    }
+    
+    @Test
+    public void testChangesAreCoalescedPerKey() throws ConnectionException {
+        final @Nonnull WriteBehindBuffer<Integer, String> buffer = createBuffer(3_600_000, 1_000);
+        buffer.put(1, "a");
+        buffer.put(1, "b");
+        buffer.put(2, "c");
+        buffer.delete(2);
+        assertEquals(2, buffer.getNumberOfPendingChanges());
+        buffer.flush();
+        assertEquals(0, buffer.getNumberOfPendingChanges());
+        assertEquals(Collections.singletonList(Collections.singletonMap(1, "b")), store.updates);
+        assertEquals(Collections.singletonList(Collections.singleton(2)), store.deletions);
+        buffer.close();
+    }
+    
+    @Test
+    public void testBatchesAreWrittenInOrder() throws ConnectionException {
+        final @Nonnull WriteBehindBuffer<Integer, String> buffer = createBuffer(3_600_000, 1);
+        for (int i = 0; i < 1_000; i++) { buffer.put(1, Integer.toString(i)); }
+        buffer.flush();
+        assertEquals("999", store.entries.get(1));
+        int previous = -1;
+        synchronized (store.updates) {
+            for (@Nonnull Map<Integer, String> update : store.updates) {
+                final int current = Integer.parseInt(update.get(1));
+                assertTrue(current > previous);
+                previous = current;
+            }
+        }
+        buffer.close();
+    }
+    
+    @Test
+    public void testPendingChangesAreWrittenOnClose() {
+        final @Nonnull WriteBehindBuffer<Integer, String> buffer = createBuffer(3_600_000, 1_000);
+        buffer.put(1, "a");
+        buffer.close();
+        assertTrue(buffer.isClosed());
+        assertEquals("a", store.entries.get(1));
+        assertEquals(0, buffer.getNumberOfPendingChanges());
+        try {
+            buffer.put(2, "b");
+            fail("A closed buffer should not accept changes.");
+        } catch (@Nonnull PreconditionException exception) {}
+    }
+    
+    @Test
+    public void testFailedFlushIsRetried() throws InterruptedException {
+        final @Nonnull WriteBehindBuffer<Integer, String> buffer = createBuffer(50, 1);
+        store.failures = 2;
+        buffer.put(1, "a");
+        for (int i = 0; i < 200 && !store.entries.containsKey(1); i++) { Thread.sleep(10); }
+        assertEquals("a", store.entries.get(1));
+        assertEquals(0, store.failures);
+        assertEquals(0, buffer.getNumberOfPendingChanges());
+        buffer.close();
+    }
+    
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2017 Synacts GmbH, Switzerland (info@synacts.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.digitalid.utility.property.set;
+
+import javax.annotation.Nonnull;
+
+import net.digitalid.utility.collections.set.ReadOnlySet;
+import net.digitalid.utility.contracts.exceptions.PreconditionException;
+import net.digitalid.utility.functional.iterables.FiniteIterable;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class WritableVolatileSetPropertyTest {
+    
+    private final @Nonnull WritableVolatileSimpleSetProperty<@Nonnull Integer> property = WritableVolatileSimpleSetPropertyBuilder.<Integer>buildWithValueValidator(value -> value > 0);
+    
+    @Test
+    public void testBulkOperations() {
+        assertEquals(3, property.addAll(FiniteIterable.of(1, 2, 3)));
+        assertEquals(1, property.addAll(FiniteIterable.of(3, 4)));
+        assertEquals(2, property.removeAll(FiniteIterable.of(1, 2, 5)));
+        property.replaceAll(FiniteIterable.of(4, 5));
+        assertTrue(property.get().contains(4));
+        assertTrue(property.get().contains(5));
+        assertEquals(2, property.get().size());
+    }
+    
+    @Test
+    public void testCopyOnWrite() {
+        final @Nonnull WritableVolatileSimpleSetProperty<@Nonnull Integer> property = WritableVolatileSimpleSetPropertyBuilder.<Integer>buildWithCopyOnWrite(true);
+        property.addAll(FiniteIterable.of(1, 2));
+        final @Nonnull ReadOnlySet<@Nonnull Integer> snapshot = property.get();
+        assertTrue(snapshot.isFrozen());
+        assertSame(snapshot, property.get());
+        property.remove(1);
+        assertEquals(2, snapshot.size());
+        assertNotSame(snapshot, property.get());
+        assertEquals(1, property.get().size());
+        assertTrue(property.get().contains(2));
+    }
+    
+    @Test
+    public void testInvalidValueIsRejected() {
+        property.add(1);
+        for (int i = 0; i < 3; i++) {
+            try {
+                switch (i) {
+                    case 0: property.addAll(FiniteIterable.of(2, -3)); break;
+                    case 1: property.removeAll(FiniteIterable.of(1, 0)); break;
+                    default: property.replaceAll(FiniteIterable.of(2, -3));
+                }
+                fail("The invalid value should have been rejected.");
+            } catch (@Nonnull PreconditionException exception) {
+                assertEquals(1, property.get().size());
+                assertTrue(property.get().contains(1));
+            }
+        }
+    }
+    
+    @Test
+    public void testNullValueIsRejected() {
+        try {
+            property.addAll(FiniteIterable.of(1, null));
+            fail("The null value should have been rejected.");
+        } catch (@Nonnull PreconditionException exception) {
+            assertTrue(property.get().isEmpty());
+        }
+    }
+    
+}
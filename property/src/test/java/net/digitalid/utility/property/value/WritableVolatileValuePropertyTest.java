@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2017 Synacts GmbH, Switzerland (info@synacts.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.digitalid.utility.property.value;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+
+import net.digitalid.utility.contracts.exceptions.PreconditionException;
+import net.digitalid.utility.time.TimeBuilder;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class WritableVolatileValuePropertyTest {
+    
+    @Test
+    public void testObserversAreNotifiedBeforeSetReturns() {
+        final @Nonnull WritableVolatileValueProperty<@Nonnull Integer> property = WritableVolatileValuePropertyBuilder.withValue(0).build();
+        final @Nonnull List<@Nonnull Thread> threads = new ArrayList<>();
+        final @Nonnull List<@Nonnull Integer> values = new ArrayList<>();
+        property.register((VolatileValueObserver<Integer>) (p, oldValue, newValue) -> {
+            threads.add(Thread.currentThread());
+            values.add(newValue);
+        });
+        assertEquals(0, (int) property.set(1));
+        assertEquals(1, values.size());
+        assertTrue(property.compareAndSet(1, 2));
+        assertFalse(property.compareAndSet(1, 3));
+        assertEquals(3, (int) property.updateAndGet(value -> value + 1));
+        assertEquals(3, (int) property.getAndUpdate(value -> value));
+        assertEquals(Arrays.asList(1, 2, 3), values);
+        assertEquals(Collections.nCopies(3, Thread.currentThread()), threads);
+    }
+    
+    @Test
+    public void testInvalidValuesAreRejected() {
+        for (boolean lockFree : new boolean[] {false, true}) {
+            final @Nonnull WritableVolatileValueProperty<@Nonnull Integer> property = WritableVolatileValuePropertyBuilder.withValue(0).withValueValidator(value -> value >= 0).withLockFree(lockFree).build();
+            try {
+                property.set(-1);
+                fail("The invalid value should have been rejected.");
+            } catch (@Nonnull PreconditionException exception) {}
+            try {
+                property.compareAndSet(0, -1);
+                fail("The invalid value should have been rejected.");
+            } catch (@Nonnull PreconditionException exception) {}
+            try {
+                property.updateAndGet(value -> value - 1);
+                fail("The invalid value should have been rejected.");
+            } catch (@Nonnull PreconditionException exception) {}
+            assertEquals(0, (int) property.get());
+        }
+    }
+    
+    @Test
+    public void testLockFreeNotificationsAreOrdered() throws InterruptedException {
+        final @Nonnull WritableVolatileValueProperty<@Nonnull Integer> property = WritableVolatileValuePropertyBuilder.withValue(0).withLockFree(true).build();
+        final @Nonnull List<@Nonnull Integer> oldValues = Collections.synchronizedList(new ArrayList<>());
+        final @Nonnull List<@Nonnull Integer> newValues = Collections.synchronizedList(new ArrayList<>());
+        property.register((VolatileValueObserver<Integer>) (p, oldValue, newValue) -> {
+            oldValues.add(oldValue);
+            newValues.add(newValue);
+        });
+        final @Nonnull List<@Nonnull Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < 1_000; j++) { property.updateAndGet(value -> value + 1); }
+            }));
+        }
+        for (@Nonnull Thread thread : threads) { thread.start(); }
+        for (@Nonnull Thread thread : threads) { thread.join(); }
+        assertEquals(4_000, (int) property.get());
+        assertEquals(4_000, newValues.size());
+        for (int i = 0; i < 4_000; i++) {
+            assertEquals(i, (int) oldValues.get(i));
+            assertEquals(i + 1, (int) newValues.get(i));
+        }
+    }
+    
+    @Test
+    public void testLockFreeNotificationsWhileLockIsHeld() throws InterruptedException {
+        for (int round = 0; round < 20; round++) {
+            final @Nonnull WritableVolatileValueProperty<@Nonnull Integer> property = WritableVolatileValuePropertyBuilder.withValue(0).withLockFree(true).build();
+            final @Nonnull AtomicInteger notifications = new AtomicInteger();
+            property.register((VolatileValueObserver<Integer>) (p, oldValue, newValue) -> notifications.incrementAndGet());
+            final @Nonnull AtomicBoolean writing = new AtomicBoolean(true);
+            // The lock is held repeatedly for another purpose so that writers often find it held by a thread that does not notify the observers.
+            final @Nonnull Thread holder = new Thread(() -> {
+                while (writing.get()) { property.runExclusively(Thread::yield); }
+            });
+            holder.start();
+            final @Nonnull List<@Nonnull Thread> threads = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                threads.add(new Thread(() -> {
+                    for (int j = 0; j < 250; j++) { property.updateAndGet(value -> value + 1); }
+                }));
+            }
+            for (@Nonnull Thread thread : threads) { thread.start(); }
+            for (@Nonnull Thread thread : threads) { thread.join(); }
+            writing.set(false);
+            holder.join();
+            assertEquals(1_000, (int) property.get());
+            assertEquals(1_000, notifications.get());
+        }
+    }
+    
+    @Test
+    public void testDebouncedObserverIsNotifiedOnceAfterQuietPeriod() throws InterruptedException {
+        final @Nonnull WritableVolatileValueProperty<@Nonnull Integer> property = WritableVolatileValuePropertyBuilder.withValue(0).build();
+        final @Nonnull List<@Nonnull Integer> values = Collections.synchronizedList(new ArrayList<>());
+        property.registerDebounced((p, oldValue, newValue) -> values.add(newValue), TimeBuilder.withValue(500).build());
+        for (int i = 1; i <= 10; i++) {
+            property.set(i);
+            Thread.sleep(10);
+        }
+        for (int i = 0; i < 100 && values.isEmpty(); i++) { Thread.sleep(20); }
+        Thread.sleep(600);
+        assertEquals(Arrays.asList(10), values);
+    }
+    
+}
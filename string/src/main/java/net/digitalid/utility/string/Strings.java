@@ -47,34 +47,54 @@ public abstract class Strings {
     /* -------------------------------------------------- Formatting -------------------------------------------------- */
     
     /**
-     * Formats the given message by replacing each given symbol with the corresponding argument surrounded by the given quotes.
+     * Appends the given argument surrounded by the given quotes to the given string builder.
      */
     @Pure
-    public static @Nonnull String format(@Nonnull CharSequence message, char symbol, @Nullable Quotes quotes, @NonCaptured @Unmodified @Nonnull @NullableElements Object... arguments) {
-        final @Nonnull StringBuilder string = new StringBuilder(message);
-        int stringIndex = 0;
+    private static void appendArgument(@NonCaptured @Modified @Nonnull StringBuilder string, @Nullable Quotes quotes, @NonCaptured @Unmodified @Nullable Object argument) {
+        final boolean quoted = quotes != null && (quotes != Quotes.CODE || argument instanceof CharSequence);
+        if (quoted) { string.append(quotes == Quotes.CODE ? "\"" : quotes.getPrefix()); }
+        if (argument instanceof CharSequence) { string.append((CharSequence) argument); }
+        else if (argument instanceof Integer) { string.append(((Integer) argument).intValue()); }
+        else if (argument instanceof Long) { string.append(((Long) argument).longValue()); }
+        else if (argument instanceof Boolean) { string.append(((Boolean) argument).booleanValue()); }
+        else if (argument instanceof Character) { string.append(((Character) argument).charValue()); }
+        else { string.append(String.valueOf(argument)); }
+        if (quoted) { string.append(quotes == Quotes.CODE ? "\"" : quotes.getSuffix()); }
+    }
+    
+    /**
+     * Appends the given message to the given string builder by replacing each given symbol with the corresponding one of the first count arguments surrounded by the given quotes.
+     * Unlike {@link #format(java.lang.CharSequence, char, net.digitalid.utility.circumfixes.Quotes, java.lang.Object...)}, this method allocates no objects
+     * if the string builder has enough capacity and the arguments are character sequences, integers, longs, booleans or characters.
+     */
+    @Pure
+    @Requires(condition = "count <= arguments.length", message = "The count may not exceed the number of arguments.")
+    public static void appendFormatted(@NonCaptured @Modified @Nonnull StringBuilder string, @Nonnull CharSequence message, char symbol, @Nullable Quotes quotes, @NonCaptured @Unmodified @Nonnull @NullableElements Object[] arguments, @NonNegative int count) {
         int argumentIndex = 0;
-        while (stringIndex < string.length() && argumentIndex < arguments.length) {
-            if (string.charAt(stringIndex) == symbol) {
-                final @Nonnull String argument = Quotes.in(quotes, arguments[argumentIndex]);
-                string.replace(stringIndex, stringIndex + 1, argument);
-                stringIndex += argument.length();
-                argumentIndex++;
-            } else {
-                stringIndex++;
-            }
+        for (int messageIndex = 0; messageIndex < message.length(); messageIndex++) {
+            final char character = message.charAt(messageIndex);
+            if (character == symbol && argumentIndex < count) { appendArgument(string, quotes, arguments[argumentIndex++]); }
+            else { string.append(character); }
         }
-        if (argumentIndex < arguments.length) {
-            if (string.length() > 0) { string.append(" "); }
-            string.append("[");
+        if (argumentIndex < count) {
+            if (message.length() > 0) { string.append(' '); }
+            string.append('[');
             boolean first = true;
-            while (argumentIndex < arguments.length) {
+            while (argumentIndex < count) {
                 if (first) { first = false; } else { string.append(", "); }
-                string.append(Quotes.in(quotes, arguments[argumentIndex]));
-                argumentIndex++;
+                appendArgument(string, quotes, arguments[argumentIndex++]);
             }
-            string.append("]");
+            string.append(']');
         }
+    }
+    
+    /**
+     * Formats the given message by replacing each given symbol with the corresponding argument surrounded by the given quotes.
+     */
+    @Pure
+    public static @Nonnull String format(@Nonnull CharSequence message, char symbol, @Nullable Quotes quotes, @NonCaptured @Unmodified @Nonnull @NullableElements Object... arguments) {
+        final @Nonnull StringBuilder string = new StringBuilder(message.length() + 16 * arguments.length);
+        appendFormatted(string, message, symbol, quotes, arguments, arguments.length);
         return string.toString();
     }
     
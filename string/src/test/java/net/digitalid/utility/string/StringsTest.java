@@ -17,6 +17,8 @@ package net.digitalid.utility.string;
 
 import javax.annotation.Nonnull;
 
+import net.digitalid.utility.circumfixes.Quotes;
+
 import org.junit.Test;
 
 import static org.junit.Assert.*;
@@ -32,6 +34,16 @@ public class StringsTest {
         assertEquals("", Strings.format(""));
     }
     
+    @Test
+    public void testAppendFormatted() {
+        final @Nonnull StringBuilder string = new StringBuilder("Prefix: ");
+        Strings.appendFormatted(string, "The result should have been $ but was $.", '$', Quotes.SINGLE, new Object[] {42, 41L, "ignored"}, 2);
+        assertEquals("Prefix: The result should have been '42' but was '41'.", string.toString());
+        string.setLength(0);
+        Strings.appendFormatted(string, "$ and $", '$', Quotes.CODE, new Object[] {"text", 'c', true}, 3);
+        assertEquals("\"text\" and c [true]", string.toString());
+    }
+    
     @Test
     public void testCapitalizeFirstLetters() {
         assertEquals("Hello World", Strings.capitalizeFirstLetters("hello world"));
@@ -42,10 +42,31 @@ public class NamedThreadFactory implements ThreadFactory {
      */
     private final @Nonnull AtomicInteger number = new AtomicInteger(1);
     
+    /**
+     * Stores whether the threads are daemon threads.
+     */
+    private final boolean daemon;
+    
     /* -------------------------------------------------- Constructors -------------------------------------------------- */
     
-    protected NamedThreadFactory(@Nonnull String prefix) {
+    protected NamedThreadFactory(@Nonnull String prefix, boolean daemon) {
         this.prefix = prefix + "-";
+        this.daemon = daemon;
+    }
+    
+    protected NamedThreadFactory(@Nonnull String prefix) {
+        this(prefix, false);
+    }
+    
+    /**
+     * Returns a new thread factory with the given name prefix.
+     * 
+     * @param prefix the prefix of the threads created by this factory.
+     * @param daemon whether the threads created by this factory are daemon threads, which do not prevent the JVM from exiting.
+     */
+    @Pure
+    public static @Nonnull NamedThreadFactory with(@Nonnull String prefix, boolean daemon) {
+        return new NamedThreadFactory(prefix, daemon);
     }
     
     /**
@@ -55,15 +76,25 @@ public class NamedThreadFactory implements ThreadFactory {
      */
     @Pure
     public static @Nonnull NamedThreadFactory with(@Nonnull String prefix) {
-        return new NamedThreadFactory(prefix);
+        return new NamedThreadFactory(prefix, false);
     }
     
-    /* -------------------------------------------------- Method -------------------------------------------------- */
+    /* -------------------------------------------------- Methods -------------------------------------------------- */
+    
+    /**
+     * Returns the name of the next thread and increments the thread number.
+     */
+    @Impure
+    protected @Nonnull String getNextName() {
+        return prefix + number.getAndIncrement();
+    }
     
     @Impure
     @Override
     public @Nonnull Thread newThread(@Nonnull Runnable runnable) {
-        return new Thread(runnable, prefix + number.getAndIncrement());
+        final @Nonnull Thread thread = new Thread(runnable, getNextName());
+        if (daemon) { thread.setDaemon(true); }
+        return thread;
     }
     
 }
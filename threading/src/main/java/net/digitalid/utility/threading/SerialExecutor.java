@@ -0,0 +1,272 @@
+/*
+ * Copyright (C) 2017 Synacts GmbH, Switzerland (info@synacts.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.digitalid.utility.threading;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.digitalid.utility.annotations.method.Impure;
+import net.digitalid.utility.annotations.method.Pure;
+import net.digitalid.utility.annotations.ownership.Capturable;
+import net.digitalid.utility.annotations.ownership.Captured;
+import net.digitalid.utility.annotations.type.ThreadSafe;
+import net.digitalid.utility.contracts.Require;
+import net.digitalid.utility.logging.Log;
+import net.digitalid.utility.validation.annotations.math.NonNegative;
+import net.digitalid.utility.validation.annotations.math.Positive;
+import net.digitalid.utility.validation.annotations.type.Mutable;
+
+/**
+ * A serial executor runs its tasks one after the other in the order in which they were submitted on a shared executor.
+ * This allows many serial executors to be multiplexed over a small pool of threads without giving up the sequential execution of each of them.
+ * In order to be fair towards other serial executors on the same pool, at most a batch of tasks is run before the remaining tasks are resubmitted.
+ * A serial executor that has been {@link #shutdown() shut down} still runs the tasks that were accepted before, whereas {@link #shutdownNow()} discards them.
+ */
+@Mutable
+@ThreadSafe
+public class SerialExecutor extends AbstractExecutorService {
+    
+    /* -------------------------------------------------- Fields -------------------------------------------------- */
+    
+    /**
+     * Stores the executor on which the tasks are run.
+     */
+    private final @Nonnull Executor executor;
+    
+    /**
+     * Stores the maximal number of tasks that are run before the remaining tasks are resubmitted to the executor.
+     */
+    private final int batchSize;
+    
+    /**
+     * Stores the tasks that wait to be run.
+     */
+    private final @Nonnull Queue<@Nonnull Runnable> tasks = new ConcurrentLinkedQueue<>();
+    
+    /**
+     * Stores the number of tasks that wait to be run, which is tracked separately as the size of the queue is not a constant-time operation.
+     */
+    private final @Nonnull AtomicInteger queueDepth = new AtomicInteger();
+    
+    /**
+     * Stores whether a batch of tasks is currently submitted to or running on the executor.
+     */
+    private final @Nonnull AtomicBoolean scheduled = new AtomicBoolean();
+    
+    /**
+     * Stores whether this serial executor has been shut down.
+     */
+    private volatile boolean shutdown = false;
+    
+    /* -------------------------------------------------- Constructors -------------------------------------------------- */
+    
+    protected SerialExecutor(@Nonnull Executor executor, @Positive int batchSize) {
+        Require.that(executor != null).orThrow("The executor may not be null.");
+        Require.that(batchSize > 0).orThrow("The batch size has to be positive but was $.", batchSize);
+        
+        this.executor = executor;
+        this.batchSize = batchSize;
+    }
+    
+    /**
+     * Returns a new serial executor which runs batches of the given size on the given executor.
+     */
+    @Pure
+    public static @Capturable @Nonnull SerialExecutor with(@Nonnull Executor executor, @Positive int batchSize) {
+        return new SerialExecutor(executor, batchSize);
+    }
+    
+    /**
+     * Returns a new serial executor which runs batches of up to 64 tasks on the given executor.
+     */
+    @Pure
+    public static @Capturable @Nonnull SerialExecutor with(@Nonnull Executor executor) {
+        return new SerialExecutor(executor, 64);
+    }
+    
+    /* -------------------------------------------------- Execution -------------------------------------------------- */
+    
+    /**
+     * Submits a batch of tasks to the executor if no batch is currently scheduled.
+     */
+    @Impure
+    private void schedule() {
+        if (!tasks.isEmpty() && scheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::run);
+            } catch (@Nonnull RejectedExecutionException exception) {
+                scheduled.set(false);
+                throw exception;
+            }
+        }
+    }
+    
+    /**
+     * Removes the given task from the queue if it has not yet been run or returned by {@link #shutdownNow()}.
+     * 
+     * @return whether the given task was removed.
+     */
+    @Impure
+    private boolean remove(@Nonnull Runnable task) {
+        if (tasks.remove(task)) {
+            queueDepth.decrementAndGet();
+            return true;
+        } else {
+            return false;
+        }
+    }
+    
+    /**
+     * Runs a batch of tasks and resubmits the remaining tasks afterwards.
+     * The flag that a batch is scheduled is cleared and the remaining tasks are resubmitted even if a task threw an error.
+     */
+    @Impure
+    private void run() {
+        try {
+            for (int i = 0; i < batchSize; i++) {
+                final @Nullable Runnable task = tasks.poll();
+                if (task == null) { break; }
+                queueDepth.decrementAndGet();
+                try {
+                    task.run();
+                } catch (@Nonnull Throwable throwable) {
+                    Log.error("A task of a serial executor threw an exception.", throwable);
+                }
+            }
+        } finally {
+            scheduled.set(false);
+            try {
+                schedule();
+            } catch (@Nonnull RejectedExecutionException exception) {
+                Log.warning("The remaining tasks of a serial executor could not be resubmitted.", exception);
+            }
+            if (shutdown) { signalTermination(); }
+        }
+    }
+    
+    /**
+     * Executes the given task after all previously submitted tasks have been run.
+     * 
+     * @throws RejectedExecutionException if this serial executor has been shut down or the underlying executor rejected the task.
+     */
+    @Impure
+    @Override
+    public void execute(@Captured @Nonnull Runnable task) {
+        Require.that(task != null).orThrow("The task may not be null.");
+        
+        if (shutdown) { throw new RejectedExecutionException("The serial executor has been shut down."); }
+        queueDepth.incrementAndGet();
+        tasks.add(task);
+        // A concurrent shutdown might have missed the task, which is therefore withdrawn unless it has already been run or returned.
+        if (shutdown && remove(task)) { throw new RejectedExecutionException("The serial executor has been shut down."); }
+        try {
+            schedule();
+        } catch (@Nonnull RejectedExecutionException exception) {
+            remove(task);
+            throw exception;
+        }
+    }
+    
+    /* -------------------------------------------------- Shutdown -------------------------------------------------- */
+    
+    /**
+     * Shuts down this serial executor so that no further tasks are accepted, while the tasks that were accepted before are still run.
+     */
+    @Impure
+    @Override
+    public void shutdown() {
+        this.shutdown = true;
+        signalTermination();
+    }
+    
+    /**
+     * Shuts down this serial executor so that no further tasks are accepted and returns the tasks that have not been run.
+     * A task that is currently running is not interrupted.
+     */
+    @Impure
+    @Override
+    public @Capturable @Nonnull List<@Nonnull Runnable> shutdownNow() {
+        this.shutdown = true;
+        final @Nonnull List<@Nonnull Runnable> remainingTasks = new ArrayList<>();
+        @Nullable Runnable task;
+        while ((task = tasks.poll()) != null) {
+            queueDepth.decrementAndGet();
+            remainingTasks.add(task);
+        }
+        signalTermination();
+        return remainingTasks;
+    }
+    
+    /**
+     * Returns whether this serial executor has been shut down.
+     */
+    @Pure
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+    
+    /**
+     * Returns whether this serial executor has been shut down and all accepted tasks have been run.
+     */
+    @Pure
+    @Override
+    public boolean isTerminated() {
+        return shutdown && tasks.isEmpty() && !scheduled.get();
+    }
+    
+    /**
+     * Wakes up the threads that wait for the termination of this serial executor.
+     */
+    @Impure
+    private synchronized void signalTermination() {
+        notifyAll();
+    }
+    
+    @Impure
+    @Override
+    public synchronized boolean awaitTermination(long timeout, @Nonnull TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!isTerminated()) {
+            final long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) { return false; }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return true;
+    }
+    
+    /* -------------------------------------------------- Metrics -------------------------------------------------- */
+    
+    /**
+     * Returns the number of tasks that wait to be run.
+     */
+    @Pure
+    public @NonNegative int getQueueDepth() {
+        return Math.max(0, queueDepth.get());
+    }
+    
+}
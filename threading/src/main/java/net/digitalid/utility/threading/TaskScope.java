@@ -0,0 +1,228 @@
+/*
+ * Copyright (C) 2017 Synacts GmbH, Switzerland (info@synacts.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.digitalid.utility.threading;
+
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.digitalid.utility.annotations.method.Impure;
+import net.digitalid.utility.annotations.method.Pure;
+import net.digitalid.utility.annotations.ownership.Capturable;
+import net.digitalid.utility.annotations.ownership.Captured;
+import net.digitalid.utility.annotations.type.ThreadSafe;
+import net.digitalid.utility.contracts.Require;
+import net.digitalid.utility.validation.annotations.math.NonNegative;
+import net.digitalid.utility.validation.annotations.type.Mutable;
+
+/**
+ * A task scope forks tasks onto an executor and joins them again, whereby all tasks are cancelled as soon as one of them fails.
+ * It is highly recommended that you always use a task scope in a try-with-resources statement like
+ * <pre>{@code
+ * try (TaskScope scope = TaskScope.withVirtualThreads()) {
+ *     Future<String> user = scope.fork(() -> findUser());
+ *     Future<Integer> order = scope.fork(() -> fetchOrder());
+ *     scope.join();
+ *     // Both futures are done successfully here.
+ * }
+ * }</pre>
+ * so that the remaining tasks are cancelled when the block is left.
+ */
+@Mutable
+@ThreadSafe
+public class TaskScope implements AutoCloseable {
+    
+    /* -------------------------------------------------- Fields -------------------------------------------------- */
+    
+    /**
+     * Stores the executor on which the tasks are run.
+     */
+    private final @Nonnull Executor executor;
+    
+    /**
+     * Stores the futures of all forked tasks.
+     */
+    private final @Nonnull Queue<@Nonnull Future<?>> futures = new ConcurrentLinkedQueue<>();
+    
+    /**
+     * Stores the throwable of the first task that failed.
+     */
+    private final @Nonnull AtomicReference<@Nullable Throwable> failure = new AtomicReference<>();
+    
+    /**
+     * Stores whether this scope has been closed.
+     */
+    private volatile boolean closed = false;
+    
+    /* -------------------------------------------------- Constructors -------------------------------------------------- */
+    
+    protected TaskScope(@Nonnull Executor executor) {
+        Require.that(executor != null).orThrow("The executor may not be null.");
+        
+        this.executor = executor;
+    }
+    
+    /**
+     * Returns a new task scope that runs its tasks on the given executor.
+     */
+    @Pure
+    public static @Capturable @Nonnull TaskScope with(@Nonnull Executor executor) {
+        return new TaskScope(executor);
+    }
+    
+    /**
+     * Returns a new task scope that runs its tasks on the {@link ThreadPools#virtual virtual} pool.
+     */
+    @Pure
+    public static @Capturable @Nonnull TaskScope withVirtualThreads() {
+        return new TaskScope(ThreadPools.virtual.get());
+    }
+    
+    /* -------------------------------------------------- Forking -------------------------------------------------- */
+    
+    /**
+     * Records the given throwable as failure and cancels all tasks if no other task failed before.
+     */
+    @Impure
+    private void fail(@Nonnull Throwable throwable) {
+        if (failure.compareAndSet(null, throwable)) { cancel(); }
+    }
+    
+    /**
+     * Forks the given task and returns its future.
+     * If a task of this scope has already failed, the given task is cancelled right away.
+     * 
+     * @require !isClosed() : "This scope is not closed.";
+     */
+    @Impure
+    public @Nonnull <RESULT> Future<RESULT> fork(@Captured @Nonnull Callable<RESULT> task) {
+        Require.that(task != null).orThrow("The task may not be null.");
+        Require.that(!closed).orThrow("A task may not be forked in a closed scope.");
+        
+        final @Nonnull FutureTask<RESULT> future = new FutureTask<RESULT>(task) {
+            @Impure @Override protected void setException(@Nonnull Throwable throwable) {
+                super.setException(throwable);
+                fail(throwable);
+            }
+        };
+        futures.add(future);
+        if (failure.get() != null) { future.cancel(true); }
+        else { executor.execute(future); }
+        return future;
+    }
+    
+    /**
+     * Forks the given task and returns its future.
+     * 
+     * @require !isClosed() : "This scope is not closed.";
+     */
+    @Impure
+    public @Nonnull Future<?> fork(@Captured @Nonnull Runnable task) {
+        Require.that(task != null).orThrow("The task may not be null.");
+        
+        return fork(() -> { task.run(); return null; });
+    }
+    
+    /* -------------------------------------------------- Joining -------------------------------------------------- */
+    
+    /**
+     * Waits until all forked tasks are done or one of them failed.
+     * 
+     * @throws ExecutionException if a task failed, in which case all other tasks are cancelled.
+     * @throws InterruptedException if the current thread is interrupted while waiting, in which case all tasks are cancelled.
+     */
+    @Impure
+    public void join() throws ExecutionException, InterruptedException {
+        for (@Nonnull Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (@Nonnull ExecutionException | CancellationException exception) {
+                // The failure is recorded by the failing task and reported below.
+            } catch (@Nonnull InterruptedException exception) {
+                cancel();
+                throw exception;
+            }
+        }
+        final @Nullable Throwable throwable = failure.get();
+        if (throwable != null) { throw new ExecutionException(throwable); }
+    }
+    
+    /**
+     * Waits until all forked tasks are done, one of them failed or the given timeout elapsed.
+     * 
+     * @throws ExecutionException if a task failed, in which case all other tasks are cancelled.
+     * @throws InterruptedException if the current thread is interrupted while waiting, in which case all tasks are cancelled.
+     * @throws TimeoutException if the tasks are not done within the given timeout, in which case all tasks are cancelled.
+     */
+    @Impure
+    public void join(@NonNegative long timeout, @Nonnull TimeUnit unit) throws ExecutionException, InterruptedException, TimeoutException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (@Nonnull Future<?> future : futures) {
+            try {
+                future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (@Nonnull ExecutionException | CancellationException exception) {
+                // The failure is recorded by the failing task and reported below.
+            } catch (@Nonnull InterruptedException | TimeoutException exception) {
+                cancel();
+                throw exception;
+            }
+        }
+        final @Nullable Throwable throwable = failure.get();
+        if (throwable != null) { throw new ExecutionException(throwable); }
+    }
+    
+    /* -------------------------------------------------- Cancellation -------------------------------------------------- */
+    
+    /**
+     * Cancels all tasks of this scope that are not yet done by interrupting them.
+     */
+    @Impure
+    public void cancel() {
+        for (@Nonnull Future<?> future : futures) {
+            if (!future.isDone()) { future.cancel(true); }
+        }
+    }
+    
+    /**
+     * Returns whether this scope has been closed.
+     */
+    @Pure
+    public boolean isClosed() {
+        return closed;
+    }
+    
+    /**
+     * Closes this scope and cancels all tasks that are not yet done.
+     */
+    @Impure
+    @Override
+    public void close() {
+        this.closed = true;
+        cancel();
+    }
+    
+}
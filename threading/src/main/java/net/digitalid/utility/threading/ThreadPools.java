@@ -0,0 +1,271 @@
+/*
+ * Copyright (C) 2017 Synacts GmbH, Switzerland (info@synacts.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.digitalid.utility.threading;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.digitalid.utility.annotations.method.Impure;
+import net.digitalid.utility.annotations.method.Pure;
+import net.digitalid.utility.annotations.ownership.Capturable;
+import net.digitalid.utility.configuration.Configuration;
+import net.digitalid.utility.configuration.ShutdownSequence;
+import net.digitalid.utility.contracts.Require;
+import net.digitalid.utility.validation.annotations.math.NonNegative;
+import net.digitalid.utility.validation.annotations.math.Positive;
+import net.digitalid.utility.validation.annotations.type.Utility;
+
+/**
+ * This class provides shared thread pools so that components do not have to create their own executors.
+ * Each pool is stored in a {@link Configuration} and can thus be replaced by the application, in which case the previous pool is shut down.
+ * All pools use daemon threads and are shut down in an orderly way in the {@link ShutdownSequence.Phase#EXECUTORS executors phase} of the {@link ShutdownSequence}.
+ */
+@Utility
+public abstract class ThreadPools {
+    
+    /* -------------------------------------------------- Processors -------------------------------------------------- */
+    
+    /**
+     * Reads the first line of the given file or returns null if the file cannot be read.
+     */
+    @Pure
+    private static @Nullable String readFirstLine(@Nonnull String path) {
+        final @Nonnull Path file = Paths.get(path);
+        if (!java.nio.file.Files.isReadable(file)) { return null; }
+        try {
+            final @Nonnull List<@Nonnull String> lines = java.nio.file.Files.readAllLines(file, StandardCharsets.UTF_8);
+            return lines.isEmpty() ? null : lines.get(0).trim();
+        } catch (@Nonnull IOException exception) {
+            return null;
+        }
+    }
+    
+    /**
+     * Returns the CPU quota of the control group of this process in cores or zero if there is no quota.
+     * Both version 2 ({@code cpu.max}) and version 1 ({@code cpu.cfs_quota_us}) of control groups are supported.
+     */
+    @Pure
+    public static double getCpuQuota() {
+        try {
+            final @Nullable String max = readFirstLine("/sys/fs/cgroup/cpu.max");
+            if (max != null) {
+                final @Nonnull String[] tokens = max.split(" ");
+                if (tokens.length == 2 && !tokens[0].equals("max")) { return Double.parseDouble(tokens[0]) / Double.parseDouble(tokens[1]); }
+                return 0;
+            }
+            final @Nullable String quota = readFirstLine("/sys/fs/cgroup/cpu/cpu.cfs_quota_us");
+            final @Nullable String period = readFirstLine("/sys/fs/cgroup/cpu/cpu.cfs_period_us");
+            if (quota != null && period != null && !quota.startsWith("-")) { return Double.parseDouble(quota) / Double.parseDouble(period); }
+        } catch (@Nonnull NumberFormatException exception) {}
+        return 0;
+    }
+    
+    /**
+     * Returns the number of processors that are available to this process, taking the CPU quota of its control group into account.
+     */
+    @Pure
+    public static @Positive int getAvailableProcessors() {
+        final int processors = Runtime.getRuntime().availableProcessors();
+        final double quota = getCpuQuota();
+        return quota > 0 ? Math.max(1, Math.min(processors, (int) Math.ceil(quota))) : Math.max(1, processors);
+    }
+    
+    /* -------------------------------------------------- Factories -------------------------------------------------- */
+    
+    /**
+     * Returns a new work-stealing pool with the given parallelism for CPU-bound tasks.
+     */
+    @Pure
+    public static @Capturable @Nonnull ForkJoinPool newComputationPool(@Positive int parallelism) {
+        Require.that(parallelism > 0).orThrow("The parallelism has to be positive but was $.", parallelism);
+        
+        final @Nonnull AtomicInteger number = new AtomicInteger(1);
+        return new ForkJoinPool(parallelism, pool -> {
+            final @Nonnull ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("Computation-" + number.getAndIncrement());
+            return thread;
+        }, null, true);
+    }
+    
+    /**
+     * Returns a new pool with the given number of threads and the given queue capacity for blocking tasks like I/O.
+     * If the queue is full, the submitting thread executes the task itself, which slows down the producer.
+     */
+    @Pure
+    public static @Capturable @Nonnull ThreadPoolExecutor newBlockingPool(@Positive int threads, @Positive int capacity) {
+        Require.that(threads > 0).orThrow("The number of threads has to be positive but was $.", threads);
+        Require.that(capacity > 0).orThrow("The capacity has to be positive but was $.", capacity);
+        
+        final @Nonnull ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(capacity), NamedThreadFactory.with("Blocking", true), new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+    
+    /**
+     * Returns a new pool with the given number of threads for scheduled tasks.
+     * Cancelled tasks are removed from the queue immediately.
+     */
+    @Pure
+    public static @Capturable @Nonnull ScheduledThreadPoolExecutor newSchedulingPool(@Positive int threads) {
+        Require.that(threads > 0).orThrow("The number of threads has to be positive but was $.", threads);
+        
+        final @Nonnull ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(threads, NamedThreadFactory.with("Scheduler", true));
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+    
+    /* -------------------------------------------------- Configurations -------------------------------------------------- */
+    
+    /**
+     * Stores the work-stealing pool for CPU-bound tasks, whose parallelism defaults to the available processors.
+     */
+    public static final @Nonnull Configuration<ExecutorService> computation = Configuration.with(newComputationPool(getAvailableProcessors()));
+    
+    /**
+     * Stores the bounded pool for blocking tasks like I/O, whose size defaults to four threads per available processor.
+     */
+    public static final @Nonnull Configuration<ExecutorService> blocking = Configuration.with(newBlockingPool(Math.max(8, 4 * getAvailableProcessors()), 8_192));
+    
+    /**
+     * Stores the pool for scheduled tasks, whose size defaults to a quarter of the available processors.
+     */
+    public static final @Nonnull Configuration<ScheduledExecutorService> scheduling = Configuration.with(newSchedulingPool(Math.max(1, getAvailableProcessors() / 4)));
+    
+    /**
+     * Stores the pool for blocking tasks that runs each task on a new virtual thread if the runtime supports virtual threads.
+     * 
+     * @see VirtualThreadFactory#newExecutor(java.lang.String)
+     */
+    public static final @Nonnull Configuration<ExecutorService> virtual = Configuration.with(VirtualThreadFactory.newExecutor("Virtual"));
+    
+    /* -------------------------------------------------- Registry -------------------------------------------------- */
+    
+    /**
+     * Stores the registered pools by their name.
+     */
+    private static final @Nonnull ConcurrentMap<@Nonnull String, @Nonnull Configuration<? extends ExecutorService>> pools = new ConcurrentHashMap<>();
+    
+    /**
+     * Registers the pool of the given configuration under the given name.
+     * When the pool of the configuration is replaced, the previous pool is shut down.
+     * 
+     * @return whether no other pool was already registered under the given name.
+     */
+    @Impure
+    public static <EXECUTOR extends ExecutorService> boolean register(@Nonnull String name, @Nonnull Configuration<EXECUTOR> configuration) {
+        Require.that(name != null).orThrow("The name may not be null.");
+        Require.that(configuration != null).orThrow("The configuration may not be null.");
+        
+        if (pools.putIfAbsent(name, configuration) != null) { return false; }
+        configuration.register((observedConfiguration, oldPool, newPool) -> { if (oldPool != null) { oldPool.shutdown(); } });
+        return true;
+    }
+    
+    /**
+     * Returns the pool that is registered under the given name or null if no such pool is registered.
+     */
+    @Pure
+    public static @Nullable ExecutorService get(@Nonnull String name) {
+        final @Nullable Configuration<? extends ExecutorService> configuration = pools.get(name);
+        return configuration == null ? null : configuration.get();
+    }
+    
+    /* -------------------------------------------------- Metrics -------------------------------------------------- */
+    
+    /**
+     * Returns the number of tasks that are waiting in the queue of the given executor or -1 if the queue depth cannot be determined.
+     */
+    @Pure
+    public static int getQueueDepth(@Nonnull ExecutorService executor) {
+        if (executor instanceof ThreadPoolExecutor) { return ((ThreadPoolExecutor) executor).getQueue().size(); }
+        if (executor instanceof ForkJoinPool) {
+            final @Nonnull ForkJoinPool pool = (ForkJoinPool) executor;
+            return (int) Math.min(Integer.MAX_VALUE, pool.getQueuedSubmissionCount() + pool.getQueuedTaskCount());
+        }
+        return -1;
+    }
+    
+    /**
+     * Returns the queue depths of all registered pools by their name.
+     */
+    @Pure
+    public static @Capturable @Nonnull Map<@Nonnull String, @Nonnull Integer> getQueueDepths() {
+        final @Nonnull Map<@Nonnull String, @Nonnull Integer> result = new LinkedHashMap<>();
+        for (@Nonnull Map.Entry<@Nonnull String, @Nonnull Configuration<? extends ExecutorService>> entry : pools.entrySet()) {
+            result.put(entry.getKey(), getQueueDepth(entry.getValue().get()));
+        }
+        return result;
+    }
+    
+    /* -------------------------------------------------- Shutdown -------------------------------------------------- */
+    
+    /**
+     * Shuts down all registered pools in an orderly way by first letting them complete the submitted tasks
+     * and then interrupting the tasks of those pools that did not terminate within the given timeout.
+     * 
+     * @return whether all pools terminated within the given timeout.
+     */
+    @Impure
+    public static boolean shutdown(@NonNegative long timeout, @Nonnull TimeUnit unit) {
+        for (@Nonnull Configuration<? extends ExecutorService> configuration : pools.values()) { configuration.get().shutdown(); }
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        boolean terminated = true;
+        for (@Nonnull Configuration<? extends ExecutorService> configuration : pools.values()) {
+            final @Nonnull ExecutorService executor = configuration.get();
+            try {
+                if (!executor.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                    executor.shutdownNow();
+                    terminated = false;
+                }
+            } catch (@Nonnull InterruptedException exception) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+                terminated = false;
+            }
+        }
+        return terminated;
+    }
+    
+    /* -------------------------------------------------- Initialization -------------------------------------------------- */
+    
+    static {
+        register("Computation", computation);
+        register("Blocking", blocking);
+        register("Scheduling", scheduling);
+        register("Virtual", virtual);
+        ShutdownSequence.register(ShutdownSequence.Phase.EXECUTORS, () -> shutdown(5, TimeUnit.SECONDS));
+    }
+    
+}
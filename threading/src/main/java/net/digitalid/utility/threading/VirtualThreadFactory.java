@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2017 Synacts GmbH, Switzerland (info@synacts.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.digitalid.utility.threading;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.digitalid.utility.annotations.method.Impure;
+import net.digitalid.utility.annotations.method.Pure;
+import net.digitalid.utility.annotations.ownership.Capturable;
+import net.digitalid.utility.validation.annotations.type.Mutable;
+
+/**
+ * This class creates named virtual threads on runtimes that support them and named daemon platform threads otherwise.
+ * The virtual threads are created reflectively so that this library can still be compiled for and used on older runtimes.
+ */
+@Mutable
+public class VirtualThreadFactory extends NamedThreadFactory {
+    
+    /* -------------------------------------------------- Method Handles -------------------------------------------------- */
+    
+    /**
+     * Stores the method handle to {@code Thread.ofVirtual()} or null if virtual threads are not supported.
+     */
+    private static final @Nullable MethodHandle ofVirtual;
+    
+    /**
+     * Stores the method handle to {@code Thread.Builder.unstarted(Runnable)} or null if virtual threads are not supported.
+     */
+    private static final @Nullable MethodHandle unstarted;
+    
+    /**
+     * Stores the method handle to {@code Executors.newThreadPerTaskExecutor(ThreadFactory)} or null if it is not supported.
+     */
+    private static final @Nullable MethodHandle newThreadPerTaskExecutor;
+    
+    static {
+        @Nullable MethodHandle ofVirtualHandle = null;
+        @Nullable MethodHandle unstartedHandle = null;
+        @Nullable MethodHandle newThreadPerTaskExecutorHandle = null;
+        try {
+            final @Nonnull MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            final @Nonnull Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            final @Nonnull Class<?> virtualBuilderClass = Class.forName("java.lang.Thread$Builder$OfVirtual");
+            ofVirtualHandle = lookup.findStatic(Thread.class, "ofVirtual", MethodType.methodType(virtualBuilderClass)).asType(MethodType.methodType(Object.class));
+            unstartedHandle = lookup.findVirtual(builderClass, "unstarted", MethodType.methodType(Thread.class, Runnable.class)).asType(MethodType.methodType(Thread.class, Object.class, Runnable.class));
+            newThreadPerTaskExecutorHandle = lookup.findStatic(Executors.class, "newThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class, ThreadFactory.class));
+        } catch (@Nonnull ReflectiveOperationException | RuntimeException exception) {
+            ofVirtualHandle = null;
+            unstartedHandle = null;
+            newThreadPerTaskExecutorHandle = null;
+        }
+        ofVirtual = ofVirtualHandle;
+        unstarted = unstartedHandle;
+        newThreadPerTaskExecutor = newThreadPerTaskExecutorHandle;
+    }
+    
+    /**
+     * Returns whether the current runtime supports virtual threads.
+     */
+    @Pure
+    public static boolean isSupported() {
+        return ofVirtual != null && unstarted != null && newThreadPerTaskExecutor != null;
+    }
+    
+    /* -------------------------------------------------- Constructors -------------------------------------------------- */
+    
+    protected VirtualThreadFactory(@Nonnull String prefix) {
+        super(prefix, true);
+    }
+    
+    /**
+     * Returns a new virtual thread factory with the given name prefix.
+     * 
+     * @param prefix the prefix of the threads created by this factory.
+     */
+    @Pure
+    public static @Nonnull VirtualThreadFactory with(@Nonnull String prefix) {
+        return new VirtualThreadFactory(prefix);
+    }
+    
+    /* -------------------------------------------------- Methods -------------------------------------------------- */
+    
+    @Impure
+    @Override
+    public @Nonnull Thread newThread(@Nonnull Runnable runnable) {
+        if (!isSupported()) { return super.newThread(runnable); }
+        try {
+            final @Nonnull Thread thread = (Thread) unstarted.invokeExact((Object) ofVirtual.invokeExact(), runnable);
+            thread.setName(getNextName());
+            return thread;
+        } catch (@Nonnull RuntimeException | Error exception) {
+            throw exception;
+        } catch (@Nonnull Throwable throwable) {
+            throw new RuntimeException("Could not create a virtual thread.", throwable);
+        }
+    }
+    
+    /* -------------------------------------------------- Executor -------------------------------------------------- */
+    
+    /**
+     * Returns a new executor that runs each task on a new virtual thread with the given name prefix.
+     * On runtimes without virtual threads, the returned executor uses a cached pool of daemon platform threads instead.
+     * Such an executor is intended for blocking tasks and should not be used for CPU-bound tasks.
+     */
+    @Pure
+    public static @Capturable @Nonnull ExecutorService newExecutor(@Nonnull String prefix) {
+        final @Nonnull VirtualThreadFactory factory = with(prefix);
+        if (isSupported()) {
+            try {
+                return (ExecutorService) newThreadPerTaskExecutor.invokeExact((ThreadFactory) factory);
+            } catch (@Nonnull RuntimeException | Error exception) {
+                throw exception;
+            } catch (@Nonnull Throwable throwable) {
+                throw new RuntimeException("Could not create a virtual thread executor.", throwable);
+            }
+        }
+        return Executors.newCachedThreadPool(factory);
+    }
+    
+}
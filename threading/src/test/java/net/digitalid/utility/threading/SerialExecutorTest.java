@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2017 Synacts GmbH, Switzerland (info@synacts.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.digitalid.utility.threading;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+
+import net.digitalid.utility.annotations.method.Impure;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SerialExecutorTest {
+    
+    private final @Nonnull ExecutorService pool = Executors.newFixedThreadPool(4);
+    
+    @After
+    @Impure
+    public void shutdownPool() {
+        pool.shutdownNow();
+    }
+    
+    @Test
+    public void testOrder() throws InterruptedException {
+        final @Nonnull SerialExecutor executor = SerialExecutor.with(pool, 3);
+        final @Nonnull List<@Nonnull Integer> results = Collections.synchronizedList(new ArrayList<>());
+        for (int i = 0; i < 100; i++) {
+            final int number = i;
+            executor.execute(() -> results.add(number));
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(100, results.size());
+        for (int i = 0; i < 100; i++) { assertEquals(i, (int) results.get(i)); }
+        assertEquals(0, executor.getQueueDepth());
+    }
+    
+    @Test
+    public void testShutdown() throws InterruptedException {
+        final @Nonnull SerialExecutor executor = SerialExecutor.with(pool);
+        final @Nonnull CountDownLatch started = new CountDownLatch(1);
+        final @Nonnull CountDownLatch blocker = new CountDownLatch(1);
+        final @Nonnull AtomicInteger counter = new AtomicInteger();
+        executor.execute(() -> {
+            started.countDown();
+            try { blocker.await(); } catch (@Nonnull InterruptedException exception) {}
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.execute(counter::incrementAndGet);
+        executor.execute(counter::incrementAndGet);
+        assertEquals(2, executor.shutdownNow().size());
+        assertTrue(executor.isShutdown());
+        assertFalse(executor.isTerminated());
+        try {
+            executor.execute(counter::incrementAndGet);
+            fail("The task should have been rejected.");
+        } catch (@Nonnull RejectedExecutionException exception) {}
+        blocker.countDown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(0, counter.get());
+        assertEquals(0, executor.getQueueDepth());
+    }
+    
+    @Test
+    public void testErrorsDoNotStopTheExecutor() throws InterruptedException {
+        final @Nonnull SerialExecutor executor = SerialExecutor.with(pool, 1);
+        final @Nonnull CountDownLatch latch = new CountDownLatch(1);
+        executor.execute(() -> { throw new AssertionError("Expected"); });
+        executor.execute(() -> { throw new IllegalStateException("Expected"); });
+        executor.execute(latch::countDown);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+    
+    @Test
+    public void testRejectedTasksAreRemoved() {
+        final @Nonnull SerialExecutor executor = SerialExecutor.with(task -> { throw new RejectedExecutionException(); });
+        try {
+            executor.execute(() -> {});
+            fail("The task should have been rejected.");
+        } catch (@Nonnull RejectedExecutionException exception) {
+            assertEquals(0, executor.getQueueDepth());
+            assertTrue(executor.shutdownNow().isEmpty());
+        }
+    }
+    
+    @Test
+    public void testConcurrentShutdown() throws InterruptedException {
+        for (int round = 0; round < 100; round++) {
+            final @Nonnull SerialExecutor executor = SerialExecutor.with(pool);
+            final @Nonnull AtomicInteger accepted = new AtomicInteger();
+            final @Nonnull AtomicInteger executed = new AtomicInteger();
+            final @Nonnull List<@Nonnull Thread> threads = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                threads.add(new Thread(() -> {
+                    for (int j = 0; j < 100; j++) {
+                        try {
+                            executor.execute(executed::incrementAndGet);
+                            accepted.incrementAndGet();
+                        } catch (@Nonnull RejectedExecutionException exception) {
+                            return;
+                        }
+                    }
+                }));
+            }
+            for (@Nonnull Thread thread : threads) { thread.start(); }
+            final int returned = executor.shutdownNow().size();
+            for (@Nonnull Thread thread : threads) { thread.join(); }
+            assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+            assertEquals(accepted.get(), executed.get() + returned);
+            assertEquals(0, executor.getQueueDepth());
+        }
+    }
+    
+}